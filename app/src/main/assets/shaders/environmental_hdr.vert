@@ -18,17 +18,48 @@
 uniform mat4 u_ModelView;
 uniform mat4 u_ModelViewProjection;
 
+#ifdef QUANTIZED_POSITIONS
+// Positions are stored as normalized shorts relative to the bounding box of the mesh.
+uniform vec3 u_PositionScale;
+uniform vec3 u_PositionOffset;
+#endif
+
 layout(location = 0) in vec4 a_Position;
 layout(location = 1) in vec2 a_TexCoord;
+#ifdef OCTAHEDRAL_NORMALS
+layout(location = 2) in vec2 a_Normal;
+#else
 layout(location = 2) in vec3 a_Normal;
+#endif
 
 out vec3 v_ViewPosition;
 out vec3 v_ViewNormal;
 out vec2 v_TexCoord;
 
+vec4 decodePosition() {
+#ifdef QUANTIZED_POSITIONS
+  return vec4(a_Position.xyz * u_PositionScale + u_PositionOffset, 1.0);
+#else
+  return a_Position;
+#endif
+}
+
+vec3 decodeNormal() {
+#ifdef OCTAHEDRAL_NORMALS
+  vec3 normal = vec3(a_Normal, 1.0 - abs(a_Normal.x) - abs(a_Normal.y));
+  float fold = max(-normal.z, 0.0);
+  normal.x += normal.x >= 0.0 ? -fold : fold;
+  normal.y += normal.y >= 0.0 ? -fold : fold;
+  return normalize(normal);
+#else
+  return a_Normal;
+#endif
+}
+
 void main() {
-  v_ViewPosition = (u_ModelView * a_Position).xyz;
-  v_ViewNormal = normalize((u_ModelView * vec4(a_Normal, 0.0)).xyz);
+  vec4 position = decodePosition();
+  v_ViewPosition = (u_ModelView * position).xyz;
+  v_ViewNormal = normalize((u_ModelView * vec4(decodeNormal(), 0.0)).xyz);
   v_TexCoord = a_TexCoord;
-  gl_Position = u_ModelViewProjection * a_Position;
+  gl_Position = u_ModelViewProjection * position;
 }
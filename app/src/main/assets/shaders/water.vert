@@ -5,17 +5,65 @@ precision mediump float;
 uniform mat4 u_ModelViewProjection;
 uniform mat3 u_NormalView;
 
-in vec4 a_Position;
-in vec3 a_Normal;
-in vec2 a_TexCoord;
+#ifdef VERTEX_ANIMATION_TEXTURE
+// Two RGBA16F texels per frame and vertex, the position offset from the base
+// mesh and the normal, starting at texel (frame * u_VatVertexCount + vertex) * 2.
+uniform highp sampler2D u_VatTexture;
+uniform int u_VatVertexCount;
+uniform int u_VatFrameCount;
+uniform float u_VatFrame;
+#endif
+
+layout(location = 0) in vec4 a_Position;
+layout(location = 1) in vec2 a_TexCoord;
+layout(location = 2) in vec3 a_Normal;
+
+#ifdef KEYFRAME_BLENDING
+// The next keyframe, mixed in by u_KeyframeBlend, see KeyframeMesh.
+uniform float u_KeyframeBlend;
+
+layout(location = 3) in vec3 a_NextPosition;
+layout(location = 4) in vec3 a_NextNormal;
+#endif
 
 out vec3 v_Position;
 out vec3 v_Normal;
 out vec2 v_TexCoord;
 
+#ifdef VERTEX_ANIMATION_TEXTURE
+vec3 fetchVatTexel(int texel) {
+  int width = textureSize(u_VatTexture, 0).x;
+  return texelFetch(u_VatTexture, ivec2(texel % width, texel / width), 0).xyz;
+}
+
+void sampleVat(int frame, out vec3 offset, out vec3 normal) {
+  int texel = (frame * u_VatVertexCount + gl_VertexID) * 2;
+  offset = fetchVatTexel(texel);
+  normal = fetchVatTexel(texel + 1);
+}
+#endif
+
 void main() {
-  gl_Position = u_ModelViewProjection * a_Position;
-  v_Position = a_Position.xyz;
-  v_Normal = normalize(u_NormalView * a_Normal);
+  vec4 position = a_Position;
+  vec3 normal = a_Normal;
+
+#ifdef KEYFRAME_BLENDING
+  position.xyz = mix(a_Position.xyz, a_NextPosition, u_KeyframeBlend);
+  normal = mix(a_Normal, a_NextNormal, u_KeyframeBlend);
+#endif
+
+#ifdef VERTEX_ANIMATION_TEXTURE
+  int frame = int(u_VatFrame) % u_VatFrameCount;
+  float blend = fract(u_VatFrame);
+  vec3 offset0, normal0, offset1, normal1;
+  sampleVat(frame, offset0, normal0);
+  sampleVat((frame + 1) % u_VatFrameCount, offset1, normal1);
+  position.xyz += mix(offset0, offset1, blend);
+  normal = mix(normal0, normal1, blend);
+#endif
+
+  gl_Position = u_ModelViewProjection * position;
+  v_Position = position.xyz;
+  v_Normal = normalize(u_NormalView * normal);
   v_TexCoord = a_TexCoord;
 }
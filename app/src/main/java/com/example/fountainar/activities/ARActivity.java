@@ -53,6 +53,7 @@ public class ARActivity extends AppCompatActivity implements
     private ARCoreHelper arCoreHelper;
     private QuizHelper quizHelper;
     private GLSurfaceView surfaceView;
+    private CustomRender customRender;
     private SceneRenderer sceneRenderer;
 
     @Override
@@ -67,7 +68,7 @@ public class ARActivity extends AppCompatActivity implements
         BackPressedHandler.setupBackPressedCallback(this);
         surfaceView = findViewById(R.id.surface_view);
         sceneRenderer = new SceneRenderer(this);
-        new CustomRender(surfaceView, this, getAssets());
+        customRender = new CustomRender(surfaceView, this, getAssets());
 
         runOnUiThread(() -> Toast.makeText(ARActivity.this, R.string.models_loading,
                 Toast.LENGTH_LONG).show());
@@ -264,6 +265,7 @@ public class ARActivity extends AppCompatActivity implements
         }
 
         sceneRenderer.releaseSoundPool();
+        surfaceView.queueEvent(customRender::release);
         super.onDestroy();
     }
 }
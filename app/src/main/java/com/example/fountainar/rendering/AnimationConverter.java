@@ -0,0 +1,69 @@
+package com.example.fountainar.rendering;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Command line tool that converts a sequence of Wavefront OBJ keyframes into the compact format
+ * read by {@link AnimationFile}.
+ *
+ * <p>Runs on the JVM, e.g. {@code java -cp <classes>
+ * com.example.fountainar.rendering.AnimationConverter
+ * app/src/main/assets/models/animation/water_jets.anim water_jets170.obj ...
+ * water_jets174.obj}. The body is deflated, and positions and normals are quantized with {@link
+ * AnimationFile#DEFAULT_POSITION_STEP} and {@link AnimationFile#DEFAULT_NORMAL_STEP}.
+ */
+public final class AnimationConverter {
+
+    private AnimationConverter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: AnimationConverter <output.anim> <frame.obj>...");
+            System.exit(1);
+        }
+
+        convert(Arrays.asList(args).subList(1, args.length), args[0]);
+    }
+
+    /**
+     * Converts the given OBJ keyframes into an animation file.
+     *
+     * @param objFileNames The paths of the keyframe OBJ files, in playback order.
+     * @param animFileName The path of the animation file to write.
+     * @throws IOException If reading or writing fails, or the frames have different topologies.
+     */
+    public static void convert(List<String> objFileNames, String animFileName)
+            throws IOException {
+        VertexAnimation animation;
+
+        try {
+            animation = VertexAnimation.fromFrames(VatBaker.readFrames(objFileNames));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Cannot convert " + objFileNames, e);
+        }
+
+        try (OutputStream outputStream =
+                     new BufferedOutputStream(new FileOutputStream(animFileName))) {
+            AnimationFile.write(animation, outputStream, AnimationFile.DEFAULT_POSITION_STEP,
+                    AnimationFile.DEFAULT_NORMAL_STEP, true);
+        }
+
+        long objBytes = 0;
+
+        for (String objFileName : objFileNames) {
+            objBytes += new File(objFileName).length();
+        }
+
+        System.out.printf(Locale.US, "%s: %d frames, %d KiB of OBJ -> %d KiB%n", animFileName,
+                animation.getFrameCount(), objBytes / 1024,
+                new File(animFileName).length() / 1024);
+    }
+}
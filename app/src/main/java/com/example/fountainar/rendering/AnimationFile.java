@@ -0,0 +1,426 @@
+package com.example.fountainar.rendering;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads and writes compact keyframe animations, which replace one OBJ file per keyframe.
+ *
+ * <p>All frames share the topology of a {@link VertexAnimation}. The file starts with a header of
+ * little-endian 32-bit values:
+ *
+ * <pre>
+ *   magic ("FANM"), version, flags, frameCount, vertexCount, indexCount,
+ *   positionStep (float), normalStep (float)
+ * </pre>
+ *
+ * <p>The body, deflated if {@link #FLAG_DEFLATED} is set, holds the indices as zigzag varint
+ * deltas of their predecessors, then the texture coordinates and the positions and normals of
+ * frame 0 as little-endian floats. Every later frame follows as zigzag varints: the positions and
+ * then the normals of all vertices, each component quantized as the difference from the previous
+ * decoded frame in multiples of {@code positionStep} or {@code normalStep}. Since the encoder
+ * predicts from the decoded rather than the original previous frame, quantization errors do not
+ * accumulate: every decoded component is within half a step of the original one.
+ *
+ * <p>Small movements between frames become small integers, mostly a single byte each, which
+ * deflate compresses well.
+ */
+public final class AnimationFile {
+    public static final String EXTENSION = ".anim";
+    public static final int FLAG_DEFLATED = 1;
+    /**
+     * The default position quantization step, an eighth of a millimeter in meters.
+     */
+    public static final float DEFAULT_POSITION_STEP = 1f / 8192;
+    /**
+     * The default normal quantization step, below the resolution of 8-bit shading.
+     */
+    public static final float DEFAULT_NORMAL_STEP = 1f / 2048;
+    private static final int MAGIC = 0x4D4E4146; // "FANM" read as little-endian int
+    private static final int VERSION = 1;
+
+    private AnimationFile() {
+    }
+
+    /**
+     * Writes the given animation.
+     *
+     * @param animation    The animation to write.
+     * @param outputStream The stream to write to. It is not closed by this method.
+     * @param positionStep The quantization step of positions.
+     * @param normalStep   The quantization step of normals.
+     * @param deflate      Whether to deflate the body.
+     * @throws IOException              If writing fails.
+     * @throws IllegalArgumentException If a delta does not fit into 32 bits with the given steps.
+     */
+    public static void write(VertexAnimation animation, OutputStream outputStream,
+                             float positionStep, float normalStep, boolean deflate)
+            throws IOException {
+        if (!(positionStep > 0) || !(normalStep > 0)) {
+            throw new IllegalArgumentException("Quantization steps must be positive");
+        }
+
+        MeshData baseMesh = animation.getBaseMesh();
+        int vertexCount = animation.getVertexCount();
+        Writer header = new Writer(outputStream);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeInt(deflate ? FLAG_DEFLATED : 0);
+        header.writeInt(animation.getFrameCount());
+        header.writeInt(vertexCount);
+        header.writeInt(baseMesh.getIndexCount());
+        header.writeFloat(positionStep);
+        header.writeFloat(normalStep);
+        header.flush();
+
+        // The deflater's native memory is freed right away instead of by its finalizer.
+        Deflater deflater = deflate ? new Deflater(Deflater.BEST_COMPRESSION) : null;
+
+        try {
+            DeflaterOutputStream deflaterStream = deflate
+                    ? new DeflaterOutputStream(outputStream, deflater) : null;
+            writeBody(animation, new Writer(deflate ? deflaterStream : outputStream),
+                    positionStep, normalStep);
+
+            if (deflaterStream != null) {
+                deflaterStream.finish();
+            }
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Reads all frames of an animation into separate {@link MeshData}, which share one index and
+     * one texture coordinate buffer.
+     *
+     * @param inputStream The stream of the file. It is not closed by this method.
+     * @throws IOException If the stream could not be read or is not a valid animation.
+     */
+    public static List<MeshData> readFrames(InputStream inputStream) throws IOException {
+        try (Decoder decoder = new Decoder(inputStream)) {
+            List<MeshData> frames = new ArrayList<>(decoder.getFrameCount());
+
+            for (int f = 0; f < decoder.getFrameCount(); ++f) {
+                FloatBuffer positions = MeshData.allocateFloats(
+                        decoder.getVertexCount() * MeshData.POSITION_COMPONENTS);
+                FloatBuffer normals = MeshData.allocateFloats(
+                        decoder.getVertexCount() * MeshData.NORMAL_COMPONENTS);
+                decoder.readFrame(positions, normals);
+                frames.add(new MeshData(positions, decoder.getTexCoords(), normals,
+                        decoder.getIndices()));
+            }
+
+            return frames;
+        }
+    }
+
+    private static void writeBody(VertexAnimation animation, Writer body, float positionStep,
+                                  float normalStep) throws IOException {
+        MeshData baseMesh = animation.getBaseMesh();
+        IntBuffer indices = baseMesh.getIndices();
+        int previousIndex = 0;
+
+        for (int i = 0; i < indices.limit(); ++i) {
+            body.writeVarint(indices.get(i) - previousIndex);
+            previousIndex = indices.get(i);
+        }
+
+        body.writeFloats(baseMesh.getTexCoords());
+        FloatBuffer positions = copy(animation.getPositions(0));
+        FloatBuffer normals = copy(animation.getNormals(0));
+        body.writeFloats(positions);
+        body.writeFloats(normals);
+
+        for (int f = 1; f < animation.getFrameCount(); ++f) {
+            writeDeltas(body, animation.getPositions(f), positions, positionStep);
+            writeDeltas(body, animation.getNormals(f), normals, normalStep);
+        }
+
+        body.flush();
+    }
+
+    private static void writeDeltas(Writer body, FloatBuffer frame, FloatBuffer previous,
+                                    float step) throws IOException {
+        for (int i = 0; i < previous.limit(); ++i) {
+            long quantized = Math.round((double) (frame.get(i) - previous.get(i)) / step);
+
+            if (quantized != (int) quantized) {
+                throw new IllegalArgumentException("Delta " + (frame.get(i) - previous.get(i))
+                        + " is too large for the quantization step " + step);
+            }
+
+            body.writeVarint((int) quantized);
+            previous.put(i, previous.get(i) + (int) quantized * step);
+        }
+    }
+
+    private static FloatBuffer copy(FloatBuffer buffer) {
+        FloatBuffer copy = MeshData.allocateFloats(buffer.limit());
+        copy.put(buffer.duplicate()).rewind();
+        return copy;
+    }
+
+    /**
+     * Decodes the frames of an animation one by one from a stream, without holding more than the
+     * previous frame. It must be closed to free the native memory of its inflater.
+     */
+    public static final class Decoder implements Closeable {
+        private final Inflater INFLATER;
+        private final Reader BODY;
+        private final int FRAME_COUNT;
+        private final int VERTEX_COUNT;
+        private final float POSITION_STEP;
+        private final float NORMAL_STEP;
+        private final IntBuffer INDICES;
+        private final FloatBuffer TEX_COORDS;
+        private final float[] POSITIONS;
+        private final float[] NORMALS;
+        private int nextFrame;
+
+        /**
+         * Reads the header, the indices and the texture coordinates.
+         *
+         * @param inputStream The stream of the file. It is not closed by the decoder.
+         * @throws IOException If the stream could not be read or is not a valid animation.
+         */
+        public Decoder(InputStream inputStream) throws IOException {
+            Reader header = new Reader(inputStream);
+
+            if (header.readInt() != MAGIC) {
+                throw new IOException("Not an animation file");
+            }
+
+            int version = header.readInt();
+
+            if (version != VERSION) {
+                throw new IOException("Unsupported animation version " + version);
+            }
+
+            int flags = header.readInt();
+            FRAME_COUNT = header.readInt();
+            VERTEX_COUNT = header.readInt();
+            int indexCount = header.readInt();
+            POSITION_STEP = header.readFloat();
+            NORMAL_STEP = header.readFloat();
+
+            if (FRAME_COUNT < 1 || VERTEX_COUNT < 0 || indexCount < 0
+                    || VERTEX_COUNT > Integer.MAX_VALUE / 4 / MeshData.POSITION_COMPONENTS) {
+                throw new IOException("Malformed animation header");
+            }
+
+            INFLATER = (flags & FLAG_DEFLATED) != 0 ? new Inflater() : null;
+
+            try {
+                // The header is read unbuffered, so that nothing is read past it before the body
+                // stream is set up.
+                BODY = new Reader(new BufferedInputStream(INFLATER != null
+                        ? new InflaterInputStream(inputStream, INFLATER) : inputStream));
+                INDICES = MeshData.allocateInts(indexCount);
+                int index = 0;
+
+                for (int i = 0; i < indexCount; ++i) {
+                    index += BODY.readVarint();
+
+                    if (index < 0 || index >= VERTEX_COUNT) {
+                        throw new IOException("Index " + index + " out of range");
+                    }
+
+                    INDICES.put(i, index);
+                }
+
+                TEX_COORDS = MeshData.allocateFloats(
+                        VERTEX_COUNT * MeshData.TEX_COORD_COMPONENTS);
+                BODY.readFloats(TEX_COORDS);
+                POSITIONS = new float[VERTEX_COUNT * MeshData.POSITION_COMPONENTS];
+                NORMALS = new float[VERTEX_COUNT * MeshData.NORMAL_COMPONENTS];
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        public int getFrameCount() {
+            return FRAME_COUNT;
+        }
+
+        public int getVertexCount() {
+            return VERTEX_COUNT;
+        }
+
+        /**
+         * Returns the indices shared by all frames.
+         */
+        public IntBuffer getIndices() {
+            return INDICES;
+        }
+
+        /**
+         * Returns the texture coordinates shared by all frames.
+         */
+        public FloatBuffer getTexCoords() {
+            return TEX_COORDS;
+        }
+
+        /**
+         * Decodes the next frame into the given buffers, starting at index 0.
+         *
+         * @param positions A buffer for {@code 3 * vertexCount} position components.
+         * @param normals   A buffer for {@code 3 * vertexCount} normal components.
+         * @throws IOException           If the stream could not be read.
+         * @throws IllegalStateException If all frames have been read.
+         */
+        public void readFrame(FloatBuffer positions, FloatBuffer normals) throws IOException {
+            if (nextFrame == FRAME_COUNT) {
+                throw new IllegalStateException("All " + FRAME_COUNT + " frames have been read");
+            }
+
+            if (nextFrame == 0) {
+                BODY.readFloats(POSITIONS);
+                BODY.readFloats(NORMALS);
+            } else {
+                BODY.readDeltas(POSITIONS, POSITION_STEP);
+                BODY.readDeltas(NORMALS, NORMAL_STEP);
+            }
+
+            ++nextFrame;
+            positions.rewind();
+            positions.put(POSITIONS).rewind();
+            normals.rewind();
+            normals.put(NORMALS).rewind();
+        }
+
+        /**
+         * Frees the native memory of the inflater. The stream is not closed. Closing a closed
+         * decoder has no effect.
+         */
+        @Override
+        public void close() {
+            if (INFLATER != null) {
+                INFLATER.end();
+            }
+        }
+    }
+
+    private static final class Writer {
+        private final OutputStream OUTPUT_STREAM;
+
+        Writer(OutputStream outputStream) {
+            this.OUTPUT_STREAM = new BufferedOutputStream(outputStream);
+        }
+
+        void writeInt(int value) throws IOException {
+            OUTPUT_STREAM.write(value);
+            OUTPUT_STREAM.write(value >>> 8);
+            OUTPUT_STREAM.write(value >>> 16);
+            OUTPUT_STREAM.write(value >>> 24);
+        }
+
+        void writeFloat(float value) throws IOException {
+            writeInt(Float.floatToRawIntBits(value));
+        }
+
+        void writeFloats(FloatBuffer values) throws IOException {
+            for (int i = 0; i < values.limit(); ++i) {
+                writeFloat(values.get(i));
+            }
+        }
+
+        /**
+         * Writes a zigzag encoded varint: 7 bits per byte, least significant first, so that
+         * values close to zero of either sign take a single byte.
+         */
+        void writeVarint(int value) throws IOException {
+            int zigzag = (value << 1) ^ (value >> 31);
+
+            while ((zigzag & ~0x7F) != 0) {
+                OUTPUT_STREAM.write((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+
+            OUTPUT_STREAM.write(zigzag);
+        }
+
+        void flush() throws IOException {
+            OUTPUT_STREAM.flush();
+        }
+    }
+
+    private static final class Reader {
+        private final InputStream INPUT_STREAM;
+
+        Reader(InputStream inputStream) {
+            this.INPUT_STREAM = inputStream;
+        }
+
+        int readByte() throws IOException {
+            int value = INPUT_STREAM.read();
+
+            if (value < 0) {
+                throw new EOFException("Unexpected end of animation file");
+            }
+
+            return value;
+        }
+
+        int readInt() throws IOException {
+            return readByte() | readByte() << 8 | readByte() << 16 | readByte() << 24;
+        }
+
+        float readFloat() throws IOException {
+            return Float.intBitsToFloat(readInt());
+        }
+
+        void readFloats(FloatBuffer values) throws IOException {
+            for (int i = 0; i < values.limit(); ++i) {
+                values.put(i, readFloat());
+            }
+        }
+
+        void readFloats(float[] values) throws IOException {
+            for (int i = 0; i < values.length; ++i) {
+                values[i] = readFloat();
+            }
+        }
+
+        void readDeltas(float[] values, float step) throws IOException {
+            for (int i = 0; i < values.length; ++i) {
+                values[i] += readVarint() * step;
+            }
+        }
+
+        int readVarint() throws IOException {
+            int zigzag = 0;
+
+            for (int shift = 0; ; shift += 7) {
+                if (shift > 28) {
+                    throw new IOException("Malformed varint in animation file");
+                }
+
+                int value = readByte();
+                zigzag |= (value & 0x7F) << shift;
+
+                if ((value & 0x80) == 0) {
+                    break;
+                }
+            }
+
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+    }
+}
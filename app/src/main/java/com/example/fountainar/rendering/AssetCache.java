@@ -0,0 +1,713 @@
+package com.example.fountainar.rendering;
+
+import android.content.res.AssetManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * Process-wide cache of {@link Mesh}es, {@link LodMesh}es, {@link KeyframeMesh}es, {@link
+ * Texture}s and {@link VertexAnimationTexture}s loaded from assets.
+ *
+ * <p>GPU objects are shared through reference-counted {@link Handle}s, keyed by asset path and
+ * load options. The GPU object is deleted as soon as its last handle is closed.
+ *
+ * <p>The parsed CPU-side data ({@link MeshData}, {@link TextureData}, {@link VatData}) is kept
+ * separately in a least recently used cache under a memory budget, so that GPU objects can be
+ * rebuilt without touching the assets again, e.g. when an activity is re-entered with a new GL
+ * context.
+ *
+ * <p>The CPU-side data can be prefetched on the {@link AssetLoader} pool. The returned futures
+ * tell when acquiring the GPU object will not block anymore, so that the upload can be enqueued
+ * into a {@link GlUploadQueue} depending on them.
+ *
+ * <p>GPU objects belong to the GL context they were created in, so {@link #onContextCreated()}
+ * must be called whenever a new context is created. All methods that create GPU objects must be
+ * called on the GL thread, or on the {@link SharedContextLoader} thread, whose context shares
+ * its objects with the GL thread's.
+ *
+ * <p>The cache is only locked to look up and insert entries. Waiting for prefetched data, loading
+ * and uploading happen outside the lock, so that threads acquiring different assets do not wait
+ * for each other.
+ */
+public final class AssetCache {
+    public static final long DEFAULT_CPU_BUDGET_BYTES = 32L * 1024 * 1024;
+    private static final AssetCache INSTANCE = new AssetCache(DEFAULT_CPU_BUDGET_BYTES);
+
+    private final long CPU_BUDGET_BYTES;
+    private final LinkedHashMap<String, CpuEntry> CPU_DATA =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private final HashMap<String, CpuEntry> PENDING_CPU_DATA = new HashMap<>();
+    private final HashMap<Key, GpuEntry<?>> GPU_OBJECTS = new HashMap<>();
+    private long cpuBytes;
+    private int contextCount;
+
+    AssetCache(long cpuBudgetBytes) {
+        this.CPU_BUDGET_BYTES = cpuBudgetBytes;
+    }
+
+    public static AssetCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts loading the {@link MeshData} of the given asset with {@link AssetLoader}, unless it
+     * is cached or already being loaded. A following {@link #acquireMesh} waits for the result.
+     *
+     * @return A future that is done once the data is available.
+     */
+    public Future<?> prefetchMeshData(AssetManager assets, String assetFileName) {
+        return prefetch(meshDataKey(assetFileName),
+                () -> Mesh.loadMeshData(assets, assetFileName));
+    }
+
+    /**
+     * Starts loading the {@link MeshData} of the given keyframe asset like {@link
+     * #prefetchMeshData}, but as {@link Mesh#loadKeyframeData} does. A following {@link
+     * #acquireKeyframeMesh} waits for the result.
+     *
+     * @return A future that is done once the data is available.
+     */
+    public Future<?> prefetchKeyframeData(AssetManager assets, String assetFileName) {
+        return prefetch(keyframeDataKey(assetFileName),
+                () -> Mesh.loadKeyframeData(assets, assetFileName));
+    }
+
+    /**
+     * Starts loading the given asset and building its levels of detail with {@link AssetLoader},
+     * unless they are cached or already being built. A following {@link #acquireLodMesh} waits
+     * for the result.
+     *
+     * @return A future that is done once the levels are available.
+     */
+    public Future<?> prefetchLodData(AssetManager assets, String assetFileName) {
+        return prefetch(lodDataKey(assetFileName),
+                () -> LodMesh.buildLevels(Mesh.loadMeshData(assets, assetFileName)));
+    }
+
+    /**
+     * Starts decoding the given image asset on the {@link AssetLoader} pool, unless it is cached
+     * or already being decoded. A following {@link #acquireTexture} waits for the result.
+     *
+     * @return A future that is done once the pixels are available.
+     */
+    public Future<?> prefetchTextureData(AssetManager assets, String assetFileName) {
+        return prefetch(textureDataKey(assetFileName),
+                () -> TextureData.fromAsset(assets, assetFileName));
+    }
+
+    /**
+     * Starts reading the given animation asset, see {@link #acquireAnimation}.
+     *
+     * @return A future that is done once the frames are available.
+     */
+    public Future<?> prefetchAnimationData(AssetManager assets, String assetFileName) {
+        return prefetch(animationDataKey(assetFileName),
+                () -> readAnimation(assets, assetFileName));
+    }
+
+    /**
+     * Starts reading the given vertex animation texture asset, see {@link
+     * #acquireVertexAnimation}.
+     *
+     * @return A future that is done once the texels are available.
+     */
+    public Future<?> prefetchVatData(AssetManager assets, String assetFileName) {
+        return prefetch(vatDataKey(assetFileName),
+                () -> VertexAnimationTexture.loadVatData(assets, assetFileName));
+    }
+
+    /**
+     * Returns a handle to the {@link Mesh} of the given asset, created with {@link
+     * Mesh#createFromData} in {@code preferredFormat} or {@link VertexFormat#DEFAULT} if the data
+     * does not fit it.
+     *
+     * @throws IOException If the asset could not be read.
+     */
+    public Handle<Mesh> acquireMesh(CustomRender render, String assetFileName,
+                                    VertexFormat preferredFormat)
+            throws IOException {
+        return acquire(new Key(assetFileName, preferredFormat), () -> {
+            MeshData meshData = getMeshData(render.getAssets(), assetFileName);
+            return Mesh.createFromData(meshData, preferredFormat.orDefaultFor(meshData));
+        });
+    }
+
+    /**
+     * Returns a handle to the {@link LodMesh} of the given asset. The levels of detail are built
+     * by {@link LodMesh#buildLevels}, preferably in the background after {@link
+     * #prefetchLodData}, and cached with the other CPU-side data.
+     *
+     * @throws IOException If the asset could not be read.
+     */
+    public Handle<LodMesh> acquireLodMesh(CustomRender render, String assetFileName,
+                                          VertexFormat preferredFormat)
+            throws IOException {
+        return acquire(new Key(assetFileName, LodMesh.class, preferredFormat), () -> {
+            List<MeshData> levels = getCpuData(lodDataKey(assetFileName),
+                    () -> LodMesh.buildLevels(getMeshData(render.getAssets(), assetFileName)),
+                    AssetCache::getLevelsByteCount);
+            return LodMesh.createFromData(levels, preferredFormat);
+        });
+    }
+
+    /**
+     * Returns a handle to the {@link KeyframeMesh} made of the given mesh assets, one per frame,
+     * loaded with {@link Mesh#loadKeyframeData}.
+     *
+     * @throws IOException If an asset could not be read.
+     */
+    public Handle<KeyframeMesh> acquireKeyframeMesh(CustomRender render,
+                                                    String... assetFileNames)
+            throws IOException {
+        return acquire(new Key(assetFileNames[0], (Object[]) assetFileNames), () -> {
+            List<MeshData> frames = new ArrayList<>(assetFileNames.length);
+
+            for (String assetFileName : assetFileNames) {
+                frames.add(getCpuData(keyframeDataKey(assetFileName),
+                        () -> Mesh.loadKeyframeData(render.getAssets(), assetFileName),
+                        AssetCache::getByteCount));
+            }
+
+            return KeyframeMesh.createFromData(frames);
+        });
+    }
+
+    /**
+     * Returns a handle to the {@link KeyframeMesh} of the given animation asset written by {@link
+     * AnimationFile}.
+     *
+     * @throws IOException If the asset could not be read.
+     */
+    public Handle<KeyframeMesh> acquireAnimation(CustomRender render,
+                                                 String assetFileName)
+            throws IOException {
+        return acquire(new Key(assetFileName), () -> {
+            List<MeshData> frames = getCpuData(animationDataKey(assetFileName),
+                    () -> readAnimation(render.getAssets(), assetFileName),
+                    AssetCache::getByteCount);
+            return KeyframeMesh.createFromData(frames);
+        });
+    }
+
+    /**
+     * Returns a handle to the mipmapped 2D {@link Texture} of the given image asset.
+     *
+     * @throws IOException If the asset could not be read or decoded.
+     */
+    public Handle<Texture> acquireTexture(CustomRender render, String assetFileName,
+                                          Texture.WrapMode wrapMode,
+                                          Texture.ColorFormat colorFormat)
+            throws IOException {
+        return acquireTexture(render, assetFileName, wrapMode, colorFormat, 0);
+    }
+
+    /**
+     * Returns a handle to the mipmapped 2D {@link Texture} of the given image asset without its
+     * largest mip levels, see {@link TextureData#withoutTopLevels}. Levels are only skipped if
+     * the asset brings its own mip chain.
+     *
+     * @param skippedLevels The number of largest levels not to upload.
+     * @throws IOException If the asset could not be read or decoded.
+     */
+    public Handle<Texture> acquireTexture(CustomRender render, String assetFileName,
+                                          Texture.WrapMode wrapMode,
+                                          Texture.ColorFormat colorFormat,
+                                          int skippedLevels)
+            throws IOException {
+        return acquire(new Key(assetFileName, wrapMode, colorFormat, skippedLevels),
+                () -> buildFromCpuData(textureDataKey(assetFileName),
+                        () -> TextureData.fromAsset(render.getAssets(), assetFileName),
+                        TextureData::getByteCount,
+                        textureData -> Texture.createFromData(
+                                textureData.withoutTopLevels(skippedLevels), wrapMode,
+                                colorFormat)));
+    }
+
+    /**
+     * Returns a handle to the {@link VertexAnimationTexture} of the given asset written by {@link
+     * VatFile}.
+     *
+     * @throws IOException If the asset could not be read.
+     */
+    public Handle<VertexAnimationTexture> acquireVertexAnimation(
+            CustomRender render, String assetFileName) throws IOException {
+        return acquire(new Key(assetFileName), () -> {
+            VatData vatData = getCpuData(vatDataKey(assetFileName),
+                    () -> VertexAnimationTexture.loadVatData(render.getAssets(), assetFileName),
+                    data -> data.getTexels().capacity());
+            return VertexAnimationTexture.createFromData(vatData);
+        });
+    }
+
+    /**
+     * Forgets all GPU objects, which were deleted together with the previous GL context. Handles
+     * to them stay valid to close, but their objects must not be used anymore. The CPU-side data
+     * is kept to rebuild them.
+     */
+    public synchronized void onContextCreated() {
+        for (GpuEntry<?> entry : GPU_OBJECTS.values()) {
+            entry.isStale = true;
+        }
+
+        GPU_OBJECTS.clear();
+        ++contextCount;
+    }
+
+    /**
+     * Returns the number of bytes of CPU-side data currently cached.
+     */
+    public synchronized long getCpuBytes() {
+        return cpuBytes;
+    }
+
+    /**
+     * Returns a handle to the GPU object of the given key, created by {@code factory} unless it
+     * exists. Objects generated rather than loaded from an asset may be acquired this way too, so
+     * that their handles behave alike when the GL context is lost.
+     */
+    <T extends Closeable> Handle<T> acquire(Key key, Factory<T> factory) throws IOException {
+        int createdInContext;
+
+        synchronized (this) {
+            @SuppressWarnings("unchecked")
+            GpuEntry<T> entry = (GpuEntry<T>) GPU_OBJECTS.get(key);
+
+            if (entry != null) {
+                ++entry.referenceCount;
+                return new Handle<>(this, entry);
+            }
+
+            createdInContext = contextCount;
+        }
+
+        T object = factory.create();
+        GpuEntry<T> entry;
+        T duplicate = null;
+
+        synchronized (this) {
+            @SuppressWarnings("unchecked")
+            GpuEntry<T> existing = (GpuEntry<T>) GPU_OBJECTS.get(key);
+
+            if (createdInContext != contextCount) {
+                // The object was lost with the previous context while it was created.
+                entry = new GpuEntry<>(key, object);
+                entry.isStale = true;
+            } else if (existing != null) {
+                // Another thread created the object in the meantime.
+                entry = existing;
+                duplicate = object;
+            } else {
+                entry = new GpuEntry<>(key, object);
+                GPU_OBJECTS.put(key, entry);
+            }
+
+            ++entry.referenceCount;
+        }
+
+        if (duplicate != null) {
+            duplicate.close();
+        }
+
+        return new Handle<>(this, entry);
+    }
+
+    /**
+     * Starts loading CPU-side data on the {@link AssetLoader} pool, unless it is cached or already
+     * being loaded. A following {@link #getCpuData} of the same key waits for the result instead
+     * of calling its loader.
+     */
+    synchronized Future<?> prefetch(String cpuKey, Callable<?> loader) {
+        if (CPU_DATA.containsKey(cpuKey)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CpuEntry pending = PENDING_CPU_DATA.get(cpuKey);
+
+        if (pending == null) {
+            pending = new CpuEntry(AssetLoader.submit(loader));
+            PENDING_CPU_DATA.put(cpuKey, pending);
+        }
+
+        return pending.PENDING;
+    }
+
+    /**
+     * Returns the CPU-side data of the given key, from the cache, from a pending {@link
+     * #prefetch} or from {@code loader}. {@link Closeable} data must be used through {@link
+     * #buildFromCpuData} instead, since data that is not cached would never be closed.
+     */
+    <T> T getCpuData(String cpuKey, Factory<T> loader, Weigher<T> weigher)
+            throws IOException {
+        CpuEntry entry = useCpuEntry(cpuKey, loader, weigher);
+        releaseCpuEntry(entry);
+        @SuppressWarnings("unchecked")
+        T data = (T) entry.data;
+        return data;
+    }
+
+    /**
+     * Builds an object from the CPU-side data of the given key, which is obtained like {@link
+     * #getCpuData} does. The data is not closed while {@code builder} uses it, even if it is
+     * evicted meanwhile. Data that is not cached, because it exceeds the whole budget, is closed
+     * once {@code builder} has consumed it if it is {@link Closeable}.
+     */
+    <T, R> R buildFromCpuData(String cpuKey, Factory<T> loader, Weigher<T> weigher,
+                              Builder<T, R> builder) throws IOException {
+        CpuEntry entry = useCpuEntry(cpuKey, loader, weigher);
+
+        try {
+            @SuppressWarnings("unchecked")
+            T data = (T) entry.data;
+            return builder.build(data);
+        } finally {
+            releaseCpuEntry(entry);
+        }
+    }
+
+    /**
+     * Returns the entry of the given key with its use count incremented, loading its data
+     * outside the lock if it is not cached. All threads waiting for the same prefetch share its
+     * entry, so that its data is closed only once, after the last of them has released it.
+     */
+    private <T> CpuEntry useCpuEntry(String cpuKey, Factory<T> loader, Weigher<T> weigher)
+            throws IOException {
+        CpuEntry pending;
+
+        synchronized (this) {
+            CpuEntry entry = CPU_DATA.get(cpuKey);
+
+            if (entry != null) {
+                ++entry.useCount;
+                return entry;
+            }
+
+            pending = PENDING_CPU_DATA.get(cpuKey);
+
+            if (pending != null) {
+                ++pending.useCount;
+            }
+        }
+
+        if (pending != null) {
+            return awaitCpuEntry(cpuKey, pending, weigher);
+        }
+
+        T data = loader.create();
+        CpuEntry entry = new CpuEntry(null);
+        CpuEntry existing;
+
+        synchronized (this) {
+            existing = CPU_DATA.get(cpuKey);
+
+            if (existing != null) {
+                ++existing.useCount;
+            } else {
+                entry.useCount = 1;
+                insertCpuEntry(cpuKey, entry, data, weigher.weigh(data));
+            }
+        }
+
+        if (existing == null) {
+            return entry;
+        }
+
+        // Another thread loaded the data in the meantime.
+        entry.data = data;
+        closeData(entry);
+        return existing;
+    }
+
+    /**
+     * Waits for the data of a pending entry, whose use count has been incremented for the
+     * calling thread. The first thread to get the data caches it.
+     */
+    private <T> CpuEntry awaitCpuEntry(String cpuKey, CpuEntry pending, Weigher<T> weigher)
+            throws IOException {
+        T data;
+
+        try {
+            @SuppressWarnings("unchecked")
+            T loaded = (T) AssetLoader.await(pending.PENDING);
+            data = loaded;
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                // Loading is retried by the next request.
+                PENDING_CPU_DATA.remove(cpuKey, pending);
+                --pending.useCount;
+            }
+
+            throw e;
+        }
+
+        long bytes = weigher.weigh(data);
+
+        synchronized (this) {
+            if (!pending.isLoaded) {
+                PENDING_CPU_DATA.remove(cpuKey, pending);
+
+                if (CPU_DATA.containsKey(cpuKey)) {
+                    // Loaded without the prefetch meanwhile; this copy is used once.
+                    pending.data = data;
+                    pending.isLoaded = true;
+                    pending.isEvicted = true;
+                } else {
+                    insertCpuEntry(cpuKey, pending, data, bytes);
+                }
+            }
+        }
+
+        return pending;
+    }
+
+    /**
+     * Caches the loaded data of an entry, unless it is larger than the whole budget, in which
+     * case it is only used by the threads holding the entry. Must be called with the lock held.
+     */
+    private void insertCpuEntry(String cpuKey, CpuEntry entry, Object data, long bytes) {
+        entry.data = data;
+        entry.bytes = bytes;
+        entry.isLoaded = true;
+
+        if (bytes > CPU_BUDGET_BYTES) {
+            entry.isEvicted = true;
+            return;
+        }
+
+        CPU_DATA.put(cpuKey, entry);
+        cpuBytes += bytes;
+        trimCpuData();
+    }
+
+    private synchronized void releaseCpuEntry(CpuEntry entry) {
+        if (--entry.useCount == 0 && entry.isEvicted) {
+            closeData(entry);
+        }
+    }
+
+    private MeshData getMeshData(AssetManager assets, String assetFileName) throws IOException {
+        return getCpuData(meshDataKey(assetFileName),
+                () -> Mesh.loadMeshData(assets, assetFileName), AssetCache::getByteCount);
+    }
+
+    private static List<MeshData> readAnimation(AssetManager assets, String assetFileName)
+            throws IOException {
+        try (InputStream inputStream = assets.open(assetFileName)) {
+            return AnimationFile.readFrames(inputStream);
+        }
+    }
+
+    private void trimCpuData() {
+        Iterator<Map.Entry<String, CpuEntry>> iterator = CPU_DATA.entrySet().iterator();
+
+        while (cpuBytes > CPU_BUDGET_BYTES && iterator.hasNext()) {
+            CpuEntry entry = iterator.next().getValue();
+            cpuBytes -= entry.bytes;
+            iterator.remove();
+            entry.isEvicted = true;
+
+            // Data in use is closed once it is released.
+            if (entry.useCount == 0) {
+                closeData(entry);
+            }
+        }
+    }
+
+    /**
+     * Gives pooled staging memory, e.g. of decoded {@link TextureData}, back.
+     */
+    private static void closeData(CpuEntry entry) {
+        if (entry.data instanceof Closeable) {
+            try {
+                ((Closeable) entry.data).close();
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to release evicted data", e);
+            }
+        }
+    }
+
+    private synchronized void release(GpuEntry<?> entry) {
+        if (--entry.referenceCount > 0 || entry.isStale) {
+            return;
+        }
+
+        GPU_OBJECTS.remove(entry.KEY);
+
+        try {
+            entry.OBJECT.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to release " + entry.KEY, e);
+        }
+    }
+
+    private static long getByteCount(List<MeshData> frames) {
+        // The frames of an animation share their indices and texture coordinates.
+        long bytes = getByteCount(frames.get(0));
+
+        for (int f = 1; f < frames.size(); ++f) {
+            bytes += (long) (frames.get(f).getPositions().limit()
+                    + frames.get(f).getNormals().limit()) * Float.BYTES;
+        }
+
+        return bytes;
+    }
+
+    private static long getLevelsByteCount(List<MeshData> levels) {
+        long bytes = 0;
+
+        for (MeshData level : levels) {
+            bytes += getByteCount(level);
+        }
+
+        return bytes;
+    }
+
+    private static long getByteCount(MeshData meshData) {
+        return (long) (meshData.getPositions().limit() + meshData.getTexCoords().limit()
+                + meshData.getNormals().limit()) * Float.BYTES
+                + (long) meshData.getIndexCount() * Integer.BYTES;
+    }
+
+    private static String meshDataKey(String assetFileName) {
+        return "mesh:" + assetFileName;
+    }
+
+    private static String keyframeDataKey(String assetFileName) {
+        return "keyframe:" + assetFileName;
+    }
+
+    private static String lodDataKey(String assetFileName) {
+        return "lod:" + assetFileName;
+    }
+
+    private static String textureDataKey(String assetFileName) {
+        return "texture:" + assetFileName;
+    }
+
+    private static String animationDataKey(String assetFileName) {
+        return "animation:" + assetFileName;
+    }
+
+    private static String vatDataKey(String assetFileName) {
+        return "vat:" + assetFileName;
+    }
+
+    /**
+     * A reference to a cached GPU object. Closing the last handle to an object deletes it.
+     */
+    public static final class Handle<T extends Closeable> implements Closeable {
+        private final AssetCache CACHE;
+        private final GpuEntry<T> ENTRY;
+        private boolean isClosed;
+
+        private Handle(AssetCache cache, GpuEntry<T> entry) {
+            this.CACHE = cache;
+            this.ENTRY = entry;
+        }
+
+        public T get() {
+            if (isClosed) {
+                throw new IllegalStateException("Handle to " + ENTRY.KEY + " is closed");
+            }
+
+            return ENTRY.OBJECT;
+        }
+
+        @Override
+        public void close() {
+            if (!isClosed) {
+                isClosed = true;
+                CACHE.release(ENTRY);
+            }
+        }
+    }
+
+    /**
+     * Identifies a GPU object by asset path and load options.
+     */
+    static final class Key {
+        private final String ASSET_FILE_NAME;
+        private final Object[] OPTIONS;
+
+        Key(String assetFileName, Object... options) {
+            this.ASSET_FILE_NAME = assetFileName;
+            this.OPTIONS = options;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) other;
+            return ASSET_FILE_NAME.equals(key.ASSET_FILE_NAME)
+                    && Arrays.equals(OPTIONS, key.OPTIONS);
+        }
+
+        @Override
+        public int hashCode() {
+            return ASSET_FILE_NAME.hashCode() * 31 + Arrays.hashCode(OPTIONS);
+        }
+
+        @Override
+        public String toString() {
+            return ASSET_FILE_NAME + Arrays.toString(OPTIONS);
+        }
+    }
+
+    interface Factory<T> {
+        T create() throws IOException;
+    }
+
+    interface Weigher<T> {
+        long weigh(T data);
+    }
+
+    interface Builder<T, R> {
+        R build(T data) throws IOException;
+    }
+
+    private static final class GpuEntry<T extends Closeable> {
+        private final Key KEY;
+        private final T OBJECT;
+        private int referenceCount;
+        private boolean isStale;
+
+        GpuEntry(Key key, T object) {
+            this.KEY = key;
+            this.OBJECT = object;
+        }
+    }
+
+    /**
+     * Cached CPU-side data, or data being prefetched, whose entry exists before the data so that
+     * every thread waiting for it shares the entry.
+     */
+    private static final class CpuEntry {
+        private final Future<?> PENDING;
+        private Object data;
+        private long bytes;
+        private boolean isLoaded;
+        private int useCount;
+        private boolean isEvicted;
+
+        /**
+         * @param pending The prefetch loading the data, or null if it is loaded right away.
+         */
+        CpuEntry(Future<?> pending) {
+            this.PENDING = pending;
+        }
+    }
+}
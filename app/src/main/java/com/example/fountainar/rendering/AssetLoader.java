@@ -0,0 +1,77 @@
+package com.example.fountainar.rendering;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the CPU work of loading assets, such as parsing meshes, decoding textures and reading
+ * animations, concurrently on a process-wide pool of background threads.
+ *
+ * <p>Only work that does not touch OpenGL runs on the pool. The OpenGL objects must still be
+ * created on the render thread, for example by passing the result of {@link #await} to {@link
+ * Mesh#createFromData}:
+ *
+ * <pre>{@code
+ * Future<MeshData> data = AssetLoader.submit(() -> Mesh.loadMeshData(assets, name));
+ * // ... other setup on the render thread ...
+ * Mesh mesh = Mesh.createFromData(AssetLoader.await(data));
+ * }</pre>
+ *
+ * <p>The {@link AssetCache} prefetches the CPU-side data of its assets on this pool.
+ */
+public final class AssetLoader {
+    private static final int THREAD_COUNT =
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREAD_COUNT,
+            runnable -> {
+                Thread thread = new Thread(runnable,
+                        "AssetLoader-" + THREAD_NUMBER.incrementAndGet());
+                // Loading must not keep the process alive.
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private AssetLoader() {
+    }
+
+    /**
+     * Waits for the result of a task started with {@link #submit} and returns it.
+     *
+     * @throws IOException If the asset could not be read, or loading was interrupted.
+     */
+    public static <T> T await(Future<T> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new IOException("Failed to load", cause);
+        }
+    }
+
+    /**
+     * Starts the given task on the pool.
+     *
+     * @return The pending result, to be passed to {@link #await}.
+     */
+    static <T> Future<T> submit(Callable<T> task) {
+        return EXECUTOR.submit(task);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.fountainar.rendering;
+
+import java.nio.FloatBuffer;
+
+/**
+ * An axis-aligned bounding box in the local coordinates of a mesh.
+ */
+public final class BoundingBox {
+    private final float[] MIN;
+    private final float[] MAX;
+
+    public BoundingBox(float[] min, float[] max) {
+        if (min.length != 3 || max.length != 3) {
+            throw new IllegalArgumentException("Bounding box corners must have 3 components");
+        }
+
+        this.MIN = min.clone();
+        this.MAX = max.clone();
+    }
+
+    /**
+     * Computes the bounding box of the given vec3 positions. An empty buffer yields an empty box
+     * at the origin.
+     */
+    public static BoundingBox fromPositions(FloatBuffer positions) {
+        float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+        float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        int count = positions.limit() / 3;
+
+        if (count == 0) {
+            return new BoundingBox(new float[3], new float[3]);
+        }
+
+        for (int i = 0; i < count; ++i) {
+            for (int axis = 0; axis < 3; ++axis) {
+                float value = positions.get(i * 3 + axis);
+                min[axis] = Math.min(min[axis], value);
+                max[axis] = Math.max(max[axis], value);
+            }
+        }
+
+        return new BoundingBox(min, max);
+    }
+
+    /**
+     * Returns the smallest box containing both given boxes.
+     */
+    public static BoundingBox union(BoundingBox a, BoundingBox b) {
+        float[] min = new float[3];
+        float[] max = new float[3];
+
+        for (int axis = 0; axis < 3; ++axis) {
+            min[axis] = Math.min(a.MIN[axis], b.MIN[axis]);
+            max[axis] = Math.max(a.MAX[axis], b.MAX[axis]);
+        }
+
+        return new BoundingBox(min, max);
+    }
+
+    /**
+     * Returns the box containing every point of this box moved by every offset in the given box,
+     * e.g. the bounds of a mesh whose vertices are displaced by animation offsets.
+     */
+    public BoundingBox offsetBy(BoundingBox offsets) {
+        float[] min = new float[3];
+        float[] max = new float[3];
+
+        for (int axis = 0; axis < 3; ++axis) {
+            min[axis] = MIN[axis] + offsets.MIN[axis];
+            max[axis] = MAX[axis] + offsets.MAX[axis];
+        }
+
+        return new BoundingBox(min, max);
+    }
+
+    public float[] getMin() {
+        return MIN.clone();
+    }
+
+    public float[] getMax() {
+        return MAX.clone();
+    }
+
+    public float[] getCenter() {
+        return new float[]{
+                (MIN[0] + MAX[0]) * 0.5f, (MIN[1] + MAX[1]) * 0.5f, (MIN[2] + MAX[2]) * 0.5f};
+    }
+
+    public float[] getHalfExtents() {
+        return new float[]{
+                (MAX[0] - MIN[0]) * 0.5f, (MAX[1] - MIN[1]) * 0.5f, (MAX[2] - MIN[2]) * 0.5f};
+    }
+}
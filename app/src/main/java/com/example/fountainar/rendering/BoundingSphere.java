@@ -0,0 +1,58 @@
+package com.example.fountainar.rendering;
+
+import java.nio.FloatBuffer;
+
+/**
+ * A bounding sphere in the local coordinates of a mesh.
+ */
+public final class BoundingSphere {
+    private final float[] CENTER;
+    private final float RADIUS;
+
+    public BoundingSphere(float[] center, float radius) {
+        if (center.length != 3) {
+            throw new IllegalArgumentException("Bounding sphere centers must have 3 components");
+        }
+
+        this.CENTER = center.clone();
+        this.RADIUS = radius;
+    }
+
+    /**
+     * Computes the smallest sphere around the center of the given bounding box that contains the
+     * given vec3 positions. It is usually tighter than {@link #fromBox}, but not the smallest
+     * sphere around the positions.
+     */
+    public static BoundingSphere fromPositions(FloatBuffer positions, BoundingBox bounds) {
+        float[] center = bounds.getCenter();
+        float maxDistanceSquared = 0;
+        int count = positions.limit() / 3;
+
+        for (int i = 0; i < count; ++i) {
+            float x = positions.get(i * 3) - center[0];
+            float y = positions.get(i * 3 + 1) - center[1];
+            float z = positions.get(i * 3 + 2) - center[2];
+            maxDistanceSquared = Math.max(maxDistanceSquared, x * x + y * y + z * z);
+        }
+
+        return new BoundingSphere(center, (float) Math.sqrt(maxDistanceSquared));
+    }
+
+    /**
+     * Returns the sphere through the corners of the given box.
+     */
+    public static BoundingSphere fromBox(BoundingBox box) {
+        float[] halfExtents = box.getHalfExtents();
+        return new BoundingSphere(box.getCenter(), (float) Math.sqrt(halfExtents[0]
+                * halfExtents[0] + halfExtents[1] * halfExtents[1]
+                + halfExtents[2] * halfExtents[2]));
+    }
+
+    public float[] getCenter() {
+        return CENTER.clone();
+    }
+
+    public float getRadius() {
+        return RADIUS;
+    }
+}
@@ -0,0 +1,874 @@
+package com.example.fountainar.rendering;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Replaces large flat regions of {@link MeshData} by a minimal triangulation of their outline.
+ *
+ * <p>Exported surfaces such as the water surface are often subdivided far more finely than their
+ * shape needs. A region qualifies if its triangles are connected through shared edges, lie in one
+ * plane, have the same vertex normal at every corner and map texture coordinates affinely, so that
+ * interpolating across any triangulation of the region reproduces its attributes exactly. Such a
+ * region loses its interior vertices, and its boundary loops, the outline and any holes, are
+ * triangulated by ear clipping into n + 2h - 2 triangles for n boundary vertices and h holes.
+ *
+ * <p>Every boundary vertex is kept, so the region stays connected to its neighbors without
+ * T-junctions, and triangles keep their winding. Regions whose outline touches itself or cannot be
+ * clipped are left as they are.
+ */
+public final class CoplanarRetriangulator {
+    /**
+     * The smallest region worth triangulating again; smaller regions rarely save triangles.
+     */
+    static final int MIN_REGION_TRIANGLES = 8;
+    /**
+     * The largest allowed 1 - cos of the angle between the normals within a region.
+     */
+    static final double NORMAL_TOLERANCE = 1e-4;
+    /**
+     * The largest allowed distance of a vertex from its region's plane, relative to the diagonal
+     * of the mesh's bounding box.
+     */
+    static final double PLANE_TOLERANCE = 1e-5;
+    /**
+     * The largest allowed difference of texture coordinates from their region's affine mapping.
+     */
+    static final double TEX_COORD_TOLERANCE = 1e-4;
+
+    private final MeshData MESH_DATA;
+    private final int[] INDICES;
+    private final float[] POSITIONS;
+    private final float[] TEX_COORDS;
+    private final float[] NORMALS;
+    private final int[] POSITION_VERTEX;
+    private final double[] TRIANGLE_NORMALS;
+    private final double[] TRIANGLE_AREAS;
+    private final boolean[] IS_FLAT;
+    private final double MAX_PLANE_DISTANCE;
+    private final HashMap<Long, Integer> FIRST_EDGE_CORNERS = new HashMap<>();
+    private final int[] NEXT_EDGE_CORNERS;
+
+    private CoplanarRetriangulator(MeshData meshData) {
+        int vertexCount = meshData.getVertexCount();
+        this.MESH_DATA = meshData;
+        this.INDICES = new int[meshData.getIndexCount()];
+        meshData.getIndices().duplicate().get(INDICES);
+        this.POSITIONS = toArray(meshData.getPositions());
+        this.TEX_COORDS = toArray(meshData.getTexCoords());
+        this.NORMALS = toArray(meshData.getNormals());
+        this.POSITION_VERTEX = MeshSimplifier.weldPositions(POSITIONS, vertexCount);
+
+        float[] halfExtents = meshData.getBounds().getHalfExtents();
+        this.MAX_PLANE_DISTANCE = PLANE_TOLERANCE * 2 * Math.sqrt(halfExtents[0] * halfExtents[0]
+                + halfExtents[1] * halfExtents[1] + halfExtents[2] * halfExtents[2]);
+
+        int triangleCount = INDICES.length / 3;
+        this.TRIANGLE_NORMALS = new double[triangleCount * 3];
+        this.TRIANGLE_AREAS = new double[triangleCount];
+        this.IS_FLAT = new boolean[triangleCount];
+        this.NEXT_EDGE_CORNERS = new int[INDICES.length];
+
+        for (int t = 0; t < triangleCount; ++t) {
+            IS_FLAT[t] = computeTriangleNormal(t) && hasFaceNormals(t);
+
+            for (int e = 0; e < 3; ++e) {
+                int corner = t * 3 + e;
+                Integer first = FIRST_EDGE_CORNERS.put(getEdgeKey(corner), corner);
+                NEXT_EDGE_CORNERS[corner] = first != null ? first : -1;
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the given {@link MeshData} with its flat regions triangulated again, or
+     * the given {@link MeshData} itself if no region could be simplified. Vertices no longer
+     * referenced are removed.
+     */
+    public static MeshData retriangulate(MeshData meshData) {
+        return new CoplanarRetriangulator(meshData).retriangulate();
+    }
+
+    private MeshData retriangulate() {
+        int triangleCount = INDICES.length / 3;
+        int[] regions = new int[triangleCount];
+        Arrays.fill(regions, -1);
+        boolean[] isReplaced = new boolean[triangleCount];
+        int[] indices = new int[INDICES.length];
+        int indexCount = 0;
+
+        for (int t = 0; t < triangleCount; ++t) {
+            if (!IS_FLAT[t] || regions[t] >= 0) {
+                continue;
+            }
+
+            List<Integer> region = growRegion(t, regions);
+
+            if (region.size() < MIN_REGION_TRIANGLES) {
+                continue;
+            }
+
+            int[] triangulation = triangulateRegion(region);
+
+            if (triangulation == null || triangulation.length >= region.size() * 3) {
+                continue;
+            }
+
+            System.arraycopy(triangulation, 0, indices, indexCount, triangulation.length);
+            indexCount += triangulation.length;
+
+            for (int regionTriangle : region) {
+                isReplaced[regionTriangle] = true;
+            }
+        }
+
+        if (indexCount == 0) {
+            return MESH_DATA;
+        }
+
+        for (int t = 0; t < triangleCount; ++t) {
+            if (!isReplaced[t]) {
+                System.arraycopy(INDICES, t * 3, indices, indexCount, 3);
+                indexCount += 3;
+            }
+        }
+
+        return MESH_DATA.compact(Arrays.copyOf(indices, indexCount));
+    }
+
+    /**
+     * Collects the flat triangles reachable from {@code seed} through shared edges that continue
+     * the seed's plane, normal and texture mapping. Comparing every triangle with the seed rather
+     * than with its neighbor keeps the tolerances from adding up across a gently curved surface.
+     */
+    private List<Integer> growRegion(int seed, int[] regions) {
+        List<Integer> region = new ArrayList<>();
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        regions[seed] = seed;
+        queue.add(seed);
+
+        while (!queue.isEmpty()) {
+            int t = queue.poll();
+            region.add(t);
+
+            for (int e = 0; e < 3; ++e) {
+                int corner = FIRST_EDGE_CORNERS.get(getEdgeKey(t * 3 + e));
+
+                for (; corner >= 0; corner = NEXT_EDGE_CORNERS[corner]) {
+                    int neighbor = corner / 3;
+
+                    if (regions[neighbor] < 0 && IS_FLAT[neighbor] && canJoin(seed, neighbor)) {
+                        regions[neighbor] = seed;
+                        queue.add(neighbor);
+                    }
+                }
+            }
+        }
+
+        return region;
+    }
+
+    /**
+     * Returns whether triangle {@code t} lies in the plane of the region's seed and has its vertex
+     * normal and affine texture mapping.
+     */
+    private boolean canJoin(int seed, int t) {
+        if (dotTriangleNormals(seed, t) < 1 - NORMAL_TOLERANCE
+                || dotNormals(INDICES[seed * 3], INDICES[t * 3]) < 1 - NORMAL_TOLERANCE) {
+            return false;
+        }
+
+        double[] texCoord = new double[2];
+
+        for (int c = 0; c < 3; ++c) {
+            int vertex = INDICES[t * 3 + c];
+
+            if (Math.abs(computePlaneDistance(seed, vertex)) > MAX_PLANE_DISTANCE) {
+                return false;
+            }
+
+            interpolateTexCoord(seed, vertex, texCoord);
+
+            if (Math.abs(texCoord[0] - TEX_COORDS[vertex * 2]) > TEX_COORD_TOLERANCE
+                    || Math.abs(texCoord[1] - TEX_COORDS[vertex * 2 + 1]) > TEX_COORD_TOLERANCE) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Triangulates the outline of a region again, or returns null if the region is not flat as
+     * a whole or its outline cannot be triangulated.
+     */
+    private int[] triangulateRegion(List<Integer> region) {
+        double[] normal = new double[3];
+
+        for (int t : region) {
+            for (int axis = 0; axis < 3; ++axis) {
+                normal[axis] += TRIANGLE_NORMALS[t * 3 + axis] * TRIANGLE_AREAS[t];
+            }
+        }
+
+        normalize(normal);
+        int origin = INDICES[region.get(0) * 3];
+        double[] tangent = computeTangent(normal);
+        double[] bitangent = cross(normal, tangent);
+
+        if (!isPlanar(region, origin, normal) || !isAffine(region, origin, tangent, bitangent)) {
+            return null;
+        }
+
+        List<int[]> loops = findBoundaryLoops(region);
+
+        if (loops == null) {
+            return null;
+        }
+
+        Node outer = null;
+        List<Node> holes = new ArrayList<>();
+
+        for (int[] loop : loops) {
+            Node ring = null;
+
+            for (int vertex : loop) {
+                double[] point = project(vertex, origin, tangent, bitangent);
+                ring = Node.insertAfter(ring, new Node(vertex, point[0], point[1]));
+            }
+
+            if (computeSignedArea(ring) > 0) {
+                if (outer != null) {
+                    return null;
+                }
+
+                outer = ring.next;
+            } else {
+                holes.add(ring.next);
+            }
+        }
+
+        if (outer == null) {
+            return null;
+        }
+
+        for (Node hole : holes) {
+            outer = eliminateHole(hole, outer, holes);
+
+            if (outer == null) {
+                return null;
+            }
+        }
+
+        return clipEars(outer, region.size());
+    }
+
+    /**
+     * Returns whether all vertices of the region lie within {@link #PLANE_TOLERANCE} of the plane
+     * through {@code origin} with the given normal, and share their vertex normal.
+     */
+    private boolean isPlanar(List<Integer> region, int origin, double[] normal) {
+        for (int t : region) {
+            for (int c = 0; c < 3; ++c) {
+                int vertex = INDICES[t * 3 + c];
+                double distance = 0;
+
+                for (int axis = 0; axis < 3; ++axis) {
+                    distance += (POSITIONS[vertex * 3 + axis] - POSITIONS[origin * 3 + axis])
+                            * normal[axis];
+                }
+
+                if (Math.abs(distance) > MAX_PLANE_DISTANCE
+                        || dotNormals(origin, vertex) < 1 - NORMAL_TOLERANCE) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Fits an affine mapping from plane coordinates to texture coordinates by least squares and
+     * returns whether every corner of the region is within {@link #TEX_COORD_TOLERANCE} of it.
+     */
+    private boolean isAffine(List<Integer> region, int origin, double[] tangent,
+                             double[] bitangent) {
+        // Normal equations of uv = a * x + b * y + c, for both texture coordinates at once.
+        double[][] matrix = new double[3][3];
+        double[][] rightHandSides = new double[2][3];
+
+        for (int t : region) {
+            for (int c = 0; c < 3; ++c) {
+                int vertex = INDICES[t * 3 + c];
+                double[] point = project(vertex, origin, tangent, bitangent);
+                double[] row = {point[0], point[1], 1};
+
+                for (int i = 0; i < 3; ++i) {
+                    for (int j = 0; j < 3; ++j) {
+                        matrix[i][j] += row[i] * row[j];
+                    }
+
+                    rightHandSides[0][i] += row[i] * TEX_COORDS[vertex * 2];
+                    rightHandSides[1][i] += row[i] * TEX_COORDS[vertex * 2 + 1];
+                }
+            }
+        }
+
+        double[] mappingU = solve(matrix, rightHandSides[0]);
+        double[] mappingV = solve(matrix, rightHandSides[1]);
+
+        if (mappingU == null || mappingV == null) {
+            return false;
+        }
+
+        for (int t : region) {
+            for (int c = 0; c < 3; ++c) {
+                int vertex = INDICES[t * 3 + c];
+                double[] point = project(vertex, origin, tangent, bitangent);
+                double u = mappingU[0] * point[0] + mappingU[1] * point[1] + mappingU[2];
+                double v = mappingV[0] * point[0] + mappingV[1] * point[1] + mappingV[2];
+
+                if (Math.abs(u - TEX_COORDS[vertex * 2]) > TEX_COORD_TOLERANCE
+                        || Math.abs(v - TEX_COORDS[vertex * 2 + 1]) > TEX_COORD_TOLERANCE) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Follows the edges used by a single triangle of the region into loops of vertices, in the
+     * winding of the triangles. Returns null if the outline touches itself.
+     */
+    private List<int[]> findBoundaryLoops(List<Integer> region) {
+        HashMap<Long, Integer> edgeCounts = new HashMap<>();
+
+        for (int t : region) {
+            for (int e = 0; e < 3; ++e) {
+                edgeCounts.merge(getEdgeKey(t * 3 + e), 1, Integer::sum);
+            }
+        }
+
+        // The next position and the vertex at the start of each boundary edge, by position.
+        HashMap<Integer, int[]> boundaryEdges = new HashMap<>();
+
+        for (int t : region) {
+            for (int e = 0; e < 3; ++e) {
+                int corner = t * 3 + e;
+
+                if (edgeCounts.get(getEdgeKey(corner)) != 1) {
+                    continue;
+                }
+
+                int start = INDICES[corner];
+                int end = INDICES[t * 3 + (e + 1) % 3];
+
+                if (boundaryEdges.put(POSITION_VERTEX[start],
+                        new int[]{POSITION_VERTEX[end], start}) != null) {
+                    return null;
+                }
+            }
+        }
+
+        List<int[]> loops = new ArrayList<>();
+        HashSet<Integer> visited = new HashSet<>();
+
+        for (int start : boundaryEdges.keySet()) {
+            if (visited.contains(start)) {
+                continue;
+            }
+
+            List<Integer> loop = new ArrayList<>();
+            int position = start;
+
+            do {
+                int[] edge = boundaryEdges.get(position);
+
+                if (edge == null || !visited.add(position)) {
+                    return null;
+                }
+
+                loop.add(edge[1]);
+                position = edge[0];
+            } while (position != start);
+
+            int[] vertices = new int[loop.size()];
+
+            for (int i = 0; i < vertices.length; ++i) {
+                vertices[i] = loop.get(i);
+            }
+
+            loops.add(vertices);
+        }
+
+        return loops;
+    }
+
+    /**
+     * Connects a hole to the outline by a pair of edges between its leftmost vertex and the
+     * nearest visible outline vertex, or returns null if there is none.
+     */
+    private static Node eliminateHole(Node hole, Node outer, List<Node> holes) {
+        Node leftmost = hole;
+
+        for (Node node = hole.next; node != hole; node = node.next) {
+            if (node.X < leftmost.X) {
+                leftmost = node;
+            }
+        }
+
+        List<Node> candidates = new ArrayList<>();
+        Node node = outer;
+
+        do {
+            candidates.add(node);
+            node = node.next;
+        } while (node != outer);
+
+        final Node target = leftmost;
+        candidates.sort((a, b) -> Double.compare(squaredDistance(a, target),
+                squaredDistance(b, target)));
+
+        for (Node candidate : candidates) {
+            if (isLocallyInside(candidate, leftmost) && isLocallyInside(leftmost, candidate)
+                    && !intersectsRing(candidate, leftmost, outer)
+                    && !intersectsRings(candidate, leftmost, holes)) {
+                Node.split(candidate, leftmost);
+                return outer;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Clips ears off the polygon until it is triangulated, or returns null if no ear is left
+     * before that.
+     */
+    private static int[] clipEars(Node polygon, int maxTriangles) {
+        double epsilon = computeAreaEpsilon(polygon);
+        List<Integer> triangles = new ArrayList<>();
+        Node ear = polygon;
+        Node stop = ear;
+
+        while (ear.prev != ear.next) {
+            Node prev = ear.prev;
+            Node next = ear.next;
+
+            if (isEar(ear, epsilon)) {
+                triangles.add(prev.VERTEX);
+                triangles.add(ear.VERTEX);
+                triangles.add(next.VERTEX);
+                ear.remove();
+
+                if (triangles.size() >= maxTriangles * 3) {
+                    return null;
+                }
+
+                ear = next;
+                stop = next;
+                continue;
+            }
+
+            ear = next;
+
+            if (ear == stop) {
+                return null;
+            }
+        }
+
+        int[] indices = new int[triangles.size()];
+
+        for (int i = 0; i < indices.length; ++i) {
+            indices[i] = triangles.get(i);
+        }
+
+        return indices;
+    }
+
+    private static boolean isEar(Node ear, double epsilon) {
+        Node a = ear.prev;
+        Node c = ear.next;
+
+        if (cross(a, ear, c) <= epsilon) {
+            return false;
+        }
+
+        for (Node node = c.next; node != a; node = node.next) {
+            if (!node.isAt(a) && !node.isAt(ear) && !node.isAt(c)
+                    && cross(a, ear, node) >= 0 && cross(ear, c, node) >= 0
+                    && cross(c, a, node) >= 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns whether the direction from {@code a} to {@code b} points into the polygon at
+     * {@code a}.
+     */
+    private static boolean isLocallyInside(Node a, Node b) {
+        if (cross(a.prev, a, a.next) >= 0) {
+            return cross(a.prev, a, b) > 0 && cross(a, a.next, b) > 0;
+        }
+
+        return cross(a.prev, a, b) > 0 || cross(a, a.next, b) > 0;
+    }
+
+    private static boolean intersectsRings(Node a, Node b, List<Node> rings) {
+        for (Node ring : rings) {
+            if (intersectsRing(a, b, ring)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns whether segment ab crosses an edge of the ring which does not end in a or b.
+     */
+    private static boolean intersectsRing(Node a, Node b, Node ring) {
+        Node node = ring;
+
+        do {
+            Node next = node.next;
+
+            if (!node.isAt(a) && !node.isAt(b) && !next.isAt(a) && !next.isAt(b)
+                    && Math.signum(cross(a, b, node)) != Math.signum(cross(a, b, next))
+                    && Math.signum(cross(node, next, a)) != Math.signum(cross(node, next, b))) {
+                return true;
+            }
+
+            node = next;
+        } while (node != ring);
+
+        return false;
+    }
+
+    private static double computeSignedArea(Node ring) {
+        double area = 0;
+        Node node = ring;
+
+        do {
+            area += node.X * node.next.Y - node.next.X * node.Y;
+            node = node.next;
+        } while (node != ring);
+
+        return area / 2;
+    }
+
+    /**
+     * Returns the doubled triangle area below which ears count as degenerate, relative to the
+     * extent of the polygon.
+     */
+    private static double computeAreaEpsilon(Node polygon) {
+        double minX = polygon.X;
+        double maxX = polygon.X;
+        double minY = polygon.Y;
+        double maxY = polygon.Y;
+
+        for (Node node = polygon.next; node != polygon; node = node.next) {
+            minX = Math.min(minX, node.X);
+            maxX = Math.max(maxX, node.X);
+            minY = Math.min(minY, node.Y);
+            maxY = Math.max(maxY, node.Y);
+        }
+
+        double extent = Math.max(maxX - minX, maxY - minY);
+        return extent * extent * 1e-12;
+    }
+
+    /**
+     * Returns twice the signed area of triangle pqr, positive if it turns counter-clockwise.
+     */
+    private static double cross(Node p, Node q, Node r) {
+        return (q.X - p.X) * (r.Y - p.Y) - (q.Y - p.Y) * (r.X - p.X);
+    }
+
+    private static double squaredDistance(Node a, Node b) {
+        return (a.X - b.X) * (a.X - b.X) + (a.Y - b.Y) * (a.Y - b.Y);
+    }
+
+    /**
+     * Computes the unit normal and area of a triangle, or returns false if it has no area.
+     */
+    private boolean computeTriangleNormal(int t) {
+        int a = INDICES[t * 3] * 3;
+        int b = INDICES[t * 3 + 1] * 3;
+        int c = INDICES[t * 3 + 2] * 3;
+        double[] ab = new double[3];
+        double[] ac = new double[3];
+
+        for (int axis = 0; axis < 3; ++axis) {
+            ab[axis] = POSITIONS[b + axis] - POSITIONS[a + axis];
+            ac[axis] = POSITIONS[c + axis] - POSITIONS[a + axis];
+        }
+
+        double[] normal = cross(ab, ac);
+        double length = Math.sqrt(normal[0] * normal[0] + normal[1] * normal[1]
+                + normal[2] * normal[2]);
+
+        if (length == 0) {
+            return false;
+        }
+
+        for (int axis = 0; axis < 3; ++axis) {
+            TRIANGLE_NORMALS[t * 3 + axis] = normal[axis] / length;
+        }
+
+        TRIANGLE_AREAS[t] = length / 2;
+        return true;
+    }
+
+    /**
+     * Returns whether all corners of a triangle have the same vertex normal, parallel to the
+     * triangle's own normal. Which side it points to does not matter.
+     */
+    private boolean hasFaceNormals(int t) {
+        int first = INDICES[t * 3];
+        double facing = 0;
+
+        for (int axis = 0; axis < 3; ++axis) {
+            facing += NORMALS[first * 3 + axis] * TRIANGLE_NORMALS[t * 3 + axis];
+        }
+
+        return Math.abs(facing) >= 1 - NORMAL_TOLERANCE
+                && dotNormals(first, INDICES[t * 3 + 1]) >= 1 - NORMAL_TOLERANCE
+                && dotNormals(first, INDICES[t * 3 + 2]) >= 1 - NORMAL_TOLERANCE;
+    }
+
+    private double dotNormals(int a, int b) {
+        return NORMALS[a * 3] * NORMALS[b * 3] + NORMALS[a * 3 + 1] * NORMALS[b * 3 + 1]
+                + NORMALS[a * 3 + 2] * NORMALS[b * 3 + 2];
+    }
+
+    private double dotTriangleNormals(int a, int b) {
+        return TRIANGLE_NORMALS[a * 3] * TRIANGLE_NORMALS[b * 3]
+                + TRIANGLE_NORMALS[a * 3 + 1] * TRIANGLE_NORMALS[b * 3 + 1]
+                + TRIANGLE_NORMALS[a * 3 + 2] * TRIANGLE_NORMALS[b * 3 + 2];
+    }
+
+    private double computePlaneDistance(int t, int vertex) {
+        int origin = INDICES[t * 3];
+        double distance = 0;
+
+        for (int axis = 0; axis < 3; ++axis) {
+            distance += (POSITIONS[vertex * 3 + axis] - POSITIONS[origin * 3 + axis])
+                    * TRIANGLE_NORMALS[t * 3 + axis];
+        }
+
+        return distance;
+    }
+
+    /**
+     * Extends the texture mapping of triangle {@code t} to the position of {@code vertex} by its
+     * barycentric coordinates, which may lie outside of the triangle.
+     */
+    private void interpolateTexCoord(int t, int vertex, double[] texCoord) {
+        int a = INDICES[t * 3];
+        int b = INDICES[t * 3 + 1];
+        int c = INDICES[t * 3 + 2];
+        double d00 = 0;
+        double d01 = 0;
+        double d11 = 0;
+        double d20 = 0;
+        double d21 = 0;
+
+        for (int axis = 0; axis < 3; ++axis) {
+            double v0 = POSITIONS[b * 3 + axis] - POSITIONS[a * 3 + axis];
+            double v1 = POSITIONS[c * 3 + axis] - POSITIONS[a * 3 + axis];
+            double v2 = POSITIONS[vertex * 3 + axis] - POSITIONS[a * 3 + axis];
+            d00 += v0 * v0;
+            d01 += v0 * v1;
+            d11 += v1 * v1;
+            d20 += v2 * v0;
+            d21 += v2 * v1;
+        }
+
+        double denominator = d00 * d11 - d01 * d01;
+        double weightB = (d11 * d20 - d01 * d21) / denominator;
+        double weightC = (d00 * d21 - d01 * d20) / denominator;
+        double weightA = 1 - weightB - weightC;
+
+        for (int i = 0; i < 2; ++i) {
+            texCoord[i] = weightA * TEX_COORDS[a * 2 + i] + weightB * TEX_COORDS[b * 2 + i]
+                    + weightC * TEX_COORDS[c * 2 + i];
+        }
+    }
+
+    private double[] project(int vertex, int origin, double[] tangent, double[] bitangent) {
+        double x = 0;
+        double y = 0;
+
+        for (int axis = 0; axis < 3; ++axis) {
+            double offset = POSITIONS[vertex * 3 + axis] - POSITIONS[origin * 3 + axis];
+            x += offset * tangent[axis];
+            y += offset * bitangent[axis];
+        }
+
+        return new double[]{x, y};
+    }
+
+    /**
+     * Returns the key of the undirected edge from the given corner to the next one of its
+     * triangle, by welded positions.
+     */
+    private long getEdgeKey(int corner) {
+        int next = corner - corner % 3 + (corner + 1) % 3;
+        int a = POSITION_VERTEX[INDICES[corner]];
+        int b = POSITION_VERTEX[INDICES[next]];
+        return (long) Math.min(a, b) << 32 | Math.max(a, b);
+    }
+
+    /**
+     * Returns a unit vector perpendicular to the given unit normal.
+     */
+    private static double[] computeTangent(double[] normal) {
+        double[] axis = Math.abs(normal[0]) < 0.9 ? new double[]{1, 0, 0}
+                : new double[]{0, 1, 0};
+        double[] tangent = cross(axis, normal);
+        normalize(tangent);
+        return tangent;
+    }
+
+    private static double[] cross(double[] a, double[] b) {
+        return new double[]{
+                a[1] * b[2] - a[2] * b[1],
+                a[2] * b[0] - a[0] * b[2],
+                a[0] * b[1] - a[1] * b[0],
+        };
+    }
+
+    private static void normalize(double[] vector) {
+        double length = Math.sqrt(vector[0] * vector[0] + vector[1] * vector[1]
+                + vector[2] * vector[2]);
+
+        for (int axis = 0; axis < 3; ++axis) {
+            vector[axis] /= length;
+        }
+    }
+
+    /**
+     * Solves a 3x3 linear system by Gaussian elimination with partial pivoting, or returns null
+     * if it is singular.
+     */
+    private static double[] solve(double[][] matrix, double[] rightHandSide) {
+        double[][] rows = new double[3][4];
+
+        for (int i = 0; i < 3; ++i) {
+            System.arraycopy(matrix[i], 0, rows[i], 0, 3);
+            rows[i][3] = rightHandSide[i];
+        }
+
+        for (int column = 0; column < 3; ++column) {
+            int pivot = column;
+
+            for (int row = column + 1; row < 3; ++row) {
+                if (Math.abs(rows[row][column]) > Math.abs(rows[pivot][column])) {
+                    pivot = row;
+                }
+            }
+
+            if (Math.abs(rows[pivot][column]) < 1e-30) {
+                return null;
+            }
+
+            double[] swap = rows[column];
+            rows[column] = rows[pivot];
+            rows[pivot] = swap;
+
+            for (int row = 0; row < 3; ++row) {
+                if (row != column) {
+                    double factor = rows[row][column] / rows[column][column];
+
+                    for (int k = column; k < 4; ++k) {
+                        rows[row][k] -= factor * rows[column][k];
+                    }
+                }
+            }
+        }
+
+        return new double[]{rows[0][3] / rows[0][0], rows[1][3] / rows[1][1],
+                rows[2][3] / rows[2][2]};
+    }
+
+    private static float[] toArray(FloatBuffer buffer) {
+        float[] array = new float[buffer.limit()];
+        buffer.duplicate().get(array);
+        return array;
+    }
+
+    /**
+     * A vertex of a polygon in plane coordinates, linked to its neighbors in a ring.
+     */
+    private static final class Node {
+        private final int VERTEX;
+        private final double X;
+        private final double Y;
+        private Node prev;
+        private Node next;
+
+        Node(int vertex, double x, double y) {
+            this.VERTEX = vertex;
+            this.X = x;
+            this.Y = y;
+            this.prev = this;
+            this.next = this;
+        }
+
+        /**
+         * Inserts a node after {@code last} in its ring, or starts a ring if {@code last} is
+         * null, and returns the inserted node.
+         */
+        static Node insertAfter(Node last, Node node) {
+            if (last != null) {
+                node.next = last.next;
+                node.prev = last;
+                last.next.prev = node;
+                last.next = node;
+            }
+
+            return node;
+        }
+
+        /**
+         * Joins the ring of {@code b} into the ring of {@code a} by two edges between them,
+         * duplicating both nodes.
+         */
+        static void split(Node a, Node b) {
+            Node a2 = new Node(a.VERTEX, a.X, a.Y);
+            Node b2 = new Node(b.VERTEX, b.X, b.Y);
+            Node aNext = a.next;
+            Node bPrev = b.prev;
+
+            a.next = b;
+            b.prev = a;
+            a2.next = aNext;
+            aNext.prev = a2;
+            b2.next = a2;
+            a2.prev = b2;
+            bPrev.next = b2;
+            b2.prev = bPrev;
+        }
+
+        void remove() {
+            prev.next = next;
+            next.prev = prev;
+        }
+
+        boolean isAt(Node other) {
+            return X == other.X && Y == other.Y;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.fountainar.rendering;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Tells whether the environmental HDR cubemap estimated by ARCore has changed enough to be worth
+ * uploading and filtering again, see {@link SpecularCubemapFilter#update}.
+ *
+ * <p>The colors of every {@link #DEFAULT_TEXEL_STEP}th texel of the {@code RGBA_FP16} faces are
+ * compared with those of the last cubemap that was considered changed. The difference is the sum
+ * of the absolute differences of the samples relative to the sum of the reference samples, so
+ * that it does not depend on the exposure of the scene. Since the reference only moves when a
+ * change is detected, a cubemap that drifts slowly is still refreshed once the drift adds up to
+ * the threshold.
+ */
+final class CubemapChangeDetector {
+    /**
+     * A relative difference of 2 %, about the smallest change of the lighting that is visible in
+     * the reflections.
+     */
+    static final float DEFAULT_THRESHOLD = 0.02f;
+    /**
+     * Samples a third of the texels. Being odd, the step does not line the samples up in the same
+     * columns of power-of-two rows.
+     */
+    static final int DEFAULT_TEXEL_STEP = 3;
+    private static final int BYTES_PER_TEXEL = 8;
+    private static final int SAMPLED_CHANNELS = 3;
+
+    private final float THRESHOLD;
+    private final int TEXEL_STEP;
+    private float[] samples = new float[0];
+    private float[] reference;
+    private float lastDifference;
+
+    CubemapChangeDetector(float threshold, int texelStep) {
+        if (texelStep <= 0) {
+            throw new IllegalArgumentException("Texel step must be positive: " + texelStep);
+        }
+
+        this.THRESHOLD = threshold;
+        this.TEXEL_STEP = texelStep;
+    }
+
+    /**
+     * Returns whether the faces differ from the last cubemap this method returned true for by at
+     * least the threshold, in which case they become the new reference. The first cubemap, and
+     * the first after {@link #reset()}, has always changed.
+     *
+     * @param faces Tightly packed {@code RGBA_FP16} texels in native byte order, from their
+     *              position to their limit. The buffers are not modified.
+     */
+    boolean hasChanged(ByteBuffer[] faces) {
+        int sampleCount = 0;
+
+        for (ByteBuffer face : faces) {
+            sampleCount += getSampleCount(face);
+        }
+
+        if (samples.length != sampleCount) {
+            samples = new float[sampleCount];
+        }
+
+        int index = 0;
+
+        for (ByteBuffer face : faces) {
+            index = sample(face, index);
+        }
+
+        if (reference == null || reference.length != sampleCount) {
+            lastDifference = Float.POSITIVE_INFINITY;
+        } else {
+            lastDifference = computeDifference(samples, reference);
+
+            // Non-finite colors count as a change rather than freezing the cubemap.
+            if (lastDifference < THRESHOLD) {
+                return false;
+            }
+        }
+
+        float[] previous = reference;
+        reference = samples;
+        samples = previous != null ? previous : new float[0];
+        return true;
+    }
+
+    /**
+     * Forgets the reference, e.g. when the cubemap it was taken from never made it to the GPU.
+     */
+    void reset() {
+        reference = null;
+    }
+
+    /**
+     * Returns the difference computed by the last {@link #hasChanged} call, which is infinite if
+     * there was no reference to compare with.
+     */
+    float getLastDifference() {
+        return lastDifference;
+    }
+
+    /**
+     * Returns the sum of the absolute differences of the samples relative to the sum of the
+     * absolute reference samples.
+     */
+    static float computeDifference(float[] samples, float[] reference) {
+        double difference = 0.0;
+        double magnitude = 0.0;
+
+        for (int i = 0; i < samples.length; ++i) {
+            difference += Math.abs(samples[i] - reference[i]);
+            magnitude += Math.abs(reference[i]);
+        }
+
+        if (difference == 0.0) {
+            return 0f;
+        }
+
+        return (float) (difference / Math.max(magnitude, Float.MIN_NORMAL));
+    }
+
+    private int getSampleCount(ByteBuffer face) {
+        int texelCount = face.remaining() / BYTES_PER_TEXEL;
+        return (texelCount + TEXEL_STEP - 1) / TEXEL_STEP * SAMPLED_CHANNELS;
+    }
+
+    private int sample(ByteBuffer face, int index) {
+        ByteBuffer texels = face.duplicate().order(ByteOrder.nativeOrder());
+        int start = texels.position();
+        int texelCount = texels.remaining() / BYTES_PER_TEXEL;
+
+        for (int texel = 0; texel < texelCount; texel += TEXEL_STEP) {
+            int offset = start + texel * BYTES_PER_TEXEL;
+
+            // Alpha is always 1 and left out.
+            for (int channel = 0; channel < SAMPLED_CHANNELS; ++channel) {
+                samples[index++] = HalfFloat.toFloat(texels.getShort(offset + channel * 2));
+            }
+        }
+
+        return index;
+    }
+}
@@ -18,15 +18,34 @@ package com.example.fountainar.rendering;
 import android.content.res.AssetManager;
 import android.opengl.GLES30;
 import android.opengl.GLSurfaceView;
+import android.util.Log;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
 /**
  * A CustomRender context.
+ *
+ * <p>Before every frame, it runs the uploads of its {@link GlUploadQueue} for at most {@link
+ * #UPLOAD_BUDGET_NANOS}, so that large uploads are spread over several frames instead of stalling
+ * the camera feed.
+ *
+ * <p>With every new GL context it also starts a {@link SharedContextLoader}, on whose context
+ * textures and buffers can be uploaded off the render thread, and a {@link TextureStreamer}, whose
+ * uploads are issued at the start of each frame.
  */
 public class CustomRender {
+    /**
+     * The time per frame after which no further upload is started, a quarter of a frame at 60
+     * frames per second.
+     */
+    public static final long UPLOAD_BUDGET_NANOS = 4_000_000L;
+    private static final String TAG = CustomRender.class.getSimpleName();
     private final AssetManager ASSET_MANAGER;
+    private final GlUploadQueue UPLOAD_QUEUE = new GlUploadQueue();
+
+    private SharedContextLoader sharedContextLoader;
+    private TextureStreamer textureStreamer;
 
     private int viewportWidth = 1;
     private int viewportHeight = 1;
@@ -51,6 +70,16 @@ public class CustomRender {
                     public void onSurfaceCreated(GL10 gl, EGLConfig config) {
                         GLES30.glEnable(GLES30.GL_BLEND);
                         GLError.maybeThrowGLException("Failed to enable blending", "glEnable");
+                        // GL objects of a previous context are gone, cached ones must be rebuilt.
+                        AssetCache.getInstance().onContextCreated();
+                        UPLOAD_QUEUE.clear();
+                        startSharedContextLoader();
+
+                        if (textureStreamer != null) {
+                            textureStreamer.abandon();
+                        }
+
+                        textureStreamer = TextureStreamer.create();
                         renderer.onSurfaceCreated(CustomRender.this);
                     }
 
@@ -64,6 +93,8 @@ public class CustomRender {
                     @Override
                     public void onDrawFrame(GL10 gl) {
                         clear(null, 0f, 0f, 0f, 1f);
+                        textureStreamer.processUploads();
+                        UPLOAD_QUEUE.drain(UPLOAD_BUDGET_NANOS);
                         renderer.onDrawFrame(CustomRender.this);
                     }
                 });
@@ -106,6 +137,47 @@ public class CustomRender {
         GLError.maybeThrowGLException("Failed to clear framebuffer", "glClear");
     }
 
+    /**
+     * Returns the queue of uploads run before each frame. Uploads may be enqueued from any
+     * thread.
+     */
+    public GlUploadQueue getUploadQueue() {
+        return UPLOAD_QUEUE;
+    }
+
+    /**
+     * Returns the loader sharing objects with the current GL context, or null if no shared
+     * context could be created, in which case uploads must run on the render thread.
+     */
+    public SharedContextLoader getSharedContextLoader() {
+        return sharedContextLoader;
+    }
+
+    /**
+     * Returns the streamer of texture images of the current GL context. Its uploads are issued
+     * at the start of each frame, before the upload queue is drained. Must be called on the
+     * render thread.
+     */
+    public TextureStreamer getTextureStreamer() {
+        return textureStreamer;
+    }
+
+    /**
+     * Stops the loader sharing objects with the current GL context and closes the texture
+     * streamer, whose threads would otherwise outlive the activity. Must be called on the render
+     * thread, e.g. through {@link GLSurfaceView#queueEvent} when the activity is destroyed.
+     */
+    public void release() {
+        if (sharedContextLoader != null) {
+            sharedContextLoader.close();
+            sharedContextLoader = null;
+        }
+
+        if (textureStreamer != null) {
+            textureStreamer.close();
+        }
+    }
+
     /**
      * Returns the AssetManager associated with this object.
      *
@@ -115,6 +187,23 @@ public class CustomRender {
         return ASSET_MANAGER;
     }
 
+    /**
+     * Replaces the loader of a previous GL context, whose share group is gone, with one sharing
+     * objects with the current context.
+     */
+    private void startSharedContextLoader() {
+        if (sharedContextLoader != null) {
+            sharedContextLoader.close();
+            sharedContextLoader = null;
+        }
+
+        try {
+            sharedContextLoader = SharedContextLoader.createSharedWithCurrent();
+        } catch (IllegalStateException e) {
+            Log.w(TAG, "Uploading on the render thread without a shared context", e);
+        }
+    }
+
     /**
      * Sets the current framebuffer and viewport dimensions for rendering.
      *
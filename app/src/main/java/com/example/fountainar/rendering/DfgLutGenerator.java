@@ -0,0 +1,201 @@
+package com.example.fountainar.rendering;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Command line tool that integrates the DFG lookup table of the split-sum approximation of
+ * image-based lighting, which the shaders sample as {@code u_DfgTexture}.
+ *
+ * <p>Runs on the JVM, e.g. {@code java -cp <classes>
+ * com.example.fountainar.rendering.DfgLutGenerator app/src/main/assets/models/dfg.raw}. The table
+ * is written as tightly packed little-endian {@code GL_RG16F} texels. Row {@code y} holds the
+ * perceptual roughness {@code (y + 0.5) / resolution} and column {@code x} the cosine between
+ * normal and view direction {@code (x + 0.5) / resolution}. The channels hold the directional
+ * albedo of the GGX lobe with Schlick's Fresnel term for a reflectance {@code f0} of 0 and of 1,
+ * so that the shaders compute the specular energy as {@code mix(dfg.x, dfg.y, f0)}.
+ *
+ * <p>With {@link #DEFAULT_RESOLUTION} and {@link #DEFAULT_SAMPLE_COUNT} the tool reproduces the
+ * shipped table. {@link SceneRenderer} integrates a finer table at runtime on devices that can
+ * afford it.
+ */
+public final class DfgLutGenerator {
+    public static final int DEFAULT_RESOLUTION = 64;
+    public static final int DEFAULT_SAMPLE_COUNT = 1024;
+    /**
+     * The number of half floats per texel.
+     */
+    public static final int CHANNELS = 2;
+
+    private DfgLutGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: DfgLutGenerator <file.raw> [resolution] [samples]");
+            System.exit(1);
+        }
+
+        int resolution = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RESOLUTION;
+        int sampleCount = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SAMPLE_COUNT;
+        long start = System.nanoTime();
+        float[] table = generate(resolution, sampleCount,
+                Runtime.getRuntime().availableProcessors());
+
+        try (FileChannel channel = new FileOutputStream(args[0]).getChannel()) {
+            ByteBuffer halfFloats = toHalfFloats(table, ByteOrder.LITTLE_ENDIAN);
+
+            while (halfFloats.hasRemaining()) {
+                channel.write(halfFloats);
+            }
+        }
+
+        System.out.printf(Locale.US, "%s: %dx%d, %d samples, %.1f s%n", args[0], resolution,
+                resolution, sampleCount, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Integrates the table, spreading its rows over the given number of threads. The result does
+     * not depend on the number of threads.
+     *
+     * @param resolution  The width and height of the table.
+     * @param sampleCount The number of importance samples per texel.
+     * @param threadCount The number of threads, where 1 integrates on the calling thread.
+     * @return The {@link #CHANNELS} values of each texel, row by row.
+     */
+    public static float[] generate(int resolution, int sampleCount, int threadCount) {
+        if (resolution <= 0 || sampleCount <= 0 || threadCount <= 0) {
+            throw new IllegalArgumentException(String.format(Locale.US,
+                    "Invalid DFG table: %d texels, %d samples, %d threads", resolution,
+                    sampleCount, threadCount));
+        }
+
+        float[] table = new float[resolution * resolution * CHANNELS];
+
+        if (threadCount == 1) {
+            for (int y = 0; y < resolution; ++y) {
+                generateRow(table, y, resolution, sampleCount);
+            }
+
+            return table;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+
+        try {
+            List<Future<?>> rows = new ArrayList<>(resolution);
+
+            for (int y = 0; y < resolution; ++y) {
+                int row = y;
+                rows.add(executor.submit(() -> generateRow(table, row, resolution, sampleCount)));
+            }
+
+            for (Future<?> row : rows) {
+                row.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to integrate the DFG table", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while integrating the DFG table", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return table;
+    }
+
+    /**
+     * Packs the values of a table into a direct buffer of half floats, ready to be uploaded as
+     * {@code GL_HALF_FLOAT} pixels in native byte order or written to a file in little-endian.
+     */
+    public static ByteBuffer toHalfFloats(float[] table, ByteOrder order) {
+        ByteBuffer halfFloats = ByteBuffer.allocateDirect(table.length * 2).order(order);
+
+        for (float value : table) {
+            halfFloats.putShort(HalfFloat.toHalf(value));
+        }
+
+        halfFloats.flip();
+        return halfFloats;
+    }
+
+    /**
+     * Integrates a single texel with {@code sampleCount} GGX importance samples of a Hammersley
+     * sequence, in the view-dependent frame where the view direction lies in the xz plane.
+     *
+     * @param normalDotView       The cosine between normal and view direction.
+     * @param perceptualRoughness The roughness before it is squared into GGX's alpha.
+     * @return The directional albedo of the texel for a reflectance of 0 and of 1.
+     */
+    static double[] integrate(double normalDotView, double perceptualRoughness, int sampleCount) {
+        double alpha = perceptualRoughness * perceptualRoughness;
+        double alpha2 = alpha * alpha;
+        double viewX = Math.sqrt(1.0 - normalDotView * normalDotView);
+        double viewZ = normalDotView;
+        double fresnelAlbedo = 0.0;
+        double albedo = 0.0;
+
+        for (int i = 0; i < sampleCount; ++i) {
+            double u0 = (double) i / sampleCount;
+            double u1 = (Integer.reverse(i) & 0xFFFFFFFFL) * 0x1p-32;
+            double phi = 2.0 * Math.PI * u0;
+            double cosTheta2 = (1.0 - u1) / (1.0 + (alpha2 - 1.0) * u1);
+            double cosTheta = Math.sqrt(cosTheta2);
+            double sinTheta = Math.sqrt(1.0 - cosTheta2);
+            double halfX = sinTheta * Math.cos(phi);
+            double halfZ = cosTheta;
+            double viewDotHalf = viewX * halfX + viewZ * halfZ;
+            double normalDotLight = clamp(2.0 * viewDotHalf * halfZ - viewZ);
+
+            if (normalDotLight > 0.0) {
+                viewDotHalf = clamp(viewDotHalf);
+                double normalDotHalf = clamp(halfZ);
+                double visibility = visibilitySmithGgxCorrelated(normalDotView, normalDotLight,
+                        alpha2);
+                // The GGX distribution cancels against the pdf of its importance samples.
+                double weight = visibility * normalDotLight * (viewDotHalf / normalDotHalf);
+                double fresnel = Math.pow(1.0 - viewDotHalf, 5.0);
+                fresnelAlbedo += weight * fresnel;
+                albedo += weight;
+            }
+        }
+
+        return new double[]{fresnelAlbedo * 4.0 / sampleCount, albedo * 4.0 / sampleCount};
+    }
+
+    private static void generateRow(float[] table, int y, int resolution, int sampleCount) {
+        double perceptualRoughness = (y + 0.5) / resolution;
+
+        for (int x = 0; x < resolution; ++x) {
+            double normalDotView = (x + 0.5) / resolution;
+            double[] texel = integrate(normalDotView, perceptualRoughness, sampleCount);
+            int index = (y * resolution + x) * CHANNELS;
+            table[index] = (float) texel[0];
+            table[index + 1] = (float) texel[1];
+        }
+    }
+
+    private static double visibilitySmithGgxCorrelated(double normalDotView,
+                                                       double normalDotLight, double alpha2) {
+        double lambdaView = normalDotLight
+                * Math.sqrt((normalDotView - alpha2 * normalDotView) * normalDotView + alpha2);
+        double lambdaLight = normalDotView
+                * Math.sqrt((normalDotLight - alpha2 * normalDotLight) * normalDotLight + alpha2);
+        return 0.5 / (lambdaView + lambdaLight);
+    }
+
+    private static double clamp(double value) {
+        return Math.max(0.0, Math.min(1.0, value));
+    }
+}
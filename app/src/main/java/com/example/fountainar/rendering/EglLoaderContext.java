@@ -0,0 +1,132 @@
+package com.example.fountainar.rendering;
+
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+import android.opengl.GLES30;
+
+/**
+ * A {@link GlLoaderContext} backed by an OpenGL ES 3.0 EGL context that shares its objects with
+ * the context current on the thread creating it, and renders into a 1x1 pbuffer surface that is
+ * never drawn to.
+ */
+final class EglLoaderContext implements GlLoaderContext {
+    private final EGLDisplay DISPLAY;
+    private final EGLContext CONTEXT;
+    private final EGLSurface SURFACE;
+
+    private EglLoaderContext(EGLDisplay display, EGLContext context, EGLSurface surface) {
+        this.DISPLAY = display;
+        this.CONTEXT = context;
+        this.SURFACE = surface;
+    }
+
+    /**
+     * Creates a context sharing its objects with the current one, e.g. in {@link
+     * android.opengl.GLSurfaceView.Renderer#onSurfaceCreated}. The new context is not current on
+     * any thread yet.
+     *
+     * @throws IllegalStateException If there is no current context or EGL fails.
+     */
+    static EglLoaderContext createSharedWithCurrent() {
+        EGLDisplay display = EGL14.eglGetCurrentDisplay();
+        EGLContext sharedContext = EGL14.eglGetCurrentContext();
+
+        if (display == EGL14.EGL_NO_DISPLAY || sharedContext == EGL14.EGL_NO_CONTEXT) {
+            throw new IllegalStateException("No current EGL context to share objects with");
+        }
+
+        int[] configAttributes = {
+                EGL14.EGL_RENDERABLE_TYPE, EGLExt.EGL_OPENGL_ES3_BIT_KHR,
+                EGL14.EGL_SURFACE_TYPE, EGL14.EGL_PBUFFER_BIT,
+                EGL14.EGL_RED_SIZE, 8,
+                EGL14.EGL_GREEN_SIZE, 8,
+                EGL14.EGL_BLUE_SIZE, 8,
+                EGL14.EGL_ALPHA_SIZE, 8,
+                EGL14.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] configCount = {0};
+
+        if (!EGL14.eglChooseConfig(display, configAttributes, 0, configs, 0, 1, configCount, 0)
+                || configCount[0] == 0) {
+            throw new IllegalStateException(
+                    "No EGL config for a loader context: " + getEglError());
+        }
+
+        EGLContext context = EGL14.eglCreateContext(display, configs[0], sharedContext,
+                new int[]{EGL14.EGL_CONTEXT_CLIENT_VERSION, 3, EGL14.EGL_NONE}, 0);
+
+        if (context == EGL14.EGL_NO_CONTEXT) {
+            throw new IllegalStateException(
+                    "Failed to create a loader context: " + getEglError());
+        }
+
+        EGLSurface surface = EGL14.eglCreatePbufferSurface(display, configs[0],
+                new int[]{EGL14.EGL_WIDTH, 1, EGL14.EGL_HEIGHT, 1, EGL14.EGL_NONE}, 0);
+
+        if (surface == EGL14.EGL_NO_SURFACE) {
+            String error = getEglError();
+            EGL14.eglDestroyContext(display, context);
+            throw new IllegalStateException("Failed to create a loader surface: " + error);
+        }
+
+        return new EglLoaderContext(display, context, surface);
+    }
+
+    @Override
+    public void makeCurrent() {
+        if (!EGL14.eglMakeCurrent(DISPLAY, SURFACE, SURFACE, CONTEXT)) {
+            throw new IllegalStateException(
+                    "Failed to make the loader context current: " + getEglError());
+        }
+    }
+
+    @Override
+    public long insertFence() {
+        long fence = GLES30.glFenceSync(GLES30.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        GLError.maybeThrowGLException("Failed to insert a fence", "glFenceSync");
+        // Without a flush, the fence might never reach the GPU of a context that stays idle.
+        GLES30.glFlush();
+        return fence;
+    }
+
+    @Override
+    public boolean isSignaled(long fence) {
+        int[] status = {0};
+        GLES30.glGetSynciv(fence, GLES30.GL_SYNC_STATUS, 1, null, 0, status, 0);
+        GLError.maybeThrowGLException("Failed to query a fence", "glGetSynciv");
+        return status[0] == GLES30.GL_SIGNALED;
+    }
+
+    @Override
+    public void awaitSignaled(long fence) {
+        int result = GLES30.glClientWaitSync(fence, 0, GLES30.GL_TIMEOUT_IGNORED);
+        GLError.maybeThrowGLException("Failed to wait for a fence", "glClientWaitSync");
+
+        if (result == GLES30.GL_WAIT_FAILED) {
+            throw new IllegalStateException("Failed to wait for a fence");
+        }
+    }
+
+    @Override
+    public void deleteFence(long fence) {
+        GLES30.glDeleteSync(fence);
+        GLError.maybeThrowGLException("Failed to delete a fence", "glDeleteSync");
+    }
+
+    @Override
+    public void release() {
+        EGL14.eglMakeCurrent(DISPLAY, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE,
+                EGL14.EGL_NO_CONTEXT);
+        EGL14.eglDestroySurface(DISPLAY, SURFACE);
+        EGL14.eglDestroyContext(DISPLAY, CONTEXT);
+    }
+
+    private static String getEglError() {
+        return "0x" + Integer.toHexString(EGL14.eglGetError());
+    }
+}
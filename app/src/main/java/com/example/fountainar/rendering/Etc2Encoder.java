@@ -0,0 +1,599 @@
+package com.example.fountainar.rendering;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Compresses RGBA8 pixels into ETC2 blocks, which every OpenGL ES 3.0 device samples natively
+ * with a quarter or an eighth of the memory and bandwidth of RGBA8.
+ *
+ * <p>The image is split into blocks of 4x4 pixels, which are stored in rows from the top left,
+ * edge blocks of images whose size is not a multiple of 4 being padded with the nearest pixels.
+ * Every block is encoded in whichever of these ETC2 modes reproduces it best:
+ *
+ * <ul>
+ *   <li>individual and differential, the modes inherited from ETC1, in which two halves of the
+ *   block each have a base color and a table of luminance modifiers, and
+ *   <li>planar, in which the colors of the block change linearly, as in smooth gradients.
+ * </ul>
+ *
+ * <p>The T and H modes are valid in ETC2 but are not searched. With alpha, every color block is
+ * preceded by an EAC block that stores the alpha channel as a base value, a multiplier and one of
+ * 16 modifier tables.
+ *
+ * <p>Error is measured as the plain sum of squared channel differences, the quantity behind the
+ * PSNR that the encoder is tested for. The encoder does not touch OpenGL and runs on any thread;
+ * {@link TextureConverter} uses it to produce {@link KtxFile} assets offline.
+ */
+public final class Etc2Encoder {
+    /**
+     * The bytes of an RGB block, and of the alpha block preceding it in RGBA blocks.
+     */
+    static final int RGB_BLOCK_BYTES = 8;
+    static final int RGBA_BLOCK_BYTES = 16;
+    private static final int BLOCK_SIZE = 4;
+    private static final int PIXELS_PER_BLOCK = BLOCK_SIZE * BLOCK_SIZE;
+    /**
+     * The luminance modifiers of the individual and differential modes, indexed by the table
+     * codeword; each pixel adds plus or minus one of the two values of its half's table.
+     */
+    private static final int[][] MODIFIERS = {
+            {2, 8}, {5, 17}, {9, 29}, {13, 42}, {18, 60}, {24, 80}, {33, 106}, {47, 183}};
+    private static final int[][] ALPHA_MODIFIERS = {
+            {-3, -6, -9, -15, 2, 5, 8, 14},
+            {-3, -7, -10, -13, 2, 6, 9, 12},
+            {-2, -5, -8, -13, 1, 4, 7, 12},
+            {-2, -4, -6, -13, 1, 3, 5, 12},
+            {-3, -6, -8, -12, 2, 5, 7, 11},
+            {-3, -7, -9, -11, 2, 6, 8, 10},
+            {-4, -7, -8, -11, 3, 6, 7, 10},
+            {-3, -5, -8, -11, 2, 4, 7, 10},
+            {-2, -6, -8, -10, 1, 5, 7, 9},
+            {-2, -5, -8, -10, 1, 4, 7, 9},
+            {-2, -4, -8, -10, 1, 3, 7, 9},
+            {-2, -5, -7, -10, 1, 4, 6, 9},
+            {-3, -4, -7, -10, 2, 3, 6, 9},
+            {-1, -2, -3, -10, 0, 1, 2, 9},
+            {-4, -6, -8, -9, 3, 5, 7, 8},
+            {-3, -5, -7, -9, 2, 4, 6, 8}};
+    /**
+     * The alpha table with a modifier of 0, used for blocks of constant alpha.
+     */
+    private static final int CONSTANT_ALPHA_TABLE = 13;
+    private static final int CONSTANT_ALPHA_INDEX = 4;
+
+    private Etc2Encoder() {
+    }
+
+    /**
+     * Returns the number of blocks along an image edge of the given number of pixels.
+     */
+    static int getBlockCount(int size) {
+        return (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    /**
+     * Encodes an image.
+     *
+     * @param pixels    Tightly packed RGBA8 pixels, starting at the position of the buffer.
+     * @param withAlpha Whether to encode the alpha channel, producing {@link
+     *                  TextureData#FORMAT_ETC2_RGBA} instead of {@link
+     *                  TextureData#FORMAT_ETC2_RGB} blocks.
+     * @return The blocks in a direct buffer.
+     */
+    public static ByteBuffer encode(ByteBuffer pixels, int width, int height, boolean withAlpha) {
+        int blockBytes = withAlpha ? RGBA_BLOCK_BYTES : RGB_BLOCK_BYTES;
+        ByteBuffer blocks = ByteBuffer.allocateDirect(
+                        getBlockCount(width) * getBlockCount(height) * blockBytes)
+                .order(ByteOrder.BIG_ENDIAN);
+        int[] r = new int[PIXELS_PER_BLOCK];
+        int[] g = new int[PIXELS_PER_BLOCK];
+        int[] b = new int[PIXELS_PER_BLOCK];
+        int[] a = new int[PIXELS_PER_BLOCK];
+        int base = pixels.position();
+
+        for (int blockY = 0; blockY < height; blockY += BLOCK_SIZE) {
+            for (int blockX = 0; blockX < width; blockX += BLOCK_SIZE) {
+                // Pixels are numbered down the columns, as the index bits of a block are.
+                for (int i = 0; i < PIXELS_PER_BLOCK; ++i) {
+                    int x = Math.min(blockX + i / BLOCK_SIZE, width - 1);
+                    int y = Math.min(blockY + i % BLOCK_SIZE, height - 1);
+                    int offset = base + (y * width + x) * 4;
+                    r[i] = pixels.get(offset) & 0xFF;
+                    g[i] = pixels.get(offset + 1) & 0xFF;
+                    b[i] = pixels.get(offset + 2) & 0xFF;
+                    a[i] = pixels.get(offset + 3) & 0xFF;
+                }
+
+                if (withAlpha) {
+                    blocks.putLong(encodeAlphaBlock(a));
+                }
+
+                blocks.putLong(encodeColorBlock(r, g, b));
+            }
+        }
+
+        blocks.rewind();
+        return blocks;
+    }
+
+    /**
+     * Decodes blocks written by {@link #encode} back into RGBA8 pixels, to measure the quality of
+     * the encoder. Decodes the modes the encoder produces, but not the T and H modes.
+     *
+     * @throws IllegalArgumentException If a block uses the T or H mode.
+     */
+    static ByteBuffer decode(ByteBuffer blocks, int width, int height, boolean withAlpha) {
+        ByteBuffer pixels = ByteBuffer.allocateDirect(width * height * 4);
+        ByteBuffer input = blocks.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int[] rgb = new int[PIXELS_PER_BLOCK * 3];
+        int[] a = new int[PIXELS_PER_BLOCK];
+
+        for (int blockY = 0; blockY < height; blockY += BLOCK_SIZE) {
+            for (int blockX = 0; blockX < width; blockX += BLOCK_SIZE) {
+                if (withAlpha) {
+                    decodeAlphaBlock(input.getLong(), a);
+                } else {
+                    Arrays.fill(a, 0xFF);
+                }
+
+                decodeColorBlock(input.getLong(), rgb);
+
+                for (int i = 0; i < PIXELS_PER_BLOCK; ++i) {
+                    int x = blockX + i / BLOCK_SIZE;
+                    int y = blockY + i % BLOCK_SIZE;
+
+                    if (x < width && y < height) {
+                        int offset = (y * width + x) * 4;
+                        pixels.put(offset, (byte) rgb[i * 3]);
+                        pixels.put(offset + 1, (byte) rgb[i * 3 + 1]);
+                        pixels.put(offset + 2, (byte) rgb[i * 3 + 2]);
+                        pixels.put(offset + 3, (byte) a[i]);
+                    }
+                }
+            }
+        }
+
+        return pixels;
+    }
+
+    /**
+     * Returns the best encoding of the given block among the individual, differential and planar
+     * modes.
+     */
+    private static long encodeColorBlock(int[] r, int[] g, int[] b) {
+        Candidate best = new Candidate();
+        Candidate candidate = new Candidate();
+        float[][] average = new float[2][3];
+
+        for (int flip = 0; flip < 2; ++flip) {
+            computeHalfAverages(r, g, b, flip, average);
+
+            // Differential: 5-bit base colors, the second within -4..3 of the first.
+            int[][] base = new int[2][3];
+            boolean isDifferential = true;
+
+            for (int channel = 0; channel < 3; ++channel) {
+                base[0][channel] = quantize(average[0][channel], 31);
+                int delta = quantize(average[1][channel], 31) - base[0][channel];
+                base[1][channel] = base[0][channel] + Math.max(-4, Math.min(3, delta));
+            }
+
+            encodeHalves(r, g, b, flip, isDifferential, base, candidate);
+            best.keepBetter(candidate);
+
+            // Individual: 4-bit base colors.
+            isDifferential = false;
+
+            for (int half = 0; half < 2; ++half) {
+                for (int channel = 0; channel < 3; ++channel) {
+                    base[half][channel] = quantize(average[half][channel], 15);
+                }
+            }
+
+            encodeHalves(r, g, b, flip, isDifferential, base, candidate);
+            best.keepBetter(candidate);
+        }
+
+        encodePlanar(r, g, b, candidate);
+        best.keepBetter(candidate);
+        return best.block;
+    }
+
+    private static void computeHalfAverages(int[] r, int[] g, int[] b, int flip,
+                                            float[][] average) {
+        for (float[] half : average) {
+            Arrays.fill(half, 0f);
+        }
+
+        for (int i = 0; i < PIXELS_PER_BLOCK; ++i) {
+            int half = getHalf(i, flip);
+            average[half][0] += r[i];
+            average[half][1] += g[i];
+            average[half][2] += b[i];
+        }
+
+        for (float[] half : average) {
+            for (int channel = 0; channel < 3; ++channel) {
+                half[channel] /= PIXELS_PER_BLOCK / 2;
+            }
+        }
+    }
+
+    /**
+     * Returns which half of the block the pixel belongs to: the left and right halves without
+     * flip, the top and bottom halves with it.
+     */
+    private static int getHalf(int pixel, int flip) {
+        int coordinate = flip == 0 ? pixel / BLOCK_SIZE : pixel % BLOCK_SIZE;
+        return coordinate < BLOCK_SIZE / 2 ? 0 : 1;
+    }
+
+    /**
+     * Chooses the modifier table and the modifier of every pixel for the given base colors, and
+     * packs the block in the individual or differential mode.
+     */
+    private static void encodeHalves(int[] r, int[] g, int[] b, int flip, boolean isDifferential,
+                                     int[][] base, Candidate candidate) {
+        long block = (isDifferential ? 1L : 0L) << 33 | (long) flip << 32;
+        long error = 0;
+
+        for (int channel = 0; channel < 3; ++channel) {
+            int shift = 59 - channel * 8;
+
+            if (isDifferential) {
+                block |= (long) base[0][channel] << shift;
+                block |= (long) ((base[1][channel] - base[0][channel]) & 7) << (shift - 3);
+            } else {
+                block |= (long) base[0][channel] << (shift + 1);
+                block |= (long) base[1][channel] << (shift - 3);
+            }
+        }
+
+        for (int half = 0; half < 2; ++half) {
+            int baseR = isDifferential ? expand5(base[half][0]) : expand4(base[half][0]);
+            int baseG = isDifferential ? expand5(base[half][1]) : expand4(base[half][1]);
+            int baseB = isDifferential ? expand5(base[half][2]) : expand4(base[half][2]);
+            long bestHalfError = Long.MAX_VALUE;
+            long bestHalfBits = 0;
+            int bestTable = 0;
+
+            for (int table = 0; table < MODIFIERS.length; ++table) {
+                long halfError = 0;
+                long halfBits = 0;
+
+                for (int i = 0; i < PIXELS_PER_BLOCK && halfError < bestHalfError; ++i) {
+                    if (getHalf(i, flip) != half) {
+                        continue;
+                    }
+
+                    int bestIndex = 0;
+                    int bestPixelError = Integer.MAX_VALUE;
+
+                    for (int index = 0; index < 4; ++index) {
+                        int modifier = getModifier(table, index);
+                        int pixelError = square(clamp(baseR + modifier) - r[i])
+                                + square(clamp(baseG + modifier) - g[i])
+                                + square(clamp(baseB + modifier) - b[i]);
+
+                        if (pixelError < bestPixelError) {
+                            bestPixelError = pixelError;
+                            bestIndex = index;
+                        }
+                    }
+
+                    halfError += bestPixelError;
+                    halfBits |= (long) (bestIndex >> 1) << (16 + i) | (long) (bestIndex & 1) << i;
+                }
+
+                if (halfError < bestHalfError) {
+                    bestHalfError = halfError;
+                    bestHalfBits = halfBits;
+                    bestTable = table;
+                }
+            }
+
+            block |= (long) bestTable << (half == 0 ? 37 : 34) | bestHalfBits;
+            error += bestHalfError;
+        }
+
+        candidate.set(block, error);
+    }
+
+    /**
+     * Fits a plane through every channel by least squares and packs it in the planar mode, in
+     * which the colors are interpolated from the origin O and the points H, four pixels to the
+     * right, and V, four pixels down.
+     */
+    private static void encodePlanar(int[] r, int[] g, int[] b, Candidate candidate) {
+        int[][] channels = {r, g, b};
+        int[] maxima = {63, 127, 63};
+        int[][] points = new int[3][3]; // [channel][O, H, V]
+
+        for (int channel = 0; channel < 3; ++channel) {
+            float mean = 0;
+            float slopeX = 0;
+            float slopeY = 0;
+
+            for (int i = 0; i < PIXELS_PER_BLOCK; ++i) {
+                int value = channels[channel][i];
+                mean += value;
+                slopeX += (i / BLOCK_SIZE - 1.5f) * value;
+                slopeY += (i % BLOCK_SIZE - 1.5f) * value;
+            }
+
+            // The sum of squared distances from the center along an axis is 4 * 5 = 20.
+            mean /= PIXELS_PER_BLOCK;
+            slopeX /= 20f;
+            slopeY /= 20f;
+            float origin = mean - 1.5f * slopeX - 1.5f * slopeY;
+            points[channel][0] = quantize(origin, maxima[channel]);
+            points[channel][1] = quantize(origin + 4 * slopeX, maxima[channel]);
+            points[channel][2] = quantize(origin + 4 * slopeY, maxima[channel]);
+        }
+
+        long block = packPlanar(points);
+        int[] decoded = new int[PIXELS_PER_BLOCK * 3];
+        decodePlanar(block, decoded);
+        long error = 0;
+
+        for (int i = 0; i < PIXELS_PER_BLOCK; ++i) {
+            error += square(decoded[i * 3] - r[i]) + square(decoded[i * 3 + 1] - g[i])
+                    + square(decoded[i * 3 + 2] - b[i]);
+        }
+
+        candidate.set(block, error);
+    }
+
+    /**
+     * Packs the planar mode, whose 6-7-6 bit colors are spread around the bits that the decoder
+     * reads as the differential mode's base color and delta. Those bits are set so that red and
+     * green stay in range and blue overflows, which selects the planar mode.
+     */
+    private static long packPlanar(int[][] points) {
+        int originR = points[0][0];
+        int originG = points[1][0];
+        int originB = points[2][0];
+        int horizontalR = points[0][1];
+        long block = (long) originR << 57
+                | (long) (originG >> 6) << 56
+                | (long) (originG & 0x3F) << 49
+                | (long) (originB >> 5) << 48
+                | (long) ((originB >> 3) & 3) << 43
+                | (long) (originB & 7) << 39
+                | (long) (horizontalR >> 1) << 34
+                | 1L << 33
+                | (long) (horizontalR & 1) << 32
+                | (long) points[1][1] << 25
+                | (long) points[2][1] << 19
+                | (long) points[0][2] << 13
+                | (long) points[1][2] << 6
+                | points[2][2];
+
+        if (((block >>> 59) & 0x1F) + signExtend3(block >>> 56) < 0) {
+            block |= 1L << 63;
+        }
+
+        if (((block >>> 51) & 0x1F) + signExtend3(block >>> 48) < 0) {
+            block |= 1L << 55;
+        }
+
+        if (((originB >> 3) & 3) + ((originB >> 1) & 3) >= 4) {
+            // Blue is 28 or more and its delta is not negative: it overflows 31.
+            block |= 7L << 45;
+        } else {
+            // Blue is at most 3 and its delta at most -1: it drops below 0.
+            block |= 1L << 42;
+        }
+
+        return block;
+    }
+
+    private static long encodeAlphaBlock(int[] a) {
+        int min = 255;
+        int max = 0;
+
+        for (int alpha : a) {
+            min = Math.min(min, alpha);
+            max = Math.max(max, alpha);
+        }
+
+        if (min == max) {
+            long block = (long) min << 56 | 1L << 52 | (long) CONSTANT_ALPHA_TABLE << 48;
+
+            for (int i = 0; i < PIXELS_PER_BLOCK; ++i) {
+                block |= (long) CONSTANT_ALPHA_INDEX << (45 - 3 * i);
+            }
+
+            return block;
+        }
+
+        long bestBlock = 0;
+        long bestError = Long.MAX_VALUE;
+
+        for (int table = 0; table < ALPHA_MODIFIERS.length; ++table) {
+            int[] modifiers = ALPHA_MODIFIERS[table];
+            int low = modifiers[3];
+            int high = modifiers[7];
+            int idealMultiplier = Math.round((float) (max - min) / (high - low));
+
+            for (int multiplier = Math.max(1, idealMultiplier - 1);
+                 multiplier <= Math.min(15, idealMultiplier + 1); ++multiplier) {
+                int idealBase = Math.round((min + max) / 2f - (low + high) * multiplier / 2f);
+
+                for (int base = Math.max(0, idealBase - 1); base <= Math.min(255, idealBase + 1);
+                     ++base) {
+                    long block = (long) base << 56 | (long) multiplier << 52 | (long) table << 48;
+                    long error = 0;
+
+                    for (int i = 0; i < PIXELS_PER_BLOCK && error < bestError; ++i) {
+                        int bestIndex = 0;
+                        int bestPixelError = Integer.MAX_VALUE;
+
+                        for (int index = 0; index < modifiers.length; ++index) {
+                            int pixelError = square(
+                                    clamp(base + modifiers[index] * multiplier) - a[i]);
+
+                            if (pixelError < bestPixelError) {
+                                bestPixelError = pixelError;
+                                bestIndex = index;
+                            }
+                        }
+
+                        error += bestPixelError;
+                        block |= (long) bestIndex << (45 - 3 * i);
+                    }
+
+                    if (error < bestError) {
+                        bestError = error;
+                        bestBlock = block;
+                    }
+                }
+            }
+        }
+
+        return bestBlock;
+    }
+
+    private static void decodeAlphaBlock(long block, int[] a) {
+        int base = (int) (block >>> 56) & 0xFF;
+        int multiplier = (int) (block >>> 52) & 0xF;
+        int[] modifiers = ALPHA_MODIFIERS[(int) (block >>> 48) & 0xF];
+
+        for (int i = 0; i < PIXELS_PER_BLOCK; ++i) {
+            int index = (int) (block >>> (45 - 3 * i)) & 7;
+            a[i] = clamp(base + modifiers[index] * multiplier);
+        }
+    }
+
+    private static void decodeColorBlock(long block, int[] rgb) {
+        boolean isDifferential = ((block >>> 33) & 1) != 0;
+        int flip = (int) (block >>> 32) & 1;
+        int[][] base = new int[2][3];
+
+        if (isDifferential) {
+            for (int channel = 0; channel < 3; ++channel) {
+                int shift = 59 - channel * 8;
+                int value = (int) (block >>> shift) & 0x1F;
+                int delta = signExtend3(block >>> (shift - 3));
+
+                if (value + delta < 0 || value + delta > 31) {
+                    if (channel == 2) {
+                        decodePlanar(block, rgb);
+                        return;
+                    }
+
+                    throw new IllegalArgumentException("T and H mode blocks are not supported");
+                }
+
+                base[0][channel] = expand5(value);
+                base[1][channel] = expand5(value + delta);
+            }
+        } else {
+            for (int channel = 0; channel < 3; ++channel) {
+                int shift = 60 - channel * 8;
+                base[0][channel] = expand4((int) (block >>> shift) & 0xF);
+                base[1][channel] = expand4((int) (block >>> (shift - 4)) & 0xF);
+            }
+        }
+
+        int[] tables = {(int) (block >>> 37) & 7, (int) (block >>> 34) & 7};
+
+        for (int i = 0; i < PIXELS_PER_BLOCK; ++i) {
+            int half = getHalf(i, flip);
+            int index = (int) ((block >>> (16 + i)) & 1) << 1 | (int) (block >>> i) & 1;
+            int modifier = getModifier(tables[half], index);
+
+            for (int channel = 0; channel < 3; ++channel) {
+                rgb[i * 3 + channel] = clamp(base[half][channel] + modifier);
+            }
+        }
+    }
+
+    private static void decodePlanar(long block, int[] rgb) {
+        int[][] points = {
+                {expand6((int) (block >>> 57) & 0x3F),
+                        expand6((int) ((block >>> 34) & 0x1F) << 1 | (int) (block >>> 32) & 1),
+                        expand6((int) (block >>> 13) & 0x3F)},
+                {expand7((int) ((block >>> 56) & 1) << 6 | (int) (block >>> 49) & 0x3F),
+                        expand7((int) (block >>> 25) & 0x7F),
+                        expand7((int) (block >>> 6) & 0x7F)},
+                {expand6((int) ((block >>> 48) & 1) << 5 | (int) ((block >>> 43) & 3) << 3
+                        | (int) (block >>> 39) & 7),
+                        expand6((int) (block >>> 19) & 0x3F),
+                        expand6((int) block & 0x3F)}};
+
+        for (int i = 0; i < PIXELS_PER_BLOCK; ++i) {
+            int x = i / BLOCK_SIZE;
+            int y = i % BLOCK_SIZE;
+
+            for (int channel = 0; channel < 3; ++channel) {
+                int origin = points[channel][0];
+                rgb[i * 3 + channel] = clamp((x * (points[channel][1] - origin)
+                        + y * (points[channel][2] - origin) + 4 * origin + 2) >> 2);
+            }
+        }
+    }
+
+    /**
+     * Returns the modifier of the given 2-bit pixel index, whose high bit selects the sign and
+     * whose low bit selects the larger value of the table.
+     */
+    private static int getModifier(int table, int index) {
+        int modifier = MODIFIERS[table][index & 1];
+        return (index & 2) != 0 ? -modifier : modifier;
+    }
+
+    private static int quantize(float value, int max) {
+        return Math.max(0, Math.min(max, Math.round(value * max / 255f)));
+    }
+
+    private static int expand4(int value) {
+        return value << 4 | value;
+    }
+
+    private static int expand5(int value) {
+        return value << 3 | value >> 2;
+    }
+
+    private static int expand6(int value) {
+        return value << 2 | value >> 4;
+    }
+
+    private static int expand7(int value) {
+        return value << 1 | value >> 6;
+    }
+
+    private static int signExtend3(long bits) {
+        int value = (int) bits & 7;
+        return value >= 4 ? value - 8 : value;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    private static int square(int value) {
+        return value * value;
+    }
+
+    /**
+     * An encoded block and its error, keeping the best of several modes.
+     */
+    private static final class Candidate {
+        private long block;
+        private long error = Long.MAX_VALUE;
+
+        void set(long block, long error) {
+            this.block = block;
+            this.error = error;
+        }
+
+        void keepBetter(Candidate other) {
+            if (other.error < error) {
+                set(other.block, other.error);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.fountainar.rendering;
+
+/**
+ * The view frustum of a model-view-projection matrix, as six planes in the model's local
+ * coordinates, for testing whether bounding volumes of the model can be on screen.
+ *
+ * <p>The tests are conservative: volumes reported outside are certainly not visible, but volumes
+ * close to a corner of the frustum may be reported inside although they are not. A frustum is
+ * meant to be {@link #set} once per frame and model matrix and then reused.
+ */
+public final class Frustum {
+    private static final int PLANE_COUNT = 6;
+    /**
+     * The planes as (a, b, c, d) with unit normal (a, b, c) pointing into the frustum, so that
+     * {@code a * x + b * y + c * z + d} is the signed distance of a point from the plane.
+     */
+    private final float[] PLANES = new float[PLANE_COUNT * 4];
+
+    /**
+     * Extracts the planes of the given model-view-projection matrix, column-major.
+     *
+     * <p>A point is inside the frustum if its clip coordinates satisfy {@code -w <= x, y, z <=
+     * w}, so each plane is the last row of the matrix plus or minus one of the other rows.
+     */
+    public Frustum set(float[] modelViewProjection) {
+        for (int plane = 0; plane < PLANE_COUNT; ++plane) {
+            int row = plane / 2;
+            float sign = plane % 2 == 0 ? 1f : -1f;
+            float lengthSquared = 0;
+
+            for (int column = 0; column < 4; ++column) {
+                float value = modelViewProjection[column * 4 + 3]
+                        + sign * modelViewProjection[column * 4 + row];
+                PLANES[plane * 4 + column] = value;
+
+                if (column < 3) {
+                    lengthSquared += value * value;
+                }
+            }
+
+            float inverseLength = lengthSquared > 0 ? 1f / (float) Math.sqrt(lengthSquared) : 0f;
+
+            for (int component = 0; component < 4; ++component) {
+                PLANES[plane * 4 + component] *= inverseLength;
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Returns whether the sphere with the given center and radius may intersect the frustum.
+     */
+    public boolean intersects(float[] center, float radius) {
+        for (int plane = 0; plane < PLANE_COUNT; ++plane) {
+            if (distance(plane, center[0], center[1], center[2]) < -radius) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns whether the given sphere may intersect the frustum.
+     */
+    public boolean intersects(BoundingSphere sphere) {
+        return intersects(sphere.getCenter(), sphere.getRadius());
+    }
+
+    /**
+     * Returns whether the given box may intersect the frustum, testing for every plane the corner
+     * furthest along the plane's normal.
+     */
+    public boolean intersects(BoundingBox box) {
+        float[] min = box.getMin();
+        float[] max = box.getMax();
+
+        for (int plane = 0; plane < PLANE_COUNT; ++plane) {
+            float x = PLANES[plane * 4] >= 0 ? max[0] : min[0];
+            float y = PLANES[plane * 4 + 1] >= 0 ? max[1] : min[1];
+            float z = PLANES[plane * 4 + 2] >= 0 ? max[2] : min[2];
+
+            if (distance(plane, x, y, z) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns whether the given mesh may be on screen, testing its cheaper bounding sphere before
+     * its tighter bounding box. Meshes without bounds are always considered visible.
+     */
+    public boolean intersects(Mesh mesh) {
+        BoundingSphere sphere = mesh.getBoundingSphere();
+        BoundingBox box = mesh.getBoundingBox();
+        return (sphere == null || intersects(sphere)) && (box == null || intersects(box));
+    }
+
+    private float distance(int plane, float x, float y, float z) {
+        return PLANES[plane * 4] * x + PLANES[plane * 4 + 1] * y + PLANES[plane * 4 + 2] * z
+                + PLANES[plane * 4 + 3];
+    }
+}
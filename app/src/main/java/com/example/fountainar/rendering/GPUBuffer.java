@@ -25,6 +25,8 @@ import java.nio.Buffer;
  */
 class GPUBuffer {
     private static final String TAG = GPUBuffer.class.getSimpleName();
+    public static final int BYTE_SIZE = 1;
+    public static final int SHORT_SIZE = 2;
     public static final int INT_SIZE = 4;
     public static final int FLOAT_SIZE = 4;
     private final int TARGET;
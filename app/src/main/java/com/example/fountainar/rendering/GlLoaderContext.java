@@ -0,0 +1,45 @@
+package com.example.fountainar.rendering;
+
+/**
+ * The OpenGL side of a {@link SharedContextLoader}: a context that shares its objects with the
+ * render thread's context, and the fence sync objects with which finished uploads are handed over.
+ *
+ * <p>The interface exists so that the loader can be tested on the JVM with a fake; the real
+ * implementation is {@link EglLoaderContext}.
+ */
+interface GlLoaderContext {
+    /**
+     * Makes the context current on the calling thread, the loader thread.
+     */
+    void makeCurrent();
+
+    /**
+     * Inserts a fence behind the commands issued so far on the loader thread and flushes them, so
+     * that the fence can be signaled without further commands.
+     *
+     * @return The fence, which is never 0.
+     */
+    long insertFence();
+
+    /**
+     * Returns whether the GPU has finished all commands before the fence, without waiting. May be
+     * called on any thread with a context of the share group current.
+     */
+    boolean isSignaled(long fence);
+
+    /**
+     * Blocks until the GPU has finished all commands before the fence. May be called on any thread
+     * with a context of the share group current.
+     */
+    void awaitSignaled(long fence);
+
+    /**
+     * Deletes a fence that is no longer needed.
+     */
+    void deleteFence(long fence);
+
+    /**
+     * Releases the context from the calling thread, the loader thread, and destroys it.
+     */
+    void release();
+}
@@ -0,0 +1,65 @@
+package com.example.fountainar.rendering;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The OpenGL side of a {@link TextureStreamer}: pixel unpack buffers, the texture uploads sourced
+ * from them and the fence sync objects telling when the GPU has consumed them.
+ *
+ * <p>The interface exists so that the streamer can be tested on the JVM with a fake; the real
+ * implementation is {@link Gles30PixelBuffers}. All methods are called on the render thread.
+ */
+interface GlPixelBuffers {
+    /**
+     * Creates a buffer without storage.
+     *
+     * @return The buffer name, which is never 0.
+     */
+    int createBuffer();
+
+    /**
+     * Gives the buffer storage of the given size, discarding its contents.
+     */
+    void allocate(int buffer, int byteCount);
+
+    /**
+     * Maps the first {@code byteCount} bytes of the buffer for writing, discarding its contents.
+     *
+     * @return The mapped memory, which may be written on any thread until {@link #unmap}.
+     */
+    ByteBuffer map(int buffer, int byteCount);
+
+    /**
+     * Unmaps the buffer.
+     *
+     * @return False if the contents of the buffer were lost while it was mapped.
+     */
+    boolean unmap(int buffer);
+
+    /**
+     * Replaces the image of the region with the pixels at the start of the buffer.
+     */
+    void upload(int buffer, TextureStreamer.Region region);
+
+    /**
+     * Inserts a fence behind the commands issued so far.
+     *
+     * @return The fence, which is never 0.
+     */
+    long insertFence();
+
+    /**
+     * Returns whether the GPU has finished all commands before the fence, without waiting.
+     */
+    boolean isSignaled(long fence);
+
+    /**
+     * Deletes a fence that is no longer needed.
+     */
+    void deleteFence(long fence);
+
+    /**
+     * Deletes the buffer, which must not be mapped.
+     */
+    void deleteBuffer(int buffer);
+}
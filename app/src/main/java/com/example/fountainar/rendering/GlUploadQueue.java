@@ -0,0 +1,111 @@
+package com.example.fountainar.rendering;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Future;
+
+/**
+ * A queue of uploads to the GPU, such as creating meshes, textures and shaders, which the render
+ * thread works through a few at a time instead of all at once, see {@link CustomRender}.
+ *
+ * <p>Uploads are enqueued from any thread, optionally together with the pending CPU-side data
+ * they need, e.g. a {@link Future} of {@link AssetCache#prefetchMeshData}. {@link #drain} runs
+ * them in order on the render thread until its time budget for the frame is spent. An upload
+ * whose data is still being prepared holds back the uploads after it, so that uploads can rely on
+ * the ones enqueued before them.
+ */
+public final class GlUploadQueue {
+    private final ArrayDeque<Entry> ENTRIES = new ArrayDeque<>();
+    private final Clock CLOCK;
+
+    public GlUploadQueue() {
+        this(System::nanoTime);
+    }
+
+    GlUploadQueue(Clock clock) {
+        this.CLOCK = clock;
+    }
+
+    /**
+     * Enqueues an upload to run on the render thread once all given futures are done.
+     *
+     * @param upload       The upload, which may use OpenGL.
+     * @param dependencies The pending CPU-side data of the upload; it is not inspected, so the
+     *                     upload must fetch it itself, e.g. from the {@link AssetCache}.
+     */
+    public synchronized void enqueue(Runnable upload, Future<?>... dependencies) {
+        ENTRIES.add(new Entry(upload, dependencies));
+    }
+
+    /**
+     * Runs uploads in order until the budget is spent, the queue is empty or the next upload's
+     * data is not ready yet. Must be called on the render thread.
+     *
+     * <p>The first ready upload always runs, so that uploads which take longer than the whole
+     * budget still make progress, and the budget is only checked between uploads.
+     *
+     * @param budgetNanos The time in nanoseconds after which no further upload is started.
+     * @return The number of uploads that ran.
+     */
+    public int drain(long budgetNanos) {
+        long start = CLOCK.nanoTime();
+        int count = 0;
+
+        do {
+            Entry entry;
+
+            synchronized (this) {
+                entry = ENTRIES.peek();
+
+                if (entry == null || !entry.isReady()) {
+                    break;
+                }
+
+                ENTRIES.remove();
+            }
+
+            // Uploads run outside the lock, so that they may enqueue further uploads.
+            entry.UPLOAD.run();
+            ++count;
+        } while (CLOCK.nanoTime() - start < budgetNanos);
+
+        return count;
+    }
+
+    /**
+     * Returns the number of uploads that have not run yet.
+     */
+    public synchronized int size() {
+        return ENTRIES.size();
+    }
+
+    /**
+     * Drops all uploads that have not run yet, e.g. because their GL context was lost.
+     */
+    public synchronized void clear() {
+        ENTRIES.clear();
+    }
+
+    interface Clock {
+        long nanoTime();
+    }
+
+    private static final class Entry {
+        private final Runnable UPLOAD;
+        private final Future<?>[] DEPENDENCIES;
+
+        Entry(Runnable upload, Future<?>[] dependencies) {
+            this.UPLOAD = upload;
+            this.DEPENDENCIES = dependencies;
+        }
+
+        boolean isReady() {
+            for (Future<?> dependency : DEPENDENCIES) {
+                if (!dependency.isDone()) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.fountainar.rendering;
+
+import android.opengl.GLES30;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * {@link GlPixelBuffers} backed by OpenGL ES 3.0 pixel unpack buffers. Every method leaves
+ * {@code GL_PIXEL_UNPACK_BUFFER} unbound, as other uploads from client memory would read from
+ * the bound buffer instead.
+ */
+final class Gles30PixelBuffers implements GlPixelBuffers {
+    private final int[] BUFFER = {0};
+
+    @Override
+    public int createBuffer() {
+        GLES30.glGenBuffers(1, BUFFER, 0);
+        GLError.maybeThrowGLException("Failed to create a pixel buffer", "glGenBuffers");
+        return BUFFER[0];
+    }
+
+    @Override
+    public void allocate(int buffer, int byteCount) {
+        bind(buffer);
+
+        try {
+            GLES30.glBufferData(GLES30.GL_PIXEL_UNPACK_BUFFER, byteCount, null,
+                    GLES30.GL_STREAM_DRAW);
+            GLError.maybeThrowGLException("Failed to allocate a pixel buffer", "glBufferData");
+        } finally {
+            bind(0);
+        }
+    }
+
+    @Override
+    public ByteBuffer map(int buffer, int byteCount) {
+        bind(buffer);
+
+        try {
+            ByteBuffer pixels = (ByteBuffer) GLES30.glMapBufferRange(
+                    GLES30.GL_PIXEL_UNPACK_BUFFER, 0, byteCount,
+                    GLES30.GL_MAP_WRITE_BIT | GLES30.GL_MAP_INVALIDATE_BUFFER_BIT);
+            GLError.maybeThrowGLException("Failed to map a pixel buffer", "glMapBufferRange");
+
+            if (pixels == null) {
+                throw new IllegalStateException("Failed to map a pixel buffer");
+            }
+
+            return pixels.order(ByteOrder.nativeOrder());
+        } finally {
+            bind(0);
+        }
+    }
+
+    @Override
+    public boolean unmap(int buffer) {
+        bind(buffer);
+
+        try {
+            boolean isIntact = GLES30.glUnmapBuffer(GLES30.GL_PIXEL_UNPACK_BUFFER);
+            GLError.maybeThrowGLException("Failed to unmap a pixel buffer", "glUnmapBuffer");
+            return isIntact;
+        } finally {
+            bind(0);
+        }
+    }
+
+    @Override
+    public void upload(int buffer, TextureStreamer.Region region) {
+        GLES30.glBindTexture(region.BIND_TARGET, region.TEXTURE_ID);
+        GLError.maybeThrowGLException("Failed to bind texture", "glBindTexture");
+        bind(buffer);
+
+        try {
+            // With a pixel unpack buffer bound, a null buffer stands for offset 0 into it.
+            GLES30.glTexSubImage2D(region.IMAGE_TARGET, region.LEVEL, 0, 0, region.WIDTH,
+                    region.HEIGHT, region.FORMAT, region.TYPE, null);
+            GLError.maybeThrowGLException("Failed to upload from a pixel buffer",
+                    "glTexSubImage2D");
+        } finally {
+            bind(0);
+        }
+    }
+
+    @Override
+    public long insertFence() {
+        long fence = GLES30.glFenceSync(GLES30.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        GLError.maybeThrowGLException("Failed to insert a fence", "glFenceSync");
+        return fence;
+    }
+
+    @Override
+    public boolean isSignaled(long fence) {
+        int[] status = {0};
+        GLES30.glGetSynciv(fence, GLES30.GL_SYNC_STATUS, 1, null, 0, status, 0);
+        GLError.maybeThrowGLException("Failed to query a fence", "glGetSynciv");
+        return status[0] == GLES30.GL_SIGNALED;
+    }
+
+    @Override
+    public void deleteFence(long fence) {
+        GLES30.glDeleteSync(fence);
+        GLError.maybeThrowGLException("Failed to delete a fence", "glDeleteSync");
+    }
+
+    @Override
+    public void deleteBuffer(int buffer) {
+        BUFFER[0] = buffer;
+        GLES30.glDeleteBuffers(1, BUFFER, 0);
+        GLError.maybeThrowGLException("Failed to delete a pixel buffer", "glDeleteBuffers");
+    }
+
+    private static void bind(int buffer) {
+        GLES30.glBindBuffer(GLES30.GL_PIXEL_UNPACK_BUFFER, buffer);
+        GLError.maybeThrowGLException("Failed to bind a pixel buffer", "glBindBuffer");
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.fountainar.rendering;
+
+/**
+ * Conversions between 32-bit floats and the IEEE 754 half-precision floats used by {@code
+ * GL_HALF_FLOAT} vertex attributes and textures.
+ *
+ * <p>Unlike {@code android.util.Half}, this class is available on every API level and on the JVM.
+ */
+public final class HalfFloat {
+    private HalfFloat() {
+    }
+
+    /**
+     * Converts a float to the bits of the nearest half float (round half to even). Values too
+     * large for a half float become infinity.
+     */
+    public static short toHalf(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = (bits >>> 23) & 0xFF;
+        int mantissa = bits & 0x7FFFFF;
+
+        if (exponent == 0xFF) {
+            return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0));
+        }
+
+        int halfExponent = exponent - 127 + 15;
+
+        if (halfExponent >= 0x1F) {
+            return (short) (sign | 0x7C00);
+        }
+
+        if (halfExponent <= 0) {
+            if (halfExponent < -10) {
+                return (short) sign;
+            }
+
+            mantissa |= 0x800000;
+            int shift = 14 - halfExponent;
+            int half = mantissa >> shift;
+            int remainder = mantissa & ((1 << shift) - 1);
+            int halfway = 1 << (shift - 1);
+
+            if (remainder > halfway || (remainder == halfway && (half & 1) != 0)) {
+                ++half;
+            }
+
+            return (short) (sign | half);
+        }
+
+        int half = (halfExponent << 10) | (mantissa >> 13);
+        int remainder = mantissa & 0x1FFF;
+
+        // A carry out of the mantissa correctly rounds up into the exponent.
+        if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0)) {
+            ++half;
+        }
+
+        return (short) (sign | half);
+    }
+
+    /**
+     * Converts the bits of a half float to a float. The conversion is exact.
+     */
+    public static float toFloat(short half) {
+        int bits = half & 0xFFFF;
+        int sign = (bits & 0x8000) << 16;
+        int exponent = (bits >>> 10) & 0x1F;
+        int mantissa = bits & 0x3FF;
+
+        if (exponent == 0) {
+            float value = mantissa * 0x1p-24f;
+            return sign == 0 ? value : -value;
+        }
+
+        if (exponent == 0x1F) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        }
+
+        return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+    }
+}
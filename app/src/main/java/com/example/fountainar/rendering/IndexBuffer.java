@@ -18,7 +18,10 @@ package com.example.fountainar.rendering;
 import android.opengl.GLES30;
 
 import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 
 /**
  * A list of vertex indices stored GPU-side.
@@ -26,10 +29,15 @@ import java.nio.IntBuffer;
  * <p>When constructing a {@link Mesh}, an {@link IndexBuffer} may be passed to describe the
  * ordering of vertices when drawing each primitive.
  *
+ * <p>Indices are stored as unsigned shorts whenever all of them fit into 16 bits, which halves
+ * the memory and bandwidth needed for them compared to unsigned ints.
+ *
  * @see <a href="https://www.khronos.org/registry/OpenGL-Refpages/es3.0/html/glDrawElements.xhtml">glDrawElements</a>
  */
 public class IndexBuffer implements Closeable {
+    private static final int MAX_UNSIGNED_SHORT = 0xFFFF;
     private final GPUBuffer GPU_BUFFER;
+    private final int INDEX_TYPE;
 
     /**
      * Constructs an {@link IndexBuffer} populated with initial data.
@@ -38,11 +46,68 @@ public class IndexBuffer implements Closeable {
      * starting from the beginning of the buffer (not the current cursor position). The cursor
      * will be left in an undefined position after this function returns.
      *
-     * <p>The {@code entries} buffer may be null, in which case an empty buffer is constructed
-     * instead.
+     * <p>The index type is chosen once, here: if every index fits into an unsigned short, the
+     * indices are narrowed and stored as {@code GL_UNSIGNED_SHORT}, otherwise they are stored as
+     * {@code GL_UNSIGNED_INT}. See {@link #getIndexType()}.
+     *
+     * <p>The {@code entries} buffer may be null, in which case an empty buffer with {@code
+     * GL_UNSIGNED_INT} indices is constructed instead.
      */
     public IndexBuffer(IntBuffer entries) {
-        GPU_BUFFER = new GPUBuffer(GLES30.GL_ELEMENT_ARRAY_BUFFER, GPUBuffer.INT_SIZE, entries);
+        INDEX_TYPE = selectIndexType(entries);
+
+        if (INDEX_TYPE == GLES30.GL_UNSIGNED_SHORT) {
+            GPU_BUFFER = new GPUBuffer(GLES30.GL_ELEMENT_ARRAY_BUFFER, GPUBuffer.SHORT_SIZE,
+                    narrow(entries));
+        } else {
+            GPU_BUFFER = new GPUBuffer(GLES30.GL_ELEMENT_ARRAY_BUFFER, GPUBuffer.INT_SIZE,
+                    entries);
+        }
+    }
+
+    /**
+     * Returns {@code GL_UNSIGNED_SHORT} if every index in {@code entries} fits into an unsigned
+     * short, and {@code GL_UNSIGNED_INT} otherwise or if there are no entries.
+     */
+    /* package-private */
+    static int selectIndexType(IntBuffer entries) {
+        if (entries == null || entries.limit() == 0) {
+            return GLES30.GL_UNSIGNED_INT;
+        }
+
+        for (int i = 0; i < entries.limit(); ++i) {
+            int index = entries.get(i);
+
+            if (index < 0 || index > MAX_UNSIGNED_SHORT) {
+                return GLES30.GL_UNSIGNED_INT;
+            }
+        }
+
+        return GLES30.GL_UNSIGNED_SHORT;
+    }
+
+    /**
+     * Copies {@code entries} into a direct buffer of unsigned shorts in native byte order.
+     *
+     * @throws IllegalArgumentException If an index does not fit into an unsigned short.
+     */
+    /* package-private */
+    static ShortBuffer narrow(IntBuffer entries) {
+        ShortBuffer result = ByteBuffer.allocateDirect(entries.limit() * GPUBuffer.SHORT_SIZE)
+                .order(ByteOrder.nativeOrder()).asShortBuffer();
+
+        for (int i = 0; i < entries.limit(); ++i) {
+            int index = entries.get(i);
+
+            if (index < 0 || index > MAX_UNSIGNED_SHORT) {
+                throw new IllegalArgumentException(
+                        "Index " + index + " does not fit into an unsigned short");
+            }
+
+            result.put(i, (short) index);
+        }
+
+        return result;
     }
 
     /**
@@ -55,9 +120,15 @@ public class IndexBuffer implements Closeable {
      * <p>The GPU buffer is reallocated automatically if necessary.
      *
      * <p>The {@code entries} buffer may be null, in which case the buffer will become empty.
+     * The index type chosen during construction is kept, so for a {@code GL_UNSIGNED_SHORT}
+     * buffer, every index must fit into an unsigned short.
      */
     public void set(IntBuffer entries) {
-        GPU_BUFFER.set(entries);
+        if (INDEX_TYPE == GLES30.GL_UNSIGNED_SHORT && entries != null) {
+            GPU_BUFFER.set(narrow(entries));
+        } else {
+            GPU_BUFFER.set(entries);
+        }
     }
 
     /**
@@ -77,6 +148,16 @@ public class IndexBuffer implements Closeable {
         return GPU_BUFFER.getBufferId();
     }
 
+    /**
+     * Retrieves the GL type of the stored indices, either {@code GL_UNSIGNED_SHORT} or {@code
+     * GL_UNSIGNED_INT}, as expected by {@code glDrawElements}.
+     *
+     * @return The index type.
+     */
+    public int getIndexType() {
+        return INDEX_TYPE;
+    }
+
     /**
      * Retrieves the size of the buffer.
      *
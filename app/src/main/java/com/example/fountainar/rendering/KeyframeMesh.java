@@ -0,0 +1,219 @@
+package com.example.fountainar.rendering;
+
+import android.opengl.GLES30;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The keyframes of a mesh animation as one {@link Mesh} per frame.
+ *
+ * <p>Keyframes exported from the same animation usually have identical triangles and texture
+ * coordinates, and only their positions and normals move. If all frames share their indices and
+ * texture coordinates, a single {@link IndexBuffer} and texture coordinate {@link VertexBuffer} are
+ * uploaded and bound by every frame's mesh; otherwise every frame gets its own. Positions and
+ * normals are uploaded per frame in either case, as separate vertex buffers at locations 0 and 2,
+ * with texture coordinates at location 1, matching {@link VertexFormat#DEFAULT}.
+ *
+ * <p>Frames which share their topology can be blended: each frame's mesh additionally binds the
+ * positions and normals of the next frame, wrapping around to the first, at locations 3 and 4.
+ * Shaders compiled with the {@link #SHADER_DEFINE} symbol, such as {@code shaders/water.vert},
+ * mix both by the {@code u_KeyframeBlend} uniform, see {@link KeyframeSampler}.
+ */
+public class KeyframeMesh implements Closeable {
+    public static final String SHADER_DEFINE = "KEYFRAME_BLENDING";
+    private static final String TAG = KeyframeMesh.class.getSimpleName();
+    private final List<Mesh> FRAMES;
+    private final List<IndexBuffer> INDEX_BUFFERS;
+    private final List<VertexBuffer> VERTEX_BUFFERS;
+    private final boolean SHARES_TOPOLOGY;
+    private final long SAVED_BYTES;
+
+    private KeyframeMesh(boolean sharesTopology, long savedBytes) {
+        this.FRAMES = new ArrayList<>();
+        this.INDEX_BUFFERS = new ArrayList<>();
+        this.VERTEX_BUFFERS = new ArrayList<>();
+        this.SHARES_TOPOLOGY = sharesTopology;
+        this.SAVED_BYTES = savedBytes;
+    }
+
+    /**
+     * Uploads the given keyframes, sharing their topology if possible.
+     *
+     * @param frames The keyframes, at least one.
+     */
+    public static KeyframeMesh createFromData(List<MeshData> frames) {
+        if (frames.isEmpty()) {
+            throw new IllegalArgumentException("A keyframe mesh needs at least one frame");
+        }
+
+        boolean sharesTopology = sharesTopology(frames);
+        long savedBytes = sharesTopology ? computeSharedBytes(frames.get(0))
+                * (frames.size() - 1) : 0;
+        KeyframeMesh keyframeMesh = new KeyframeMesh(sharesTopology, savedBytes);
+
+        try {
+            int frameCount = frames.size();
+            IndexBuffer[] indexBuffers = new IndexBuffer[frameCount];
+            VertexBuffer[] texCoordBuffers = new VertexBuffer[frameCount];
+            VertexBuffer[] positionBuffers = new VertexBuffer[frameCount];
+            VertexBuffer[] normalBuffers = new VertexBuffer[frameCount];
+
+            for (int f = 0; f < frameCount; ++f) {
+                MeshData frame = frames.get(f);
+
+                if (f == 0 || !sharesTopology) {
+                    indexBuffers[f] = new IndexBuffer(frame.getIndices());
+                    keyframeMesh.INDEX_BUFFERS.add(indexBuffers[f]);
+                    texCoordBuffers[f] = new VertexBuffer(MeshData.TEX_COORD_COMPONENTS,
+                            frame.getTexCoords());
+                    keyframeMesh.VERTEX_BUFFERS.add(texCoordBuffers[f]);
+                } else {
+                    indexBuffers[f] = indexBuffers[0];
+                    texCoordBuffers[f] = texCoordBuffers[0];
+                }
+
+                positionBuffers[f] = new VertexBuffer(MeshData.POSITION_COMPONENTS,
+                        frame.getPositions());
+                keyframeMesh.VERTEX_BUFFERS.add(positionBuffers[f]);
+                normalBuffers[f] = new VertexBuffer(MeshData.NORMAL_COMPONENTS,
+                        frame.getNormals());
+                keyframeMesh.VERTEX_BUFFERS.add(normalBuffers[f]);
+            }
+
+            for (int f = 0; f < frameCount; ++f) {
+                int next = (f + 1) % frameCount;
+                VertexBuffer[] vertexBuffers = sharesTopology
+                        ? new VertexBuffer[]{positionBuffers[f], texCoordBuffers[f],
+                        normalBuffers[f], positionBuffers[next], normalBuffers[next]}
+                        : new VertexBuffer[]{positionBuffers[f], texCoordBuffers[f],
+                        normalBuffers[f]};
+                Mesh mesh = new Mesh(Mesh.PrimitiveMode.TRIANGLES, indexBuffers[f],
+                        vertexBuffers);
+                // Blended positions lie between those of both frames, and so within their union.
+                mesh.setBounds(sharesTopology ? BoundingBox.union(frames.get(f).getBounds(),
+                        frames.get(next).getBounds()) : frames.get(f).getBounds());
+                keyframeMesh.FRAMES.add(mesh);
+            }
+        } catch (Throwable t) {
+            keyframeMesh.close();
+            throw t;
+        }
+
+        Log.i(TAG, sharesTopology
+                ? String.format(Locale.US, "%d keyframes share their topology, saving %d KiB",
+                frames.size(), savedBytes / 1024)
+                : frames.size() + " keyframes differ in topology, uploaded separately");
+        return keyframeMesh;
+    }
+
+    /**
+     * Returns whether all frames have identical indices and texture coordinates.
+     */
+    static boolean sharesTopology(List<MeshData> frames) {
+        MeshData first = frames.get(0);
+
+        for (MeshData frame : frames) {
+            if (frame.getVertexCount() != first.getVertexCount()
+                    || !equals(frame.getIndices(), first.getIndices())
+                    || !equals(frame.getTexCoords(), first.getTexCoords())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the number of GPU bytes of the index and texture coordinate buffers of a frame.
+     */
+    static long computeSharedBytes(MeshData frame) {
+        int indexSize = IndexBuffer.selectIndexType(frame.getIndices())
+                == GLES30.GL_UNSIGNED_SHORT ? GPUBuffer.SHORT_SIZE : GPUBuffer.INT_SIZE;
+        return (long) frame.getIndexCount() * indexSize
+                + (long) frame.getTexCoords().limit() * Float.BYTES;
+    }
+
+    public int getFrameCount() {
+        return FRAMES.size();
+    }
+
+    /**
+     * Returns the mesh of the given keyframe, which also binds the next keyframe if the frames
+     * {@link #sharesTopology()}.
+     */
+    public Mesh getFrame(int frame) {
+        return FRAMES.get(frame);
+    }
+
+    /**
+     * Returns whether the frames share one index and texture coordinate buffer, and can
+     * therefore be blended by shaders compiled with {@link #SHADER_DEFINE}.
+     */
+    public boolean sharesTopology() {
+        return SHARES_TOPOLOGY;
+    }
+
+    /**
+     * Sets the weight of the next keyframe for shaders compiled with {@link #SHADER_DEFINE}.
+     */
+    public void setBlendUniform(Shader shader, float blend) {
+        shader.setFloat("u_KeyframeBlend", blend);
+    }
+
+    /**
+     * Returns the number of GPU bytes saved by sharing the topology, compared to uploading every
+     * frame separately.
+     */
+    public long getSavedBytes() {
+        return SAVED_BYTES;
+    }
+
+    @Override
+    public void close() {
+        for (Mesh mesh : FRAMES) {
+            mesh.close();
+        }
+
+        for (IndexBuffer indexBuffer : INDEX_BUFFERS) {
+            indexBuffer.close();
+        }
+
+        for (VertexBuffer vertexBuffer : VERTEX_BUFFERS) {
+            vertexBuffer.close();
+        }
+    }
+
+    private static boolean equals(IntBuffer a, IntBuffer b) {
+        if (a.limit() != b.limit()) {
+            return false;
+        }
+
+        for (int i = 0; i < a.limit(); ++i) {
+            if (a.get(i) != b.get(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean equals(FloatBuffer a, FloatBuffer b) {
+        if (a.limit() != b.limit()) {
+            return false;
+        }
+
+        for (int i = 0; i < a.limit(); ++i) {
+            if (Float.floatToIntBits(a.get(i)) != Float.floatToIntBits(b.get(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
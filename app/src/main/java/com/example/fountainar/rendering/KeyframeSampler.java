@@ -0,0 +1,96 @@
+package com.example.fountainar.rendering;
+
+/**
+ * Samples a looping keyframe animation by time rather than by rendered frames, so that it plays
+ * at the same speed at any frame rate.
+ *
+ * <p>{@link #update(long)} takes timestamps of a monotonic clock such as {@link
+ * System#nanoTime()}. The animation starts at the first update. Between two keyframes, {@link
+ * #getBlend()} tells how far playback has moved from {@link #getFrame()} towards {@link
+ * #getNextFrame()}; after the last keyframe it blends back into the first.
+ */
+public class KeyframeSampler {
+    private static final double NANOS_PER_SECOND = 1e9;
+    private final int FRAME_COUNT;
+    private final double FRAMES_PER_SECOND;
+    private boolean isStarted;
+    private long startNanos;
+    private float framePosition;
+
+    /**
+     * @param frameCount      The number of keyframes, at least one.
+     * @param framesPerSecond The number of keyframes played per second.
+     */
+    public KeyframeSampler(int frameCount, float framesPerSecond) {
+        if (frameCount < 1) {
+            throw new IllegalArgumentException("An animation needs at least one frame");
+        }
+
+        if (!(framesPerSecond > 0)) {
+            throw new IllegalArgumentException("The frame rate must be positive");
+        }
+
+        this.FRAME_COUNT = frameCount;
+        this.FRAMES_PER_SECOND = framesPerSecond;
+    }
+
+    /**
+     * Moves playback to the given time.
+     *
+     * @param nanos A timestamp of a monotonic clock in nanoseconds.
+     */
+    public void update(long nanos) {
+        if (!isStarted) {
+            isStarted = true;
+            startNanos = nanos;
+        }
+
+        double frames = Math.max(0, nanos - startNanos) / NANOS_PER_SECOND * FRAMES_PER_SECOND;
+        framePosition = (float) (frames % FRAME_COUNT);
+
+        // Rounding to float may reach the frame count, which is the same position as frame 0.
+        if (framePosition >= FRAME_COUNT) {
+            framePosition = 0;
+        }
+    }
+
+    /**
+     * Restarts playback at the next {@link #update(long)}.
+     */
+    public void reset() {
+        isStarted = false;
+        framePosition = 0;
+    }
+
+    public int getFrameCount() {
+        return FRAME_COUNT;
+    }
+
+    /**
+     * Returns the playback position in keyframes, in {@code [0, frameCount)}.
+     */
+    public float getFramePosition() {
+        return framePosition;
+    }
+
+    /**
+     * Returns the keyframe at or before the playback position.
+     */
+    public int getFrame() {
+        return (int) framePosition;
+    }
+
+    /**
+     * Returns the keyframe after {@link #getFrame()}, wrapping around to the first.
+     */
+    public int getNextFrame() {
+        return (getFrame() + 1) % FRAME_COUNT;
+    }
+
+    /**
+     * Returns the weight of {@link #getNextFrame()} at the playback position, in {@code [0, 1)}.
+     */
+    public float getBlend() {
+        return framePosition - getFrame();
+    }
+}
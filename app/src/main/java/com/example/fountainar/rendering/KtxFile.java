@@ -0,0 +1,193 @@
+package com.example.fountainar.rendering;
+
+import android.opengl.GLES30;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Reads and writes 2D textures in the KTX 1.1 container of the Khronos Group, which stores the
+ * mip levels of a texture ready for {@code glCompressedTexImage2D} or {@code glTexImage2D}.
+ *
+ * <p>The file starts with a 12-byte identifier and a header of 32-bit integers:
+ *
+ * <pre>
+ *   endianness, glType, glTypeSize, glFormat, glInternalFormat, glBaseInternalFormat,
+ *   pixelWidth, pixelHeight, pixelDepth, numberOfArrayElements, numberOfFaces,
+ *   numberOfMipmapLevels, bytesOfKeyValueData
+ * </pre>
+ *
+ * <p>followed by the key-value data, which is skipped, and every mip level as its size in bytes
+ * and its 4-byte aligned data. Files are written little-endian; both byte orders are read. Only
+ * the formats of {@link TextureData} are supported: ETC2 with or without alpha, and uncompressed
+ * RGBA8.
+ */
+public final class KtxFile {
+    public static final String EXTENSION = ".ktx";
+    private static final byte[] IDENTIFIER = {
+            (byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n'};
+    private static final int ENDIANNESS = 0x04030201;
+    private static final int HEADER_INTS = 13;
+    private static final int HEADER_BYTES = IDENTIFIER.length + HEADER_INTS * Integer.BYTES;
+
+    private KtxFile() {
+    }
+
+    /**
+     * Returns the name of the KTX asset that replaces the given image asset name.
+     */
+    public static String getCompressedAssetName(String imageAssetName) {
+        int extensionIndex = imageAssetName.lastIndexOf('.');
+        String baseName = extensionIndex < 0 ? imageAssetName
+                : imageAssetName.substring(0, extensionIndex);
+        return baseName + EXTENSION;
+    }
+
+    /**
+     * Writes the given {@link TextureData}.
+     *
+     * @param textureData  The texture data to write.
+     * @param outputStream The stream to write to. It is not closed by this method.
+     * @throws IOException If writing fails.
+     */
+    public static void write(TextureData textureData, OutputStream outputStream)
+            throws IOException {
+        int fileSize = HEADER_BYTES;
+
+        for (int level = 0; level < textureData.getLevelCount(); ++level) {
+            fileSize += Integer.BYTES + align(textureData.getLevel(level).remaining());
+        }
+
+        boolean isCompressed = textureData.isCompressed();
+        ByteBuffer buffer = ByteBuffer.allocate(fileSize).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(IDENTIFIER);
+        buffer.putInt(ENDIANNESS);
+        buffer.putInt(isCompressed ? 0 : GLES30.GL_UNSIGNED_BYTE);
+        buffer.putInt(1);
+        buffer.putInt(isCompressed ? 0 : GLES30.GL_RGBA);
+        buffer.putInt(isCompressed ? textureData.getCompressedFormat() : GLES30.GL_RGBA8);
+        buffer.putInt(textureData.getCompressedFormat() == TextureData.FORMAT_ETC2_RGB
+                ? GLES30.GL_RGB : GLES30.GL_RGBA);
+        buffer.putInt(textureData.getWidth());
+        buffer.putInt(textureData.getHeight());
+        buffer.putInt(0);
+        buffer.putInt(0);
+        buffer.putInt(1);
+        buffer.putInt(textureData.getLevelCount());
+        buffer.putInt(0);
+
+        for (int level = 0; level < textureData.getLevelCount(); ++level) {
+            ByteBuffer data = textureData.getLevel(level).duplicate();
+            buffer.putInt(data.remaining());
+            buffer.put(data);
+            buffer.position(align(buffer.position()));
+        }
+
+        outputStream.write(buffer.array(), 0, fileSize);
+    }
+
+    /**
+     * Reads {@link TextureData} from a buffer holding a complete KTX file.
+     *
+     * <p>No data is copied: the returned levels are views into {@code file}, so that the levels
+     * of a memory-mapped file can be uploaded directly.
+     *
+     * @param file The <i>direct</i> buffer holding the file, starting at position 0.
+     * @return The texture data.
+     * @throws IOException If the buffer does not hold a supported KTX file.
+     */
+    public static TextureData read(ByteBuffer file) throws IOException {
+        if (!file.isDirect()) {
+            throw new IllegalArgumentException("KTX files must be read from a direct buffer");
+        }
+
+        byte[] identifier = new byte[IDENTIFIER.length];
+
+        if (file.limit() < HEADER_BYTES) {
+            throw new IOException("Not a KTX file");
+        }
+
+        file.duplicate().get(identifier);
+
+        if (!Arrays.equals(identifier, IDENTIFIER)) {
+            throw new IOException("Not a KTX file");
+        }
+
+        ByteBuffer header = file.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+        if (header.getInt(IDENTIFIER.length) != ENDIANNESS) {
+            header.order(ByteOrder.BIG_ENDIAN);
+
+            if (header.getInt(IDENTIFIER.length) != ENDIANNESS) {
+                throw new IOException("Invalid KTX endianness");
+            }
+        }
+
+        int[] values = new int[HEADER_INTS];
+
+        for (int i = 0; i < HEADER_INTS; ++i) {
+            values[i] = header.getInt(IDENTIFIER.length + i * Integer.BYTES);
+        }
+
+        int glType = values[1];
+        int glInternalFormat = values[4];
+        int width = values[6];
+        int height = values[7];
+        int depth = values[8];
+        int arrayElements = values[9];
+        int faces = values[10];
+        int levelCount = Math.max(1, values[11]);
+        int keyValueBytes = values[12];
+
+        if (width <= 0 || height <= 0 || depth != 0 || arrayElements != 0 || faces != 1) {
+            throw new IOException("Only KTX files of a single 2D texture are supported");
+        }
+
+        boolean isCompressed = glType == 0;
+
+        if (!isCompressed && (glType != GLES30.GL_UNSIGNED_BYTE
+                || glInternalFormat != GLES30.GL_RGBA8)) {
+            throw new IOException("Unsupported uncompressed KTX format 0x"
+                    + Integer.toHexString(glInternalFormat));
+        }
+
+        ByteBuffer[] levels = new ByteBuffer[levelCount];
+        int offset = HEADER_BYTES + keyValueBytes;
+
+        for (int level = 0; level < levelCount; ++level) {
+            if (offset < HEADER_BYTES || offset > file.limit() - Integer.BYTES) {
+                throw new IOException("KTX level exceeds the file size");
+            }
+
+            int size = header.getInt(offset);
+            levels[level] = slice(file, offset + Integer.BYTES, size);
+            offset = align(offset + Integer.BYTES + size);
+        }
+
+        try {
+            return isCompressed
+                    ? TextureData.createCompressed(glInternalFormat, width, height, levels)
+                    : TextureData.createMipChain(width, height, levels);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed KTX file", e);
+        }
+    }
+
+    private static int align(int offset) {
+        return (offset + 3) & ~3;
+    }
+
+    private static ByteBuffer slice(ByteBuffer file, int offset, int length) throws IOException {
+        if (length < 0 || offset > file.limit() - length) {
+            throw new IOException("KTX level exceeds the file size");
+        }
+
+        ByteBuffer view = file.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice();
+    }
+}
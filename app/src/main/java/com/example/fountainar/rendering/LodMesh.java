@@ -0,0 +1,202 @@
+package com.example.fountainar.rendering;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A {@link Mesh} at several levels of detail, of which the renderer draws the coarsest one that
+ * still looks the same at the mesh's current size on screen.
+ *
+ * <p>The levels are built by {@link MeshSimplifier}, see {@link #buildLevels}. Level 0 is the full
+ * detail mesh; each further level has about half the triangles of the previous one and is drawn
+ * once the mesh's bounding sphere covers less than the corresponding fraction of {@link
+ * #SCREEN_SIZES} of the viewport height. All levels share the {@link VertexFormat} of level 0, so
+ * they can be drawn with the same shader, but each has its own decode uniforms, see {@link
+ * Mesh#setDecodeUniforms}.
+ */
+public class LodMesh implements Closeable {
+    /**
+     * The triangle count of each level after level 0, relative to level 0.
+     */
+    static final float[] TRIANGLE_RATIOS = {0.5f, 0.25f, 0.125f};
+    /**
+     * The screen size below which each level after level 0 is drawn, as a fraction of the viewport
+     * height covered by the bounding sphere's diameter.
+     */
+    static final float[] SCREEN_SIZES = {0.5f, 0.25f, 0.125f};
+    /**
+     * The largest error of each level after level 0 relative to the previous one, as a fraction
+     * of the radius of the mesh's bounding sphere. At the screen sizes the levels are drawn at,
+     * their accumulated error stays around two pixels on a viewport 1000 pixels high.
+     */
+    static final float[] MAX_RELATIVE_ERRORS = {0.008f, 0.008f, 0.016f};
+    private static final String TAG = LodMesh.class.getSimpleName();
+    private final List<Mesh> LEVELS;
+    private final float[] CENTER;
+    private final float RADIUS;
+
+    private LodMesh(List<Mesh> levels, BoundingBox bounds) {
+        this.LEVELS = levels;
+        this.CENTER = bounds.getCenter();
+        this.RADIUS = computeRadius(bounds);
+    }
+
+    /**
+     * Simplifies the given mesh into levels of detail for {@link #createFromData}. Does not touch
+     * OpenGL and may be called on any thread.
+     *
+     * @param meshData The full detail mesh.
+     * @return The levels, starting with {@code meshData}.
+     */
+    public static List<MeshData> buildLevels(MeshData meshData) {
+        float radius = computeRadius(meshData.getBounds());
+        float[] maxErrors = new float[MAX_RELATIVE_ERRORS.length];
+
+        for (int i = 0; i < maxErrors.length; ++i) {
+            maxErrors[i] = radius * MAX_RELATIVE_ERRORS[i];
+        }
+
+        List<MeshData> levels = MeshSimplifier.buildLodChain(meshData, TRIANGLE_RATIOS,
+                maxErrors);
+        StringBuilder triangleCounts = new StringBuilder();
+
+        for (MeshData level : levels) {
+            triangleCounts.append(' ').append(level.getIndexCount() / 3);
+        }
+
+        Log.d(TAG, String.format(Locale.US, "%d levels of detail, triangles:%s", levels.size(),
+                triangleCounts));
+        return levels;
+    }
+
+    /**
+     * Uploads the given levels of detail.
+     *
+     * @param levels          The levels, starting with the full detail mesh.
+     * @param preferredFormat The vertex format to upload all levels in, or {@link
+     *                        VertexFormat#DEFAULT} if level 0 does not fit it.
+     */
+    public static LodMesh createFromData(List<MeshData> levels, VertexFormat preferredFormat) {
+        if (levels.isEmpty()) {
+            throw new IllegalArgumentException("A mesh needs at least one level of detail");
+        }
+
+        // Coarser levels keep a subset of the vertices of level 0, so they fit its format too.
+        VertexFormat format = preferredFormat.orDefaultFor(levels.get(0));
+        List<Mesh> meshes = new ArrayList<>(levels.size());
+
+        try {
+            for (MeshData level : levels) {
+                meshes.add(Mesh.createFromData(level, format));
+            }
+        } catch (Throwable t) {
+            for (Mesh mesh : meshes) {
+                mesh.close();
+            }
+
+            throw t;
+        }
+
+        return new LodMesh(meshes, levels.get(0).getBounds());
+    }
+
+    /**
+     * Returns the fraction of the viewport height covered by the projected diameter of a sphere,
+     * or {@link Float#POSITIVE_INFINITY} if the sphere contains the camera.
+     *
+     * @param center     The center of the sphere in model coordinates.
+     * @param radius     The radius of the sphere in model units.
+     * @param modelView  The model-view matrix, column-major.
+     * @param projection The perspective projection matrix, column-major.
+     */
+    public static float computeScreenSize(float[] center, float radius, float[] modelView,
+                                          float[] projection) {
+        float viewZ = modelView[2] * center[0] + modelView[6] * center[1]
+                + modelView[10] * center[2] + modelView[14];
+        float viewRadius = radius * getMaxScale(modelView);
+        float distance = -viewZ;
+
+        if (distance <= viewRadius) {
+            return Float.POSITIVE_INFINITY;
+        }
+
+        // The viewport spans [-1, 1] in normalized device coordinates, which cancels the 2 of
+        // the diameter.
+        return viewRadius * projection[5] / distance;
+    }
+
+    /**
+     * Returns the level of detail to draw at the given screen size, see {@link #SCREEN_SIZES}.
+     */
+    static int selectLevel(float screenSize, int levelCount) {
+        int level = 0;
+
+        while (level + 1 < levelCount && level < SCREEN_SIZES.length
+                && screenSize < SCREEN_SIZES[level]) {
+            ++level;
+        }
+
+        return level;
+    }
+
+    /**
+     * Returns the level of detail to draw with the given matrices.
+     *
+     * @param modelView  The model-view matrix, column-major.
+     * @param projection The perspective projection matrix, column-major.
+     */
+    public Mesh selectLevel(float[] modelView, float[] projection) {
+        return LEVELS.get(selectLevel(computeScreenSize(CENTER, RADIUS, modelView, projection),
+                LEVELS.size()));
+    }
+
+    public int getLevelCount() {
+        return LEVELS.size();
+    }
+
+    public Mesh getLevel(int level) {
+        return LEVELS.get(level);
+    }
+
+    /**
+     * Returns the vertex format of all levels. Shaders drawing this mesh must be created with its
+     * {@link VertexFormat#getShaderDefines()}.
+     */
+    public VertexFormat getVertexFormat() {
+        return LEVELS.get(0).getVertexFormat();
+    }
+
+    @Override
+    public void close() {
+        for (Mesh level : LEVELS) {
+            level.close();
+        }
+    }
+
+    private static float computeRadius(BoundingBox bounds) {
+        float[] halfExtents = bounds.getHalfExtents();
+        return (float) Math.sqrt(halfExtents[0] * halfExtents[0]
+                + halfExtents[1] * halfExtents[1] + halfExtents[2] * halfExtents[2]);
+    }
+
+    /**
+     * Returns the largest factor by which the matrix scales lengths, the length of its longest
+     * basis vector.
+     */
+    private static float getMaxScale(float[] matrix) {
+        float maxScaleSquared = 0;
+
+        for (int column = 0; column < 3; ++column) {
+            float x = matrix[column * 4];
+            float y = matrix[column * 4 + 1];
+            float z = matrix[column * 4 + 2];
+            maxScaleSquared = Math.max(maxScaleSquared, x * x + y * y + z * z);
+        }
+
+        return (float) Math.sqrt(maxScaleSquared);
+    }
+}
@@ -15,37 +15,43 @@
  */
 package com.example.fountainar.rendering;
 
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
 import android.opengl.GLES30;
 import android.util.Log;
 
-import java.io.BufferedInputStream;
 import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-
-import de.javagl.obj.Obj;
-import de.javagl.obj.ObjData;
-import de.javagl.obj.ObjReader;
-import de.javagl.obj.ObjUtils;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
 
 /**
  * A collection of vertices, faces, and other attributes that define how to render a 3D object.
  *
  * <p>To render the mesh, use {@link CustomRender#draw(Mesh, Shader)}.
+ *
+ * <p>Meshes created from {@link MeshData} carry the bounding box and bounding sphere of their
+ * positions, which the renderer tests against the view {@link Frustum} to skip meshes that are not
+ * on screen.
  */
 public class Mesh implements Closeable {
     private static final String TAG = Mesh.class.getSimpleName();
     private final int[] vertexArrayId = {0};
+    private boolean isClosed;
+    private boolean ownsBuffers;
     private final PrimitiveMode primitiveMode;
     private final IndexBuffer indexBuffer;
     private final VertexBuffer[] vertexBuffers;
+    private final float[] positionScale = {1f, 1f, 1f};
+    private final float[] positionOffset = {0f, 0f, 0f};
+    private VertexFormat vertexFormat = VertexFormat.DEFAULT;
+    private BoundingBox boundingBox;
+    private BoundingSphere boundingSphere;
+
     /**
      * Constructs a {@link Mesh}.
      *
@@ -57,6 +63,16 @@ public class Mesh implements Closeable {
      * correspond to their attribute locations, which must be taken into account in shader code. The
      * <a href="https://www.khronos.org/opengl/wiki/Layout_Qualifier_(GLSL)">layout qualifier</a>
      * must be used in the vertex shader code to explicitly associate attributes with these indices.
+     * Interleaved {@link VertexBuffer}s instead use the attribute locations of their {@link
+     * VertexFormat}.
+     *
+     * <p>The vertex array object binding the buffers together is only created when the mesh is
+     * first drawn, because vertex arrays, unlike buffers, are not shared between EGL contexts. A
+     * mesh may therefore be constructed on the {@link SharedContextLoader} thread and drawn on the
+     * render thread.
+     *
+     * <p>The mesh only borrows the buffers; they must be closed by their owner once no mesh uses
+     * them anymore.
      */
     public Mesh(
             PrimitiveMode primitiveMode,
@@ -69,97 +85,267 @@ public class Mesh implements Closeable {
         this.primitiveMode = primitiveMode;
         this.indexBuffer = indexBuffer;
         this.vertexBuffers = vertexBuffers;
+    }
 
-        try {
-            GLES30.glGenVertexArrays(1, vertexArrayId, 0);
-            GLError.maybeThrowGLException("Failed to generate a vertex array", "glGenVertexArrays");
-            GLES30.glBindVertexArray(vertexArrayId[0]);
-            GLError.maybeThrowGLException("Failed to bind vertex array object",
-                    "glBindVertexArray");
+    /**
+     * Constructs a {@link Mesh} from the given Wavefront OBJ file.
+     *
+     * <p>If a precompiled binary counterpart of the asset exists (same name with the {@link
+     * MeshFile#EXTENSION} extension, see {@link MeshConverter}), it is memory-mapped and used
+     * instead, which avoids parsing the OBJ text altogether. The OBJ file stays the fallback; it
+     * is parsed by {@link ObjParser}, straight from the mapped asset where possible, and its
+     * triangles and vertices are reordered with {@link VertexCacheOptimizer} after parsing, as
+     * the converter does for binary meshes.
+     *
+     * <p>The {@link Mesh} will be constructed with three attributes, indexed in the order of local
+     * coordinates (location 0, vec3), texture coordinates (location 1, vec2), and vertex normals
+     * (location 2, vec3), interleaved into a single vertex buffer (see {@link
+     * VertexFormat#DEFAULT}).
+     */
+    public static Mesh createFromAsset(CustomRender render, String assetFileName) throws IOException {
+        return createFromData(loadMeshData(render.getAssets(), assetFileName));
+    }
 
-            if (indexBuffer != null) {
-                GLES30.glBindBuffer(GLES30.GL_ELEMENT_ARRAY_BUFFER, indexBuffer.getBufferId());
-            }
+    /**
+     * Constructs a {@link Mesh} from the given Wavefront OBJ file like {@link
+     * #createFromAsset(CustomRender, String)}, but lays out the vertices as described by {@code
+     * preferredFormat} if the mesh data can be packed into it without loss of range, and as
+     * {@link VertexFormat#DEFAULT} otherwise. See {@link #getVertexFormat()}.
+     */
+    public static Mesh createFromAsset(CustomRender render, String assetFileName,
+                                       VertexFormat preferredFormat) throws IOException {
+        MeshData meshData = loadMeshData(render.getAssets(), assetFileName);
+        return createFromData(meshData, preferredFormat.orDefaultFor(meshData));
+    }
 
-            for (int i = 0; i < vertexBuffers.length; ++i) {
-                GLES30.glBindBuffer(GLES30.GL_ARRAY_BUFFER, vertexBuffers[i].getBufferId());
-                GLError.maybeThrowGLException("Failed to bind vertex buffer", "glBindBuffer");
-                GLES30.glVertexAttribPointer(
-                        i, vertexBuffers[i].getNumberOfEntriesPerVertex(), GLES30.GL_FLOAT,
-                        false,
-                        0, 0);
-                GLError.maybeThrowGLException(
-                        "Failed to associate vertex buffer with vertex array",
-                        "glVertexAttribPointer");
-                GLES30.glEnableVertexAttribArray(i);
-                GLError.maybeThrowGLException(
-                        "Failed to enable vertex buffer", "glEnableVertexAttribArray");
-            }
+    /**
+     * Constructs a {@link Mesh} from the given {@link MeshData}, with the same attribute layout
+     * as {@link #createFromAsset}, interleaved into a single vertex buffer.
+     */
+    public static Mesh createFromData(MeshData meshData) {
+        return createFromData(meshData, VertexFormat.DEFAULT);
+    }
+
+    /**
+     * Constructs a {@link Mesh} from the given {@link MeshData}, interleaving its attributes into
+     * a single vertex buffer laid out as described by {@code format}. The mesh owns its buffers
+     * and deletes them when it is closed.
+     */
+    public static Mesh createFromData(MeshData meshData, VertexFormat format) {
+        VertexBuffer vertexBuffer = new VertexBuffer(format, format.pack(meshData));
+        IndexBuffer indexBuffer;
+
+        try {
+            indexBuffer = new IndexBuffer(meshData.getIndices());
         } catch (Throwable t) {
-            close();
+            vertexBuffer.close();
             throw t;
         }
+
+        Mesh mesh = new Mesh(PrimitiveMode.TRIANGLES, indexBuffer,
+                new VertexBuffer[]{vertexBuffer});
+        mesh.ownsBuffers = true;
+        mesh.vertexFormat = format;
+        mesh.boundingBox = meshData.getBounds();
+        mesh.boundingSphere = meshData.getBoundingSphere();
+
+        if (format.hasQuantizedPositions()) {
+            BoundingBox bounds = meshData.getBounds();
+            System.arraycopy(bounds.getHalfExtents(), 0, mesh.positionScale, 0, 3);
+            System.arraycopy(bounds.getCenter(), 0, mesh.positionOffset, 0, 3);
+        }
+
+        return mesh;
     }
 
     /**
-     * Constructs a {@link Mesh} from the given Wavefront OBJ file.
+     * Loads the {@link MeshData} of the given OBJ asset, preferring its binary counterpart. Does
+     * not touch OpenGL and may be called on any thread, see {@link AssetLoader}.
      *
-     * <p>The {@link Mesh} will be constructed with three attributes, indexed in the order of local
-     * coordinates (location 0, vec3), texture coordinates (location 1, vec2), and vertex normals
-     * (location 2, vec3).
-     * The vertex buffers are used without try-with-resources, because they need to stay open.
+     * <p>OBJ assets are prepared like {@link MeshConverter} does, see {@link #prepareObjData}.
      */
-    public static Mesh createFromAsset(CustomRender render, String assetFileName) throws IOException {
-      ExecutorService executorService = Executors.newFixedThreadPool(3);
-
-      try (InputStream inputStream = new BufferedInputStream(render.getAssets().open(assetFileName))) {
-        Obj obj = ObjUtils.convertToRenderable(ObjReader.read(inputStream));
-        IntBuffer vertexIndices = ObjData.getFaceVertexIndices(obj, 3);
-        FloatBuffer localCoordinates = ObjData.getVertices(obj);
-        FloatBuffer textureCoordinates = ObjData.getTexCoords(obj, 2);
-        FloatBuffer normals = ObjData.getNormals(obj);
-
-        Future<FloatBuffer> localCoordinatesFuture = executorService.submit(() ->
-                convertToDirectFloatBuffer(localCoordinates));
-        Future<FloatBuffer> textureCoordinatesFuture = executorService.submit(() ->
-                convertToDirectFloatBuffer(textureCoordinates));
-        Future<FloatBuffer> normalsFuture = executorService.submit(() ->
-                convertToDirectFloatBuffer(normals));
-
-        VertexBuffer[] vertexBuffers = {
-                new VertexBuffer(3, localCoordinatesFuture.get()),
-                new VertexBuffer(2, textureCoordinatesFuture.get()),
-                new VertexBuffer(3, normalsFuture.get()),
-        };
-
-        IndexBuffer indexBuffer = new IndexBuffer(vertexIndices);
-
-        return new Mesh(PrimitiveMode.TRIANGLES, indexBuffer, vertexBuffers);
-      } catch (Exception e) {
-        // Handle exceptions
-      } finally {
-        executorService.shutdown();
-      }
-
-      return null;
-    }
-
-  private static FloatBuffer convertToDirectFloatBuffer(FloatBuffer buffer) {
-    ByteBuffer byteBuffer = ByteBuffer.allocateDirect(buffer.capacity() * Float.BYTES);
-    byteBuffer.order(ByteOrder.nativeOrder());
-    FloatBuffer floatBuffer = byteBuffer.asFloatBuffer();
-    floatBuffer.put(buffer);
-    floatBuffer.flip();
-    return floatBuffer;
-  }
-
-  @Override
+    static MeshData loadMeshData(AssetManager assets, String assetFileName) throws IOException {
+        return loadMeshData(assets, assetFileName, false);
+    }
+
+    /**
+     * Loads the {@link MeshData} of a keyframe of an animation like {@link #loadMeshData}, but
+     * without triangulating flat regions again, so that keyframes which share their topology
+     * keep sharing it, see {@link KeyframeMesh#sharesTopology()}.
+     */
+    static MeshData loadKeyframeData(AssetManager assets, String assetFileName)
+            throws IOException {
+        return loadMeshData(assets, assetFileName, true);
+    }
+
+    /**
+     * Prepares a parsed OBJ mesh for rendering: flat regions are triangulated again by {@link
+     * CoplanarRetriangulator}, unless the mesh is a keyframe, and the result is reordered by
+     * {@link VertexCacheOptimizer}.
+     *
+     * <p>Keyframes are not triangulated again because the regions depend on the positions, which
+     * differ between keyframes. The reordering only depends on the indices, so keyframes of the
+     * same topology are reordered alike.
+     */
+    static MeshData prepareObjData(MeshData meshData, boolean isKeyframe) {
+        MeshData retriangulated = isKeyframe ? meshData
+                : CoplanarRetriangulator.retriangulate(meshData);
+        return VertexCacheOptimizer.optimize(retriangulated);
+    }
+
+    private static MeshData loadMeshData(AssetManager assets, String assetFileName,
+                                         boolean isKeyframe) throws IOException {
+        ByteBuffer binaryMesh = mapAsset(assets, MeshFile.getBinaryAssetName(assetFileName));
+
+        if (binaryMesh != null) {
+            return MeshFile.read(binaryMesh);
+        }
+
+        MeshData meshData;
+        ByteBuffer objText = mapAsset(assets, assetFileName);
+
+        if (objText != null) {
+            meshData = ObjParser.parse(objText);
+        } else {
+            try (InputStream inputStream = assets.open(assetFileName)) {
+                meshData = ObjParser.parse(inputStream);
+            }
+        }
+
+        MeshData optimized = prepareObjData(meshData, isKeyframe);
+
+        // The statistics simulate the vertex cache over all indices, so only pay for them when
+        // they are actually logged.
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, String.format(Locale.US,
+                    "%s: %d -> %d triangles, ACMR %.3f -> %.3f, ATVR %.3f -> %.3f",
+                    assetFileName, meshData.getIndexCount() / 3, optimized.getIndexCount() / 3,
+                    VertexCacheOptimizer.computeAcmr(meshData.getIndices(),
+                            VertexCacheOptimizer.STATISTICS_CACHE_SIZE),
+                    VertexCacheOptimizer.computeAcmr(optimized.getIndices(),
+                            VertexCacheOptimizer.STATISTICS_CACHE_SIZE),
+                    VertexCacheOptimizer.computeAtvr(meshData.getIndices(),
+                            VertexCacheOptimizer.STATISTICS_CACHE_SIZE),
+                    VertexCacheOptimizer.computeAtvr(optimized.getIndices(),
+                            VertexCacheOptimizer.STATISTICS_CACHE_SIZE)));
+        }
+
+        return optimized;
+    }
+
+    /**
+     * Memory-maps an uncompressed asset, or returns null if there is no such asset or it is
+     * compressed.
+     */
+    static ByteBuffer mapAsset(AssetManager assets, String assetFileName)
+            throws IOException {
+        AssetFileDescriptor descriptor;
+
+        try {
+            descriptor = assets.openFd(assetFileName);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+
+        // The stream owns the descriptor; the mapping stays valid after both are closed.
+        try (FileInputStream inputStream = descriptor.createInputStream();
+             FileChannel channel = inputStream.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, descriptor.getStartOffset(),
+                    descriptor.getDeclaredLength());
+        }
+    }
+
+    private static void enableVertexAttribute(int location, int componentCount, int componentType,
+                                              boolean normalized, boolean integer, int stride,
+                                              int offset) {
+        if (integer) {
+            GLES30.glVertexAttribIPointer(location, componentCount, componentType, stride, offset);
+            GLError.maybeThrowGLException(
+                    "Failed to associate vertex buffer with vertex array",
+                    "glVertexAttribIPointer");
+        } else {
+            GLES30.glVertexAttribPointer(location, componentCount, componentType, normalized,
+                    stride, offset);
+            GLError.maybeThrowGLException(
+                    "Failed to associate vertex buffer with vertex array",
+                    "glVertexAttribPointer");
+        }
+
+        GLES30.glEnableVertexAttribArray(location);
+        GLError.maybeThrowGLException(
+                "Failed to enable vertex buffer", "glEnableVertexAttribArray");
+    }
+
+    /**
+     * Returns the layout of the vertices of meshes created from {@link MeshData}. Shaders drawing
+     * this mesh must be created with its {@link VertexFormat#getShaderDefines()}.
+     */
+    public VertexFormat getVertexFormat() {
+        return vertexFormat;
+    }
+
+    /**
+     * Returns the bounding box of the mesh in local coordinates, or null if it is unknown because
+     * the mesh was not created from {@link MeshData}.
+     */
+    public BoundingBox getBoundingBox() {
+        return boundingBox;
+    }
+
+    /**
+     * Returns the bounding sphere of the mesh in local coordinates, or null if it is unknown, see
+     * {@link #getBoundingBox()}.
+     */
+    public BoundingSphere getBoundingSphere() {
+        return boundingSphere;
+    }
+
+    /**
+     * Sets the bounds of a mesh created from its buffers, which must contain all positions the
+     * mesh is drawn with.
+     */
+    void setBounds(BoundingBox boundingBox) {
+        this.boundingBox = boundingBox;
+        this.boundingSphere = BoundingSphere.fromBox(boundingBox);
+    }
+
+    /**
+     * Sets the uniforms the vertex shader needs to decode quantized positions of this mesh, if
+     * its {@link #getVertexFormat()} has any.
+     */
+    public void setDecodeUniforms(Shader shader) {
+        if (vertexFormat.hasQuantizedPositions()) {
+            shader.setVec3("u_PositionScale", positionScale);
+            shader.setVec3("u_PositionOffset", positionOffset);
+        }
+    }
+
+    /**
+     * Deletes the vertex array object, and the buffers if the mesh was created from {@link
+     * MeshData}. Closing a closed mesh has no effect.
+     */
+    @Override
     public void close() {
+        isClosed = true;
+
         if (vertexArrayId[0] != 0) {
             GLES30.glDeleteVertexArrays(1, vertexArrayId, 0);
             GLError.maybeLogGLError(
                     Log.WARN, TAG, "Failed to free vertex array object",
                     "glDeleteVertexArrays");
+            vertexArrayId[0] = 0;
+        }
+
+        if (ownsBuffers) {
+            ownsBuffers = false;
+
+            if (indexBuffer != null) {
+                indexBuffer.close();
+            }
+
+            for (VertexBuffer vertexBuffer : vertexBuffers) {
+                vertexBuffer.close();
+            }
         }
     }
 
@@ -168,12 +354,17 @@ public class Mesh implements Closeable {
      * prefer {@link CustomRender#draw}.
      */
     public void lowLevelDraw() {
-        if (vertexArrayId[0] == 0) {
+        if (isClosed) {
             throw new IllegalStateException("Tried to draw a freed Mesh");
         }
 
-        GLES30.glBindVertexArray(vertexArrayId[0]);
-        GLError.maybeThrowGLException("Failed to bind vertex array object", "glBindVertexArray");
+        if (vertexArrayId[0] == 0) {
+            createVertexArray();
+        } else {
+            GLES30.glBindVertexArray(vertexArrayId[0]);
+            GLError.maybeThrowGLException("Failed to bind vertex array object",
+                    "glBindVertexArray");
+        }
 
         if (indexBuffer == null) {
             int numberOfVertices = vertexBuffers[0].getNumberOfVertices();
@@ -189,13 +380,55 @@ public class Mesh implements Closeable {
             GLError.maybeThrowGLException("Failed to draw vertex array object", "glDrawArrays");
         } else {
             GLES30.glDrawElements(
-                    primitiveMode.GL_ES_ENUM, indexBuffer.getSize(), GLES30.GL_UNSIGNED_INT,
+                    primitiveMode.GL_ES_ENUM, indexBuffer.getSize(), indexBuffer.getIndexType(),
                     0);
             GLError.maybeThrowGLException(
                     "Failed to draw vertex array object with indices", "glDrawElements");
         }
     }
 
+    /**
+     * Creates the vertex array object on the current context, which is left bound.
+     */
+    private void createVertexArray() {
+        try {
+            GLES30.glGenVertexArrays(1, vertexArrayId, 0);
+            GLError.maybeThrowGLException("Failed to generate a vertex array", "glGenVertexArrays");
+            GLES30.glBindVertexArray(vertexArrayId[0]);
+            GLError.maybeThrowGLException("Failed to bind vertex array object",
+                    "glBindVertexArray");
+
+            if (indexBuffer != null) {
+                GLES30.glBindBuffer(GLES30.GL_ELEMENT_ARRAY_BUFFER, indexBuffer.getBufferId());
+            }
+
+            for (int i = 0; i < vertexBuffers.length; ++i) {
+                GLES30.glBindBuffer(GLES30.GL_ARRAY_BUFFER, vertexBuffers[i].getBufferId());
+                GLError.maybeThrowGLException("Failed to bind vertex buffer", "glBindBuffer");
+                VertexFormat format = vertexBuffers[i].getFormat();
+
+                if (format == null) {
+                    enableVertexAttribute(i, vertexBuffers[i].getNumberOfEntriesPerVertex(),
+                            GLES30.GL_FLOAT, false, false, 0, 0);
+                    continue;
+                }
+
+                for (VertexFormat.Attribute attribute : format.getAttributes()) {
+                    enableVertexAttribute(attribute.location, attribute.componentCount,
+                            attribute.componentType, attribute.normalized, attribute.integer,
+                            format.getStride(), attribute.offset);
+                }
+            }
+        } catch (Throwable t) {
+            if (vertexArrayId[0] != 0) {
+                GLES30.glDeleteVertexArrays(1, vertexArrayId, 0);
+                vertexArrayId[0] = 0;
+            }
+
+            throw t;
+        }
+    }
+
     /**
      * The kind of primitive to render.
      *
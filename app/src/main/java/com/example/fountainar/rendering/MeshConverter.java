@@ -0,0 +1,76 @@
+package com.example.fountainar.rendering;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Command line tool that converts Wavefront OBJ assets into the binary format read by
+ * {@link MeshFile}.
+ *
+ * <p>Runs on the JVM, e.g. {@code java -cp <classes>
+ * com.example.fountainar.rendering.MeshConverter app/src/main/assets/models/fountain.obj}. Each
+ * given OBJ file is written next to itself with the {@link MeshFile#EXTENSION} extension, where
+ * {@link Mesh#createFromAsset} picks it up in place of the OBJ file. The mesh is prepared like
+ * the loader prepares OBJ assets, see {@link Mesh#prepareObjData}. With {@code --keyframes}, the
+ * files are keyframes of an animation, whose flat regions are not triangulated again so that
+ * they keep sharing their topology.
+ */
+public final class MeshConverter {
+
+    private MeshConverter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean isKeyframe = args.length > 0 && args[0].equals("--keyframes");
+        int first = isKeyframe ? 1 : 0;
+
+        if (first >= args.length || args[first].startsWith("--")) {
+            System.err.println("Usage: MeshConverter [--keyframes] <file.obj>...");
+            System.exit(1);
+        }
+
+        for (int i = first; i < args.length; ++i) {
+            String objFileName = args[i];
+            String meshFileName = MeshFile.getBinaryAssetName(objFileName);
+            convert(objFileName, meshFileName, isKeyframe);
+            System.out.println(objFileName + " -> " + meshFileName);
+        }
+    }
+
+    /**
+     * Converts a single OBJ file into a binary mesh file.
+     *
+     * @param objFileName  The path of the OBJ file to read.
+     * @param meshFileName The path of the binary mesh file to write.
+     * @param isKeyframe   Whether the OBJ file is a keyframe of an animation.
+     * @throws IOException If reading or writing fails.
+     */
+    public static void convert(String objFileName, String meshFileName, boolean isKeyframe)
+            throws IOException {
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(objFileName));
+             OutputStream outputStream =
+                     new BufferedOutputStream(new FileOutputStream(meshFileName))) {
+            MeshData meshData = MeshData.fromObj(inputStream);
+            MeshData optimized = Mesh.prepareObjData(meshData, isKeyframe);
+            System.out.printf(Locale.US, "%s: %d -> %d triangles%n", objFileName,
+                    meshData.getIndexCount() / 3, optimized.getIndexCount() / 3);
+            System.out.printf(Locale.US, "%s: ACMR %.3f -> %.3f, ATVR %.3f -> %.3f%n",
+                    objFileName,
+                    VertexCacheOptimizer.computeAcmr(meshData.getIndices(),
+                            VertexCacheOptimizer.STATISTICS_CACHE_SIZE),
+                    VertexCacheOptimizer.computeAcmr(optimized.getIndices(),
+                            VertexCacheOptimizer.STATISTICS_CACHE_SIZE),
+                    VertexCacheOptimizer.computeAtvr(meshData.getIndices(),
+                            VertexCacheOptimizer.STATISTICS_CACHE_SIZE),
+                    VertexCacheOptimizer.computeAtvr(optimized.getIndices(),
+                            VertexCacheOptimizer.STATISTICS_CACHE_SIZE));
+            MeshFile.write(optimized, outputStream);
+        }
+    }
+}
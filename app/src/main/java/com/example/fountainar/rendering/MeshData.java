@@ -0,0 +1,180 @@
+package com.example.fountainar.rendering;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * CPU-side geometry of a {@link Mesh}.
+ *
+ * <p>Holds local coordinates (vec3), texture coordinates (vec2), vertex normals (vec3) and
+ * triangle indices in <i>direct</i> buffers, so that they can be handed to {@link VertexBuffer}
+ * and {@link IndexBuffer} without any further copies. The class does not touch OpenGL and can
+ * therefore be used on any thread and on the JVM.
+ */
+public class MeshData {
+    public static final int POSITION_COMPONENTS = 3;
+    public static final int TEX_COORD_COMPONENTS = 2;
+    public static final int NORMAL_COMPONENTS = 3;
+
+    private final FloatBuffer POSITIONS;
+    private final FloatBuffer TEX_COORDS;
+    private final FloatBuffer NORMALS;
+    private final IntBuffer INDICES;
+    private BoundingBox bounds;
+    private BoundingSphere boundingSphere;
+
+    /**
+     * Constructs {@link MeshData} from the given direct buffers.
+     *
+     * <p>All attribute buffers must describe the same number of vertices, and every index must
+     * refer to one of them.
+     */
+    public MeshData(FloatBuffer positions, FloatBuffer texCoords, FloatBuffer normals,
+                    IntBuffer indices) {
+        if (!positions.isDirect() || !texCoords.isDirect() || !normals.isDirect()
+                || !indices.isDirect()) {
+            throw new IllegalArgumentException("Mesh data buffers must be direct buffers");
+        }
+
+        if (positions.limit() % POSITION_COMPONENTS != 0) {
+            throw new IllegalArgumentException(
+                    "Position data must be divisible by " + POSITION_COMPONENTS);
+        }
+
+        int vertexCount = positions.limit() / POSITION_COMPONENTS;
+
+        if (texCoords.limit() != vertexCount * TEX_COORD_COMPONENTS
+                || normals.limit() != vertexCount * NORMAL_COMPONENTS) {
+            throw new IllegalArgumentException("Vertex attributes have mismatching lengths");
+        }
+
+        this.POSITIONS = positions;
+        this.TEX_COORDS = texCoords;
+        this.NORMALS = normals;
+        this.INDICES = indices;
+    }
+
+    /**
+     * Reads a Wavefront OBJ file and converts it into renderable {@link MeshData}, see {@link
+     * ObjParser}.
+     *
+     * @param inputStream The stream of the OBJ file. It is not closed by this method.
+     * @return The parsed mesh data.
+     * @throws IOException If the stream could not be read or is not a valid OBJ file.
+     */
+    public static MeshData fromObj(InputStream inputStream) throws IOException {
+        return ObjParser.parse(inputStream);
+    }
+
+    /**
+     * Allocates a direct float buffer in native byte order.
+     */
+    public static FloatBuffer allocateFloats(int count) {
+        return ByteBuffer.allocateDirect(count * Float.BYTES)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    /**
+     * Allocates a direct int buffer in native byte order.
+     */
+    public static IntBuffer allocateInts(int count) {
+        return ByteBuffer.allocateDirect(count * Integer.BYTES)
+                .order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    public FloatBuffer getPositions() {
+        return POSITIONS;
+    }
+
+    public FloatBuffer getTexCoords() {
+        return TEX_COORDS;
+    }
+
+    public FloatBuffer getNormals() {
+        return NORMALS;
+    }
+
+    public IntBuffer getIndices() {
+        return INDICES;
+    }
+
+    /**
+     * Returns the bounding box of the positions. It is computed on first use, so the positions
+     * must not be changed afterwards.
+     */
+    public synchronized BoundingBox getBounds() {
+        if (bounds == null) {
+            bounds = BoundingBox.fromPositions(POSITIONS);
+        }
+
+        return bounds;
+    }
+
+    /**
+     * Returns a bounding sphere of the positions around the center of {@link #getBounds()}. It is
+     * computed on first use, like the bounding box.
+     */
+    public synchronized BoundingSphere getBoundingSphere() {
+        if (boundingSphere == null) {
+            boundingSphere = BoundingSphere.fromPositions(POSITIONS, getBounds());
+        }
+
+        return boundingSphere;
+    }
+
+    public int getVertexCount() {
+        return POSITIONS.limit() / POSITION_COMPONENTS;
+    }
+
+    public int getIndexCount() {
+        return INDICES.limit();
+    }
+
+    /**
+     * Returns a copy made of the given triangles, which index into this mesh's vertices. Only the
+     * referenced vertices are kept, in the order of their first use.
+     */
+    MeshData compact(int[] indices) {
+        int[] newVertices = new int[getVertexCount()];
+        Arrays.fill(newVertices, -1);
+        int vertexCount = 0;
+
+        for (int index : indices) {
+            if (newVertices[index] < 0) {
+                newVertices[index] = vertexCount++;
+            }
+        }
+
+        FloatBuffer positions = allocateFloats(vertexCount * POSITION_COMPONENTS);
+        FloatBuffer texCoords = allocateFloats(vertexCount * TEX_COORD_COMPONENTS);
+        FloatBuffer normals = allocateFloats(vertexCount * NORMAL_COMPONENTS);
+
+        for (int v = 0; v < newVertices.length; ++v) {
+            if (newVertices[v] >= 0) {
+                copy(POSITIONS, v, positions, newVertices[v], POSITION_COMPONENTS);
+                copy(TEX_COORDS, v, texCoords, newVertices[v], TEX_COORD_COMPONENTS);
+                copy(NORMALS, v, normals, newVertices[v], NORMAL_COMPONENTS);
+            }
+        }
+
+        IntBuffer newIndices = allocateInts(indices.length);
+
+        for (int i = 0; i < indices.length; ++i) {
+            newIndices.put(i, newVertices[indices[i]]);
+        }
+
+        return new MeshData(positions, texCoords, normals, newIndices);
+    }
+
+    private static void copy(FloatBuffer source, int sourceVertex, FloatBuffer target,
+                             int targetVertex, int components) {
+        for (int c = 0; c < components; ++c) {
+            target.put(targetVertex * components + c, source.get(sourceVertex * components + c));
+        }
+    }
+}
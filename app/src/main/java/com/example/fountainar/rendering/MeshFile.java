@@ -0,0 +1,186 @@
+package com.example.fountainar.rendering;
+
+import android.opengl.GLES30;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Reads and writes the compact binary mesh container used in place of Wavefront OBJ assets.
+ *
+ * <p>All values are stored little-endian. The file starts with a header of 32-bit integers:
+ *
+ * <pre>
+ *   magic ("FMSH"), version, vertexCount, indexCount, bytesPerIndex, indexOffset,
+ *   attributeCount, attributeCount * (location, componentCount, componentType, dataOffset)
+ * </pre>
+ *
+ * <p>followed by the raw, 4-byte aligned attribute and index payloads. Offsets are measured from
+ * the start of the file, so that a memory-mapped file can be sliced straight into the direct
+ * buffers consumed by {@link VertexBuffer} and {@link IndexBuffer}.
+ */
+public final class MeshFile {
+    public static final String EXTENSION = ".mesh";
+    private static final int MAGIC = 0x48534D46; // "FMSH" read as little-endian int
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 7;
+    private static final int ATTRIBUTE_INTS = 4;
+    private static final int ATTRIBUTE_COUNT = 3;
+
+    private MeshFile() {
+    }
+
+    /**
+     * Returns the binary asset name that replaces the given OBJ asset name.
+     */
+    public static String getBinaryAssetName(String objAssetName) {
+        int extensionIndex = objAssetName.lastIndexOf('.');
+        String baseName = extensionIndex < 0 ? objAssetName
+                : objAssetName.substring(0, extensionIndex);
+        return baseName + EXTENSION;
+    }
+
+    /**
+     * Writes the given {@link MeshData} in the binary mesh format.
+     *
+     * @param meshData     The mesh data to write.
+     * @param outputStream The stream to write to. It is not closed by this method.
+     * @throws IOException If writing fails.
+     */
+    public static void write(MeshData meshData, OutputStream outputStream) throws IOException {
+        FloatBuffer[] attributes = {
+                meshData.getPositions(), meshData.getTexCoords(), meshData.getNormals()};
+        int[] componentCounts = {
+                MeshData.POSITION_COMPONENTS, MeshData.TEX_COORD_COMPONENTS,
+                MeshData.NORMAL_COMPONENTS};
+
+        int headerSize = (HEADER_INTS + ATTRIBUTE_COUNT * ATTRIBUTE_INTS) * Integer.BYTES;
+        int[] dataOffsets = new int[ATTRIBUTE_COUNT];
+        int offset = headerSize;
+
+        for (int i = 0; i < ATTRIBUTE_COUNT; ++i) {
+            dataOffsets[i] = offset;
+            offset += attributes[i].limit() * Float.BYTES;
+        }
+
+        int indexOffset = offset;
+        int fileSize = indexOffset + meshData.getIndexCount() * Integer.BYTES;
+
+        ByteBuffer buffer = ByteBuffer.allocate(fileSize).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(meshData.getVertexCount());
+        buffer.putInt(meshData.getIndexCount());
+        buffer.putInt(Integer.BYTES);
+        buffer.putInt(indexOffset);
+        buffer.putInt(ATTRIBUTE_COUNT);
+
+        for (int i = 0; i < ATTRIBUTE_COUNT; ++i) {
+            buffer.putInt(i);
+            buffer.putInt(componentCounts[i]);
+            buffer.putInt(GLES30.GL_FLOAT);
+            buffer.putInt(dataOffsets[i]);
+        }
+
+        for (FloatBuffer attribute : attributes) {
+            for (int i = 0; i < attribute.limit(); ++i) {
+                buffer.putFloat(attribute.get(i));
+            }
+        }
+
+        IntBuffer indices = meshData.getIndices();
+
+        for (int i = 0; i < indices.limit(); ++i) {
+            buffer.putInt(indices.get(i));
+        }
+
+        outputStream.write(buffer.array(), 0, fileSize);
+    }
+
+    /**
+     * Reads {@link MeshData} from a buffer holding a complete binary mesh file.
+     *
+     * <p>No data is copied: the returned attribute and index buffers are views into {@code file}.
+     * If {@code file} is a memory-mapped or otherwise direct buffer, the returned views can
+     * therefore be uploaded directly.
+     *
+     * @param file The <i>direct</i> buffer holding the file, starting at position 0.
+     * @return The mesh data.
+     * @throws IOException If the buffer does not hold a valid binary mesh.
+     */
+    public static MeshData read(ByteBuffer file) throws IOException {
+        if (!file.isDirect()) {
+            throw new IllegalArgumentException("Binary meshes must be read from a direct buffer");
+        }
+
+        ByteBuffer header = file.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+        if (header.limit() < HEADER_INTS * Integer.BYTES || header.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary mesh file");
+        }
+
+        int version = header.getInt(4);
+
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary mesh version " + version);
+        }
+
+        int vertexCount = header.getInt(8);
+        int indexCount = header.getInt(12);
+        int bytesPerIndex = header.getInt(16);
+        int indexOffset = header.getInt(20);
+        int attributeCount = header.getInt(24);
+
+        if (bytesPerIndex != Integer.BYTES) {
+            throw new IOException("Unsupported index size " + bytesPerIndex);
+        }
+
+        if (attributeCount != ATTRIBUTE_COUNT) {
+            throw new IOException("Unexpected number of attributes: " + attributeCount);
+        }
+
+        FloatBuffer[] attributes = new FloatBuffer[ATTRIBUTE_COUNT];
+
+        for (int i = 0; i < attributeCount; ++i) {
+            int entry = (HEADER_INTS + i * ATTRIBUTE_INTS) * Integer.BYTES;
+            int location = header.getInt(entry);
+            int componentCount = header.getInt(entry + 4);
+            int componentType = header.getInt(entry + 8);
+            int dataOffset = header.getInt(entry + 12);
+
+            if (location < 0 || location >= ATTRIBUTE_COUNT || attributes[location] != null) {
+                throw new IOException("Invalid attribute location " + location);
+            }
+
+            if (componentType != GLES30.GL_FLOAT) {
+                throw new IOException("Unsupported attribute type " + componentType);
+            }
+
+            attributes[location] = slice(file, dataOffset,
+                    vertexCount * componentCount * Float.BYTES).asFloatBuffer();
+        }
+
+        IntBuffer indices = slice(file, indexOffset, indexCount * Integer.BYTES).asIntBuffer();
+
+        try {
+            return new MeshData(attributes[0], attributes[1], attributes[2], indices);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed binary mesh", e);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer file, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || offset > file.limit() - length) {
+            throw new IOException("Binary mesh data block exceeds the file size");
+        }
+
+        ByteBuffer view = file.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,484 @@
+package com.example.fountainar.rendering;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Reduces the triangle count of {@link MeshData} with quadric error metrics, e.g. to build levels
+ * of detail for {@link LodMesh}.
+ *
+ * <p>The simplifier repeatedly collapses an edge by moving one of its vertices onto the other
+ * (half-edge collapse), cheapest first. The cost of moving a vertex is the sum of the squared
+ * distances from its new position to the planes of all original triangles merged into it, after
+ * Garland and Heckbert, plus the weighted squared difference of its texture coordinates and
+ * normals from those of the target vertex. Since vertices never move to new positions, the
+ * remaining vertices keep their exact attributes.
+ *
+ * <p>Vertices on open boundaries and on attribute seams, i.e. positions shared by several
+ * vertices with different texture coordinates or normals, are never moved, which keeps outlines
+ * and UV islands intact. Collapses that would flip a triangle are rejected.
+ *
+ * @see <a href="https://www.cs.cmu.edu/~./garland/Papers/quadrics.pdf">Surface Simplification
+ * Using Quadric Error Metrics</a>
+ */
+public final class MeshSimplifier {
+    /**
+     * Weight of squared texture coordinate and normal differences relative to squared distances
+     * in mesh units. A texture coordinate difference of 0.1 costs as much as a distance of 0.01.
+     */
+    static final float ATTRIBUTE_WEIGHT = 0.01f;
+
+    private static final int QUADRIC_SIZE = 10;
+    private static final double MIN_FLIP_COSINE = 1e-3;
+
+    private MeshSimplifier() {
+    }
+
+    /**
+     * Returns a simplified copy of the given {@link MeshData}.
+     *
+     * <p>Simplification stops once at most {@code targetTriangleCount} triangles remain, or when
+     * every remaining collapse would cost more than {@code maxError} squared. Since the cost sums
+     * squared plane distances, no vertex moves further than {@code maxError} from the plane of any
+     * original triangle it was merged with. Unreferenced vertices are removed.
+     *
+     * @param meshData            The mesh to simplify.
+     * @param targetTriangleCount The number of triangles to reduce the mesh to.
+     * @param maxError            The largest allowed error in mesh units.
+     */
+    public static MeshData simplify(MeshData meshData, int targetTriangleCount, float maxError) {
+        int vertexCount = meshData.getVertexCount();
+        int[] indices = new int[meshData.getIndexCount()];
+        meshData.getIndices().duplicate().get(indices);
+        float[] positions = toArray(meshData.getPositions());
+        float[] texCoords = toArray(meshData.getTexCoords());
+        float[] normals = toArray(meshData.getNormals());
+        double maxCost = (double) maxError * maxError;
+
+        int[] positionVertex = weldPositions(positions, vertexCount);
+        boolean[] isLocked = findLockedVertices(indices, positionVertex, vertexCount);
+        double[] quadrics = computeQuadrics(indices, positions, positionVertex, vertexCount);
+        int indexCount = indices.length;
+
+        while (indexCount / 3 > targetTriangleCount) {
+            int collapses = collapseEdges(indices, indexCount, vertexCount, positions, texCoords,
+                    normals, positionVertex, isLocked, quadrics, maxCost,
+                    indexCount / 3 - targetTriangleCount);
+            indexCount = removeDegenerateTriangles(indices, indexCount);
+
+            if (collapses == 0) {
+                break;
+            }
+        }
+
+        return meshData.compact(Arrays.copyOf(indices, indexCount));
+    }
+
+    /**
+     * Builds a chain of levels of detail by simplifying each level from the previous one.
+     *
+     * @param meshData       The full detail mesh, which becomes level 0.
+     * @param triangleRatios The triangle count of each further level relative to level 0, in
+     *                       decreasing order.
+     * @param maxErrors      The largest allowed error of each further level relative to the
+     *                       previous one, see {@link #simplify}.
+     * @return The levels, starting with {@code meshData}. Simplification stops at the first level
+     * which would not have at least 10% fewer triangles than the previous one.
+     */
+    public static List<MeshData> buildLodChain(MeshData meshData, float[] triangleRatios,
+                                               float[] maxErrors) {
+        if (maxErrors.length != triangleRatios.length) {
+            throw new IllegalArgumentException("Every level needs a triangle ratio and an error");
+        }
+
+        List<MeshData> levels = new ArrayList<>();
+        levels.add(meshData);
+        int triangleCount = meshData.getIndexCount() / 3;
+
+        for (int i = 0; i < triangleRatios.length; ++i) {
+            MeshData previous = levels.get(levels.size() - 1);
+            MeshData level = simplify(previous, (int) (triangleCount * triangleRatios[i]),
+                    maxErrors[i]);
+
+            if (level.getIndexCount() > previous.getIndexCount() * 9 / 10) {
+                break;
+            }
+
+            levels.add(level);
+        }
+
+        return levels;
+    }
+
+    /**
+     * Returns, for every vertex, the first vertex with the bitwise same position.
+     */
+    static int[] weldPositions(float[] positions, int vertexCount) {
+        int[] positionVertex = new int[vertexCount];
+        HashMap<PositionKey, Integer> firstVertices = new HashMap<>();
+
+        for (int v = 0; v < vertexCount; ++v) {
+            PositionKey key = new PositionKey(positions, v);
+            Integer first = firstVertices.get(key);
+
+            if (first == null) {
+                firstVertices.put(key, v);
+                first = v;
+            }
+
+            positionVertex[v] = first;
+        }
+
+        return positionVertex;
+    }
+
+    /**
+     * Locks vertices whose position is shared by several vertices (attribute seams) or lies on an
+     * edge used by a single triangle (open boundaries).
+     */
+    private static boolean[] findLockedVertices(int[] indices, int[] positionVertex,
+                                                int vertexCount) {
+        int[] wedgeCounts = new int[vertexCount];
+
+        for (int v = 0; v < vertexCount; ++v) {
+            ++wedgeCounts[positionVertex[v]];
+        }
+
+        // Counts undirected edges between positions; an edge seen once is an open boundary.
+        HashMap<Long, Integer> edgeCounts = new HashMap<>();
+
+        for (int i = 0; i < indices.length; i += 3) {
+            for (int e = 0; e < 3; ++e) {
+                int a = positionVertex[indices[i + e]];
+                int b = positionVertex[indices[i + (e + 1) % 3]];
+                edgeCounts.merge(edgeKey(a, b), 1, Integer::sum);
+            }
+        }
+
+        boolean[] isLockedPosition = new boolean[vertexCount];
+
+        for (HashMap.Entry<Long, Integer> entry : edgeCounts.entrySet()) {
+            if (entry.getValue() == 1) {
+                isLockedPosition[(int) (entry.getKey() >>> 32)] = true;
+                isLockedPosition[(int) (long) entry.getKey()] = true;
+            }
+        }
+
+        boolean[] isLocked = new boolean[vertexCount];
+
+        for (int v = 0; v < vertexCount; ++v) {
+            int p = positionVertex[v];
+            isLocked[v] = isLockedPosition[p] || wedgeCounts[p] > 1;
+        }
+
+        return isLocked;
+    }
+
+    /**
+     * Sums the plane quadric of every triangle into its corners' positions. Quadrics are not
+     * weighted by area, so that their value bounds the distance to each plane.
+     */
+    private static double[] computeQuadrics(int[] indices, float[] positions,
+                                            int[] positionVertex, int vertexCount) {
+        double[] quadrics = new double[vertexCount * QUADRIC_SIZE];
+        double[] plane = new double[4];
+
+        for (int i = 0; i < indices.length; i += 3) {
+            if (!computePlane(positions, indices[i], indices[i + 1], indices[i + 2], plane)) {
+                continue;
+            }
+
+            for (int c = 0; c < 3; ++c) {
+                addPlane(quadrics, positionVertex[indices[i + c]] * QUADRIC_SIZE, plane);
+            }
+        }
+
+        return quadrics;
+    }
+
+    /**
+     * Performs one pass of the cheapest independent edge collapses: each vertex takes part in at
+     * most one collapse per pass, since collapses change the cost of the neighboring ones.
+     *
+     * @return The number of collapses performed.
+     */
+    private static int collapseEdges(int[] indices, int indexCount, int vertexCount,
+                                     float[] positions, float[] texCoords, float[] normals,
+                                     int[] positionVertex, boolean[] isLocked, double[] quadrics,
+                                     double maxCost, int trianglesToRemove) {
+        int triangleCount = indexCount / 3;
+
+        // Triangles adjacent to each vertex, in compressed row storage.
+        int[] adjacencyOffsets = new int[vertexCount + 1];
+
+        for (int i = 0; i < indexCount; ++i) {
+            ++adjacencyOffsets[indices[i] + 1];
+        }
+
+        for (int v = 0; v < vertexCount; ++v) {
+            adjacencyOffsets[v + 1] += adjacencyOffsets[v];
+        }
+
+        int[] adjacentTriangles = new int[indexCount];
+        int[] fill = Arrays.copyOf(adjacencyOffsets, vertexCount);
+
+        for (int i = 0; i < indexCount; ++i) {
+            adjacentTriangles[fill[indices[i]]++] = i / 3;
+        }
+
+        // Candidate collapses of each directed edge u -> v, sorted by cost. The cost bits of a
+        // non-negative float sort like the float, so cost and candidate share one long key.
+        int[] sources = new int[indexCount];
+        int[] targets = new int[indexCount];
+        long[] keys = new long[indexCount];
+        int candidateCount = 0;
+
+        for (int t = 0; t < triangleCount; ++t) {
+            for (int e = 0; e < 3; ++e) {
+                int u = indices[t * 3 + e];
+                int v = indices[t * 3 + (e + 1) % 3];
+
+                if (isLocked[u] || u == v) {
+                    continue;
+                }
+
+                double cost = computeCost(quadrics, positionVertex[u] * QUADRIC_SIZE, positions,
+                        v) + ATTRIBUTE_WEIGHT * computeAttributeDistance(texCoords, normals, u, v);
+
+                if (cost <= maxCost) {
+                    sources[candidateCount] = u;
+                    targets[candidateCount] = v;
+                    keys[candidateCount] = (long) Float.floatToIntBits((float) cost) << 32
+                            | candidateCount;
+                    ++candidateCount;
+                }
+            }
+        }
+
+        Arrays.sort(keys, 0, candidateCount);
+        boolean[] isDirty = new boolean[vertexCount];
+        int collapses = 0;
+        int removedTriangles = 0;
+
+        for (int k = 0; k < candidateCount && removedTriangles < trianglesToRemove; ++k) {
+            int candidate = (int) keys[k];
+            int u = sources[candidate];
+            int v = targets[candidate];
+
+            if (isDirty[u] || isDirty[v]
+                    || flipsTriangle(indices, positions, adjacentTriangles,
+                    adjacencyOffsets[u], adjacencyOffsets[u + 1], u, v)) {
+                continue;
+            }
+
+            for (int a = adjacencyOffsets[u]; a < adjacencyOffsets[u + 1]; ++a) {
+                int t = adjacentTriangles[a] * 3;
+
+                for (int c = 0; c < 3; ++c) {
+                    isDirty[indices[t + c]] = true;
+                }
+
+                if (indices[t] == v || indices[t + 1] == v || indices[t + 2] == v) {
+                    ++removedTriangles;
+                }
+
+                for (int c = 0; c < 3; ++c) {
+                    if (indices[t + c] == u) {
+                        indices[t + c] = v;
+                    }
+                }
+            }
+
+            int target = positionVertex[v] * QUADRIC_SIZE;
+            int source = positionVertex[u] * QUADRIC_SIZE;
+
+            for (int q = 0; q < QUADRIC_SIZE; ++q) {
+                quadrics[target + q] += quadrics[source + q];
+            }
+
+            isDirty[u] = true;
+            isDirty[v] = true;
+            ++collapses;
+        }
+
+        return collapses;
+    }
+
+    /**
+     * Returns whether moving {@code u} onto {@code v} turns any remaining triangle of {@code u}
+     * upside down or degenerates it.
+     */
+    private static boolean flipsTriangle(int[] indices, float[] positions,
+                                         int[] adjacentTriangles, int begin, int end, int u,
+                                         int v) {
+        double[] before = new double[4];
+        double[] after = new double[4];
+
+        for (int a = begin; a < end; ++a) {
+            int t = adjacentTriangles[a] * 3;
+            int i0 = indices[t];
+            int i1 = indices[t + 1];
+            int i2 = indices[t + 2];
+
+            if (i0 == v || i1 == v || i2 == v || (i0 != u && i1 != u && i2 != u)) {
+                continue;
+            }
+
+            if (!computePlane(positions, i0, i1, i2, before)) {
+                continue;
+            }
+
+            if (!computePlane(positions, i0 == u ? v : i0, i1 == u ? v : i1, i2 == u ? v : i2,
+                    after)) {
+                return true;
+            }
+
+            if (before[0] * after[0] + before[1] * after[1] + before[2] * after[2]
+                    < MIN_FLIP_COSINE) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static int removeDegenerateTriangles(int[] indices, int indexCount) {
+        int kept = 0;
+
+        for (int i = 0; i < indexCount; i += 3) {
+            int a = indices[i];
+            int b = indices[i + 1];
+            int c = indices[i + 2];
+
+            if (a != b && b != c && c != a) {
+                indices[kept++] = a;
+                indices[kept++] = b;
+                indices[kept++] = c;
+            }
+        }
+
+        return kept;
+    }
+
+    /**
+     * Computes the unit normal (xyz) and offset (w) of a triangle's plane, or returns false if
+     * the triangle has no area.
+     */
+    private static boolean computePlane(float[] positions, int a, int b, int c, double[] plane) {
+        double abX = positions[b * 3] - positions[a * 3];
+        double abY = positions[b * 3 + 1] - positions[a * 3 + 1];
+        double abZ = positions[b * 3 + 2] - positions[a * 3 + 2];
+        double acX = positions[c * 3] - positions[a * 3];
+        double acY = positions[c * 3 + 1] - positions[a * 3 + 1];
+        double acZ = positions[c * 3 + 2] - positions[a * 3 + 2];
+        double x = abY * acZ - abZ * acY;
+        double y = abZ * acX - abX * acZ;
+        double z = abX * acY - abY * acX;
+        double length = Math.sqrt(x * x + y * y + z * z);
+
+        if (length == 0) {
+            return false;
+        }
+
+        plane[0] = x / length;
+        plane[1] = y / length;
+        plane[2] = z / length;
+        plane[3] = -(plane[0] * positions[a * 3] + plane[1] * positions[a * 3 + 1]
+                + plane[2] * positions[a * 3 + 2]);
+        return true;
+    }
+
+    /**
+     * Adds the quadric of a plane, the symmetric 4x4 matrix p * p^T stored as its upper triangle.
+     */
+    private static void addPlane(double[] quadrics, int offset, double[] plane) {
+        int q = offset;
+
+        for (int row = 0; row < 4; ++row) {
+            for (int column = row; column < 4; ++column) {
+                quadrics[q++] += plane[row] * plane[column];
+            }
+        }
+    }
+
+    /**
+     * Evaluates v^T * Q * v for the homogeneous position of vertex {@code v}, the sum of the
+     * squared distances of the position to the quadric's planes.
+     */
+    private static double computeCost(double[] quadrics, int offset, float[] positions, int v) {
+        double[] p = {positions[v * 3], positions[v * 3 + 1], positions[v * 3 + 2], 1};
+        double cost = 0;
+        int q = offset;
+
+        for (int row = 0; row < 4; ++row) {
+            for (int column = row; column < 4; ++column) {
+                double term = quadrics[q++] * p[row] * p[column];
+                cost += row == column ? term : 2 * term;
+            }
+        }
+
+        return Math.max(0, cost);
+    }
+
+    private static double computeAttributeDistance(float[] texCoords, float[] normals, int u,
+                                                   int v) {
+        double distance = 0;
+
+        for (int c = 0; c < MeshData.TEX_COORD_COMPONENTS; ++c) {
+            double d = texCoords[u * MeshData.TEX_COORD_COMPONENTS + c]
+                    - texCoords[v * MeshData.TEX_COORD_COMPONENTS + c];
+            distance += d * d;
+        }
+
+        for (int c = 0; c < MeshData.NORMAL_COMPONENTS; ++c) {
+            double d = normals[u * MeshData.NORMAL_COMPONENTS + c]
+                    - normals[v * MeshData.NORMAL_COMPONENTS + c];
+            distance += d * d;
+        }
+
+        return distance;
+    }
+
+    private static float[] toArray(FloatBuffer buffer) {
+        float[] array = new float[buffer.limit()];
+        buffer.duplicate().get(array);
+        return array;
+    }
+
+    private static long edgeKey(int a, int b) {
+        return (long) Math.min(a, b) << 32 | Math.max(a, b);
+    }
+
+    private static final class PositionKey {
+        private final float X;
+        private final float Y;
+        private final float Z;
+
+        PositionKey(float[] positions, int vertex) {
+            this.X = positions[vertex * 3];
+            this.Y = positions[vertex * 3 + 1];
+            this.Z = positions[vertex * 3 + 2];
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof PositionKey)) {
+                return false;
+            }
+
+            PositionKey key = (PositionKey) other;
+            return Float.floatToIntBits(X) == Float.floatToIntBits(key.X)
+                    && Float.floatToIntBits(Y) == Float.floatToIntBits(key.Y)
+                    && Float.floatToIntBits(Z) == Float.floatToIntBits(key.Z);
+        }
+
+        @Override
+        public int hashCode() {
+            return (Float.floatToIntBits(X) * 31 + Float.floatToIntBits(Y)) * 31
+                    + Float.floatToIntBits(Z);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.fountainar.rendering;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Generates the mip chain of an RGBA8 image offline, so that textures can ship their levels
+ * instead of relying on {@code glGenerateMipmap} and its driver-dependent quality, see {@link
+ * TextureConverter}.
+ *
+ * <p>Each level is filtered from the one before it at full float precision and only rounded to
+ * 8 bits on output. Color textures are filtered in linear light: their sRGB-encoded color
+ * channels are decoded first and encoded again afterwards, which keeps mips of fine detail from
+ * getting darker. Alpha, and all channels of textures holding data rather than colors, are
+ * filtered as they are. Pixels outside the image repeat the nearest edge pixel.
+ */
+public final class MipChainGenerator {
+    /**
+     * The downsampling filter.
+     */
+    public enum Filter {
+        /**
+         * Averages 2x2 pixels: fast and free of ringing, but lets fine detail alias.
+         */
+        BOX,
+        /**
+         * A Kaiser-windowed sinc, which keeps mips sharper and suppresses aliasing, at the cost
+         * of slight ringing around hard edges.
+         */
+        KAISER
+    }
+
+    /**
+     * The reach of the Kaiser filter on either side, in pixels of the smaller level.
+     */
+    private static final float KAISER_RADIUS = 3f;
+    /**
+     * The shape parameter of the Kaiser window: larger values trade sharpness for less ringing.
+     */
+    private static final double KAISER_BETA = 4.0;
+    private static final int CHANNELS = 4;
+    private static final float[] SRGB_TO_LINEAR = new float[256];
+
+    static {
+        for (int i = 0; i < SRGB_TO_LINEAR.length; ++i) {
+            SRGB_TO_LINEAR[i] = srgbToLinear(i / 255f);
+        }
+    }
+
+    private MipChainGenerator() {
+    }
+
+    /**
+     * Generates all levels down to 1x1.
+     *
+     * @param pixels Tightly packed RGBA8 pixels of the full size level, starting at the position
+     *               of the buffer.
+     * @param isSrgb Whether the color channels are sRGB-encoded and are filtered in linear light.
+     * @return The levels in direct buffers, the first being a copy of {@code pixels}.
+     */
+    public static ByteBuffer[] generate(ByteBuffer pixels, int width, int height, boolean isSrgb,
+                                        Filter filter) {
+        ByteBuffer[] levels = new ByteBuffer[getLevelCount(width, height)];
+        float[] image = decode(pixels, width * height, isSrgb);
+        levels[0] = ByteBuffer.allocateDirect(width * height * CHANNELS);
+        levels[0].put(pixels.duplicate()).rewind();
+
+        for (int level = 1; level < levels.length; ++level) {
+            int nextWidth = TextureData.getLevelSize(width, 1);
+            int nextHeight = TextureData.getLevelSize(height, 1);
+
+            if (filter == Filter.BOX) {
+                image = downsampleBox(image, width, height, nextWidth, nextHeight);
+            } else {
+                image = downsampleKaiser(image, width, height, nextWidth, height, true);
+                image = downsampleKaiser(image, nextWidth, height, nextWidth, nextHeight, false);
+            }
+
+            width = nextWidth;
+            height = nextHeight;
+            levels[level] = encode(image, isSrgb);
+        }
+
+        return levels;
+    }
+
+    /**
+     * Returns the number of levels of a full mip chain.
+     */
+    public static int getLevelCount(int width, int height) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(width, height));
+    }
+
+    private static float[] decode(ByteBuffer pixels, int pixelCount, boolean isSrgb) {
+        float[] image = new float[pixelCount * CHANNELS];
+        int base = pixels.position();
+
+        for (int i = 0; i < image.length; ++i) {
+            int value = pixels.get(base + i) & 0xFF;
+            image[i] = isSrgb && i % CHANNELS != 3 ? SRGB_TO_LINEAR[value] : value / 255f;
+        }
+
+        return image;
+    }
+
+    private static ByteBuffer encode(float[] image, boolean isSrgb) {
+        ByteBuffer pixels = ByteBuffer.allocateDirect(image.length);
+
+        for (int i = 0; i < image.length; ++i) {
+            float value = Math.max(0f, Math.min(1f, image[i]));
+
+            if (isSrgb && i % CHANNELS != 3) {
+                value = linearToSrgb(value);
+            }
+
+            pixels.put((byte) Math.round(value * 255f));
+        }
+
+        pixels.rewind();
+        return pixels;
+    }
+
+    /**
+     * Averages 2x2 pixels. An edge of odd length loses its last pixel, and an edge of length 1 is
+     * averaged with itself.
+     */
+    private static float[] downsampleBox(float[] image, int width, int height, int nextWidth,
+                                         int nextHeight) {
+        float[] next = new float[nextWidth * nextHeight * CHANNELS];
+
+        for (int y = 0; y < nextHeight; ++y) {
+            int y0 = Math.min(2 * y, height - 1);
+            int y1 = Math.min(2 * y + 1, height - 1);
+
+            for (int x = 0; x < nextWidth; ++x) {
+                int x0 = Math.min(2 * x, width - 1);
+                int x1 = Math.min(2 * x + 1, width - 1);
+
+                for (int channel = 0; channel < CHANNELS; ++channel) {
+                    next[(y * nextWidth + x) * CHANNELS + channel] = 0.25f
+                            * (image[(y0 * width + x0) * CHANNELS + channel]
+                            + image[(y0 * width + x1) * CHANNELS + channel]
+                            + image[(y1 * width + x0) * CHANNELS + channel]
+                            + image[(y1 * width + x1) * CHANNELS + channel]);
+                }
+            }
+        }
+
+        return next;
+    }
+
+    /**
+     * Halves the image along one axis with the Kaiser-windowed sinc, so that the two passes make
+     * up a separable 2D filter. An axis of length 1 is copied.
+     */
+    private static float[] downsampleKaiser(float[] image, int width, int height, int nextWidth,
+                                            int nextHeight, boolean isHorizontal) {
+        int size = isHorizontal ? width : height;
+        int nextSize = isHorizontal ? nextWidth : nextHeight;
+
+        if (size == nextSize) {
+            return image.clone();
+        }
+
+        // Weights of the source pixels around the center of each target pixel, which lies
+        // between source pixels 2i and 2i + 1.
+        int taps = 2 * (int) Math.ceil(2 * KAISER_RADIUS);
+        float[] weights = new float[taps];
+        float weightSum = 0;
+
+        for (int tap = 0; tap < taps; ++tap) {
+            // Distance of the source pixel from the target pixel's center, in target pixels.
+            float distance = (tap - taps / 2 + 0.5f) / 2f;
+            weights[tap] = (float) (sinc(distance) * kaiser(distance / KAISER_RADIUS));
+            weightSum += weights[tap];
+        }
+
+        for (int tap = 0; tap < taps; ++tap) {
+            weights[tap] /= weightSum;
+        }
+
+        float[] next = new float[nextWidth * nextHeight * CHANNELS];
+        int lines = isHorizontal ? height : width;
+
+        for (int line = 0; line < lines; ++line) {
+            for (int i = 0; i < nextSize; ++i) {
+                for (int tap = 0; tap < taps; ++tap) {
+                    int source = Math.max(0, Math.min(size - 1, 2 * i + tap - taps / 2 + 1));
+                    int from = isHorizontal ? line * width + source : source * width + line;
+                    int to = isHorizontal ? line * nextWidth + i : i * nextWidth + line;
+
+                    for (int channel = 0; channel < CHANNELS; ++channel) {
+                        next[to * CHANNELS + channel] +=
+                                weights[tap] * image[from * CHANNELS + channel];
+                    }
+                }
+            }
+        }
+
+        return next;
+    }
+
+    private static double sinc(double x) {
+        if (x == 0) {
+            return 1;
+        }
+
+        return Math.sin(Math.PI * x) / (Math.PI * x);
+    }
+
+    /**
+     * Returns the Kaiser window at the given position, from -1 to 1 across the window.
+     */
+    private static double kaiser(double x) {
+        if (Math.abs(x) >= 1) {
+            return 0;
+        }
+
+        return besselI0(KAISER_BETA * Math.sqrt(1 - x * x)) / besselI0(KAISER_BETA);
+    }
+
+    /**
+     * Returns the modified Bessel function of the first kind of order 0, by its power series.
+     */
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        double quarterSquare = x * x / 4;
+
+        for (int k = 1; term > sum * 1e-12; ++k) {
+            term *= quarterSquare / (k * k);
+            sum += term;
+        }
+
+        return sum;
+    }
+
+    static float srgbToLinear(float value) {
+        return value <= 0.04045f ? value / 12.92f
+                : (float) Math.pow((value + 0.055f) / 1.055f, 2.4f);
+    }
+
+    static float linearToSrgb(float value) {
+        return value <= 0.0031308f ? value * 12.92f
+                : 1.055f * (float) Math.pow(value, 1 / 2.4f) - 0.055f;
+    }
+}
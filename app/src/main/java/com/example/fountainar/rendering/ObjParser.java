@@ -0,0 +1,706 @@
+package com.example.fountainar.rendering;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Streaming Wavefront OBJ parser which produces renderable {@link MeshData}.
+ *
+ * <p>The text is tokenized directly from bytes, without creating {@link String}s, and every
+ * distinct position/texture coordinate/normal triplet referenced by a face becomes one vertex.
+ * Triplets are deduplicated through a primitive hash map and written straight into growing direct
+ * buffers. Faces with more than three corners are triangulated as fans. Only {@code v}, {@code
+ * vt}, {@code vn} and {@code f} records are read; missing texture coordinates and normals are
+ * zero.
+ *
+ * <p>Large files are split at line boundaries into chunks whose records are parsed in parallel
+ * on the common {@link ForkJoinPool}. Faces are then resolved, deduplicated and triangulated
+ * sequentially in file order, so the result is identical to a sequential parse.
+ *
+ * <p>The result matches {@code ObjUtils.convertToRenderable} of the javagl OBJ library triangle
+ * for triangle, but is typically several times faster to produce.
+ */
+public final class ObjParser {
+    // Relative (negative) face indices are stored offset by this base until the chunk offset is
+    // known, see Chunk#encodeIndex.
+    private static final int RELATIVE_BASE = Integer.MIN_VALUE / 2;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final int MAX_MANTISSA_DIGITS = 18;
+    private static final int MIN_CHUNK_SIZE = 256 * 1024;
+
+    private ObjParser() {
+    }
+
+    /**
+     * Reads an OBJ file completely and parses it.
+     *
+     * @param inputStream The stream of the OBJ file. It is not closed by this method.
+     * @return The parsed mesh data.
+     * @throws IOException If the stream could not be read or is not a valid OBJ file.
+     */
+    public static MeshData parse(InputStream inputStream) throws IOException {
+        byte[] bytes = new byte[64 * 1024];
+        int length = 0;
+        int read;
+
+        while ((read = inputStream.read(bytes, length, bytes.length - length)) != -1) {
+            length += read;
+
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+        }
+
+        return parse(ByteBuffer.wrap(bytes, 0, length));
+    }
+
+    /**
+     * Parses the OBJ text between the position and the limit of the given buffer, e.g. a
+     * memory-mapped asset. The buffer's position is not changed.
+     *
+     * @param objText The OBJ file contents.
+     * @return The parsed mesh data.
+     * @throws IOException If the text is not a valid OBJ file.
+     */
+    public static MeshData parse(ByteBuffer objText) throws IOException {
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        int length = objText.remaining();
+        return parse(objText, Math.max(MIN_CHUNK_SIZE, (length + parallelism - 1) / parallelism));
+    }
+
+    /**
+     * Parses the OBJ text in chunks of about {@code chunkSize} bytes, in parallel if there is
+     * more than one.
+     */
+    static MeshData parse(ByteBuffer objText, int chunkSize) throws IOException {
+        List<Chunk> chunks = split(objText, chunkSize);
+
+        if (chunks.size() == 1) {
+            chunks.get(0).parse();
+        } else {
+            List<ParseTask> tasks = new ArrayList<>(chunks.size());
+
+            for (Chunk chunk : chunks) {
+                tasks.add(new ParseTask(chunk));
+            }
+
+            ForkJoinTask.invokeAll(tasks);
+
+            for (ParseTask task : tasks) {
+                if (task.failure != null) {
+                    throw task.failure;
+                }
+            }
+        }
+
+        return assemble(chunks);
+    }
+
+    /**
+     * Splits the text into chunks of at least {@code chunkSize} bytes which end after a line
+     * break, or at the end of the text.
+     */
+    private static List<Chunk> split(ByteBuffer objText, int chunkSize) {
+        List<Chunk> chunks = new ArrayList<>();
+        int start = objText.position();
+        int end = objText.limit();
+
+        while (start < end || chunks.isEmpty()) {
+            int chunkEnd = start + Math.min(Math.max(1, chunkSize), end - start);
+
+            while (chunkEnd < end && objText.get(chunkEnd - 1) != '\n') {
+                ++chunkEnd;
+            }
+
+            chunks.add(new Chunk(objText, start, chunkEnd));
+            start = chunkEnd;
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Resolves the face indices of consecutive chunks of one file, deduplicates the referenced
+     * vertices and triangulates the faces.
+     */
+    static MeshData assemble(List<Chunk> chunks) throws IOException {
+        int positionCount = 0;
+        int texCoordCount = 0;
+        int normalCount = 0;
+        int cornerCount = 0;
+        int triangleIndexCount = 0;
+
+        for (Chunk chunk : chunks) {
+            positionCount += chunk.POSITIONS.size / 3;
+            texCoordCount += chunk.TEX_COORDS.size / 2;
+            normalCount += chunk.NORMALS.size / 3;
+            cornerCount += chunk.CORNERS.size / 3;
+            triangleIndexCount += chunk.triangleIndexCount;
+        }
+
+        float[] positions = new float[positionCount * 3];
+        float[] texCoords = new float[texCoordCount * 2];
+        float[] normals = new float[normalCount * 3];
+        int positionOffset = 0;
+        int texCoordOffset = 0;
+        int normalOffset = 0;
+
+        for (Chunk chunk : chunks) {
+            System.arraycopy(chunk.POSITIONS.values, 0, positions, positionOffset * 3,
+                    chunk.POSITIONS.size);
+            System.arraycopy(chunk.TEX_COORDS.values, 0, texCoords, texCoordOffset * 2,
+                    chunk.TEX_COORDS.size);
+            System.arraycopy(chunk.NORMALS.values, 0, normals, normalOffset * 3,
+                    chunk.NORMALS.size);
+            positionOffset += chunk.POSITIONS.size / 3;
+            texCoordOffset += chunk.TEX_COORDS.size / 2;
+            normalOffset += chunk.NORMALS.size / 3;
+        }
+
+        VertexMap vertexMap = new VertexMap(Math.max(positionCount, cornerCount / 4));
+        DirectFloats outPositions = new DirectFloats(positionCount * 3);
+        DirectFloats outTexCoords = new DirectFloats(positionCount * 2);
+        DirectFloats outNormals = new DirectFloats(positionCount * 3);
+        IntBuffer indices = MeshData.allocateInts(triangleIndexCount);
+        int[] faceVertices = new int[16];
+        int indexCount = 0;
+        positionOffset = 0;
+        texCoordOffset = 0;
+        normalOffset = 0;
+
+        for (Chunk chunk : chunks) {
+            int corner = 0;
+
+            for (int face = 0; face < chunk.FACE_SIZES.size; ++face) {
+                int faceSize = chunk.FACE_SIZES.values[face];
+
+                if (faceVertices.length < faceSize) {
+                    faceVertices = new int[faceSize];
+                }
+
+                for (int i = 0; i < faceSize; ++i, ++corner) {
+                    int position = resolveIndex(chunk.CORNERS.values[corner * 3],
+                            positionOffset, positionCount, "position");
+                    int texCoord = resolveIndex(chunk.CORNERS.values[corner * 3 + 1],
+                            texCoordOffset, texCoordCount, "texture coordinate");
+                    int normal = resolveIndex(chunk.CORNERS.values[corner * 3 + 2],
+                            normalOffset, normalCount, "normal");
+                    int vertex = vertexMap.get(position, texCoord, normal);
+
+                    if (vertex < 0) {
+                        vertex = vertexMap.put(position, texCoord, normal);
+                        outPositions.add(positions, position, 3);
+                        outTexCoords.add(texCoords, texCoord, 2);
+                        outNormals.add(normals, normal, 3);
+                    }
+
+                    faceVertices[i] = vertex;
+                }
+
+                for (int i = 1; i < faceSize - 1; ++i) {
+                    indices.put(indexCount++, faceVertices[0]);
+                    indices.put(indexCount++, faceVertices[i]);
+                    indices.put(indexCount++, faceVertices[i + 1]);
+                }
+            }
+
+            positionOffset += chunk.POSITIONS.size / 3;
+            texCoordOffset += chunk.TEX_COORDS.size / 2;
+            normalOffset += chunk.NORMALS.size / 3;
+        }
+
+        return new MeshData(outPositions.finish(), outTexCoords.finish(), outNormals.finish(),
+                indices);
+    }
+
+    /**
+     * Converts an index stored by {@link Chunk#encodeIndex} into a 0-based index into all
+     * elements of the file, or -1 if it was absent.
+     */
+    private static int resolveIndex(int storedIndex, int chunkOffset, int count, String element)
+            throws IOException {
+        int index;
+
+        if (storedIndex > 0) {
+            index = storedIndex - 1;
+        } else if (storedIndex == 0) {
+            return -1;
+        } else {
+            index = chunkOffset + (storedIndex - RELATIVE_BASE);
+        }
+
+        if (index < 0 || index >= count) {
+            throw new IOException("OBJ face refers to missing " + element + " " + (index + 1));
+        }
+
+        return index;
+    }
+
+    private static final class ParseTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Chunk CHUNK;
+        private IOException failure;
+
+        ParseTask(Chunk chunk) {
+            this.CHUNK = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                CHUNK.parse();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * The records of a range of complete lines of an OBJ file, with face indices as written in the
+     * file.
+     */
+    static final class Chunk {
+        private final ByteBuffer TEXT;
+        private final int END;
+        private final FloatArray POSITIONS = new FloatArray();
+        private final FloatArray TEX_COORDS = new FloatArray();
+        private final FloatArray NORMALS = new FloatArray();
+        private final IntArray CORNERS = new IntArray();
+        private final IntArray FACE_SIZES = new IntArray();
+        private int triangleIndexCount;
+        private int position;
+
+        /**
+         * @param text  The OBJ file contents.
+         * @param start The offset of the first byte of the chunk, at the start of a line.
+         * @param end   The offset after the last byte of the chunk, at the end of a line.
+         */
+        Chunk(ByteBuffer text, int start, int end) {
+            this.TEXT = text;
+            this.position = start;
+            this.END = end;
+        }
+
+        void parse() throws IOException {
+            while (position < END) {
+                skipBlanks();
+
+                if (position >= END) {
+                    break;
+                }
+
+                byte first = TEXT.get(position);
+                byte second = position + 1 < END ? TEXT.get(position + 1) : (byte) '\n';
+
+                if (first == 'v' && isBlank(second)) {
+                    ++position;
+                    POSITIONS.add(parseFloat());
+                    POSITIONS.add(parseFloat());
+                    POSITIONS.add(parseFloat());
+                } else if (first == 'v' && second == 't' && hasBlankAt(position + 2)) {
+                    position += 2;
+                    TEX_COORDS.add(parseFloat());
+                    // The second and third components are optional.
+                    TEX_COORDS.add(isAtLineEnd() ? 0f : parseFloat());
+                } else if (first == 'v' && second == 'n' && hasBlankAt(position + 2)) {
+                    position += 2;
+                    NORMALS.add(parseFloat());
+                    NORMALS.add(parseFloat());
+                    NORMALS.add(parseFloat());
+                } else if (first == 'f' && isBlank(second)) {
+                    ++position;
+                    parseFace();
+                }
+
+                skipLine();
+            }
+        }
+
+        private void parseFace() throws IOException {
+            int faceStart = position;
+            int faceSize = 0;
+
+            while (!isAtLineEnd()) {
+                CORNERS.add(encodeIndex(parseInt(), POSITIONS.size / 3));
+                int texCoord = 0;
+                int normal = 0;
+
+                if (position < END && TEXT.get(position) == '/') {
+                    ++position;
+
+                    if (position < END && TEXT.get(position) != '/') {
+                        texCoord = encodeIndex(parseInt(), TEX_COORDS.size / 2);
+                    }
+
+                    if (position < END && TEXT.get(position) == '/') {
+                        ++position;
+                        normal = encodeIndex(parseInt(), NORMALS.size / 3);
+                    }
+                }
+
+                CORNERS.add(texCoord);
+                CORNERS.add(normal);
+                ++faceSize;
+            }
+
+            if (faceSize < 3) {
+                throw new IOException("OBJ face at offset " + faceStart
+                        + " has fewer than 3 vertices");
+            }
+
+            FACE_SIZES.add(faceSize);
+            triangleIndexCount += (faceSize - 2) * 3;
+        }
+
+        /**
+         * Encodes a 1-based face index for {@link #resolveIndex}. Absolute indices are kept,
+         * relative ones are made relative to the start of the chunk.
+         */
+        private int encodeIndex(int index, int countInChunk) throws IOException {
+            if (index == 0) {
+                throw new IOException("Invalid OBJ face index 0 at offset " + position);
+            }
+
+            return index > 0 ? index : RELATIVE_BASE + countInChunk + index;
+        }
+
+        private int parseInt() throws IOException {
+            int start = position;
+            boolean negative = false;
+
+            if (position < END && (TEXT.get(position) == '-' || TEXT.get(position) == '+')) {
+                negative = TEXT.get(position) == '-';
+                ++position;
+            }
+
+            long value = 0;
+            int digitsStart = position;
+
+            while (position < END && isDigit(TEXT.get(position))) {
+                value = value * 10 + (TEXT.get(position) - '0');
+                ++position;
+
+                if (value > Integer.MAX_VALUE / 2) {
+                    throw new IOException("OBJ index out of range at offset " + start);
+                }
+            }
+
+            if (position == digitsStart) {
+                throw new IOException("Invalid OBJ index at offset " + start);
+            }
+
+            return (int) (negative ? -value : value);
+        }
+
+        /**
+         * Parses a decimal number without allocating. Numbers which cannot be converted exactly
+         * with a single double operation fall back to {@link Float#parseFloat}, so the result is
+         * always the correctly rounded float.
+         */
+        private float parseFloat() throws IOException {
+            skipBlanks();
+            int start = position;
+            boolean negative = false;
+
+            if (position < END && (TEXT.get(position) == '-' || TEXT.get(position) == '+')) {
+                negative = TEXT.get(position) == '-';
+                ++position;
+            }
+
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean exact = true;
+            boolean anyDigit = false;
+            boolean fraction = false;
+
+            while (position < END) {
+                byte c = TEXT.get(position);
+
+                if (isDigit(c)) {
+                    anyDigit = true;
+
+                    if (digits < MAX_MANTISSA_DIGITS) {
+                        mantissa = mantissa * 10 + (c - '0');
+                        digits += mantissa == 0 ? 0 : 1;
+                        exponent -= fraction ? 1 : 0;
+                    } else {
+                        exact &= c == '0';
+                        exponent += fraction ? 0 : 1;
+                    }
+                } else if (c == '.' && !fraction) {
+                    fraction = true;
+                } else {
+                    break;
+                }
+
+                ++position;
+            }
+
+            if (anyDigit && position < END
+                    && (TEXT.get(position) == 'e' || TEXT.get(position) == 'E')) {
+                ++position;
+                boolean negativeExponent = false;
+
+                if (position < END
+                        && (TEXT.get(position) == '-' || TEXT.get(position) == '+')) {
+                    negativeExponent = TEXT.get(position) == '-';
+                    ++position;
+                }
+
+                int exponentValue = 0;
+                int exponentStart = position;
+
+                while (position < END && isDigit(TEXT.get(position))) {
+                    exponentValue = Math.min(exponentValue * 10 + TEXT.get(position) - '0',
+                            10000);
+                    ++position;
+                }
+
+                exact &= position > exponentStart;
+                exponent += negativeExponent ? -exponentValue : exponentValue;
+            }
+
+            if (anyDigit && exact && isSeparatorAt(position) && mantissa < 1L << 53
+                    && exponent >= -22 && exponent <= 22) {
+                double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent]
+                        : mantissa * POWERS_OF_TEN[exponent];
+
+                if (value == 0.0 || (value >= Float.MIN_NORMAL && !isFloatMidpoint(value))) {
+                    return (float) (negative ? -value : value);
+                }
+            }
+
+            return parseFloatFallback(start);
+        }
+
+        private float parseFloatFallback(int start) throws IOException {
+            position = start;
+
+            while (!isSeparatorAt(position)) {
+                ++position;
+            }
+
+            byte[] token = new byte[position - start];
+
+            for (int i = 0; i < token.length; ++i) {
+                token[i] = TEXT.get(start + i);
+            }
+
+            try {
+                return Float.parseFloat(new String(token, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid OBJ number at offset " + start, e);
+            }
+        }
+
+        private boolean isAtLineEnd() {
+            skipBlanks();
+            return position >= END || TEXT.get(position) == '\n' || TEXT.get(position) == '\r'
+                    || TEXT.get(position) == '#';
+        }
+
+        private boolean hasBlankAt(int offset) {
+            return offset >= END || isBlank(TEXT.get(offset));
+        }
+
+        private boolean isSeparatorAt(int offset) {
+            if (offset >= END) {
+                return true;
+            }
+
+            byte c = TEXT.get(offset);
+            return isBlank(c) || c == '\n' || c == '\r';
+        }
+
+        private void skipBlanks() {
+            while (position < END && isBlank(TEXT.get(position))) {
+                ++position;
+            }
+        }
+
+        private void skipLine() {
+            while (position < END && TEXT.get(position) != '\n') {
+                ++position;
+            }
+
+            ++position;
+        }
+
+        private static boolean isBlank(byte c) {
+            return c == ' ' || c == '\t';
+        }
+
+        private static boolean isDigit(byte c) {
+            return c >= '0' && c <= '9';
+        }
+
+        /**
+         * Returns whether a double lies exactly halfway between two floats, where casting it
+         * could round differently than parsing the decimal directly.
+         */
+        private static boolean isFloatMidpoint(double value) {
+            return (Double.doubleToRawLongBits(value) & 0x1FFFFFFFL) == 0x10000000L;
+        }
+    }
+
+    /**
+     * Open addressing hash map from position/texture coordinate/normal index triplets to vertex
+     * indices.
+     */
+    private static final class VertexMap {
+        private int[] keys;
+        private int[] values;
+        private int mask;
+        private int size;
+
+        VertexMap(int expectedSize) {
+            int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2) - 1) << 1;
+            keys = new int[capacity * 3];
+            values = new int[capacity];
+            mask = capacity - 1;
+            Arrays.fill(values, -1);
+        }
+
+        int get(int position, int texCoord, int normal) {
+            for (int slot = hash(position, texCoord, normal) & mask; ; slot = (slot + 1) & mask) {
+                if (values[slot] < 0) {
+                    return -1;
+                }
+
+                if (keys[slot * 3] == position && keys[slot * 3 + 1] == texCoord
+                        && keys[slot * 3 + 2] == normal) {
+                    return values[slot];
+                }
+            }
+        }
+
+        /**
+         * Adds a triplet which is not contained yet and returns its new vertex index.
+         */
+        int put(int position, int texCoord, int normal) {
+            if ((size + 1) * 2 > values.length) {
+                grow();
+            }
+
+            insert(position, texCoord, normal, size);
+            return size++;
+        }
+
+        private void insert(int position, int texCoord, int normal, int value) {
+            int slot = hash(position, texCoord, normal) & mask;
+
+            while (values[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            keys[slot * 3] = position;
+            keys[slot * 3 + 1] = texCoord;
+            keys[slot * 3 + 2] = normal;
+            values[slot] = value;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            mask = values.length - 1;
+            Arrays.fill(values, -1);
+
+            for (int slot = 0; slot < oldValues.length; ++slot) {
+                if (oldValues[slot] >= 0) {
+                    insert(oldKeys[slot * 3], oldKeys[slot * 3 + 1], oldKeys[slot * 3 + 2],
+                            oldValues[slot]);
+                }
+            }
+        }
+
+        private static int hash(int position, int texCoord, int normal) {
+            int hash = position * 0x9E3779B1 + texCoord * 0x85EBCA77 + normal * 0xC2B2AE3D;
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    /**
+     * A direct float buffer that doubles its capacity when full.
+     */
+    private static final class DirectFloats {
+        private FloatBuffer buffer;
+        private int size;
+
+        DirectFloats(int initialCapacity) {
+            buffer = MeshData.allocateFloats(Math.max(16, initialCapacity));
+        }
+
+        /**
+         * Appends the {@code index}-th element of {@code components} floats from {@code source},
+         * or zeros if the index is negative.
+         */
+        void add(float[] source, int index, int components) {
+            ensureCapacity(size + components);
+
+            for (int i = 0; i < components; ++i) {
+                buffer.put(size++, index < 0 ? 0f : source[index * components + i]);
+            }
+        }
+
+        FloatBuffer finish() {
+            buffer.position(0);
+            buffer.limit(size);
+            return buffer;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= buffer.capacity()) {
+                return;
+            }
+
+            FloatBuffer grown = MeshData.allocateFloats(
+                    Math.max(capacity, buffer.capacity() * 2));
+            buffer.position(0);
+            buffer.limit(size);
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+
+    private static final class FloatArray {
+        private float[] values = new float[1024];
+        private int size;
+
+        void add(float value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+
+            values[size++] = value;
+        }
+    }
+
+    private static final class IntArray {
+        private int[] values = new int[1024];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.fountainar.rendering;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decodes PNG images into RGBA8 {@link TextureData} without {@code android.graphics}, so that the
+ * offline tools such as {@link TextureConverter} run on a plain JVM.
+ *
+ * <p>Supports non-interlaced images with 8 bits per channel in every color type: grayscale, RGB,
+ * palette, grayscale with alpha and RGBA. Palette images may carry transparency. Other chunks
+ * are skipped and checksums are not verified.
+ */
+final class PngReader {
+    private static final byte[] SIGNATURE = {
+            (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int COLOR_TYPE_GRAY = 0;
+    private static final int COLOR_TYPE_RGB = 2;
+    private static final int COLOR_TYPE_PALETTE = 3;
+    private static final int COLOR_TYPE_GRAY_ALPHA = 4;
+    private static final int COLOR_TYPE_RGBA = 6;
+
+    private PngReader() {
+    }
+
+    /**
+     * Decodes the PNG image in the given stream, which is not closed.
+     *
+     * @throws IOException If reading fails, or the stream does not hold a supported PNG image.
+     */
+    static TextureData read(InputStream inputStream) throws IOException {
+        DataInputStream input = new DataInputStream(inputStream);
+        byte[] signature = new byte[SIGNATURE.length];
+        input.readFully(signature);
+
+        if (!Arrays.equals(signature, SIGNATURE)) {
+            throw new IOException("Not a PNG image");
+        }
+
+        int width = 0;
+        int height = 0;
+        int colorType = -1;
+        byte[] palette = null;
+        byte[] paletteAlpha = null;
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+        while (true) {
+            int length;
+
+            try {
+                length = input.readInt();
+            } catch (EOFException e) {
+                throw new IOException("PNG image ends without IEND chunk", e);
+            }
+
+            byte[] type = new byte[4];
+            input.readFully(type);
+            String chunk = new String(type, "US-ASCII");
+
+            if (length < 0) {
+                throw new IOException("Invalid PNG chunk length " + length);
+            }
+
+            byte[] data = new byte[length];
+            input.readFully(data);
+            input.readInt(); // CRC
+
+            if (chunk.equals("IHDR")) {
+                ByteBuffer header = ByteBuffer.wrap(data);
+                width = header.getInt();
+                height = header.getInt();
+                int bitDepth = header.get();
+                colorType = header.get();
+                header.get(); // Compression method, always deflate.
+                header.get(); // Filter method, always adaptive.
+                int interlaceMethod = header.get();
+
+                if (bitDepth != 8) {
+                    throw new IOException("Unsupported PNG bit depth " + bitDepth);
+                }
+
+                if (interlaceMethod != 0) {
+                    throw new IOException("Interlaced PNG images are not supported");
+                }
+            } else if (chunk.equals("PLTE")) {
+                palette = data;
+            } else if (chunk.equals("tRNS")) {
+                paletteAlpha = data;
+            } else if (chunk.equals("IDAT")) {
+                compressed.write(data);
+            } else if (chunk.equals("IEND")) {
+                break;
+            }
+        }
+
+        int channels = getChannelCount(colorType);
+
+        if (width <= 0 || height <= 0) {
+            throw new IOException("PNG image without valid IHDR chunk");
+        }
+
+        if (colorType == COLOR_TYPE_PALETTE && palette == null) {
+            throw new IOException("Palette PNG image without PLTE chunk");
+        }
+
+        int stride = width * channels;
+        byte[] scanlines = inflate(compressed.toByteArray(), (stride + 1) * height);
+        unfilter(scanlines, stride, height, channels);
+
+        ByteBuffer pixels = ByteBuffer.allocateDirect(width * height * 4);
+
+        for (int y = 0; y < height; ++y) {
+            int row = y * (stride + 1) + 1;
+
+            for (int x = 0; x < width; ++x) {
+                int offset = row + x * channels;
+
+                switch (colorType) {
+                    case COLOR_TYPE_GRAY:
+                        pixels.put(scanlines[offset]).put(scanlines[offset])
+                                .put(scanlines[offset]).put((byte) 0xFF);
+                        break;
+                    case COLOR_TYPE_RGB:
+                        pixels.put(scanlines, offset, 3).put((byte) 0xFF);
+                        break;
+                    case COLOR_TYPE_PALETTE:
+                        int index = scanlines[offset] & 0xFF;
+
+                        if (index * 3 + 3 > palette.length) {
+                            throw new IOException("PNG palette index out of range: " + index);
+                        }
+
+                        pixels.put(palette, index * 3, 3).put(paletteAlpha != null
+                                && index < paletteAlpha.length
+                                ? paletteAlpha[index] : (byte) 0xFF);
+                        break;
+                    case COLOR_TYPE_GRAY_ALPHA:
+                        pixels.put(scanlines[offset]).put(scanlines[offset])
+                                .put(scanlines[offset]).put(scanlines[offset + 1]);
+                        break;
+                    default:
+                        pixels.put(scanlines, offset, 4);
+                        break;
+                }
+            }
+        }
+
+        pixels.rewind();
+        return new TextureData(width, height, pixels);
+    }
+
+    private static int getChannelCount(int colorType) throws IOException {
+        switch (colorType) {
+            case COLOR_TYPE_GRAY:
+            case COLOR_TYPE_PALETTE:
+                return 1;
+            case COLOR_TYPE_GRAY_ALPHA:
+                return 2;
+            case COLOR_TYPE_RGB:
+                return 3;
+            case COLOR_TYPE_RGBA:
+                return 4;
+            default:
+                throw new IOException("Unsupported PNG color type " + colorType);
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed, int size) throws IOException {
+        Inflater inflater = new Inflater();
+        byte[] scanlines = new byte[size];
+
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+
+            while (length < size && !inflater.finished()) {
+                int inflated = inflater.inflate(scanlines, length, size - length);
+
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+
+                length += inflated;
+            }
+
+            if (length != size) {
+                throw new IOException("PNG image data is truncated");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt PNG image data", e);
+        } finally {
+            inflater.end();
+        }
+
+        return scanlines;
+    }
+
+    /**
+     * Reverses the filter of every scanline in place, see the PNG specification, section 9.
+     * Each scanline starts with its filter type byte.
+     */
+    private static void unfilter(byte[] scanlines, int stride, int height, int channels)
+            throws IOException {
+        for (int y = 0; y < height; ++y) {
+            int row = y * (stride + 1);
+            int previousRow = row - (stride + 1);
+            int filter = scanlines[row];
+
+            for (int i = 1; i <= stride; ++i) {
+                int left = i > channels ? scanlines[row + i - channels] & 0xFF : 0;
+                int up = y > 0 ? scanlines[previousRow + i] & 0xFF : 0;
+                int upLeft = y > 0 && i > channels
+                        ? scanlines[previousRow + i - channels] & 0xFF : 0;
+                int predictor;
+
+                switch (filter) {
+                    case 0:
+                        predictor = 0;
+                        break;
+                    case 1:
+                        predictor = left;
+                        break;
+                    case 2:
+                        predictor = up;
+                        break;
+                    case 3:
+                        predictor = (left + up) / 2;
+                        break;
+                    case 4:
+                        predictor = paeth(left, up, upLeft);
+                        break;
+                    default:
+                        throw new IOException("Invalid PNG filter type " + filter);
+                }
+
+                scanlines[row + i] = (byte) (scanlines[row + i] + predictor);
+            }
+        }
+    }
+
+    private static int paeth(int left, int up, int upLeft) {
+        int estimate = left + up - upLeft;
+        int distanceLeft = Math.abs(estimate - left);
+        int distanceUp = Math.abs(estimate - up);
+        int distanceUpLeft = Math.abs(estimate - upLeft);
+
+        if (distanceLeft <= distanceUp && distanceLeft <= distanceUpLeft) {
+            return left;
+        }
+
+        return distanceUp <= distanceUpLeft ? up : upLeft;
+    }
+}
@@ -1,6 +1,9 @@
 package com.example.fountainar.rendering;
 
 import android.app.Activity;
+import android.app.ActivityManager;
+import android.content.Context;
+import android.content.res.AssetManager;
 import android.opengl.GLES30;
 import android.opengl.Matrix;
 import android.util.Log;
@@ -18,11 +21,17 @@ import com.google.ar.core.Session;
 import com.google.ar.core.TrackingState;
 import com.google.ar.core.exceptions.CameraNotAvailableException;
 
+import java.io.Closeable;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Future;
 
 /**
  * Renderer responsible for rendering the virtual scene on the AR display. It handles setting up the
@@ -31,12 +40,13 @@ import java.util.HashMap;
 public class SceneRenderer {
 
     private static final String TAG = SceneRenderer.class.getSimpleName();
-    private static final ArrayList<Mesh> VIRTUAL_WATER_JET_MESHES = new ArrayList<>(5);
+    private static final ArrayList<AssetCache.Handle<?>> ASSET_HANDLES = new ArrayList<>();
     private static final float[] MODEL_MATRIX = new float[16];
     private static final float[] VIEW_MATRIX = new float[16];
     private static final float[] PROJECTION_MATRIX = new float[16];
     private static final float[] MODEL_VIEW_MATRIX = new float[16];
     private static final float[] MODEL_VIEW_PROJECTION_MATRIX = new float[16];
+    private static final Frustum FRUSTUM = new Frustum();
     private static final float[] SPHERICAL_HARMONIC_FACTORS = {
             0.282095f,
             -0.325735f,
@@ -54,14 +64,51 @@ public class SceneRenderer {
     private static final float Z_FAR = 500f;
     private final static int WATER_JETS_START = 170;
     private final static int WATER_JETS_END = 175;
+    /**
+     * The playback rate of the water-jet keyframes, which used to advance once per rendered
+     * frame at the camera's 30 frames per second.
+     */
+    private static final float WATER_JETS_KEYFRAMES_PER_SECOND = 30f;
+    /**
+     * The number of largest mip levels of the fountain's textures not uploaded on low-RAM
+     * devices, which quarters their memory if they ship their own mip chain.
+     */
+    private static final int LOW_RAM_SKIPPED_TEXTURE_LEVELS = 1;
+    /**
+     * The resolution of the DFG table integrated at runtime on devices that are not low on RAM,
+     * which makes up for the coarse interpolation of the shipped 64x64 table.
+     */
+    private static final int HIGH_TIER_DFG_RESOLUTION = 128;
+    private static final String DFG_TABLE = "models/dfg.raw";
+    private static final String FOUNTAIN_MESH = "models/fountain.obj";
+    private static final String FOUNTAIN_ALBEDO_TEXTURE = "models/fountain_albedo.png";
+    private static final String FOUNTAIN_PBR_TEXTURE = "models/fountain_pbr.png";
+    /**
+     * The cache key of the water surface, which is generated rather than read from an asset.
+     */
+    private static final String GENERATED_WATER_SURFACE = "generated:water_surface";
+    private static final String WATER_JETS_VAT = "models/animation/water_jets.vat";
+    private static final String WATER_JETS_BASE_MESH = "models/animation/water_jets.obj";
+    private static final String WATER_JETS_KEYFRAMES = "models/animation/water_jets.anim";
     private static boolean isSubjectGroupWithAnimation = false;
     private static BackgroundRenderer backgroundRenderer;
-    private static Mesh virtualFountainMesh;
-    private static Mesh virtualWaterSurfaceMesh;
+    private static Texture virtualFountainAlbedoTexture;
+    private static Texture virtualFountainPbrTexture;
+    private static LodMesh virtualFountainMesh;
+    private static LodMesh virtualWaterSurfaceMesh;
+    private static Mesh virtualWaterJetsBaseMesh;
+    private static KeyframeMesh virtualWaterJetsKeyframes;
+    private static VertexAnimationTexture virtualWaterJetsAnimation;
+    private static BoundingBox waterJetsAnimatedBounds;
     private static Shader virtualFountainShader;
     private static Shader virtualWaterJetsShader;
     private static Shader virtualWaterSurfaceShader;
-    private static int meshCounter = 0;
+    private static KeyframeSampler waterJetsSampler;
+    /**
+     * The finer DFG table, which does not depend on the GL context and is therefore integrated
+     * only once per process.
+     */
+    private static Future<ByteBuffer> refinedDfgTable;
     private final float[] SPHERICAL_HARMONIC_COEFFICIENTS = new float[9 * 3];
     private final float[] VIEW_INVERSE_MATRIX = new float[16];
     private final float[] WORLD_LIGHT_DIRECTION = {0.0f, 0.0f, 0.0f, 0.0f};
@@ -89,98 +136,257 @@ public class SceneRenderer {
      * Sets up the virtual scene by initializing the background renderer, frame buffer,
      * cubemap filter, textures, meshes, and shaders.
      *
+     * <p>Only the camera background, the framebuffer and the lighting are set up right away. The
+     * CPU-side data of the virtual objects is prefetched into the {@link AssetCache} on the
+     * {@link AssetLoader} pool, including simplifying the fountain into levels of detail, and the
+     * GPU objects are created by uploads in the {@link GlUploadQueue} of {@code render} once their
+     * data is ready. The camera feed therefore keeps running while the scene loads, and each
+     * object is drawn as soon as its last upload has run. Textures and meshes are uploaded on the
+     * {@link SharedContextLoader} of {@code render} where there is one, leaving the render thread
+     * only the shaders and the hand-over. Assets which are cached already are not reloaded. The
+     * assets of a previous setup are released first.
+     *
+     * <p>The water jets are played back from a vertex animation texture baked by {@link VatBaker}
+     * if the app ships one, and otherwise from a {@link KeyframeMesh}, decoded from an {@link
+     * AnimationFile} if the app ships one and loaded from one OBJ file per keyframe otherwise.
+     *
      * @param render The custom render object.
      */
     public void setupScene(CustomRender render) {
+        releaseAssets();
+
         try {
+            AssetManager assets = render.getAssets();
+            AssetCache assetCache = AssetCache.getInstance();
+            Future<?> albedoTextureData = assetCache.prefetchTextureData(assets,
+                    FOUNTAIN_ALBEDO_TEXTURE);
+            Future<?> pbrTextureData = assetCache.prefetchTextureData(assets,
+                    FOUNTAIN_PBR_TEXTURE);
+            Future<?> fountainData = assetCache.prefetchLodData(assets, FOUNTAIN_MESH);
+            WaterJetsSource waterJetsSource = isSubjectGroupWithAnimation
+                    ? findWaterJetsSource(assets) : null;
+            Future<?>[] waterJetsData = isSubjectGroupWithAnimation
+                    ? prefetchWaterJets(assets, waterJetsSource) : null;
 
             backgroundRenderer = new BackgroundRenderer();
             backgroundRenderer.setUseDepthVisualization(render, false);
             backgroundRenderer.setUseOcclusion(render, true);
             virtualSceneFramebuffer = new Framebuffer(1, 1);
             setupLightingElements(render);
-            setupFountainObject(render);
+            enqueueFountainObject(render, albedoTextureData, pbrTextureData, fountainData);
 
             if (isSubjectGroupWithAnimation) {
-                setupWaterObjects(render);
+                enqueueWaterObjects(render, waterJetsSource, waterJetsData);
             }
+
+            // The scene decodes no further images.
+            render.getUploadQueue().enqueue(TextureData::releaseReusableBitmap,
+                    albedoTextureData, pbrTextureData);
+            enqueueRefinedDfgTable(render);
         } catch (IOException e) {
-            Log.e(TAG, "Failed to read a required asset file", e);
-            ARActivity.snackbarHelper.showError(ACTIVITY,
-                    String.valueOf(R.string.read_asset_failed) + e);
+            showReadError(e);
+        }
+    }
+
+    /**
+     * Starts loading the CPU-side data of the water jets in whichever form the app ships them.
+     *
+     * @return The pending data.
+     */
+    private Future<?>[] prefetchWaterJets(AssetManager assets, WaterJetsSource source) {
+        AssetCache assetCache = AssetCache.getInstance();
+
+        if (source == WaterJetsSource.VERTEX_ANIMATION_TEXTURE) {
+            return new Future<?>[]{assetCache.prefetchVatData(assets, WATER_JETS_VAT),
+                    assetCache.prefetchMeshData(assets, WATER_JETS_BASE_MESH)};
+        } else if (source == WaterJetsSource.ANIMATION_FILE) {
+            return new Future<?>[]{assetCache.prefetchAnimationData(assets,
+                    WATER_JETS_KEYFRAMES)};
+        }
+
+        Future<?>[] keyframes = new Future<?>[WATER_JETS_END - WATER_JETS_START];
+
+        for (int i = WATER_JETS_START; i < WATER_JETS_END; i++) {
+            keyframes[i - WATER_JETS_START] = assetCache.prefetchKeyframeData(assets,
+                    getWaterJetMesh(i));
         }
+
+        return keyframes;
+    }
+
+    /**
+     * Enqueues an upload that reports a failure to read its assets instead of throwing, and then
+     * drops the remaining uploads of the scene, which may rely on it.
+     */
+    private void enqueue(CustomRender render, SceneUpload upload, Future<?>... dependencies) {
+        render.getUploadQueue().enqueue(() -> {
+            try {
+                upload.run();
+            } catch (IOException e) {
+                render.getUploadQueue().clear();
+                showReadError(e);
+            }
+        }, dependencies);
+    }
+
+    /**
+     * Enqueues an upload of textures or meshes that runs on the shared-context loader of {@code
+     * render} once its dependencies are done, and whose result is handed to the render thread
+     * after the GPU has finished the upload. Without a loader, the upload runs on the render
+     * thread like the ones of {@link #enqueue}.
+     *
+     * @param upload   The upload, which must only create objects shared between GL contexts.
+     * @param receiver Takes the result on the render thread.
+     */
+    private <T> void enqueueShared(CustomRender render, AssetUpload<T> upload,
+                                   AssetReceiver<T> receiver, Future<?>... dependencies) {
+        SharedContextLoader loader = render.getSharedContextLoader();
+
+        if (loader == null) {
+            enqueue(render, () -> receiver.accept(upload.run()), dependencies);
+            return;
+        }
+
+        // The loader waits for the CPU-side data itself, so acquiring it from the cache does not
+        // block the cache for the render thread.
+        Future<T> result = loader.submit(() -> {
+            for (Future<?> dependency : dependencies) {
+                AssetLoader.await(dependency);
+            }
+
+            return upload.run();
+        });
+        enqueue(render, () -> receiver.accept(AssetLoader.await(result)), result);
+    }
+
+    private void showReadError(IOException e) {
+        Log.e(TAG, "Failed to read a required asset file", e);
+        ARActivity.snackbarHelper.showError(ACTIVITY,
+                String.valueOf(R.string.read_asset_failed) + e);
     }
 
     /**
      * Sets up the lighting elements for the virtual scene.
      *
+     * <p>The DFG texture is populated from the table shipped in {@link #DFG_TABLE}, which {@link
+     * #enqueueRefinedDfgTable} may replace later on.
+     *
      * @param render The CustomRender object for rendering the scene.
-     * @throws RuntimeException if setup fails or there are I/O exceptions.
-     * @throws IOException      if there is an error reading the "models/dfg.raw" file.
+     * @throws IOException if there is an error reading the "models/dfg.raw" file.
      */
     private void setupLightingElements(CustomRender render) throws IOException {
-        try {
-            cubemapFilter =
-                    new SpecularCubemapFilter(
-                            render, CUBEMAP_RESOLUTION, CUBEMAP_NUMBER_OF_IMPORTANCE_SAMPLES);
-            dfgTexture =
-                    new Texture(
-                            Texture.Target.TEXTURE_2D,
-                            Texture.WrapMode.CLAMP_TO_EDGE,
-                            false);
-
-            final int dfgResolution = 64;
-            final int dfgChannels = 2;
-            final int halfFloatSize = 2;
-
-            ByteBuffer buffer = ByteBuffer.allocateDirect(dfgResolution * dfgResolution
-                    * dfgChannels * halfFloatSize);
-
-            try (InputStream is = ACTIVITY.getAssets().open("models/dfg.raw")) {
-                int bytesRead = is.read(buffer.array());
-                if (bytesRead != buffer.capacity()) {
-                    throw new IOException("Failed to read the entire DFG texture");
+        cubemapFilter =
+                new SpecularCubemapFilter(
+                        render, CUBEMAP_RESOLUTION, CUBEMAP_NUMBER_OF_IMPORTANCE_SAMPLES);
+        dfgTexture =
+                new Texture(
+                        Texture.Target.TEXTURE_2D,
+                        Texture.WrapMode.CLAMP_TO_EDGE,
+                        false);
+        uploadDfgTable(dfgTexture, readDfgTable(render.getAssets()),
+                DfgLutGenerator.DEFAULT_RESOLUTION);
+    }
+
+    /**
+     * Unless the device has little RAM, integrates a finer DFG table with {@link
+     * DfgLutGenerator} on the {@link AssetLoader} pool and enqueues replacing the shipped one with
+     * it. The shaders sample the texture with normalized coordinates, so they do not depend on
+     * its resolution.
+     *
+     * <p>Since uploads run in order, the table is enqueued after all uploads of the scene, which
+     * therefore do not wait for the integration. With a new GL context, the finer table integrated
+     * before is only uploaded again.
+     */
+    private void enqueueRefinedDfgTable(CustomRender render) {
+        if (isLowRamDevice()) {
+            return;
+        }
+
+        if (refinedDfgTable == null) {
+            // A single thread leaves the other loader threads to the assets of the scene.
+            refinedDfgTable = AssetLoader.submit(() ->
+                    DfgLutGenerator.toHalfFloats(DfgLutGenerator.generate(
+                            HIGH_TIER_DFG_RESOLUTION, DfgLutGenerator.DEFAULT_SAMPLE_COUNT, 1),
+                            ByteOrder.nativeOrder()));
+        }
+
+        Texture texture = dfgTexture;
+        Future<ByteBuffer> refinedTable = refinedDfgTable;
+        enqueue(render, () -> uploadDfgTable(texture, AssetLoader.await(refinedTable),
+                HIGH_TIER_DFG_RESOLUTION), refinedTable);
+    }
+
+    /**
+     * Maps the shipped DFG table if it is stored uncompressed and streams it into a direct buffer
+     * otherwise.
+     */
+    private static ByteBuffer readDfgTable(AssetManager assets) throws IOException {
+        int byteCount = DfgLutGenerator.DEFAULT_RESOLUTION * DfgLutGenerator.DEFAULT_RESOLUTION
+                * DfgLutGenerator.CHANNELS * 2;
+        ByteBuffer table = Mesh.mapAsset(assets, DFG_TABLE);
+
+        if (table == null) {
+            table = ByteBuffer.allocateDirect(byteCount);
+
+            try (ReadableByteChannel channel = Channels.newChannel(assets.open(DFG_TABLE))) {
+                while (table.hasRemaining() && channel.read(table) >= 0) {
+                    // Keep reading until the table is full or the asset ends.
                 }
             }
 
-            GLES30.glBindTexture(GLES30.GL_TEXTURE_2D, dfgTexture.getTextureId());
-            GLError.maybeThrowGLException("Failed to bind DFG texture", "glBindTexture");
-            GLES30.glTexImage2D(
-                    GLES30.GL_TEXTURE_2D,
-                    0,
-                    GLES30.GL_RG16F,
-                    dfgResolution,
-                    dfgResolution,
-                    0,
-                    GLES30.GL_RG,
-                    GLES30.GL_HALF_FLOAT,
-                    buffer);
-            GLError.maybeThrowGLException("Failed to populate DFG texture", "glTexImage2D");
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            table.flip();
+        }
+
+        if (table.remaining() != byteCount) {
+            throw new IOException("DFG table " + DFG_TABLE + " has " + table.remaining()
+                    + " instead of " + byteCount + " bytes");
         }
+
+        return table;
+    }
+
+    /**
+     * Replaces the image of the DFG texture with a table of half floats.
+     */
+    private static void uploadDfgTable(Texture texture, ByteBuffer table, int resolution) {
+        GLES30.glBindTexture(GLES30.GL_TEXTURE_2D, texture.getTextureId());
+        GLError.maybeThrowGLException("Failed to bind DFG texture", "glBindTexture");
+        GLES30.glTexImage2D(
+                GLES30.GL_TEXTURE_2D,
+                0,
+                GLES30.GL_RG16F,
+                resolution,
+                resolution,
+                0,
+                GLES30.GL_RG,
+                GLES30.GL_HALF_FLOAT,
+                table);
+        GLError.maybeThrowGLException("Failed to populate DFG texture", "glTexImage2D");
     }
 
     /**
-     * Sets up the virtual fountain object by creating the necessary textures, meshes, and shaders.
-     * It initializes the cubemap filter for specular reflections, loads the fountain textures,
-     * and creates the shader program with the appropriate textures and cubemap.
+     * Enqueues the uploads of the virtual fountain object: its textures, its levels of detail and
+     * finally its shader, which uses the filtered cubemap for specular reflections. The fountain
+     * is drawn once the shader exists.
      *
      * @param render The custom render object.
      */
-    private void setupFountainObject(CustomRender render) {
-        try {
-            Texture virtualFountainAlbedoTexture = Texture.createFromAsset(
-                    render, "models/fountain_albedo.png",
-                    Texture.WrapMode.CLAMP_TO_EDGE, Texture.ColorFormat.SRGB);
-
-            Texture virtualFountainPbrTexture = Texture.createFromAsset(
-                    render, "models/fountain_pbr.png",
-                    Texture.WrapMode.CLAMP_TO_EDGE, Texture.ColorFormat.LINEAR);
-
-            virtualFountainMesh = Mesh.createFromAsset(render, "models/fountain.obj");
-
-            HashMap<String, String> shaderParams = new HashMap<>();
+    private void enqueueFountainObject(CustomRender render, Future<?> albedoTextureData,
+                                       Future<?> pbrTextureData, Future<?> fountainData) {
+        AssetCache assetCache = AssetCache.getInstance();
+        int skippedLevels = isLowRamDevice() ? LOW_RAM_SKIPPED_TEXTURE_LEVELS : 0;
+        enqueueShared(render, () -> assetCache.acquireTexture(render, FOUNTAIN_ALBEDO_TEXTURE,
+                        Texture.WrapMode.CLAMP_TO_EDGE, Texture.ColorFormat.SRGB, skippedLevels),
+                handle -> virtualFountainAlbedoTexture = retain(handle), albedoTextureData);
+        enqueueShared(render, () -> assetCache.acquireTexture(render, FOUNTAIN_PBR_TEXTURE,
+                        Texture.WrapMode.CLAMP_TO_EDGE, Texture.ColorFormat.LINEAR, skippedLevels),
+                handle -> virtualFountainPbrTexture = retain(handle), pbrTextureData);
+        enqueueShared(render, () -> assetCache.acquireLodMesh(render, FOUNTAIN_MESH,
+                        VertexFormat.QUANTIZED),
+                handle -> virtualFountainMesh = retain(handle), fountainData);
+        enqueue(render, () -> {
+            HashMap<String, String> shaderParams =
+                    new HashMap<>(virtualFountainMesh.getVertexFormat().getShaderDefines());
             shaderParams.put("NUMBER_OF_MIPMAP_LEVELS",
                     Integer.toString(cubemapFilter.getNumberOfMipmapLevels()));
             virtualFountainShader = Shader.createFromAssets(render,
@@ -191,47 +397,155 @@ public class SceneRenderer {
                             virtualFountainPbrTexture)
                     .setTexture("u_Cubemap", cubemapFilter.getFilteredCubemapTexture())
                     .setTexture("u_DfgTexture", dfgTexture);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        });
     }
 
     /**
-     * Sets up the water objects by creating the necessary shaders and meshes.
-     * If the subject group has animation, it creates the shaders for water and water surface,
-     * loads the water surface mesh, and loads the water jet meshes for animation.
+     * Enqueues the uploads of the water objects: the water surface and its shader, then the
+     * water jets, either as a vertex animation texture with its base mesh or as one mesh per
+     * keyframe, and finally their shader. The water is drawn once the water jets' shader exists.
      *
-     * @param render The custom render object.
+     * <p>The water surface is generated by {@link WaterSurfaceGenerator} instead of being parsed
+     * from an OBJ file, with fewer triangles on low-RAM devices. Its GPU object is still held
+     * through the {@link AssetCache}, which forgets rather than deletes it when its GL context is
+     * lost.
+     *
+     * @param render          The custom render object.
+     * @param waterJetsSource The form in which the app ships the water jets.
+     * @param waterJetsData   The pending data of the water jets, see {@link #prefetchWaterJets}.
      */
-    private void setupWaterObjects(CustomRender render) {
-        try {
-            if (isSubjectGroupWithAnimation) {
-                virtualWaterJetsShader = Shader.createFromAssets(
-                        render, "shaders/water.vert",
-                        "shaders/water.frag", null);
-                virtualWaterSurfaceShader = Shader.createFromAssets(
-                                render, "shaders/water_surface.vert",
-                                "shaders/water_surface.frag",
-                                new HashMap<String, String>() {
-                                    {
-                                        put(
-                                                "NUMBER_OF_MIPMAP_LEVELS",
-                                                Integer.toString(
-                                                        cubemapFilter.getNumberOfMipmapLevels()));
-                                    }
-                                })
-                        .setTexture("u_Cubemap", cubemapFilter.getFilteredCubemapTexture())
-                        .setTexture("u_DfgTexture", dfgTexture);
-                virtualWaterSurfaceMesh = Mesh.createFromAsset(render,
-                        "models/water_surface.obj");
-
-                for (int i = WATER_JETS_START; i < WATER_JETS_END; i++) {
-                    VIRTUAL_WATER_JET_MESHES.add(Mesh.createFromAsset(render,
-                            "models/animation/water_jets" + i + ".obj"));
-                }
+    private void enqueueWaterObjects(CustomRender render, WaterJetsSource waterJetsSource,
+                                     Future<?>[] waterJetsData) {
+        AssetCache assetCache = AssetCache.getInstance();
+        boolean isLowRamDevice = isLowRamDevice();
+        WaterSurfaceGenerator waterSurfaceGenerator =
+                WaterSurfaceGenerator.forQualityTier(isLowRamDevice);
+        Future<List<MeshData>> waterSurfaceData = AssetLoader.submit(
+                () -> waterSurfaceGenerator.generateLevels(1 + LodMesh.SCREEN_SIZES.length));
+
+        enqueueShared(render, () -> assetCache.acquire(
+                        new AssetCache.Key(GENERATED_WATER_SURFACE, isLowRamDevice,
+                                VertexFormat.QUANTIZED),
+                        () -> LodMesh.createFromData(AssetLoader.await(waterSurfaceData),
+                                VertexFormat.QUANTIZED)),
+                handle -> virtualWaterSurfaceMesh = retain(handle), waterSurfaceData);
+        enqueue(render, () -> {
+            HashMap<String, String> waterSurfaceShaderParams = new HashMap<>(
+                    virtualWaterSurfaceMesh.getVertexFormat().getShaderDefines());
+            waterSurfaceShaderParams.put("NUMBER_OF_MIPMAP_LEVELS",
+                    Integer.toString(cubemapFilter.getNumberOfMipmapLevels()));
+            virtualWaterSurfaceShader = Shader.createFromAssets(
+                            render, "shaders/water_surface.vert",
+                            "shaders/water_surface.frag", waterSurfaceShaderParams)
+                    .setTexture("u_Cubemap", cubemapFilter.getFilteredCubemapTexture())
+                    .setTexture("u_DfgTexture", dfgTexture);
+        });
+
+        if (waterJetsSource == WaterJetsSource.VERTEX_ANIMATION_TEXTURE) {
+            enqueueShared(render, () -> assetCache.acquireVertexAnimation(render, WATER_JETS_VAT),
+                    handle -> virtualWaterJetsAnimation = retain(handle), waterJetsData[0]);
+            enqueueShared(render, () -> assetCache.acquireMesh(render, WATER_JETS_BASE_MESH,
+                    VertexFormat.DEFAULT), handle -> {
+                virtualWaterJetsBaseMesh = retain(handle);
+                waterJetsAnimatedBounds = virtualWaterJetsAnimation.getAnimatedBounds(
+                        virtualWaterJetsBaseMesh.getBoundingBox());
+            }, waterJetsData[1]);
+        } else if (waterJetsSource == WaterJetsSource.ANIMATION_FILE) {
+            enqueueShared(render, () -> assetCache.acquireAnimation(render, WATER_JETS_KEYFRAMES),
+                    handle -> virtualWaterJetsKeyframes = retain(handle), waterJetsData);
+        } else {
+            String[] waterJetMeshes = new String[WATER_JETS_END - WATER_JETS_START];
+
+            for (int i = WATER_JETS_START; i < WATER_JETS_END; i++) {
+                waterJetMeshes[i - WATER_JETS_START] = getWaterJetMesh(i);
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+
+            enqueueShared(render, () -> assetCache.acquireKeyframeMesh(render, waterJetMeshes),
+                    handle -> virtualWaterJetsKeyframes = retain(handle), waterJetsData);
+        }
+
+        enqueue(render, () -> {
+            HashMap<String, String> waterJetsShaderParams = new HashMap<>();
+
+            if (virtualWaterJetsAnimation != null) {
+                waterJetsShaderParams.put(VertexAnimationTexture.SHADER_DEFINE, "1");
+            } else if (virtualWaterJetsKeyframes.sharesTopology()) {
+                waterJetsShaderParams.put(KeyframeMesh.SHADER_DEFINE, "1");
+            }
+
+            waterJetsSampler = new KeyframeSampler(virtualWaterJetsAnimation != null
+                    ? virtualWaterJetsAnimation.getFrameCount()
+                    : virtualWaterJetsKeyframes.getFrameCount(),
+                    WATER_JETS_KEYFRAMES_PER_SECOND);
+
+            virtualWaterJetsShader = Shader.createFromAssets(
+                    render, "shaders/water.vert",
+                    "shaders/water.frag", waterJetsShaderParams);
+        });
+    }
+
+    /**
+     * Keeps the given asset handle until the next {@link #releaseAssets()} and returns its object.
+     */
+    private static <T extends Closeable> T retain(AssetCache.Handle<T> handle) {
+        ASSET_HANDLES.add(handle);
+        return handle.get();
+    }
+
+    /**
+     * Releases the meshes and textures of the previous scene setup. Must be called on the GL
+     * thread.
+     */
+    private static void releaseAssets() {
+        for (AssetCache.Handle<?> handle : ASSET_HANDLES) {
+            handle.close();
+        }
+
+        ASSET_HANDLES.clear();
+        virtualFountainAlbedoTexture = null;
+        virtualFountainPbrTexture = null;
+        virtualFountainMesh = null;
+        virtualFountainShader = null;
+        virtualWaterSurfaceShader = null;
+        virtualWaterJetsShader = null;
+        virtualWaterSurfaceMesh = null;
+        virtualWaterJetsAnimation = null;
+        waterJetsAnimatedBounds = null;
+        virtualWaterJetsBaseMesh = null;
+        virtualWaterJetsKeyframes = null;
+        waterJetsSampler = null;
+    }
+
+    private boolean isLowRamDevice() {
+        ActivityManager activityManager =
+                (ActivityManager) ACTIVITY.getSystemService(Context.ACTIVITY_SERVICE);
+        return activityManager.isLowRamDevice();
+    }
+
+    private static String getWaterJetMesh(int frame) {
+        return "models/animation/water_jets" + frame + ".obj";
+    }
+
+    /**
+     * Returns the form in which the app ships the water jets, preferring the most compact one.
+     */
+    private static WaterJetsSource findWaterJetsSource(AssetManager assets) throws IOException {
+        if (hasAsset(assets, WATER_JETS_VAT)) {
+            return WaterJetsSource.VERTEX_ANIMATION_TEXTURE;
+        } else if (hasAsset(assets, WATER_JETS_KEYFRAMES)) {
+            return WaterJetsSource.ANIMATION_FILE;
+        }
+
+        return WaterJetsSource.OBJ_KEYFRAMES;
+    }
+
+    private static boolean hasAsset(AssetManager assets, String assetFileName)
+            throws IOException {
+        try {
+            assets.open(assetFileName).close();
+            return true;
+        } catch (FileNotFoundException e) {
+            return false;
         }
     }
 
@@ -278,6 +592,12 @@ public class SceneRenderer {
      * Draws the virtual objects in the scene by setting up the projection and camera matrices,
      * and rendering the virtual fountain and water objects.
      *
+     * <p>The fountain and the water surface are drawn at the level of detail that fits their
+     * projected size on screen, see {@link LodMesh}. Objects whose bounds lie outside the view
+     * {@link Frustum}, e.g. while the anchor is behind the camera, are not drawn, and the virtual
+     * scene is only composited over the background if something was drawn into it. Neither are
+     * objects which are still being loaded.
+     *
      * @param camera The AR camera.
      * @param render The custom render object.
      * @param anchor The anchor point for the virtual objects.
@@ -288,9 +608,15 @@ public class SceneRenderer {
         camera.getProjectionMatrix(PROJECTION_MATRIX, 0, Z_NEAR, Z_FAR);
         camera.getViewMatrix(VIEW_MATRIX, 0);
         LightEstimate lightEstimate = frame.getLightEstimate();
-        updateLightEstimation(virtualFountainShader, lightEstimate);
+        // Objects whose uploads have not all run yet are not drawn, see setupScene().
+        boolean isFountainReady = virtualFountainShader != null;
+        boolean isWaterReady = isSubjectGroupWithAnimation && virtualWaterJetsShader != null;
 
-        if (isSubjectGroupWithAnimation) {
+        if (isFountainReady) {
+            updateLightEstimation(virtualFountainShader, lightEstimate);
+        }
+
+        if (isWaterReady) {
             updateLightEstimation(virtualWaterSurfaceShader, lightEstimate);
         }
 
@@ -307,13 +633,21 @@ public class SceneRenderer {
                     rotationModelMatrix, 0);
             Matrix.multiplyMM(MODEL_VIEW_PROJECTION_MATRIX, 0, PROJECTION_MATRIX,
                     0, MODEL_VIEW_MATRIX, 0);
+            FRUSTUM.set(MODEL_VIEW_PROJECTION_MATRIX);
+
+            // Coarser levels of detail lie within the bounds of level 0.
+            if (isFountainReady && FRUSTUM.intersects(virtualFountainMesh.getLevel(0))) {
+                setupHDRUniforms(virtualFountainShader, lightEstimate);
+
+                Mesh fountainMesh = virtualFountainMesh.selectLevel(MODEL_VIEW_MATRIX,
+                        PROJECTION_MATRIX);
+                fountainMesh.setDecodeUniforms(virtualFountainShader);
+                render.draw(fountainMesh, virtualFountainShader, virtualSceneFramebuffer);
+                backgroundRenderer.drawVirtualScene(render, virtualSceneFramebuffer, Z_NEAR,
+                        Z_FAR);
+            }
 
-            setupHDRUniforms(virtualFountainShader, lightEstimate);
-
-            render.draw(virtualFountainMesh, virtualFountainShader, virtualSceneFramebuffer);
-            backgroundRenderer.drawVirtualScene(render, virtualSceneFramebuffer, Z_NEAR, Z_FAR);
-
-            if (isSubjectGroupWithAnimation) {
+            if (isWaterReady) {
                 setupWater(camera, render, lightEstimate);
             }
         }
@@ -390,19 +724,52 @@ public class SceneRenderer {
     /**
      * Sets up the rendering and sound for the water related objects.
      *
+     * <p>The water jets are animated by elapsed time, blending between the two keyframes around
+     * the playback position, so that their speed does not depend on the frame rate. Water jets
+     * and the water surface outside the view frustum are not drawn, but the sound keeps playing.
+     *
      * @param camera The AR camera.
      * @param render The custom render object.
      */
     private void setupWater(Camera camera, CustomRender render, LightEstimate lightEstimate) {
-        meshCounter = (meshCounter + 1) % VIRTUAL_WATER_JET_MESHES.size();
+        Mesh waterJetsMesh;
+        waterJetsSampler.update(System.nanoTime());
+
+        if (virtualWaterJetsAnimation != null) {
+            virtualWaterJetsAnimation.setUniforms(virtualWaterJetsShader,
+                    waterJetsSampler.getFramePosition());
+            waterJetsMesh = virtualWaterJetsBaseMesh;
+        } else {
+            waterJetsMesh = virtualWaterJetsKeyframes.getFrame(waterJetsSampler.getFrame());
+
+            if (virtualWaterJetsKeyframes.sharesTopology()) {
+                virtualWaterJetsKeyframes.setBlendUniform(virtualWaterJetsShader,
+                        waterJetsSampler.getBlend());
+            }
+        }
 
-        setupWaterJetsUniforms(camera, virtualWaterJetsShader, lightEstimate);
-        setupHDRUniforms(virtualWaterSurfaceShader, lightEstimate);
+        // The base mesh of a vertex animation texture does not cover the animated positions.
+        boolean isWaterJetsVisible = waterJetsAnimatedBounds != null
+                ? FRUSTUM.intersects(waterJetsAnimatedBounds)
+                : FRUSTUM.intersects(waterJetsMesh);
+        boolean isWaterSurfaceVisible = FRUSTUM.intersects(virtualWaterSurfaceMesh.getLevel(0));
 
-        render.draw(VIRTUAL_WATER_JET_MESHES.get(meshCounter), virtualWaterJetsShader,
-                virtualSceneFramebuffer);
-        render.draw(virtualWaterSurfaceMesh, virtualWaterSurfaceShader, virtualSceneFramebuffer);
-        backgroundRenderer.drawVirtualScene(render, virtualSceneFramebuffer, Z_NEAR, Z_FAR);
+        if (isWaterJetsVisible) {
+            setupWaterJetsUniforms(camera, virtualWaterJetsShader, lightEstimate);
+            render.draw(waterJetsMesh, virtualWaterJetsShader, virtualSceneFramebuffer);
+        }
+
+        if (isWaterSurfaceVisible) {
+            setupHDRUniforms(virtualWaterSurfaceShader, lightEstimate);
+            Mesh waterSurfaceMesh = virtualWaterSurfaceMesh.selectLevel(MODEL_VIEW_MATRIX,
+                    PROJECTION_MATRIX);
+            waterSurfaceMesh.setDecodeUniforms(virtualWaterSurfaceShader);
+            render.draw(waterSurfaceMesh, virtualWaterSurfaceShader, virtualSceneFramebuffer);
+        }
+
+        if (isWaterJetsVisible || isWaterSurfaceVisible) {
+            backgroundRenderer.drawVirtualScene(render, virtualSceneFramebuffer, Z_NEAR, Z_FAR);
+        }
 
         soundPoolHelper.play();
     }
@@ -460,4 +827,34 @@ public class SceneRenderer {
             soundPoolHelper.release();
         }
     }
+
+    /**
+     * The forms in which the app may ship the water jets, see {@link #setupScene}.
+     */
+    private enum WaterJetsSource {
+        VERTEX_ANIMATION_TEXTURE,
+        ANIMATION_FILE,
+        OBJ_KEYFRAMES
+    }
+
+    /**
+     * An upload of the scene, which may fail to read its assets, see {@link #enqueue}.
+     */
+    private interface SceneUpload {
+        void run() throws IOException;
+    }
+
+    /**
+     * An upload of textures or meshes, see {@link #enqueueShared}.
+     */
+    private interface AssetUpload<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * Takes the result of an {@link AssetUpload} on the render thread.
+     */
+    private interface AssetReceiver<T> {
+        void accept(T result);
+    }
 }
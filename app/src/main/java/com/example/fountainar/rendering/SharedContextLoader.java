@@ -0,0 +1,202 @@
+package com.example.fountainar.rendering;
+
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A dedicated thread with its own OpenGL context, shared with the render thread's, on which
+ * textures and buffers are uploaded without stalling the frames drawn meanwhile, see {@link
+ * CustomRender#getSharedContextLoader()}.
+ *
+ * <p>Objects that are shared between contexts, such as textures and buffers, may be created on
+ * the loader; a {@link Mesh} may be too, as it only creates its vertex array object when first
+ * drawn. Every upload is followed by a fence, and the future returned by {@link #submit} is only
+ * done once the GPU has passed that fence, so that the render thread never uses an object whose
+ * data has not arrived yet. Such futures are meant to be passed as dependencies to {@link
+ * GlUploadQueue#enqueue}, whose upload then hands the result over to the renderer.
+ *
+ * <p>{@link Future#isDone()} and {@link Future#get()} of these futures query the fence and must be
+ * called on the render thread.
+ */
+public final class SharedContextLoader implements Closeable {
+    private final GlLoaderContext CONTEXT;
+    private final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, SharedContextLoader.class.getSimpleName());
+        // Uploading must not keep the process alive.
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Starts the loader thread and makes the given context current on it.
+     *
+     * @throws IllegalStateException If the context cannot be made current.
+     */
+    SharedContextLoader(GlLoaderContext context) {
+        this.CONTEXT = context;
+
+        try {
+            EXECUTOR.submit(context::makeCurrent).get();
+        } catch (ExecutionException e) {
+            close();
+            throw new IllegalStateException("Failed to start the shared context loader",
+                    e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new IllegalStateException("Interrupted while starting the loader", e);
+        }
+    }
+
+    /**
+     * Creates a loader whose context shares its objects with the current one. Must be called on
+     * the render thread, e.g. in {@link CustomRender.Renderer#onSurfaceCreated}.
+     *
+     * @throws IllegalStateException If the shared context cannot be created.
+     */
+    static SharedContextLoader createSharedWithCurrent() {
+        return new SharedContextLoader(EglLoaderContext.createSharedWithCurrent());
+    }
+
+    /**
+     * Runs an upload on the loader thread, after the uploads submitted before it.
+     *
+     * @param upload The upload, which may use OpenGL objects shared between contexts.
+     * @return The result of the upload, done once the GPU has finished it. Exceptions of the
+     * upload are rethrown by {@link Future#get()} wrapped in an {@link ExecutionException}.
+     */
+    public <T> Future<T> submit(Callable<T> upload) {
+        FencedResult<T> result = new FencedResult<>(CONTEXT);
+        EXECUTOR.execute(() -> {
+            try {
+                T value = upload.call();
+                result.complete(value, CONTEXT.insertFence());
+            } catch (Throwable t) {
+                result.fail(t);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Releases the loader's context after the uploads submitted so far and stops its thread.
+     * Objects uploaded already stay valid as long as the render thread's context. Closing a
+     * closed loader has no effect.
+     */
+    @Override
+    public synchronized void close() {
+        if (EXECUTOR.isShutdown()) {
+            return;
+        }
+
+        EXECUTOR.execute(CONTEXT::release);
+        EXECUTOR.shutdown();
+    }
+
+    /**
+     * The result of an upload, which only becomes available once the fence behind it is signaled.
+     */
+    private static final class FencedResult<T> implements Future<T> {
+        private final GlLoaderContext CONTEXT;
+
+        private boolean isCompleted;
+        private T value;
+        private Throwable failure;
+        private long fence;
+
+        FencedResult(GlLoaderContext context) {
+            this.CONTEXT = context;
+        }
+
+        synchronized void complete(T value, long fence) {
+            this.value = value;
+            this.fence = fence;
+            isCompleted = true;
+            notifyAll();
+        }
+
+        synchronized void fail(Throwable failure) {
+            this.failure = failure;
+            isCompleted = true;
+            notifyAll();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public synchronized boolean isDone() {
+            if (!isCompleted) {
+                return false;
+            }
+
+            if (fence != 0) {
+                if (!CONTEXT.isSignaled(fence)) {
+                    return false;
+                }
+
+                releaseFence();
+            }
+
+            return true;
+        }
+
+        @Override
+        public synchronized T get() throws InterruptedException, ExecutionException {
+            while (!isCompleted) {
+                wait();
+            }
+
+            return getCompleted();
+        }
+
+        @Override
+        public synchronized T get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+            while (!isCompleted) {
+                long remaining = deadline - System.nanoTime();
+
+                if (remaining <= 0) {
+                    throw new TimeoutException();
+                }
+
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+
+            return getCompleted();
+        }
+
+        private T getCompleted() throws ExecutionException {
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+
+            if (fence != 0) {
+                CONTEXT.awaitSignaled(fence);
+                releaseFence();
+            }
+
+            return value;
+        }
+
+        private void releaseFence() {
+            CONTEXT.deleteFence(fence);
+            fence = 0;
+        }
+    }
+}
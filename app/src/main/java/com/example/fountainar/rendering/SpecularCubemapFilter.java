@@ -32,6 +32,7 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 
@@ -85,6 +86,14 @@ public class SpecularCubemapFilter implements Closeable {
     private final Shader[] SHADERS;
     private final Mesh MESH;
     private final int[][] FRAMEBUFFERS;
+    private final TextureStreamer STREAMER;
+    private final CubemapChangeDetector CHANGE_DETECTOR = new CubemapChangeDetector(
+            CubemapChangeDetector.DEFAULT_THRESHOLD, CubemapChangeDetector.DEFAULT_TEXEL_STEP);
+    private final ByteBuffer[] FACES = new ByteBuffer[NUMBER_OF_CUBE_FACES];
+    private int pendingFaces;
+    private boolean hasFailedFace;
+    private int filterCount;
+    private int skippedFilterCount;
 
     /**
      * Constructs a {@link SpecularCubemapFilter}.
@@ -98,12 +107,16 @@ public class SpecularCubemapFilter implements Closeable {
      * samples will generally provide more accurate results, but in the case of ARCore, the cubemap
      * estimations are already very low resolution, and higher values provide rapidly diminishing
      * returns.
+     *
+     * <p>The faces of the cubemaps given to {@link #update} are streamed to the GPU by the {@link
+     * CustomRender#getTextureStreamer() texture streamer} of {@code render}.
      */
     public SpecularCubemapFilter(CustomRender render, int resolution, int numberOfImportanceSamples)
             throws IOException {
         this.RESOLUTION = resolution;
         this.NUMBER_OF_IMPORTANCE_SAMPLES = numberOfImportanceSamples;
         this.NUMBER_OF_MIPMAP_LEVELS = log2(resolution) + 1;
+        this.STREAMER = render.getTextureStreamer();
 
         try {
             RADIANCE_CUBEMAP = new Texture(Texture.Target.TEXTURE_CUBE_MAP,
@@ -112,6 +125,7 @@ public class SpecularCubemapFilter implements Closeable {
                     Texture.WrapMode.CLAMP_TO_EDGE);
 
             ChunkIterable chunks = new ChunkIterable(getMaxColorAttachments());
+            initializeRadianceCubemap();
             initializeLdCubemap();
             SHADERS = createShaders(render, chunks);
             FRAMEBUFFERS = createFramebuffers(chunks);
@@ -220,22 +234,27 @@ public class SpecularCubemapFilter implements Closeable {
     /**
      * Updates and filters the provided cubemap textures from ARCore.
      *
-     * <p>The given {@link Image}s will be closed by this method, even if an exception occurs.
+     * <p>The faces are written into pixel buffers on the streamer's worker thread and uploaded
+     * from there at the start of the next frame, after which the cubemap is filtered. While a
+     * previous cubemap is still on its way, or the streamer has no buffers left for all faces,
+     * the given cubemap is dropped; light estimates change slowly.
+     *
+     * <p>A cubemap that hardly differs from the last one filtered, as told by a {@link
+     * CubemapChangeDetector}, is skipped as well, see {@link #getSkippedFilterCount()}.
+     *
+     * <p>The given {@link Image}s will be closed, even if an exception occurs, but possibly only
+     * later on the worker thread.
      */
     public void update(Image[] images) {
-        try {
-            GLES30.glBindTexture(GLES30.GL_TEXTURE_CUBE_MAP, RADIANCE_CUBEMAP.getTextureId());
-            GLError.maybeThrowGLException("Failed to bind radiance cubemap texture",
-                    "glBindTexture");
+        int submittedFaces = 0;
 
+        try {
             if (images.length != NUMBER_OF_CUBE_FACES) {
                 throw new IllegalArgumentException(
                         "Number of images differs from the number of sides of a cube.");
             }
 
-            for (int i = 0; i < NUMBER_OF_CUBE_FACES; ++i) {
-                Image image = images[i];
-
+            for (Image image : images) {
                 if (image.getFormat() != ImageFormat.RGBA_FP16) {
                     throw new IllegalArgumentException(
                             "Unexpected image format for cubemap: " + image.getFormat());
@@ -253,44 +272,106 @@ public class SpecularCubemapFilter implements Closeable {
                                     + RESOLUTION
                                     + ").");
                 }
+            }
 
-                GLES30.glTexImage2D(
-                        GLES30.GL_TEXTURE_CUBE_MAP_POSITIVE_X + i,
-                        0,
-                        GLES30.GL_RGBA16F,
-                        RESOLUTION,
-                        RESOLUTION,
-                        0,
-                        GLES30.GL_RGBA,
-                        GLES30.GL_HALF_FLOAT,
-                        image.getPlanes()[0].getBuffer());
-                GLError.maybeThrowGLException("Failed to populate cubemap face", "glTexImage2D");
+            if (pendingFaces > 0 || STREAMER.getFreeSlotCount() < NUMBER_OF_CUBE_FACES) {
+                return;
+            }
+
+            for (int face = 0; face < NUMBER_OF_CUBE_FACES; ++face) {
+                FACES[face] = images[face].getPlanes()[0].getBuffer();
+            }
+
+            boolean hasChanged = CHANGE_DETECTOR.hasChanged(FACES);
+            Arrays.fill(FACES, null);
+
+            if (!hasChanged) {
+                ++skippedFilterCount;
+                return;
             }
 
-            GLES30.glGenerateMipmap(GLES30.GL_TEXTURE_CUBE_MAP);
-            GLError.maybeThrowGLException("Failed to generate cubemap mipmaps", "glGenerateMipmap");
-
-            for (int level = 0; level < NUMBER_OF_MIPMAP_LEVELS; ++level) {
-                int mipmapResolution = RESOLUTION >> level;
-                GLES30.glViewport(0, 0, mipmapResolution, mipmapResolution);
-                GLError.maybeThrowGLException("Failed to set viewport dimensions", "glViewport");
-                for (int chunkIndex = 0; chunkIndex < SHADERS.length; ++chunkIndex) {
-                    GLES30.glBindFramebuffer(GLES30.GL_FRAMEBUFFER,
-                            FRAMEBUFFERS[level][chunkIndex]);
-                    GLError.maybeThrowGLException("Failed to bind cubemap framebuffer",
-                            "glBindFramebuffer");
-                    SHADERS[chunkIndex].setInt("u_RoughnessLevel", level);
-                    SHADERS[chunkIndex].lowLevelUse();
-                    MESH.lowLevelDraw();
+            pendingFaces = NUMBER_OF_CUBE_FACES;
+            hasFailedFace = false;
+
+            for (; submittedFaces < NUMBER_OF_CUBE_FACES; ++submittedFaces) {
+                TextureStreamer.Region region = TextureStreamer.Region.forCubemapFace(
+                        RADIANCE_CUBEMAP.getTextureId(), submittedFaces, 0, RESOLUTION,
+                        GLES30.GL_RGBA, GLES30.GL_HALF_FLOAT);
+
+                if (!STREAMER.submit(region, new FaceUpload(images[submittedFaces]))) {
+                    break;
                 }
             }
+
+            if (submittedFaces < NUMBER_OF_CUBE_FACES) {
+                pendingFaces = submittedFaces;
+                hasFailedFace = true;
+                CHANGE_DETECTOR.reset();
+            }
         } finally {
-            for (Image image : images) {
-                image.close();
+            for (int i = submittedFaces; i < images.length; ++i) {
+                images[i].close();
             }
         }
     }
 
+    /**
+     * Generates the mipmaps of the uploaded radiance cubemap and filters it into the LD cubemap.
+     */
+    private void filter() {
+        ++filterCount;
+        GLES30.glBindTexture(GLES30.GL_TEXTURE_CUBE_MAP, RADIANCE_CUBEMAP.getTextureId());
+        GLError.maybeThrowGLException("Failed to bind radiance cubemap texture",
+                "glBindTexture");
+        GLES30.glGenerateMipmap(GLES30.GL_TEXTURE_CUBE_MAP);
+        GLError.maybeThrowGLException("Failed to generate cubemap mipmaps", "glGenerateMipmap");
+
+        for (int level = 0; level < NUMBER_OF_MIPMAP_LEVELS; ++level) {
+            int mipmapResolution = RESOLUTION >> level;
+            GLES30.glViewport(0, 0, mipmapResolution, mipmapResolution);
+            GLError.maybeThrowGLException("Failed to set viewport dimensions", "glViewport");
+            for (int chunkIndex = 0; chunkIndex < SHADERS.length; ++chunkIndex) {
+                GLES30.glBindFramebuffer(GLES30.GL_FRAMEBUFFER,
+                        FRAMEBUFFERS[level][chunkIndex]);
+                GLError.maybeThrowGLException("Failed to bind cubemap framebuffer",
+                        "glBindFramebuffer");
+                SHADERS[chunkIndex].setInt("u_RoughnessLevel", level);
+                SHADERS[chunkIndex].lowLevelUse();
+                MESH.lowLevelDraw();
+            }
+        }
+    }
+
+    private void onFaceUploaded(boolean isSuccessful) {
+        hasFailedFace |= !isSuccessful;
+
+        if (--pendingFaces > 0) {
+            return;
+        }
+
+        if (hasFailedFace) {
+            // The next cubemap must be filtered even if it resembles this one.
+            CHANGE_DETECTOR.reset();
+        } else {
+            filter();
+        }
+    }
+
+    /**
+     * Returns the number of cubemaps filtered so far.
+     */
+    public int getFilterCount() {
+        return filterCount;
+    }
+
+    /**
+     * Returns the number of cubemaps given to {@link #update} that were skipped because they
+     * hardly differed from the last one filtered.
+     */
+    public int getSkippedFilterCount() {
+        return skippedFilterCount;
+    }
+
     /**
      * Returns the number of mipmap levels in the filtered cubemap texture.
      */
@@ -306,6 +387,25 @@ public class SpecularCubemapFilter implements Closeable {
         return LD_CUBEMAP;
     }
 
+    private void initializeRadianceCubemap() {
+        GLES30.glBindTexture(GLES30.GL_TEXTURE_CUBE_MAP, RADIANCE_CUBEMAP.getTextureId());
+        GLError.maybeThrowGLException("Could not bind radiance cubemap texture", "glBindTexture");
+        for (int face = 0; face < NUMBER_OF_CUBE_FACES; ++face) {
+            GLES30.glTexImage2D(
+                    GLES30.GL_TEXTURE_CUBE_MAP_POSITIVE_X + face,
+                    0,
+                    GLES30.GL_RGBA16F,
+                    RESOLUTION,
+                    RESOLUTION,
+                    0,
+                    GLES30.GL_RGBA,
+                    GLES30.GL_HALF_FLOAT,
+                    null);
+            GLError.maybeThrowGLException("Could not initialize radiance cubemap face",
+                    "glTexImage2D");
+        }
+    }
+
     private void initializeLdCubemap() {
         GLES30.glBindTexture(GLES30.GL_TEXTURE_CUBE_MAP, LD_CUBEMAP.getTextureId());
         GLError.maybeThrowGLException("Could not bind LD cubemap texture", "glBindTexture");
@@ -455,6 +555,44 @@ public class SpecularCubemapFilter implements Closeable {
         return result;
     }
 
+    /**
+     * Streams a face of an ARCore cubemap, closing its image once the pixels are copied.
+     */
+    private class FaceUpload implements TextureStreamer.Upload {
+        private final Image IMAGE;
+
+        FaceUpload(Image image) {
+            this.IMAGE = image;
+        }
+
+        @Override
+        public void fill(ByteBuffer pixels) {
+            try {
+                ByteBuffer face = IMAGE.getPlanes()[0].getBuffer().duplicate();
+
+                if (face.remaining() < pixels.remaining()) {
+                    throw new IllegalArgumentException("Cubemap face holds too few pixels.");
+                }
+
+                face.limit(face.position() + pixels.remaining());
+                pixels.put(face);
+            } finally {
+                IMAGE.close();
+            }
+        }
+
+        @Override
+        public void onUploaded() {
+            onFaceUploaded(true);
+        }
+
+        @Override
+        public void onFailed(Exception e) {
+            Log.w(TAG, "Failed to stream cubemap face", e);
+            onFaceUploaded(false);
+        }
+    }
+
     private static class Chunk {
         public final int chunkIndex;
         public final int chunkSize;
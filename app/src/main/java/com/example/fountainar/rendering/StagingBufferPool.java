@@ -0,0 +1,165 @@
+package com.example.fountainar.rendering;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+
+/**
+ * Process-wide pool of direct buffers that stage pixels on their way to the GPU, e.g. decoded
+ * images in {@link TextureData#fromAsset} and the bitmaps of {@link Texture#update}.
+ *
+ * <p>Buffers are kept in buckets of power-of-two capacities, so that a buffer serves any request
+ * of up to its capacity and at most half of it is wasted. Released buffers are reused by later
+ * requests of the same bucket, up to a budget of idle bytes beyond which they are left to the
+ * garbage collector. Once every bucket in use holds a buffer, uploading does not allocate
+ * anymore, which {@link #getAllocationCount()} makes observable.
+ *
+ * <p>All methods are thread-safe.
+ */
+public final class StagingBufferPool {
+    public static final long DEFAULT_MAX_IDLE_BYTES = 16L * 1024 * 1024;
+    /**
+     * The capacity of the smallest bucket, which avoids pooling many tiny buffers.
+     */
+    static final int MIN_BUCKET_BYTES = 4096;
+    private static final StagingBufferPool INSTANCE =
+            new StagingBufferPool(DEFAULT_MAX_IDLE_BYTES);
+
+    private final long MAX_IDLE_BYTES;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<ByteBuffer>[] IDLE_BUFFERS = new ArrayDeque[Integer.SIZE];
+    private long idleBytes;
+    private long allocatedBytes;
+    private int allocationCount;
+    private int acquireCount;
+    private int releaseCount;
+
+    StagingBufferPool(long maxIdleBytes) {
+        this.MAX_IDLE_BYTES = maxIdleBytes;
+
+        for (int bucket = 0; bucket < IDLE_BUFFERS.length; ++bucket) {
+            IDLE_BUFFERS[bucket] = new ArrayDeque<>();
+        }
+    }
+
+    public static StagingBufferPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the capacity of the bucket serving requests of the given size.
+     */
+    static int getBucketCapacity(int byteCount) {
+        if (byteCount <= MIN_BUCKET_BYTES) {
+            return MIN_BUCKET_BYTES;
+        }
+
+        if (byteCount > 1 << 30) {
+            throw new IllegalArgumentException("Staging buffer too large: " + byteCount);
+        }
+
+        return Integer.highestOneBit(byteCount - 1) << 1;
+    }
+
+    /**
+     * Returns a direct buffer in native byte order with position 0 and limit {@code byteCount},
+     * reusing a released buffer of the same bucket if there is one. The buffer must be given back
+     * with {@link #release} once its content has been consumed.
+     */
+    public synchronized ByteBuffer acquire(int byteCount) {
+        if (byteCount < 0) {
+            throw new IllegalArgumentException("Negative staging buffer size: " + byteCount);
+        }
+
+        int capacity = getBucketCapacity(byteCount);
+        ByteBuffer buffer = IDLE_BUFFERS[getBucket(capacity)].pollFirst();
+        ++acquireCount;
+
+        if (buffer != null) {
+            idleBytes -= capacity;
+        } else {
+            buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+            allocatedBytes += capacity;
+            ++allocationCount;
+        }
+
+        buffer.clear().limit(byteCount);
+        return buffer;
+    }
+
+    /**
+     * Gives back a buffer returned by {@link #acquire}. It must not be used afterwards, nor be
+     * released twice. Buffers that are never released are simply garbage collected.
+     *
+     * @throws IllegalArgumentException If the buffer cannot have been acquired from a pool.
+     */
+    public synchronized void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+
+        if (!buffer.isDirect() || capacity != getBucketCapacity(capacity)) {
+            throw new IllegalArgumentException("Buffer was not acquired from a pool");
+        }
+
+        ++releaseCount;
+
+        if (idleBytes + capacity > MAX_IDLE_BYTES) {
+            allocatedBytes -= capacity;
+            return;
+        }
+
+        IDLE_BUFFERS[getBucket(capacity)].addFirst(buffer);
+        idleBytes += capacity;
+    }
+
+    /**
+     * Leaves all idle buffers to the garbage collector, e.g. when the system runs low on memory.
+     */
+    public synchronized void trim() {
+        for (ArrayDeque<ByteBuffer> buffers : IDLE_BUFFERS) {
+            buffers.clear();
+        }
+
+        allocatedBytes -= idleBytes;
+        idleBytes = 0;
+    }
+
+    /**
+     * Returns the number of buffers allocated so far. It stays constant while released buffers
+     * serve all requests.
+     */
+    public synchronized int getAllocationCount() {
+        return allocationCount;
+    }
+
+    /**
+     * Returns the number of {@link #acquire} calls so far.
+     */
+    public synchronized int getAcquireCount() {
+        return acquireCount;
+    }
+
+    /**
+     * Returns the number of acquired buffers not released yet.
+     */
+    public synchronized int getAcquiredCount() {
+        return acquireCount - releaseCount;
+    }
+
+    /**
+     * Returns the capacity of all buffers held, acquired or idle.
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns the capacity of the released buffers waiting to be reused.
+     */
+    public synchronized long getIdleBytes() {
+        return idleBytes;
+    }
+
+    private static int getBucket(int capacity) {
+        return Integer.numberOfTrailingZeros(capacity);
+    }
+}
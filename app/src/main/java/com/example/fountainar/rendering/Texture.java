@@ -16,7 +16,6 @@
 package com.example.fountainar.rendering;
 
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.opengl.GLES11Ext;
 import android.opengl.GLES30;
 import android.util.Log;
@@ -119,29 +118,43 @@ public class Texture implements Closeable {
   public static Texture createFromAsset(
           CustomRender render, String assetFileName, WrapMode wrapMode, ColorFormat colorFormat)
       throws IOException {
+    try (TextureData textureData = TextureData.fromAsset(render.getAssets(), assetFileName)) {
+      return createFromData(textureData, wrapMode, colorFormat);
+    }
+  }
+
+  /**
+   * Creates a mipmapped 2D texture from {@link TextureData}, which stays unchanged and can be
+   * uploaded again.
+   *
+   * <p>Uncompressed data of a single level is uploaded and the mipmaps are generated from it.
+   * Data with its own mip levels, such as any compressed data, is uploaded level by level as it
+   * is, compressed levels in the sRGB variant of their format if {@code colorFormat} is {@link
+   * ColorFormat#SRGB}.
+   */
+  public static Texture createFromData(
+          TextureData textureData, WrapMode wrapMode, ColorFormat colorFormat) {
     Texture texture = new Texture(Target.TEXTURE_2D, wrapMode);
-    Bitmap bitmap = null;
 
     try {
-      bitmap = convertBitmapToConfig(
-              BitmapFactory.decodeStream(render.getAssets().open(assetFileName)));
-      ByteBuffer buffer = ByteBuffer.allocateDirect(bitmap.getByteCount());
-      bitmap.copyPixelsToBuffer(buffer);
-      buffer.rewind();
-
       GLES30.glBindTexture(GLES30.GL_TEXTURE_2D, texture.getTextureId());
       GLError.maybeThrowGLException("Failed to bind texture", "glBindTexture");
 
+      if (textureData.isCompressed() || textureData.getLevelCount() > 1) {
+        uploadLevels(textureData, colorFormat);
+        return texture;
+      }
+
       GLES30.glTexImage2D(
           GLES30.GL_TEXTURE_2D,
           0,
           colorFormat.glesEnum,
-          bitmap.getWidth(),
-          bitmap.getHeight(),
+          textureData.getWidth(),
+          textureData.getHeight(),
           0,
           GLES30.GL_RGBA,
           GLES30.GL_UNSIGNED_BYTE,
-          buffer);
+          textureData.getPixels().duplicate());
 
       GLError.maybeThrowGLException("Failed to populate texture data", "glTexImage2D");
       GLES30.glGenerateMipmap(GLES30.GL_TEXTURE_2D);
@@ -149,15 +162,57 @@ public class Texture implements Closeable {
     } catch (Throwable t) {
       texture.close();
       throw t;
-    } finally {
-      if (bitmap != null) {
-        bitmap.recycle();
-      }
     }
 
     return texture;
   }
 
+  /**
+   * Uploads all mip levels of the data to the bound texture, limiting sampling to the levels
+   * present, as chains may end before 1x1.
+   */
+  private static void uploadLevels(TextureData textureData, ColorFormat colorFormat) {
+    int internalFormat = textureData.getCompressedFormat();
+
+    if (!textureData.isCompressed()) {
+      internalFormat = colorFormat.glesEnum;
+    } else if (colorFormat == ColorFormat.SRGB) {
+      internalFormat = internalFormat == TextureData.FORMAT_ETC2_RGB
+          ? GLES30.GL_COMPRESSED_SRGB8_ETC2
+          : GLES30.GL_COMPRESSED_SRGB8_ALPHA8_ETC2_EAC;
+    }
+
+    for (int level = 0; level < textureData.getLevelCount(); ++level) {
+      ByteBuffer data = textureData.getLevel(level).duplicate();
+      int width = TextureData.getLevelSize(textureData.getWidth(), level);
+      int height = TextureData.getLevelSize(textureData.getHeight(), level);
+
+      if (!textureData.isCompressed()) {
+        GLES30.glTexImage2D(
+            GLES30.GL_TEXTURE_2D,
+            level,
+            internalFormat,
+            width,
+            height,
+            0,
+            GLES30.GL_RGBA,
+            GLES30.GL_UNSIGNED_BYTE,
+            data);
+        GLError.maybeThrowGLException("Failed to populate texture data", "glTexImage2D");
+        continue;
+      }
+
+      GLES30.glCompressedTexImage2D(
+          GLES30.GL_TEXTURE_2D, level, internalFormat, width, height, 0, data.remaining(), data);
+      GLError.maybeThrowGLException(
+          "Failed to populate compressed texture data", "glCompressedTexImage2D");
+    }
+
+    GLES30.glTexParameteri(
+        GLES30.GL_TEXTURE_2D, GLES30.GL_TEXTURE_MAX_LEVEL, textureData.getLevelCount() - 1);
+    GLError.maybeThrowGLException("Failed to set texture parameter", "glTexParameteri");
+  }
+
   @Override
   public void close() {
     if (TEXTURE_ID[0] != 0) {
@@ -177,43 +232,37 @@ public class Texture implements Closeable {
     return TARGET;
   }
 
-  private static Bitmap convertBitmapToConfig(Bitmap bitmap) {
-    if (bitmap.getConfig() == Bitmap.Config.ARGB_8888) {
-      return bitmap;
-    }
-
-    Bitmap result = bitmap.copy(Bitmap.Config.ARGB_8888, false);
-    bitmap.recycle();
-
-    return result;
-  }
-
+  /**
+   * Replaces a face of the cubemap with the pixels of an ARGB_8888 bitmap, staged in a buffer of
+   * the {@link StagingBufferPool} so that repeated updates do not allocate.
+   */
   public void update(int index, Bitmap bitmap) {
     GLES30.glBindTexture(Target.TEXTURE_CUBE_MAP.glesEnum, index);
     GLError.maybeThrowGLException("Failed to bind texture", "glBindTexture");
 
-    GLES30.glTexImage2D(
-            GLES30.GL_TEXTURE_CUBE_MAP_POSITIVE_X + index,
-            0,
-            ColorFormat.LINEAR.glesEnum,
-            bitmap.getWidth(),
-            bitmap.getHeight(),
-            0,
-            GLES30.GL_RGBA,
-            GLES30.GL_UNSIGNED_BYTE,
-            ByteBuffer.wrap(getBitmapPixels(bitmap))
-    );
-    GLError.maybeThrowGLException("Failed to update texture data", "glTexImage2D");
+    StagingBufferPool pool = StagingBufferPool.getInstance();
+    ByteBuffer pixels = pool.acquire(bitmap.getByteCount());
+
+    try {
+      bitmap.copyPixelsToBuffer(pixels);
+      pixels.rewind();
+      GLES30.glTexImage2D(
+              GLES30.GL_TEXTURE_CUBE_MAP_POSITIVE_X + index,
+              0,
+              ColorFormat.LINEAR.glesEnum,
+              bitmap.getWidth(),
+              bitmap.getHeight(),
+              0,
+              GLES30.GL_RGBA,
+              GLES30.GL_UNSIGNED_BYTE,
+              pixels
+      );
+      GLError.maybeThrowGLException("Failed to update texture data", "glTexImage2D");
+    } finally {
+      pool.release(pixels);
+    }
 
     GLES30.glGenerateMipmap(Target.TEXTURE_CUBE_MAP.glesEnum);
     GLError.maybeThrowGLException("Failed to generate mipmaps", "glGenerateMipmap");
   }
-
-  private byte[] getBitmapPixels(Bitmap bitmap) {
-    int bytesPerPixel = 4; // Assuming 4 bytes per pixel (RGBA)
-    int bufferSize = bitmap.getWidth() * bitmap.getHeight() * bytesPerPixel;
-    ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
-    bitmap.copyPixelsToBuffer(buffer);
-    return buffer.array();
-  }
 }
@@ -0,0 +1,176 @@
+package com.example.fountainar.rendering;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Command line tool that converts PNG assets into textures with a precomputed mip chain in the
+ * {@link KtxFile} container, compressed to ETC2 by default.
+ *
+ * <p>Runs on the JVM, e.g. {@code java -cp <classes>
+ * com.example.fountainar.rendering.TextureConverter
+ * app/src/main/assets/models/fountain_albedo.png}. Each given PNG file is written next to itself
+ * with the {@link KtxFile#EXTENSION} extension, where {@link TextureData#fromAsset} picks it up in
+ * place of the PNG file. The whole mip chain down to 1x1 is generated by {@link
+ * MipChainGenerator}, so that it neither depends on the driver's {@code glGenerateMipmap} nor
+ * costs time at load, and the loader can leave out the largest levels on low-memory devices.
+ * The options are:
+ *
+ * <ul>
+ *   <li>{@code --alpha} keeps the alpha channel of compressed textures, doubling their size. The
+ *       fountain's shaders only sample the color of their textures.</li>
+ *   <li>{@code --linear} filters textures holding data rather than sRGB-encoded colors, such as
+ *       the roughness, metallic and ambient occlusion texture, as they are.</li>
+ *   <li>{@code --kaiser} filters with a Kaiser-windowed sinc instead of averaging 2x2 pixels.</li>
+ *   <li>{@code --uncompressed} stores the levels as RGBA8 pixels instead of ETC2 blocks.</li>
+ * </ul>
+ */
+public final class TextureConverter {
+
+    private TextureConverter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean withAlpha = false;
+        boolean isSrgb = true;
+        MipChainGenerator.Filter filter = MipChainGenerator.Filter.BOX;
+        boolean isCompressed = true;
+        int first = 0;
+
+        for (; first < args.length && args[first].startsWith("--"); ++first) {
+            switch (args[first]) {
+                case "--alpha":
+                    withAlpha = true;
+                    break;
+                case "--linear":
+                    isSrgb = false;
+                    break;
+                case "--kaiser":
+                    filter = MipChainGenerator.Filter.KAISER;
+                    break;
+                case "--uncompressed":
+                    isCompressed = false;
+                    break;
+                default:
+                    first = args.length;
+                    break;
+            }
+        }
+
+        if (first >= args.length) {
+            System.err.println("Usage: TextureConverter [--alpha] [--linear] [--kaiser] "
+                    + "[--uncompressed] <file.png>...");
+            System.exit(1);
+        }
+
+        for (int i = first; i < args.length; ++i) {
+            String pngFileName = args[i];
+            String ktxFileName = KtxFile.getCompressedAssetName(pngFileName);
+            convert(pngFileName, ktxFileName, withAlpha, isSrgb, filter, isCompressed);
+            System.out.println(pngFileName + " -> " + ktxFileName);
+        }
+    }
+
+    /**
+     * Converts a single PNG file into a KTX file.
+     *
+     * @param pngFileName  The path of the PNG file to read.
+     * @param ktxFileName  The path of the KTX file to write.
+     * @param withAlpha    Whether to keep the alpha channel of compressed textures.
+     * @param isSrgb       Whether the image holds sRGB-encoded colors.
+     * @param filter       The filter generating the mip levels.
+     * @param isCompressed Whether to compress the levels to ETC2.
+     * @throws IOException If reading or writing fails.
+     */
+    public static void convert(String pngFileName, String ktxFileName, boolean withAlpha,
+                               boolean isSrgb, MipChainGenerator.Filter filter,
+                               boolean isCompressed) throws IOException {
+        TextureData image;
+
+        try (InputStream inputStream = new BufferedInputStream(
+                new FileInputStream(pngFileName))) {
+            image = PngReader.read(inputStream);
+        }
+
+        TextureData converted = generateMipChain(image, isSrgb, filter);
+
+        if (isCompressed) {
+            converted = compress(converted, withAlpha);
+            ByteBuffer decoded = Etc2Encoder.decode(converted.getLevel(0), image.getWidth(),
+                    image.getHeight(), withAlpha);
+            System.out.printf(Locale.US, "%s: PSNR %.2f dB%n", pngFileName,
+                    computePsnr(image.getPixels(), decoded, withAlpha));
+        }
+
+        System.out.printf(Locale.US, "%s: %dx%d, %d levels, %d -> %d bytes%n", pngFileName,
+                image.getWidth(), image.getHeight(), converted.getLevelCount(),
+                image.getByteCount(), converted.getByteCount());
+
+        try (OutputStream outputStream = new BufferedOutputStream(
+                new FileOutputStream(ktxFileName))) {
+            KtxFile.write(converted, outputStream);
+        }
+    }
+
+    /**
+     * Generates the full mip chain of an uncompressed image of a single level.
+     */
+    static TextureData generateMipChain(TextureData image, boolean isSrgb,
+                                        MipChainGenerator.Filter filter) {
+        return TextureData.createMipChain(image.getWidth(), image.getHeight(),
+                MipChainGenerator.generate(image.getPixels(), image.getWidth(),
+                        image.getHeight(), isSrgb, filter));
+    }
+
+    /**
+     * Compresses every level of an uncompressed mip chain.
+     */
+    static TextureData compress(TextureData mipChain, boolean withAlpha) {
+        int width = mipChain.getWidth();
+        int height = mipChain.getHeight();
+        ByteBuffer[] levels = new ByteBuffer[mipChain.getLevelCount()];
+
+        for (int level = 0; level < levels.length; ++level) {
+            levels[level] = Etc2Encoder.encode(mipChain.getLevel(level),
+                    TextureData.getLevelSize(width, level),
+                    TextureData.getLevelSize(height, level), withAlpha);
+        }
+
+        return TextureData.createCompressed(
+                withAlpha ? TextureData.FORMAT_ETC2_RGBA : TextureData.FORMAT_ETC2_RGB,
+                width, height, levels);
+    }
+
+    /**
+     * Returns the peak signal-to-noise ratio in decibels between two RGBA8 images of the same
+     * size, over the color channels and optionally alpha.
+     */
+    static double computePsnr(ByteBuffer expected, ByteBuffer actual, boolean withAlpha) {
+        double squaredError = 0;
+        int count = 0;
+
+        for (int i = 0; i < expected.remaining(); ++i) {
+            if (!withAlpha && i % 4 == 3) {
+                continue;
+            }
+
+            int difference = (expected.get(expected.position() + i) & 0xFF)
+                    - (actual.get(actual.position() + i) & 0xFF);
+            squaredError += difference * difference;
+            ++count;
+        }
+
+        if (squaredError == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        return 10 * Math.log10(255.0 * 255.0 * count / squaredError);
+    }
+}
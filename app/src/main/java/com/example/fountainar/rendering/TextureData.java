@@ -0,0 +1,349 @@
+package com.example.fountainar.rendering;
+
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.opengl.GLES30;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * CPU-side pixels of a 2D {@link Texture}: either a single level decoded to RGBA8, from which the
+ * mipmaps are generated on upload, or a mip chain of RGBA8 pixels or ETC2 blocks read from a
+ * {@link KtxFile}. The data is held in <i>direct</i> buffers.
+ *
+ * <p>Like {@link MeshData}, the class does not touch OpenGL, so that decoded images can be kept
+ * around and uploaded again, e.g. after the GL context was lost.
+ *
+ * <p>Decoded images are staged in buffers of the {@link StagingBufferPool}, which {@link #close()}
+ * gives back once the data is not needed anymore.
+ */
+public class TextureData implements Closeable {
+    /**
+     * The compressed format of RGB textures encoded by {@link Etc2Encoder}.
+     */
+    public static final int FORMAT_ETC2_RGB = GLES30.GL_COMPRESSED_RGB8_ETC2;
+    /**
+     * The compressed format of RGBA textures encoded by {@link Etc2Encoder}.
+     */
+    public static final int FORMAT_ETC2_RGBA = GLES30.GL_COMPRESSED_RGBA8_ETC2_EAC;
+    private final int WIDTH;
+    private final int HEIGHT;
+    private final int COMPRESSED_FORMAT;
+    private final ByteBuffer[] LEVELS;
+    /**
+     * Keeps the bitmap of the last decoded image, so that the next image of at most its size is
+     * decoded into it rather than a newly allocated bitmap.
+     */
+    private static Bitmap reusableBitmap;
+    private StagingBufferPool pool;
+
+    /**
+     * Constructs {@link TextureData} from tightly packed RGBA8 pixels in a direct buffer.
+     */
+    public TextureData(int width, int height, ByteBuffer pixels) {
+        this(width, height, 0, new ByteBuffer[]{pixels});
+    }
+
+    private TextureData(int width, int height, int compressedFormat, ByteBuffer[] levels) {
+        if (levels.length == 0) {
+            throw new IllegalArgumentException("Texture data needs at least one level");
+        }
+
+        for (int level = 0; level < levels.length; ++level) {
+            int levelWidth = getLevelSize(width, level);
+            int levelHeight = getLevelSize(height, level);
+            int expectedBytes = compressedFormat == 0 ? levelWidth * levelHeight * 4
+                    : getCompressedByteCount(compressedFormat, levelWidth, levelHeight);
+
+            if (!levels[level].isDirect()) {
+                throw new IllegalArgumentException("Texture pixels must be a direct buffer");
+            }
+
+            if (levels[level].remaining() != expectedBytes) {
+                throw new IllegalArgumentException("Texture level " + level
+                        + " does not match the size " + levelWidth + "x" + levelHeight);
+            }
+        }
+
+        this.WIDTH = width;
+        this.HEIGHT = height;
+        this.COMPRESSED_FORMAT = compressedFormat;
+        this.LEVELS = levels;
+    }
+
+    /**
+     * Constructs {@link TextureData} from a mip chain of compressed blocks in direct buffers.
+     *
+     * @param compressedFormat {@link #FORMAT_ETC2_RGB} or {@link #FORMAT_ETC2_RGBA}.
+     * @param levels           The levels, starting with the full size, each half the size of the
+     *                         one before. The chain may end before 1x1.
+     */
+    public static TextureData createCompressed(int compressedFormat, int width, int height,
+                                               ByteBuffer[] levels) {
+        getCompressedByteCount(compressedFormat, width, height);
+        return new TextureData(width, height, compressedFormat, levels);
+    }
+
+    /**
+     * Constructs {@link TextureData} from a mip chain of tightly packed RGBA8 pixels in direct
+     * buffers, e.g. from {@link MipChainGenerator}.
+     *
+     * @param levels The levels, starting with the full size, each half the size of the one
+     *               before. The chain may end before 1x1.
+     */
+    public static TextureData createMipChain(int width, int height, ByteBuffer[] levels) {
+        return new TextureData(width, height, 0, levels);
+    }
+
+    /**
+     * Constructs {@link TextureData} from tightly packed RGBA8 pixels in a buffer acquired from
+     * the given pool, to which {@link #close()} gives it back.
+     */
+    static TextureData createPooled(StagingBufferPool pool, int width, int height,
+                                    ByteBuffer pixels) {
+        TextureData textureData = new TextureData(width, height, pixels);
+        textureData.pool = pool;
+        return textureData;
+    }
+
+    /**
+     * Decodes the given image asset, or reads its precompressed counterpart if there is one, see
+     * {@link KtxFile#getCompressedAssetName}.
+     *
+     * <p>Images are decoded straight to ARGB_8888, into the bitmap of the previous image if it is
+     * large enough, and copied into a buffer of the {@link StagingBufferPool}.
+     *
+     * @throws IOException If the asset could not be read or decoded.
+     */
+    public static TextureData fromAsset(AssetManager assets, String assetFileName)
+            throws IOException {
+        ByteBuffer compressed = Mesh.mapAsset(assets,
+                KtxFile.getCompressedAssetName(assetFileName));
+
+        if (compressed != null) {
+            return KtxFile.read(compressed);
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+
+        try (InputStream inputStream = assets.open(assetFileName)) {
+            BitmapFactory.decodeStream(inputStream, null, options);
+        }
+
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Failed to decode image " + assetFileName);
+        }
+
+        int byteCount = options.outWidth * options.outHeight * 4;
+        options.inJustDecodeBounds = false;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inMutable = true;
+        options.inBitmap = takeReusableBitmap(byteCount);
+        Bitmap bitmap;
+
+        try {
+            bitmap = decodeBitmap(assets, assetFileName, options);
+        } catch (IllegalArgumentException e) {
+            // The decoder rejected the reusable bitmap.
+            options.inBitmap.recycle();
+            options.inBitmap = null;
+            bitmap = decodeBitmap(assets, assetFileName, options);
+        }
+
+        if (bitmap == null) {
+            throw new IOException("Failed to decode image " + assetFileName);
+        }
+
+        if (bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            // Only images the decoder cannot produce in ARGB_8888, which should not exist.
+            Bitmap converted = bitmap.copy(Bitmap.Config.ARGB_8888, true);
+            bitmap.recycle();
+            bitmap = converted;
+        }
+
+        StagingBufferPool pool = StagingBufferPool.getInstance();
+        ByteBuffer pixels = pool.acquire(byteCount);
+
+        try {
+            bitmap.copyPixelsToBuffer(pixels);
+        } catch (RuntimeException e) {
+            pool.release(pixels);
+            throw e;
+        } finally {
+            offerReusableBitmap(bitmap);
+        }
+
+        pixels.rewind();
+        return createPooled(pool, options.outWidth, options.outHeight, pixels);
+    }
+
+    private static Bitmap decodeBitmap(AssetManager assets, String assetFileName,
+                                       BitmapFactory.Options options) throws IOException {
+        try (InputStream inputStream = assets.open(assetFileName)) {
+            return BitmapFactory.decodeStream(inputStream, null, options);
+        }
+    }
+
+    private static synchronized Bitmap takeReusableBitmap(int byteCount) {
+        Bitmap bitmap = reusableBitmap;
+
+        if (bitmap == null || bitmap.getAllocationByteCount() < byteCount) {
+            return null;
+        }
+
+        reusableBitmap = null;
+        return bitmap;
+    }
+
+    /**
+     * Keeps the given bitmap for reuse if it is larger than the one kept, and recycles the
+     * smaller one.
+     */
+    private static synchronized void offerReusableBitmap(Bitmap bitmap) {
+        if (!bitmap.isMutable()) {
+            bitmap.recycle();
+            return;
+        }
+
+        if (reusableBitmap != null) {
+            if (reusableBitmap.getAllocationByteCount() >= bitmap.getAllocationByteCount()) {
+                bitmap.recycle();
+                return;
+            }
+
+            reusableBitmap.recycle();
+        }
+
+        reusableBitmap = bitmap;
+    }
+
+    /**
+     * Recycles the bitmap kept for the next decode, e.g. once all images of a scene are decoded,
+     * so that it does not stay in memory for the life of the process.
+     */
+    static synchronized void releaseReusableBitmap() {
+        if (reusableBitmap != null) {
+            reusableBitmap.recycle();
+            reusableBitmap = null;
+        }
+    }
+
+    /**
+     * Returns the number of bytes of a level of the given compressed format and size.
+     *
+     * @throws IllegalArgumentException If the format is not supported.
+     */
+    static int getCompressedByteCount(int compressedFormat, int width, int height) {
+        int blockBytes;
+
+        if (compressedFormat == FORMAT_ETC2_RGB) {
+            blockBytes = Etc2Encoder.RGB_BLOCK_BYTES;
+        } else if (compressedFormat == FORMAT_ETC2_RGBA) {
+            blockBytes = Etc2Encoder.RGBA_BLOCK_BYTES;
+        } else {
+            throw new IllegalArgumentException(
+                    "Unsupported compressed format 0x" + Integer.toHexString(compressedFormat));
+        }
+
+        return Etc2Encoder.getBlockCount(width) * Etc2Encoder.getBlockCount(height) * blockBytes;
+    }
+
+    /**
+     * Returns the width or height of the given mip level of a texture of the given size.
+     */
+    static int getLevelSize(int size, int level) {
+        return Math.max(1, size >> level);
+    }
+
+    public int getWidth() {
+        return WIDTH;
+    }
+
+    public int getHeight() {
+        return HEIGHT;
+    }
+
+    /**
+     * Returns the compressed format of the levels, or 0 if they hold RGBA8 pixels.
+     */
+    public int getCompressedFormat() {
+        return COMPRESSED_FORMAT;
+    }
+
+    public boolean isCompressed() {
+        return COMPRESSED_FORMAT != 0;
+    }
+
+    /**
+     * Returns the number of mip levels held, which is 1 if the mipmaps are left to the GPU.
+     */
+    public int getLevelCount() {
+        return LEVELS.length;
+    }
+
+    /**
+     * Returns the data without its largest levels, which saves memory where a smaller texture
+     * suffices. The levels are shared, not copied.
+     *
+     * @param count The number of levels to skip. At least the last level is always kept, so that
+     *              data of a single level is returned as is.
+     */
+    public TextureData withoutTopLevels(int count) {
+        count = Math.min(count, LEVELS.length - 1);
+
+        if (count <= 0) {
+            return this;
+        }
+
+        ByteBuffer[] levels = new ByteBuffer[LEVELS.length - count];
+        System.arraycopy(LEVELS, count, levels, 0, levels.length);
+        return new TextureData(getLevelSize(WIDTH, count), getLevelSize(HEIGHT, count),
+                COMPRESSED_FORMAT, levels);
+    }
+
+    /**
+     * Returns the pixels or compressed blocks of the given mip level. Use {@link
+     * ByteBuffer#duplicate()} before changing the position.
+     */
+    public ByteBuffer getLevel(int level) {
+        return LEVELS[level];
+    }
+
+    /**
+     * Returns the pixels or compressed blocks of the full size level. Use {@link
+     * ByteBuffer#duplicate()} before changing the position.
+     */
+    public ByteBuffer getPixels() {
+        return LEVELS[0];
+    }
+
+    /**
+     * Gives the staging buffer of decoded pixels back to its pool. The data must not be used
+     * afterwards, unless it was not pooled, e.g. because it was read from a {@link KtxFile}.
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.release(LEVELS[0]);
+            pool = null;
+        }
+    }
+
+    /**
+     * Returns the number of bytes of all levels.
+     */
+    public int getByteCount() {
+        int byteCount = 0;
+
+        for (ByteBuffer level : LEVELS) {
+            byteCount += level.remaining();
+        }
+
+        return byteCount;
+    }
+}
@@ -0,0 +1,363 @@
+package com.example.fountainar.rendering;
+
+import android.opengl.GLES30;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams texture images to the GPU through a ring of pixel unpack buffers, so that the render
+ * thread neither copies the pixels nor waits for {@code glTexImage2D} to consume client memory,
+ * see {@link CustomRender#getTextureStreamer()}.
+ *
+ * <p>{@link #submit} maps a free buffer of the ring and has a worker thread write the pixels into
+ * it. {@link #processUploads()}, called once per frame, unmaps the buffers filled since and
+ * issues {@code glTexSubImage2D} from them, in the order they were submitted, followed by a
+ * fence. A buffer becomes free again once the GPU has passed its fence, so that a buffer is never
+ * written while the GPU may still read from it.
+ *
+ * <p>All methods must be called on the render thread. The texture images must have been
+ * allocated before, e.g. by {@code glTexImage2D} with null pixels.
+ */
+public final class TextureStreamer implements Closeable {
+    /**
+     * Enough slots for two sets of cubemap faces, one being filled while the GPU reads the other.
+     */
+    public static final int DEFAULT_SLOT_COUNT = 12;
+    private static final int FREE = 0;
+    private static final int MAPPED = 1;
+    private static final int FILLED = 2;
+    private static final int FAILED = 3;
+    private static final int IN_FLIGHT = 4;
+    private static final long WORKER_TIMEOUT_MILLIS = 1000;
+
+    private final GlPixelBuffers GL;
+    private final ExecutorService WORKER;
+    private final Slot[] SLOTS;
+    private final ArrayDeque<Slot> SUBMITTED_SLOTS = new ArrayDeque<>();
+    private boolean isClosed;
+
+    TextureStreamer(GlPixelBuffers gl, int slotCount, ExecutorService worker) {
+        this.GL = gl;
+        this.WORKER = worker;
+        this.SLOTS = new Slot[slotCount];
+
+        for (int i = 0; i < slotCount; ++i) {
+            SLOTS[i] = new Slot();
+        }
+    }
+
+    /**
+     * Creates a streamer with {@link #DEFAULT_SLOT_COUNT} slots and its own worker thread. The
+     * buffers are only created once needed.
+     */
+    static TextureStreamer create() {
+        return new TextureStreamer(new Gles30PixelBuffers(), DEFAULT_SLOT_COUNT,
+                Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, TextureStreamer.class.getSimpleName());
+                    // Streaming must not keep the process alive.
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+
+    /**
+     * Returns the number of uploads that can be submitted right now.
+     */
+    public int getFreeSlotCount() {
+        recycleSlots();
+        int count = 0;
+
+        for (Slot slot : SLOTS) {
+            if (slot.state == FREE) {
+                ++count;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the number of uploads submitted but not yet issued by {@link #processUploads()}.
+     */
+    public int getPendingCount() {
+        return SUBMITTED_SLOTS.size();
+    }
+
+    /**
+     * Maps a free buffer and has the worker thread fill it with the upload's pixels. The upload
+     * is issued by the first {@link #processUploads()} after the pixels were written.
+     *
+     * @return False if all buffers are in use, in which case the upload is not submitted.
+     * @throws IllegalStateException If the streamer is closed.
+     */
+    public boolean submit(Region region, Upload upload) {
+        if (isClosed) {
+            throw new IllegalStateException("Texture streamer is closed");
+        }
+
+        recycleSlots();
+        Slot slot = null;
+
+        for (Slot candidate : SLOTS) {
+            if (candidate.state == FREE) {
+                slot = candidate;
+                break;
+            }
+        }
+
+        if (slot == null) {
+            return false;
+        }
+
+        int byteCount = region.getByteCount();
+
+        if (slot.buffer == 0) {
+            slot.buffer = GL.createBuffer();
+        }
+
+        if (slot.capacity < byteCount) {
+            GL.allocate(slot.buffer, byteCount);
+            slot.capacity = byteCount;
+        }
+
+        ByteBuffer pixels = GL.map(slot.buffer, byteCount);
+        slot.region = region;
+        slot.upload = upload;
+        slot.error = null;
+        slot.state = MAPPED;
+        SUBMITTED_SLOTS.addLast(slot);
+
+        Slot filledSlot = slot;
+        WORKER.execute(() -> filledSlot.fill(pixels));
+        return true;
+    }
+
+    /**
+     * Issues the uploads whose pixels have been written, in the order they were submitted, and
+     * frees the buffers the GPU is done with. Calls {@link Upload#onUploaded()} or {@link
+     * Upload#onFailed} of each upload issued. Does nothing once the streamer is closed.
+     */
+    public void processUploads() {
+        if (isClosed) {
+            return;
+        }
+
+        while (!SUBMITTED_SLOTS.isEmpty()) {
+            Slot slot = SUBMITTED_SLOTS.peekFirst();
+            int state = slot.state;
+
+            if (state == MAPPED) {
+                break;
+            }
+
+            SUBMITTED_SLOTS.removeFirst();
+            boolean isIntact = GL.unmap(slot.buffer);
+            Upload upload = slot.upload;
+            slot.upload = null;
+
+            if (state == FAILED || !isIntact) {
+                slot.state = FREE;
+                upload.onFailed(state == FAILED ? slot.error
+                        : new IllegalStateException("Pixel buffer contents were lost"));
+                continue;
+            }
+
+            GL.upload(slot.buffer, slot.region);
+            slot.fence = GL.insertFence();
+            slot.state = IN_FLIGHT;
+            upload.onUploaded();
+        }
+
+        recycleSlots();
+    }
+
+    /**
+     * Waits for the worker to finish the pixels being written and deletes the buffers and
+     * fences. Uploads not issued yet are dropped. Closing a closed streamer has no effect.
+     */
+    @Override
+    public void close() {
+        if (stopWorker()) {
+            for (Slot slot : SLOTS) {
+                if (slot.state == MAPPED || slot.state == FILLED || slot.state == FAILED) {
+                    GL.unmap(slot.buffer);
+                } else if (slot.state == IN_FLIGHT) {
+                    GL.deleteFence(slot.fence);
+                }
+
+                if (slot.buffer != 0) {
+                    GL.deleteBuffer(slot.buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the streamer of a GL context that is lost, without deleting its buffers and fences,
+     * which are gone with the context. Abandoning a closed streamer has no effect.
+     */
+    void abandon() {
+        stopWorker();
+    }
+
+    /**
+     * Returns false if the streamer was already closed.
+     */
+    private boolean stopWorker() {
+        if (isClosed) {
+            return false;
+        }
+
+        isClosed = true;
+        SUBMITTED_SLOTS.clear();
+        WORKER.shutdown();
+
+        try {
+            WORKER.awaitTermination(WORKER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return true;
+    }
+
+    private void recycleSlots() {
+        for (Slot slot : SLOTS) {
+            if (slot.state == IN_FLIGHT && GL.isSignaled(slot.fence)) {
+                GL.deleteFence(slot.fence);
+                slot.fence = 0;
+                slot.state = FREE;
+            }
+        }
+    }
+
+    /**
+     * The pixels of an upload, and what to do once it was issued.
+     */
+    public interface Upload {
+        /**
+         * Writes the tightly packed pixels of the region. Called on the worker thread.
+         *
+         * @param pixels Mapped memory of the region's size in native byte order, starting at
+         *               position 0.
+         */
+        void fill(ByteBuffer pixels);
+
+        /**
+         * Called on the render thread once {@code glTexSubImage2D} was issued, so that commands
+         * using the texture may follow.
+         */
+        void onUploaded();
+
+        /**
+         * Called on the render thread instead of {@link #onUploaded()} if the pixels could not be
+         * written.
+         */
+        void onFailed(Exception e);
+    }
+
+    /**
+     * The image of a texture level that an upload replaces as a whole.
+     */
+    public static final class Region {
+        final int BIND_TARGET;
+        final int TEXTURE_ID;
+        final int IMAGE_TARGET;
+        final int LEVEL;
+        final int WIDTH;
+        final int HEIGHT;
+        final int FORMAT;
+        final int TYPE;
+
+        private Region(int bindTarget, int textureId, int imageTarget, int level, int width,
+                       int height, int format, int type) {
+            getBytesPerPixel(format, type);
+            this.BIND_TARGET = bindTarget;
+            this.TEXTURE_ID = textureId;
+            this.IMAGE_TARGET = imageTarget;
+            this.LEVEL = level;
+            this.WIDTH = width;
+            this.HEIGHT = height;
+            this.FORMAT = format;
+            this.TYPE = type;
+        }
+
+        /**
+         * Returns a level of a 2D texture.
+         *
+         * @param format {@code GL_RGBA} or {@code GL_RG}.
+         * @param type   {@code GL_UNSIGNED_BYTE}, {@code GL_HALF_FLOAT} or {@code GL_FLOAT}.
+         */
+        public static Region forTexture2d(int textureId, int level, int width, int height,
+                                          int format, int type) {
+            return new Region(GLES30.GL_TEXTURE_2D, textureId, GLES30.GL_TEXTURE_2D, level,
+                    width, height, format, type);
+        }
+
+        /**
+         * Returns a level of a face of a cubemap texture, the faces being numbered in the order
+         * of their targets, starting with {@code GL_TEXTURE_CUBE_MAP_POSITIVE_X}.
+         */
+        public static Region forCubemapFace(int textureId, int face, int level, int size,
+                                            int format, int type) {
+            return new Region(GLES30.GL_TEXTURE_CUBE_MAP, textureId,
+                    GLES30.GL_TEXTURE_CUBE_MAP_POSITIVE_X + face, level, size, size, format,
+                    type);
+        }
+
+        public int getByteCount() {
+            return WIDTH * HEIGHT * getBytesPerPixel(FORMAT, TYPE);
+        }
+
+        private static int getBytesPerPixel(int format, int type) {
+            int components;
+
+            if (format == GLES30.GL_RGBA) {
+                components = 4;
+            } else if (format == GLES30.GL_RG) {
+                components = 2;
+            } else {
+                throw new IllegalArgumentException(
+                        "Unsupported pixel format 0x" + Integer.toHexString(format));
+            }
+
+            switch (type) {
+                case GLES30.GL_UNSIGNED_BYTE:
+                    return components;
+                case GLES30.GL_HALF_FLOAT:
+                    return components * 2;
+                case GLES30.GL_FLOAT:
+                    return components * 4;
+                default:
+                    throw new IllegalArgumentException(
+                            "Unsupported pixel type 0x" + Integer.toHexString(type));
+            }
+        }
+    }
+
+    private static final class Slot {
+        private int buffer;
+        private int capacity;
+        private long fence;
+        private Region region;
+        private Upload upload;
+        // Written by the worker thread when it is done with the mapped memory.
+        private volatile Exception error;
+        private volatile int state = FREE;
+
+        private void fill(ByteBuffer pixels) {
+            try {
+                upload.fill(pixels);
+                state = FILLED;
+            } catch (Exception e) {
+                error = e;
+                state = FAILED;
+            }
+        }
+    }
+}
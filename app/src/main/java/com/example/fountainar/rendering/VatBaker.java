@@ -0,0 +1,116 @@
+package com.example.fountainar.rendering;
+
+import android.opengl.GLES30;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Command line tool that bakes a sequence of Wavefront OBJ keyframes into a vertex animation
+ * texture and its base mesh.
+ *
+ * <p>Runs on the JVM, e.g. {@code java -cp <classes>
+ * com.example.fountainar.rendering.VatBaker app/src/main/assets/models/animation/water_jets
+ * water_jets170.obj ... water_jets174.obj}. The texture is written to the given output name with
+ * the {@link VatFile#EXTENSION} extension and the base mesh with the {@link MeshFile#EXTENSION}
+ * extension. Unlike {@link MeshConverter}, the base mesh is not reordered, since the texture
+ * addresses its vertices by index.
+ */
+public final class VatBaker {
+
+    private VatBaker() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: VatBaker <output name> <frame.obj>...");
+            System.exit(1);
+        }
+
+        VertexAnimation animation = bake(
+                Arrays.asList(args).subList(1, args.length), args[0] + MeshFile.EXTENSION,
+                args[0] + VatFile.EXTENSION);
+        System.out.println(args[0] + ": " + animation.getFrameCount() + " frames, "
+                + animation.getVertexCount() + " vertices");
+    }
+
+    /**
+     * Bakes the given OBJ keyframes and writes the base mesh and the texture.
+     *
+     * @param objFileNames The paths of the keyframe OBJ files, in playback order.
+     * @param meshFileName The path of the binary base mesh file to write.
+     * @param vatFileName  The path of the vertex animation texture file to write.
+     * @return The baked animation.
+     * @throws IOException If reading or writing fails, or the frames have different topologies.
+     */
+    public static VertexAnimation bake(List<String> objFileNames, String meshFileName,
+                                       String vatFileName) throws IOException {
+        List<MeshData> frames = readFrames(objFileNames);
+        long frameMeshBytes = 0;
+
+        for (MeshData frame : frames) {
+            frameMeshBytes += getGpuByteCount(frame);
+        }
+
+        VertexAnimation animation;
+        VatData vatData;
+
+        try {
+            animation = VertexAnimation.fromFrames(frames);
+            vatData = animation.toTextureData();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Cannot bake " + objFileNames, e);
+        }
+
+        try (OutputStream outputStream =
+                     new BufferedOutputStream(new FileOutputStream(meshFileName))) {
+            MeshFile.write(animation.getBaseMesh(), outputStream);
+        }
+
+        try (OutputStream outputStream =
+                     new BufferedOutputStream(new FileOutputStream(vatFileName))) {
+            VatFile.write(vatData, outputStream);
+        }
+
+        long bakedBytes = getGpuByteCount(animation.getBaseMesh())
+                + vatData.getTexels().capacity();
+        System.out.printf(Locale.US, "GPU memory: %d KiB as separate meshes, %d KiB baked%n",
+                frameMeshBytes / 1024, bakedBytes / 1024);
+        return animation;
+    }
+
+    /**
+     * Reads the given OBJ keyframes.
+     */
+    static List<MeshData> readFrames(List<String> objFileNames) throws IOException {
+        List<MeshData> frames = new ArrayList<>(objFileNames.size());
+
+        for (String objFileName : objFileNames) {
+            try (InputStream inputStream =
+                         new BufferedInputStream(new FileInputStream(objFileName))) {
+                frames.add(MeshData.fromObj(inputStream));
+            }
+        }
+
+        return frames;
+    }
+
+    /**
+     * Returns the number of bytes the mesh occupies on the GPU in {@link VertexFormat#DEFAULT}.
+     */
+    static long getGpuByteCount(MeshData meshData) {
+        int indexSize = IndexBuffer.selectIndexType(meshData.getIndices())
+                == GLES30.GL_UNSIGNED_SHORT ? GPUBuffer.SHORT_SIZE : GPUBuffer.INT_SIZE;
+        return (long) meshData.getVertexCount() * VertexFormat.DEFAULT.getStride()
+                + (long) meshData.getIndexCount() * indexSize;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.fountainar.rendering;
+
+import java.nio.ByteBuffer;
+
+/**
+ * CPU-side texels of a vertex animation texture, see {@link VertexAnimation}.
+ *
+ * <p>The texture is RGBA16F. Every frame and vertex of the base mesh occupies two consecutive
+ * texels: the offset of the position from the base mesh (xyz) and the normal (xyz). The texels of
+ * vertex {@code v} in frame {@code f} start at texel index {@code (f * vertexCount + v) * 2},
+ * counted row by row. Texels after the last frame are zero.
+ */
+public class VatData {
+    /**
+     * The largest texture size every OpenGL ES 3.0 device supports.
+     */
+    public static final int MAX_TEXTURE_SIZE = 2048;
+    static final int TEXELS_PER_VERTEX = 2;
+    static final int TEXEL_COMPONENTS = 4;
+
+    private final int FRAME_COUNT;
+    private final int VERTEX_COUNT;
+    private final int WIDTH;
+    private final int HEIGHT;
+    private final ByteBuffer TEXELS;
+
+    /**
+     * Constructs {@link VatData} from tightly packed half float texels in a direct buffer.
+     */
+    public VatData(int frameCount, int vertexCount, int width, int height, ByteBuffer texels) {
+        if (!texels.isDirect()) {
+            throw new IllegalArgumentException("Texels must be a direct buffer");
+        }
+
+        if (texels.remaining() != width * height * TEXEL_COMPONENTS * Short.BYTES) {
+            throw new IllegalArgumentException("Texels do not match the size "
+                    + width + "x" + height);
+        }
+
+        if ((long) frameCount * vertexCount * TEXELS_PER_VERTEX > (long) width * height) {
+            throw new IllegalArgumentException(frameCount + " frames of " + vertexCount
+                    + " vertices do not fit into " + width + "x" + height + " texels");
+        }
+
+        this.FRAME_COUNT = frameCount;
+        this.VERTEX_COUNT = vertexCount;
+        this.WIDTH = width;
+        this.HEIGHT = height;
+        this.TEXELS = texels;
+    }
+
+    public int getFrameCount() {
+        return FRAME_COUNT;
+    }
+
+    public int getVertexCount() {
+        return VERTEX_COUNT;
+    }
+
+    public int getWidth() {
+        return WIDTH;
+    }
+
+    public int getHeight() {
+        return HEIGHT;
+    }
+
+    /**
+     * Returns the texels. Use {@link ByteBuffer#duplicate()} before changing the position.
+     */
+    public ByteBuffer getTexels() {
+        return TEXELS;
+    }
+
+    /**
+     * Returns a component of a frame's vertex as half float bits.
+     *
+     * @param texel     0 for the position offset, 1 for the normal.
+     * @param component 0 to 2 for x, y and z.
+     */
+    public short getHalf(int frame, int vertex, int texel, int component) {
+        int index = (frame * VERTEX_COUNT + vertex) * TEXELS_PER_VERTEX + texel;
+        return TEXELS.getShort((index * TEXEL_COMPONENTS + component) * Short.BYTES);
+    }
+
+    /**
+     * Computes the bounding box of the position offsets of all frames, see {@link
+     * BoundingBox#offsetBy}.
+     */
+    public BoundingBox computeOffsetBounds() {
+        float[] min = new float[3];
+        float[] max = new float[3];
+
+        for (int frame = 0; frame < FRAME_COUNT; ++frame) {
+            for (int vertex = 0; vertex < VERTEX_COUNT; ++vertex) {
+                for (int axis = 0; axis < 3; ++axis) {
+                    float offset = HalfFloat.toFloat(getHalf(frame, vertex, 0, axis));
+                    min[axis] = Math.min(min[axis], offset);
+                    max[axis] = Math.max(max[axis], offset);
+                }
+            }
+        }
+
+        return new BoundingBox(min, max);
+    }
+}
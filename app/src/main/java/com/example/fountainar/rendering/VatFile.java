@@ -0,0 +1,111 @@
+package com.example.fountainar.rendering;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads and writes vertex animation textures baked by {@link VatBaker}.
+ *
+ * <p>All values are stored little-endian. The file starts with a header of 32-bit integers:
+ *
+ * <pre>
+ *   magic ("FVAT"), version, frameCount, vertexCount, width, height, texelOffset
+ * </pre>
+ *
+ * <p>followed by {@code width * height} RGBA16F texels as described by {@link VatData}. The base
+ * mesh is stored next to it as a {@link MeshFile}.
+ */
+public final class VatFile {
+    public static final String EXTENSION = ".vat";
+    private static final int MAGIC = 0x54415646; // "FVAT" read as little-endian int
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 7;
+
+    private VatFile() {
+    }
+
+    /**
+     * Writes the given {@link VatData}.
+     *
+     * @param vatData      The texels to write.
+     * @param outputStream The stream to write to. It is not closed by this method.
+     * @throws IOException If writing fails.
+     */
+    public static void write(VatData vatData, OutputStream outputStream) throws IOException {
+        ByteBuffer texels = vatData.getTexels().duplicate().order(vatData.getTexels().order());
+        int headerSize = HEADER_INTS * Integer.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(headerSize + texels.remaining())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(vatData.getFrameCount());
+        buffer.putInt(vatData.getVertexCount());
+        buffer.putInt(vatData.getWidth());
+        buffer.putInt(vatData.getHeight());
+        buffer.putInt(headerSize);
+
+        while (texels.hasRemaining()) {
+            buffer.putShort(texels.getShort());
+        }
+
+        outputStream.write(buffer.array(), 0, buffer.position());
+    }
+
+    /**
+     * Reads {@link VatData} from a buffer holding a complete file.
+     *
+     * <p>No data is copied: the returned texels are a view into {@code file}.
+     *
+     * @param file The <i>direct</i> buffer holding the file, starting at position 0.
+     * @return The texels.
+     * @throws IOException If the buffer does not hold a valid vertex animation texture.
+     */
+    public static VatData read(ByteBuffer file) throws IOException {
+        if (!file.isDirect()) {
+            throw new IllegalArgumentException(
+                    "Vertex animation textures must be read from a direct buffer");
+        }
+
+        ByteBuffer header = file.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+        if (header.limit() < HEADER_INTS * Integer.BYTES || header.getInt(0) != MAGIC) {
+            throw new IOException("Not a vertex animation texture");
+        }
+
+        int version = header.getInt(4);
+
+        if (version != VERSION) {
+            throw new IOException("Unsupported vertex animation texture version " + version);
+        }
+
+        int frameCount = header.getInt(8);
+        int vertexCount = header.getInt(12);
+        int width = header.getInt(16);
+        int height = header.getInt(20);
+        int texelOffset = header.getInt(24);
+
+        if (width <= 0 || height <= 0 || width > VatData.MAX_TEXTURE_SIZE
+                || height > VatData.MAX_TEXTURE_SIZE) {
+            throw new IOException("Invalid texture size " + width + "x" + height);
+        }
+
+        int length = width * height * VatData.TEXEL_COMPONENTS * Short.BYTES;
+
+        if (texelOffset < 0 || texelOffset > file.limit() - length) {
+            throw new IOException("Vertex animation texels exceed the file size");
+        }
+
+        ByteBuffer texels = file.duplicate();
+        texels.position(texelOffset);
+        texels.limit(texelOffset + length);
+
+        try {
+            return new VatData(frameCount, vertexCount, width, height,
+                    texels.slice().order(ByteOrder.LITTLE_ENDIAN));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed vertex animation texture", e);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.fountainar.rendering;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A keyframe animation of a mesh whose frames share one triangle list, e.g. an OBJ sequence
+ * exported from Blender, baked for vertex animation texture (VAT) playback.
+ *
+ * <p>The frames are merged into one base mesh that holds frame 0. Its vertices are the distinct
+ * combinations of per-frame vertices found at the triangle corners, so that a vertex which is
+ * split in any frame (e.g. by a UV or normal seam) is split in the base mesh as well. For every
+ * frame and base vertex the animation keeps the position and the normal, which {@link
+ * #toTextureData()} packs into a half float texture sampled by the vertex shader.
+ *
+ * <p>Like {@link MeshData}, the class does not touch OpenGL and can be used on the JVM.
+ */
+public final class VertexAnimation {
+    private final MeshData BASE_MESH;
+    private final int FRAME_COUNT;
+    private final FloatBuffer POSITIONS;
+    private final FloatBuffer NORMALS;
+
+    private VertexAnimation(MeshData baseMesh, int frameCount, FloatBuffer positions,
+                            FloatBuffer normals) {
+        this.BASE_MESH = baseMesh;
+        this.FRAME_COUNT = frameCount;
+        this.POSITIONS = positions;
+        this.NORMALS = normals;
+    }
+
+    /**
+     * Merges the given keyframes into a {@link VertexAnimation}.
+     *
+     * <p>The frames may number their vertices differently, but must consist of the same triangles
+     * in the same order. Texture coordinates are taken from frame 0.
+     *
+     * @param frames The keyframes, at least one.
+     * @throws IllegalArgumentException If the frames do not have the same number of indices.
+     */
+    public static VertexAnimation fromFrames(List<MeshData> frames) {
+        if (frames.isEmpty()) {
+            throw new IllegalArgumentException("An animation needs at least one frame");
+        }
+
+        int frameCount = frames.size();
+        int indexCount = frames.get(0).getIndexCount();
+
+        for (MeshData frame : frames) {
+            if (frame.getIndexCount() != indexCount) {
+                throw new IllegalArgumentException("Animation frames have different topologies: "
+                        + indexCount + " and " + frame.getIndexCount() + " indices");
+            }
+        }
+
+        IntBuffer baseIndices = MeshData.allocateInts(indexCount);
+        HashMap<Corner, Integer> baseVertices = new HashMap<>();
+        int[] firstCorners = new int[indexCount];
+
+        for (int i = 0; i < indexCount; ++i) {
+            int[] frameVertices = new int[frameCount];
+
+            for (int f = 0; f < frameCount; ++f) {
+                frameVertices[f] = frames.get(f).getIndices().get(i);
+            }
+
+            Corner corner = new Corner(frameVertices);
+            Integer vertex = baseVertices.get(corner);
+
+            if (vertex == null) {
+                vertex = baseVertices.size();
+                baseVertices.put(corner, vertex);
+                firstCorners[vertex] = i;
+            }
+
+            baseIndices.put(i, vertex);
+        }
+
+        int vertexCount = baseVertices.size();
+        FloatBuffer positions =
+                MeshData.allocateFloats(frameCount * vertexCount * MeshData.POSITION_COMPONENTS);
+        FloatBuffer normals =
+                MeshData.allocateFloats(frameCount * vertexCount * MeshData.NORMAL_COMPONENTS);
+        FloatBuffer baseTexCoords =
+                MeshData.allocateFloats(vertexCount * MeshData.TEX_COORD_COMPONENTS);
+
+        for (int f = 0; f < frameCount; ++f) {
+            MeshData frame = frames.get(f);
+
+            for (int v = 0; v < vertexCount; ++v) {
+                int frameVertex = frame.getIndices().get(firstCorners[v]);
+                int target = f * vertexCount + v;
+                copy(frame.getPositions(), frameVertex, positions, target,
+                        MeshData.POSITION_COMPONENTS);
+                copy(frame.getNormals(), frameVertex, normals, target,
+                        MeshData.NORMAL_COMPONENTS);
+
+                if (f == 0) {
+                    copy(frame.getTexCoords(), frameVertex, baseTexCoords, v,
+                            MeshData.TEX_COORD_COMPONENTS);
+                }
+            }
+        }
+
+        MeshData baseMesh = new MeshData(
+                slice(positions, 0, vertexCount * MeshData.POSITION_COMPONENTS),
+                baseTexCoords,
+                slice(normals, 0, vertexCount * MeshData.NORMAL_COMPONENTS),
+                baseIndices);
+        return new VertexAnimation(baseMesh, frameCount, positions, normals);
+    }
+
+    /**
+     * Returns the base mesh, which holds frame 0. The vertex shader identifies the vertices of the
+     * texture by their index in this mesh, so it must be uploaded without reordering.
+     */
+    public MeshData getBaseMesh() {
+        return BASE_MESH;
+    }
+
+    public int getFrameCount() {
+        return FRAME_COUNT;
+    }
+
+    public int getVertexCount() {
+        return BASE_MESH.getVertexCount();
+    }
+
+    /**
+     * Returns the positions of all base vertices in the given frame, 3 floats per vertex.
+     */
+    public FloatBuffer getPositions(int frame) {
+        return slice(POSITIONS, frame * getVertexCount() * MeshData.POSITION_COMPONENTS,
+                getVertexCount() * MeshData.POSITION_COMPONENTS);
+    }
+
+    /**
+     * Returns the normals of all base vertices in the given frame, 3 floats per vertex.
+     */
+    public FloatBuffer getNormals(int frame) {
+        return slice(NORMALS, frame * getVertexCount() * MeshData.NORMAL_COMPONENTS,
+                getVertexCount() * MeshData.NORMAL_COMPONENTS);
+    }
+
+    /**
+     * Packs the animation into an RGBA16F texture, see {@link VatData}.
+     *
+     * @throws IllegalArgumentException If the animation does not fit into a texture of {@link
+     *                                  VatData#MAX_TEXTURE_SIZE} squared texels.
+     */
+    public VatData toTextureData() {
+        int vertexCount = getVertexCount();
+        long texelCount = (long) FRAME_COUNT * vertexCount * VatData.TEXELS_PER_VERTEX;
+        int width = (int) Math.max(1, Math.min(VatData.MAX_TEXTURE_SIZE, texelCount));
+        long height = Math.max(1, (texelCount + width - 1) / width);
+
+        if (height > VatData.MAX_TEXTURE_SIZE) {
+            throw new IllegalArgumentException(FRAME_COUNT + " frames of " + vertexCount
+                    + " vertices do not fit into a vertex animation texture");
+        }
+
+        ByteBuffer texels = ByteBuffer.allocateDirect(
+                        width * (int) height * VatData.TEXEL_COMPONENTS * Short.BYTES)
+                .order(ByteOrder.nativeOrder());
+        FloatBuffer basePositions = getPositions(0);
+
+        for (int f = 0; f < FRAME_COUNT; ++f) {
+            FloatBuffer positions = getPositions(f);
+            FloatBuffer normals = getNormals(f);
+
+            for (int v = 0; v < vertexCount; ++v) {
+                for (int c = 0; c < MeshData.POSITION_COMPONENTS; ++c) {
+                    int i = v * MeshData.POSITION_COMPONENTS + c;
+                    texels.putShort(HalfFloat.toHalf(positions.get(i) - basePositions.get(i)));
+                }
+
+                texels.putShort((short) 0);
+
+                for (int c = 0; c < MeshData.NORMAL_COMPONENTS; ++c) {
+                    texels.putShort(HalfFloat.toHalf(normals.get(v * MeshData.NORMAL_COMPONENTS
+                            + c)));
+                }
+
+                texels.putShort((short) 0);
+            }
+        }
+
+        texels.rewind();
+        return new VatData(FRAME_COUNT, vertexCount, width, (int) height, texels);
+    }
+
+    private static void copy(FloatBuffer source, int sourceVertex, FloatBuffer target,
+                             int targetVertex, int components) {
+        for (int c = 0; c < components; ++c) {
+            target.put(targetVertex * components + c, source.get(sourceVertex * components + c));
+        }
+    }
+
+    private static FloatBuffer slice(FloatBuffer buffer, int offset, int length) {
+        FloatBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice();
+    }
+
+    /**
+     * The vertices of all frames that meet at one triangle corner.
+     */
+    private static final class Corner {
+        private final int[] FRAME_VERTICES;
+        private final int HASH_CODE;
+
+        Corner(int[] frameVertices) {
+            this.FRAME_VERTICES = frameVertices;
+            this.HASH_CODE = Arrays.hashCode(frameVertices);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Corner
+                    && Arrays.equals(FRAME_VERTICES, ((Corner) other).FRAME_VERTICES);
+        }
+
+        @Override
+        public int hashCode() {
+            return HASH_CODE;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.fountainar.rendering;
+
+import android.content.res.AssetManager;
+import android.opengl.GLES30;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A GPU-side vertex animation texture, which animates a base mesh in the vertex shader.
+ *
+ * <p>Shaders compiled with the {@link #SHADER_DEFINE} symbol, such as {@code shaders/water.vert},
+ * fetch the two frames around {@code u_VatFrame} for the current {@code gl_VertexID} and blend
+ * them. The base mesh must be the one baked together with the texture, uploaded in vertex order.
+ */
+public class VertexAnimationTexture implements Closeable {
+    public static final String SHADER_DEFINE = "VERTEX_ANIMATION_TEXTURE";
+    private final Texture TEXTURE;
+    private final int FRAME_COUNT;
+    private final int VERTEX_COUNT;
+    private final BoundingBox OFFSET_BOUNDS;
+
+    private VertexAnimationTexture(Texture texture, int frameCount, int vertexCount,
+                                   BoundingBox offsetBounds) {
+        this.TEXTURE = texture;
+        this.FRAME_COUNT = frameCount;
+        this.VERTEX_COUNT = vertexCount;
+        this.OFFSET_BOUNDS = offsetBounds;
+    }
+
+    /**
+     * Uploads the given {@link VatData}, which stays unchanged and can be uploaded again.
+     */
+    public static VertexAnimationTexture createFromData(VatData vatData) {
+        Texture texture = new Texture(Texture.Target.TEXTURE_2D, Texture.WrapMode.CLAMP_TO_EDGE,
+                false);
+
+        try {
+            GLES30.glBindTexture(GLES30.GL_TEXTURE_2D, texture.getTextureId());
+            GLError.maybeThrowGLException("Failed to bind vertex animation texture",
+                    "glBindTexture");
+            GLES30.glTexImage2D(
+                    GLES30.GL_TEXTURE_2D,
+                    0,
+                    GLES30.GL_RGBA16F,
+                    vatData.getWidth(),
+                    vatData.getHeight(),
+                    0,
+                    GLES30.GL_RGBA,
+                    GLES30.GL_HALF_FLOAT,
+                    vatData.getTexels().duplicate());
+            GLError.maybeThrowGLException("Failed to populate vertex animation texture",
+                    "glTexImage2D");
+        } catch (Throwable t) {
+            texture.close();
+            throw t;
+        }
+
+        return new VertexAnimationTexture(texture, vatData.getFrameCount(),
+                vatData.getVertexCount(), vatData.computeOffsetBounds());
+    }
+
+    /**
+     * Loads the {@link VatData} of the given asset written by {@link VatFile}. Does not touch
+     * OpenGL and may be called on any thread.
+     */
+    static VatData loadVatData(AssetManager assets, String assetFileName) throws IOException {
+        ByteBuffer file = Mesh.mapAsset(assets, assetFileName);
+
+        if (file == null) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+            try (InputStream inputStream = assets.open(assetFileName)) {
+                byte[] chunk = new byte[64 * 1024];
+
+                for (int length; (length = inputStream.read(chunk)) != -1; ) {
+                    bytes.write(chunk, 0, length);
+                }
+            }
+
+            file = ByteBuffer.allocateDirect(bytes.size());
+            file.put(bytes.toByteArray());
+            file.rewind();
+        }
+
+        return VatFile.read(file);
+    }
+
+    public int getFrameCount() {
+        return FRAME_COUNT;
+    }
+
+    public int getVertexCount() {
+        return VERTEX_COUNT;
+    }
+
+    /**
+     * Returns the bounding box of the animated mesh over all frames, given the one of its base
+     * mesh.
+     */
+    public BoundingBox getAnimatedBounds(BoundingBox baseBounds) {
+        return baseBounds.offsetBy(OFFSET_BOUNDS);
+    }
+
+    /**
+     * Binds the texture to the given shader and selects the frame to draw. Fractional frames blend
+     * the two neighboring frames; the last frame blends back into the first.
+     */
+    public void setUniforms(Shader shader, float frame) {
+        shader.setTexture("u_VatTexture", TEXTURE);
+        shader.setInt("u_VatVertexCount", VERTEX_COUNT);
+        shader.setInt("u_VatFrameCount", FRAME_COUNT);
+        shader.setFloat("u_VatFrame", frame);
+    }
+
+    @Override
+    public void close() {
+        TEXTURE.close();
+    }
+}
@@ -18,6 +18,7 @@ package com.example.fountainar.rendering;
 import android.opengl.GLES30;
 
 import java.io.Closeable;
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 
 /**
@@ -26,12 +27,16 @@ import java.nio.FloatBuffer;
  * <p>One or more {@link VertexBuffer}s are used when constructing a {@link Mesh} to describe vertex
  * attribute data; for example, local coordinates, texture coordinates, vertex normals, etc.
  *
+ * <p>A {@link VertexBuffer} either holds a single float attribute, or, if it was constructed with
+ * a {@link VertexFormat}, several interleaved attributes per vertex.
+ *
  * @see <a
  * href="https://www.khronos.org/registry/OpenGL-Refpages/es3.0/html/glVertexAttribPointer.xhtml">glVertexAttribPointer</a>
  */
 public class VertexBuffer implements Closeable {
     private final GPUBuffer GPU_BUFFER;
     private final int NUM_OF_ENTRIES_PER_VERTEX;
+    private final VertexFormat FORMAT;
 
     /**
      * Constructs a {@link VertexBuffer} populated with initial data.
@@ -55,9 +60,32 @@ public class VertexBuffer implements Closeable {
         }
 
         this.NUM_OF_ENTRIES_PER_VERTEX = numberOfEntriesPerVertex;
+        this.FORMAT = null;
         GPU_BUFFER = new GPUBuffer(GLES30.GL_ARRAY_BUFFER, GPUBuffer.FLOAT_SIZE, entries);
     }
 
+    /**
+     * Constructs an interleaved {@link VertexBuffer} populated with initial data.
+     *
+     * <p>The <i>direct</i> buffer {@code entries} holds {@link VertexFormat#getStride()} bytes
+     * per vertex, laid out as described by {@code format}, e.g. as produced by {@link
+     * VertexFormat#pack}. Its size must therefore be divisible by the stride.
+     *
+     * <p>The {@code entries} buffer may be null, in which case an empty buffer is constructed
+     * instead.
+     */
+    public VertexBuffer(VertexFormat format, ByteBuffer entries) {
+        if (entries != null && entries.limit() % format.getStride() != 0) {
+            throw new IllegalArgumentException(
+                    "If non-null, interleaved vertex buffer data must be divisible by the " +
+                            "vertex stride");
+        }
+
+        this.NUM_OF_ENTRIES_PER_VERTEX = format.getStride();
+        this.FORMAT = format;
+        GPU_BUFFER = new GPUBuffer(GLES30.GL_ARRAY_BUFFER, GPUBuffer.BYTE_SIZE, entries);
+    }
+
     /**
      * Populates with new data.
      *
@@ -72,6 +100,10 @@ public class VertexBuffer implements Closeable {
      * specified during construction.
      */
     public void set(FloatBuffer entries) {
+        if (FORMAT != null) {
+            throw new IllegalStateException("Interleaved vertex buffers must be set with bytes");
+        }
+
         if (entries != null && entries.limit() % NUM_OF_ENTRIES_PER_VERTEX != 0) {
             throw new IllegalArgumentException("If non-null, vertex buffer data must be divisible "
                     + "by the number of data points per vertex");
@@ -80,6 +112,25 @@ public class VertexBuffer implements Closeable {
         GPU_BUFFER.set(entries);
     }
 
+    /**
+     * Populates an interleaved buffer with new data.
+     *
+     * <p>Behaves like {@link #set(FloatBuffer)}, except that {@code entries} holds bytes laid out
+     * as described by the {@link VertexFormat} specified during construction.
+     */
+    public void set(ByteBuffer entries) {
+        if (FORMAT == null) {
+            throw new IllegalStateException("Only interleaved vertex buffers can be set with bytes");
+        }
+
+        if (entries != null && entries.limit() % FORMAT.getStride() != 0) {
+            throw new IllegalArgumentException("If non-null, interleaved vertex buffer data must "
+                    + "be divisible by the vertex stride");
+        }
+
+        GPU_BUFFER.set(entries);
+    }
+
     @Override
     public void close() {
         GPU_BUFFER.free();
@@ -95,6 +146,14 @@ public class VertexBuffer implements Closeable {
         return NUM_OF_ENTRIES_PER_VERTEX;
     }
 
+    /**
+     * Returns the layout of an interleaved buffer, or null for a single-attribute buffer.
+     */
+    /* package-private */
+    VertexFormat getFormat() {
+        return FORMAT;
+    }
+
     /* package-private */
     int getNumberOfVertices() {
         return GPU_BUFFER.getSize() / NUM_OF_ENTRIES_PER_VERTEX;
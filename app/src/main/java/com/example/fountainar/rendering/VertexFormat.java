@@ -0,0 +1,380 @@
+package com.example.fountainar.rendering;
+
+import android.opengl.GLES30;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Describes the layout of an interleaved vertex buffer: which attributes each vertex holds, at
+ * which byte offset within the vertex they start and how many bytes lie between two consecutive
+ * vertices (the stride).
+ *
+ * <p>An interleaved {@link VertexBuffer} holds all attributes of a vertex next to each other, so
+ * that the GPU can fetch a vertex with a single, cache-friendly read, and a {@link Mesh} needs a
+ * single GPU buffer instead of one per attribute.
+ *
+ * <p>Attributes may be quantized (see {@link Encoding}) to reduce the memory and bandwidth used
+ * per vertex. Quantized positions and normals must be decoded by the vertex shader, which is
+ * enabled through {@link #getShaderDefines()} and {@link Mesh#setDecodeUniforms(Shader)}.
+ *
+ * @see <a href="https://www.khronos.org/opengl/wiki/Vertex_Specification_Best_Practices">Vertex
+ * Specification Best Practices</a>
+ */
+public final class VertexFormat {
+    /**
+     * Layout with local coordinates (location 0, vec3), texture coordinates (location 1, vec2),
+     * and vertex normals (location 2, vec3) stored as floats, as expected by the shaders.
+     */
+    public static final VertexFormat DEFAULT = new Builder()
+            .add(Semantic.POSITION, 0, Encoding.FLOAT)
+            .add(Semantic.TEX_COORD, 1, Encoding.FLOAT)
+            .add(Semantic.NORMAL, 2, Encoding.FLOAT)
+            .build();
+
+    /**
+     * Same attributes as {@link #DEFAULT} in 16 instead of 32 bytes per vertex: positions as
+     * normalized shorts relative to the mesh's bounding box, texture coordinates as unsigned
+     * normalized shorts and octahedral-encoded normals in two bytes.
+     */
+    public static final VertexFormat QUANTIZED = new Builder()
+            .add(Semantic.POSITION, 0, Encoding.BOUNDED_SNORM16)
+            .add(Semantic.TEX_COORD, 1, Encoding.UNORM16)
+            .add(Semantic.NORMAL, 2, Encoding.OCTAHEDRAL)
+            .build();
+
+    private static final int ALIGNMENT = 4;
+    private static final float UNORM_TOLERANCE = 1e-4f;
+
+    private final Attribute[] ATTRIBUTES;
+    private final int STRIDE;
+
+    private VertexFormat(List<Attribute> attributes, int stride) {
+        this.ATTRIBUTES = attributes.toArray(new Attribute[0]);
+        this.STRIDE = stride;
+    }
+
+    /**
+     * Returns the size in bytes of a single component of the given GL type.
+     */
+    public static int getComponentSize(int componentType) {
+        switch (componentType) {
+            case GLES30.GL_BYTE:
+            case GLES30.GL_UNSIGNED_BYTE:
+                return 1;
+            case GLES30.GL_SHORT:
+            case GLES30.GL_UNSIGNED_SHORT:
+            case GLES30.GL_HALF_FLOAT:
+                return 2;
+            case GLES30.GL_INT:
+            case GLES30.GL_UNSIGNED_INT:
+            case GLES30.GL_FLOAT:
+                return 4;
+            default:
+                throw new IllegalArgumentException("Unknown component type " + componentType);
+        }
+    }
+
+    private static int align(int value) {
+        return (value + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * Returns this format if the given {@link MeshData} can be packed into it, and {@link
+     * #DEFAULT} otherwise.
+     */
+    public VertexFormat orDefaultFor(MeshData meshData) {
+        return canPack(meshData) ? this : DEFAULT;
+    }
+
+    /**
+     * Returns whether the given {@link MeshData} can be packed into this format without clamping,
+     * i.e. whether all attributes encoded as {@link Encoding#UNORM16} lie within [0, 1].
+     */
+    public boolean canPack(MeshData meshData) {
+        for (Attribute attribute : ATTRIBUTES) {
+            if (attribute.encoding != Encoding.UNORM16) {
+                continue;
+            }
+
+            FloatBuffer source = attribute.semantic.getSource(meshData);
+
+            for (int i = 0; i < source.limit(); ++i) {
+                float value = source.get(i);
+
+                if (value < -UNORM_TOLERANCE || value > 1f + UNORM_TOLERANCE) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Interleaves the attributes of the given {@link MeshData} according to this format,
+     * quantizing them as described by their {@link Encoding}s.
+     *
+     * @param meshData The mesh data to pack.
+     * @return A direct buffer in native byte order holding {@code getStride()} bytes per vertex.
+     */
+    public ByteBuffer pack(MeshData meshData) {
+        int vertexCount = meshData.getVertexCount();
+        ByteBuffer result = ByteBuffer.allocateDirect(vertexCount * STRIDE)
+                .order(ByteOrder.nativeOrder());
+        BoundingBox bounds = meshData.getBounds();
+        float[] center = bounds.getCenter();
+        float[] halfExtents = bounds.getHalfExtents();
+        float[] components = new float[4];
+        byte[] octahedral = new byte[2];
+
+        for (Attribute attribute : ATTRIBUTES) {
+            FloatBuffer source = attribute.semantic.getSource(meshData);
+            int sourceComponents = attribute.semantic.componentCount;
+
+            for (int vertex = 0; vertex < vertexCount; ++vertex) {
+                int position = vertex * STRIDE + attribute.offset;
+
+                for (int component = 0; component < sourceComponents; ++component) {
+                    components[component] = source.get(vertex * sourceComponents + component);
+                }
+
+                switch (attribute.encoding) {
+                    case FLOAT:
+                        for (int component = 0; component < sourceComponents; ++component) {
+                            result.putFloat(position + component * Float.BYTES,
+                                    components[component]);
+                        }
+                        break;
+                    case HALF_FLOAT:
+                        for (int component = 0; component < sourceComponents; ++component) {
+                            result.putShort(position + component * Short.BYTES,
+                                    HalfFloat.toHalf(components[component]));
+                        }
+                        break;
+                    case BOUNDED_SNORM16:
+                        for (int component = 0; component < sourceComponents; ++component) {
+                            result.putShort(position + component * Short.BYTES,
+                                    VertexQuantizer.encodeSnorm16(components[component],
+                                            center[component], halfExtents[component]));
+                        }
+                        break;
+                    case UNORM16:
+                        for (int component = 0; component < sourceComponents; ++component) {
+                            result.putShort(position + component * Short.BYTES,
+                                    VertexQuantizer.encodeUnorm16(components[component]));
+                        }
+                        break;
+                    case UINT16:
+                        for (int component = 0; component < sourceComponents; ++component) {
+                            result.putShort(position + component * Short.BYTES,
+                                    (short) Math.round(components[component]));
+                        }
+                        break;
+                    case OCTAHEDRAL:
+                        VertexQuantizer.encodeOctahedral(
+                                components[0], components[1], components[2], octahedral, 0);
+                        result.put(position, octahedral[0]);
+                        result.put(position + 1, octahedral[1]);
+                        break;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the shader preprocessor defines that make the vertex shaders decode the quantized
+     * attributes of this format: {@code QUANTIZED_POSITIONS} and {@code OCTAHEDRAL_NORMALS}.
+     */
+    public Map<String, String> getShaderDefines() {
+        HashMap<String, String> defines = new HashMap<>();
+
+        for (Attribute attribute : ATTRIBUTES) {
+            if (attribute.encoding == Encoding.BOUNDED_SNORM16) {
+                defines.put("QUANTIZED_POSITIONS", "1");
+            } else if (attribute.encoding == Encoding.OCTAHEDRAL) {
+                defines.put("OCTAHEDRAL_NORMALS", "1");
+            }
+        }
+
+        return defines;
+    }
+
+    /**
+     * Returns whether positions are stored relative to the mesh's bounding box and must be
+     * decoded with {@code u_PositionScale} and {@code u_PositionOffset}.
+     */
+    public boolean hasQuantizedPositions() {
+        for (Attribute attribute : ATTRIBUTES) {
+            if (attribute.encoding == Encoding.BOUNDED_SNORM16) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the attributes of this format, in the order of their offsets.
+     */
+    public Attribute[] getAttributes() {
+        return ATTRIBUTES;
+    }
+
+    /**
+     * Returns the number of bytes between the starts of two consecutive vertices.
+     */
+    public int getStride() {
+        return STRIDE;
+    }
+
+    /**
+     * The {@link MeshData} stream an attribute is filled from.
+     */
+    public enum Semantic {
+        POSITION(MeshData.POSITION_COMPONENTS),
+        TEX_COORD(MeshData.TEX_COORD_COMPONENTS),
+        NORMAL(MeshData.NORMAL_COMPONENTS);
+
+        final int componentCount;
+
+        Semantic(int componentCount) {
+            this.componentCount = componentCount;
+        }
+
+        FloatBuffer getSource(MeshData meshData) {
+            switch (this) {
+                case POSITION:
+                    return meshData.getPositions();
+                case TEX_COORD:
+                    return meshData.getTexCoords();
+                default:
+                    return meshData.getNormals();
+            }
+        }
+    }
+
+    /**
+     * How the float values of a {@link Semantic} are stored in the vertex buffer.
+     */
+    public enum Encoding {
+        /** 32-bit floats, stored as they are. */
+        FLOAT(GLES30.GL_FLOAT, false, false),
+        /** 16-bit half floats. */
+        HALF_FLOAT(GLES30.GL_HALF_FLOAT, false, false),
+        /**
+         * Signed normalized shorts relative to the mesh's {@link BoundingBox}. Only positions can
+         * be encoded like this; the shader restores them with {@code u_PositionScale} and
+         * {@code u_PositionOffset}.
+         */
+        BOUNDED_SNORM16(GLES30.GL_SHORT, true, false),
+        /** Unsigned normalized shorts, for values in [0, 1] such as texture coordinates. */
+        UNORM16(GLES30.GL_UNSIGNED_SHORT, true, false),
+        /** Unsigned integer shorts, read by the shader as {@code uvec} attributes. */
+        UINT16(GLES30.GL_UNSIGNED_SHORT, false, true),
+        /**
+         * Unit vectors mapped onto an octahedron and stored as two signed normalized bytes. Only
+         * normals can be encoded like this; the shader decodes them back into a vec3.
+         */
+        OCTAHEDRAL(GLES30.GL_BYTE, true, false);
+
+        final int componentType;
+        final boolean normalized;
+        final boolean integer;
+
+        Encoding(int componentType, boolean normalized, boolean integer) {
+            this.componentType = componentType;
+            this.normalized = normalized;
+            this.integer = integer;
+        }
+    }
+
+    /**
+     * A single vertex attribute within a {@link VertexFormat}.
+     *
+     * @see <a
+     * href="https://www.khronos.org/registry/OpenGL-Refpages/es3.0/html/glVertexAttribPointer.xhtml">glVertexAttribPointer</a>
+     */
+    public static final class Attribute {
+        public final Semantic semantic;
+        public final int location;
+        public final Encoding encoding;
+        public final int componentCount;
+        public final int componentType;
+        public final boolean normalized;
+        public final boolean integer;
+        public final int offset;
+
+        Attribute(Semantic semantic, int location, Encoding encoding, int offset) {
+            this.semantic = semantic;
+            this.location = location;
+            this.encoding = encoding;
+            this.componentCount = encoding == Encoding.OCTAHEDRAL ? 2 : semantic.componentCount;
+            this.componentType = encoding.componentType;
+            this.normalized = encoding.normalized;
+            this.integer = encoding.integer;
+            this.offset = offset;
+        }
+
+        /**
+         * Returns the size of this attribute in bytes, without padding.
+         */
+        public int getSize() {
+            return componentCount * getComponentSize(componentType);
+        }
+    }
+
+    /**
+     * Builds a {@link VertexFormat} by appending attributes one after another.
+     *
+     * <p>Every attribute starts at a 4-byte aligned offset, as recommended for vertex fetch.
+     */
+    public static final class Builder {
+        private final List<Attribute> ATTRIBUTES = new ArrayList<>();
+        private int offset = 0;
+
+        /**
+         * Appends an attribute.
+         *
+         * @param semantic The mesh data stream the attribute is filled from.
+         * @param location The shader attribute location.
+         * @param encoding How the attribute's values are stored.
+         * @return This builder.
+         */
+        public Builder add(Semantic semantic, int location, Encoding encoding) {
+            if (encoding == Encoding.BOUNDED_SNORM16 && semantic != Semantic.POSITION) {
+                throw new IllegalArgumentException("Only positions can be bounding box encoded");
+            }
+
+            if (encoding == Encoding.OCTAHEDRAL && semantic != Semantic.NORMAL) {
+                throw new IllegalArgumentException("Only normals can be octahedral encoded");
+            }
+
+            for (Attribute attribute : ATTRIBUTES) {
+                if (attribute.location == location) {
+                    throw new IllegalArgumentException("Duplicate attribute location " + location);
+                }
+            }
+
+            Attribute attribute = new Attribute(semantic, location, encoding, offset);
+            ATTRIBUTES.add(attribute);
+            offset = align(offset + attribute.getSize());
+            return this;
+        }
+
+        public VertexFormat build() {
+            if (ATTRIBUTES.isEmpty()) {
+                throw new IllegalStateException("A vertex format needs at least one attribute");
+            }
+
+            return new VertexFormat(ATTRIBUTES, offset);
+        }
+    }
+}
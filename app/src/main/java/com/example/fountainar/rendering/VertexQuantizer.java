@@ -0,0 +1,136 @@
+package com.example.fountainar.rendering;
+
+/**
+ * Encodes float vertex attributes into the compact integer representations used by quantized
+ * {@link VertexFormat}s, and decodes them the same way the GPU and shaders do.
+ *
+ * <p>Normalized integers are decoded by OpenGL ES 3.0 as {@code max(c / (2^(b-1) - 1), -1)} for
+ * signed and {@code c / (2^b - 1)} for unsigned components.
+ *
+ * @see <a href="https://jcgt.org/published/0003/02/01/">A Survey of Efficient Representations for
+ * Independent Unit Vectors</a>
+ */
+public final class VertexQuantizer {
+    private static final float SNORM8_MAX = 127f;
+    private static final float SNORM16_MAX = 32767f;
+    private static final float UNORM16_MAX = 65535f;
+
+    private VertexQuantizer() {
+    }
+
+    /**
+     * Encodes a coordinate as a signed normalized short relative to an interval, e.g. one axis of
+     * a mesh's {@link BoundingBox}. The coordinate is clamped to the interval.
+     *
+     * @param value      The coordinate.
+     * @param center     The center of the interval.
+     * @param halfExtent Half of the interval's length. Zero is allowed for degenerate intervals.
+     */
+    public static short encodeSnorm16(float value, float center, float halfExtent) {
+        float normalized = halfExtent > 0f ? (value - center) / halfExtent : 0f;
+        return (short) Math.round(clamp(normalized, -1f, 1f) * SNORM16_MAX);
+    }
+
+    /**
+     * Decodes a coordinate encoded with {@link #encodeSnorm16}.
+     */
+    public static float decodeSnorm16(short value, float center, float halfExtent) {
+        return Math.max(value / SNORM16_MAX, -1f) * halfExtent + center;
+    }
+
+    /**
+     * Encodes a value in [0, 1], e.g. a texture coordinate, as an unsigned normalized short. The
+     * value is clamped to [0, 1].
+     */
+    public static short encodeUnorm16(float value) {
+        return (short) Math.round(clamp(value, 0f, 1f) * UNORM16_MAX);
+    }
+
+    /**
+     * Decodes a value encoded with {@link #encodeUnorm16}.
+     */
+    public static float decodeUnorm16(short value) {
+        return (value & 0xFFFF) / UNORM16_MAX;
+    }
+
+    /**
+     * Encodes a unit vector into two signed normalized bytes using the octahedral mapping.
+     *
+     * <p>Of the four nearest quantized points, the one which decodes closest to the input is
+     * chosen, which keeps the angular error below one degree.
+     *
+     * @param x      The x component of the vector.
+     * @param y      The y component of the vector.
+     * @param z      The z component of the vector.
+     * @param result Array receiving the two encoded bytes at {@code offset}.
+     * @param offset The offset in {@code result}.
+     */
+    public static void encodeOctahedral(float x, float y, float z, byte[] result, int offset) {
+        float length = (float) Math.sqrt(x * x + y * y + z * z);
+        float l1Norm = Math.abs(x) + Math.abs(y) + Math.abs(z);
+
+        if (length == 0f || l1Norm == 0f) {
+            result[offset] = 0;
+            result[offset + 1] = 0;
+            return;
+        }
+
+        float u = x / l1Norm;
+        float v = y / l1Norm;
+
+        if (z < 0f) {
+            float foldedU = (1f - Math.abs(v)) * signNotZero(u);
+            float foldedV = (1f - Math.abs(u)) * signNotZero(v);
+            u = foldedU;
+            v = foldedV;
+        }
+
+        float[] decoded = new float[3];
+        float bestDot = -Float.MAX_VALUE;
+
+        for (int i = 0; i < 4; ++i) {
+            float scaledU = u * SNORM8_MAX;
+            float scaledV = v * SNORM8_MAX;
+            byte candidateU = (byte) ((i & 1) == 0 ? Math.floor(scaledU) : Math.ceil(scaledU));
+            byte candidateV = (byte) ((i & 2) == 0 ? Math.floor(scaledV) : Math.ceil(scaledV));
+            decodeOctahedral(candidateU, candidateV, decoded);
+            float dot = (decoded[0] * x + decoded[1] * y + decoded[2] * z) / length;
+
+            if (dot > bestDot) {
+                bestDot = dot;
+                result[offset] = candidateU;
+                result[offset + 1] = candidateV;
+            }
+        }
+    }
+
+    /**
+     * Decodes a unit vector encoded with {@link #encodeOctahedral}, matching the decoding in the
+     * vertex shaders.
+     *
+     * @param u      The first encoded byte.
+     * @param v      The second encoded byte.
+     * @param result Array receiving the normalized vector.
+     */
+    public static void decodeOctahedral(byte u, byte v, float[] result) {
+        float x = Math.max(u / SNORM8_MAX, -1f);
+        float y = Math.max(v / SNORM8_MAX, -1f);
+        float z = 1f - Math.abs(x) - Math.abs(y);
+        float t = Math.max(-z, 0f);
+        x += x >= 0f ? -t : t;
+        y += y >= 0f ? -t : t;
+        float length = (float) Math.sqrt(x * x + y * y + z * z);
+
+        result[0] = x / length;
+        result[1] = y / length;
+        result[2] = z / length;
+    }
+
+    private static float signNotZero(float value) {
+        return value >= 0f ? 1f : -1f;
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
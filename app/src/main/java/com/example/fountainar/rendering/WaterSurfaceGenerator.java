@@ -0,0 +1,212 @@
+package com.example.fountainar.rendering;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates a flat water surface, a disc or an annulus in a horizontal plane, directly into the
+ * direct buffers of {@link MeshData}, instead of loading it from an OBJ file.
+ *
+ * <p>The surface is made of concentric rings of vertices between the inner and the outer radius,
+ * each split into the same number of segments. The first segment starts on the positive x-axis,
+ * so a segment count divisible by four touches the bounding box of the outer circle. The
+ * triangles face up and all normals are (0, 1, 0). The texture coordinates are a planar
+ * projection that maps the outer circle onto the unit square, rotated about its center by the
+ * texture coordinate rotation; the water surface shaders only use them as a pattern across the
+ * surface.
+ *
+ * <p>By default the generator reproduces the water surface of the fountain basin, formerly
+ * shipped as {@code models/water_surface.obj} and now kept as a reference by the unit tests: a
+ * disc with 32 segments at the height of its top.
+ */
+public class WaterSurfaceGenerator {
+    /**
+     * The radius of the fountain basin's water surface.
+     */
+    static final float BASIN_RADIUS = 1.698685f;
+    static final float BASIN_CENTER_X = -0.010981f;
+    static final float BASIN_CENTER_Z = -0.030004f;
+    static final float BASIN_HEIGHT = 0.651894f;
+    /**
+     * The rotation of the texture coordinates of the fountain basin's water surface, see {@link
+     * #setTexCoordRotation}.
+     */
+    static final float BASIN_TEX_COORD_ROTATION = 118.1f;
+    static final int BASIN_SEGMENTS = 32;
+    /**
+     * The fewest segments {@link #generateLevels} reduces a level of detail to.
+     */
+    static final int MIN_SEGMENTS = 16;
+    private float outerRadius = BASIN_RADIUS;
+    private float innerRadius = 0f;
+    private float centerX = BASIN_CENTER_X;
+    private float centerZ = BASIN_CENTER_Z;
+    private float height = BASIN_HEIGHT;
+    private float texCoordRotation = BASIN_TEX_COORD_ROTATION;
+    private int rings = 1;
+    private int segments = BASIN_SEGMENTS;
+
+    /**
+     * Returns a generator for the fountain basin's water surface at the density of the given
+     * device quality tier. Its outline is the one of {@code water_surface.obj} on low-end
+     * devices and twice as round otherwise.
+     *
+     * @param isLowEndDevice Whether the device is a low-end device, see {@link
+     *                       android.app.ActivityManager#isLowRamDevice()}.
+     */
+    public static WaterSurfaceGenerator forQualityTier(boolean isLowEndDevice) {
+        return isLowEndDevice
+                ? new WaterSurfaceGenerator().setRings(4).setSegments(BASIN_SEGMENTS)
+                : new WaterSurfaceGenerator().setRings(8).setSegments(2 * BASIN_SEGMENTS);
+    }
+
+    /**
+     * Sets the outer radius and the inner radius, which is 0 for a disc.
+     */
+    public WaterSurfaceGenerator setRadii(float outerRadius, float innerRadius) {
+        if (innerRadius < 0 || innerRadius >= outerRadius) {
+            throw new IllegalArgumentException("The radii must satisfy 0 <= inner < outer, got "
+                    + innerRadius + " and " + outerRadius);
+        }
+
+        this.outerRadius = outerRadius;
+        this.innerRadius = innerRadius;
+        return this;
+    }
+
+    /**
+     * Sets the center of the surface in the horizontal plane.
+     */
+    public WaterSurfaceGenerator setCenter(float x, float z) {
+        this.centerX = x;
+        this.centerZ = z;
+        return this;
+    }
+
+    /**
+     * Sets the height, the y coordinate, of the surface.
+     */
+    public WaterSurfaceGenerator setHeight(float height) {
+        this.height = height;
+        return this;
+    }
+
+    /**
+     * Sets the rotation of the texture coordinates in degrees, by which their u-axis is turned
+     * from the x-axis towards the z-axis.
+     */
+    public WaterSurfaceGenerator setTexCoordRotation(float degrees) {
+        this.texCoordRotation = degrees;
+        return this;
+    }
+
+    /**
+     * Sets the number of rings of triangles between the inner and the outer radius.
+     */
+    public WaterSurfaceGenerator setRings(int rings) {
+        if (rings < 1) {
+            throw new IllegalArgumentException("A water surface needs at least one ring");
+        }
+
+        this.rings = rings;
+        return this;
+    }
+
+    /**
+     * Sets the number of segments every ring is split into.
+     */
+    public WaterSurfaceGenerator setSegments(int segments) {
+        if (segments < 3) {
+            throw new IllegalArgumentException("A water surface needs at least three segments");
+        }
+
+        this.segments = segments;
+        return this;
+    }
+
+    /**
+     * Generates the surface. Does not touch OpenGL and may be called on any thread.
+     */
+    public MeshData generate() {
+        return generate(rings, segments);
+    }
+
+    /**
+     * Generates the surface at decreasing levels of detail for {@link LodMesh#createFromData},
+     * halving the rings and segments from one level to the next until the segments would drop
+     * below {@link #MIN_SEGMENTS}.
+     *
+     * @param maxLevelCount The largest number of levels to generate.
+     * @return The levels, starting with {@link #generate()}.
+     */
+    public List<MeshData> generateLevels(int maxLevelCount) {
+        List<MeshData> levels = new ArrayList<>(maxLevelCount);
+        int levelRings = rings;
+        int levelSegments = segments;
+
+        do {
+            levels.add(generate(levelRings, levelSegments));
+            levelRings = Math.max(levelRings / 2, 1);
+            levelSegments /= 2;
+        } while (levels.size() < maxLevelCount && levelSegments >= MIN_SEGMENTS);
+
+        return levels;
+    }
+
+    private MeshData generate(int rings, int segments) {
+        boolean isDisc = innerRadius == 0;
+        // A disc has a single vertex at its center instead of a ring of radius 0.
+        int firstRingVertices = isDisc ? 1 : segments;
+        int vertexCount = firstRingVertices + rings * segments;
+        int triangleCount = (isDisc ? 2 * rings - 1 : 2 * rings) * segments;
+        FloatBuffer positions = MeshData.allocateFloats(
+                vertexCount * MeshData.POSITION_COMPONENTS);
+        FloatBuffer texCoords = MeshData.allocateFloats(
+                vertexCount * MeshData.TEX_COORD_COMPONENTS);
+        FloatBuffer normals = MeshData.allocateFloats(vertexCount * MeshData.NORMAL_COMPONENTS);
+        IntBuffer indices = MeshData.allocateInts(triangleCount * 3);
+        double rotation = Math.toRadians(texCoordRotation);
+        float texCoordScale = 0.5f / outerRadius;
+        float uX = (float) Math.cos(rotation) * texCoordScale;
+        float uZ = (float) Math.sin(rotation) * texCoordScale;
+
+        for (int ring = 0; ring <= rings; ++ring) {
+            float radius = innerRadius + (outerRadius - innerRadius) * ring / rings;
+
+            for (int segment = 0; segment < (ring == 0 ? firstRingVertices : segments);
+                 ++segment) {
+                double angle = 2 * Math.PI * segment / segments;
+                float x = radius * (float) Math.cos(angle);
+                float z = radius * (float) Math.sin(angle);
+                positions.put(centerX + x).put(height).put(centerZ + z);
+                texCoords.put(0.5f + uX * x + uZ * z).put(0.5f - uZ * x + uX * z);
+                normals.put(0f).put(1f).put(0f);
+            }
+        }
+
+        // Angles grow from +x towards +z, clockwise when looking down onto the surface, so the
+        // corners of each triangle are listed the other way round to face up.
+        for (int segment = 0; segment < segments; ++segment) {
+            int next = (segment + 1) % segments;
+
+            if (isDisc) {
+                indices.put(0).put(1 + next).put(1 + segment);
+            }
+
+            for (int ring = isDisc ? 1 : 0; ring < rings; ++ring) {
+                int inner = firstRingVertices + (ring - 1) * segments;
+                int outer = inner + segments;
+                indices.put(inner + segment).put(inner + next).put(outer + next);
+                indices.put(inner + segment).put(outer + next).put(outer + segment);
+            }
+        }
+
+        positions.rewind();
+        texCoords.rewind();
+        normals.rewind();
+        indices.rewind();
+        return new MeshData(positions, texCoords, normals, indices);
+    }
+}
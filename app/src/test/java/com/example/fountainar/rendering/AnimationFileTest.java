@@ -0,0 +1,174 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests the round trip of animations through {@link AnimationFile} and its error bounds.
+ */
+public class AnimationFileTest {
+    private static final float POSITION_STEP = 1f / 1024;
+    private static final float NORMAL_STEP = 1f / 256;
+
+    @Test
+    public void readFrames_staysWithinHalfAStep() throws IOException {
+        assertRoundTrip(false);
+    }
+
+    @Test
+    public void readFrames_staysWithinHalfAStepWhenDeflated() throws IOException {
+        assertRoundTrip(true);
+    }
+
+    @Test
+    public void readFrames_doesNotAccumulateErrors() throws IOException {
+        // Over this many frames, independently rounded deltas would add up to several steps.
+        List<MeshData> waveFrames = VertexAnimationTest.createWaveFrames();
+        MeshData[] frames = new MeshData[200];
+
+        for (int f = 0; f < frames.length; ++f) {
+            frames[f] = waveFrames.get(f % waveFrames.size());
+        }
+
+        VertexAnimation animation = VertexAnimation.fromFrames(Arrays.asList(frames));
+        List<MeshData> decoded = roundTrip(animation, true);
+
+        assertFramesWithinHalfAStep(animation, decoded);
+    }
+
+    @Test
+    public void readFrames_sharesTopologyBetweenFrames() throws IOException {
+        VertexAnimation animation =
+                VertexAnimation.fromFrames(VertexAnimationTest.createWaveFrames());
+
+        List<MeshData> decoded = roundTrip(animation, true);
+
+        assertTrue(KeyframeMesh.sharesTopology(decoded));
+        IntBuffer expectedIndices = animation.getBaseMesh().getIndices();
+
+        for (int i = 0; i < expectedIndices.limit(); ++i) {
+            assertEquals(expectedIndices.get(i), decoded.get(0).getIndices().get(i));
+        }
+    }
+
+    @Test
+    public void write_deflatedIsSmallerThanRawFloats() throws IOException {
+        VertexAnimation animation =
+                VertexAnimation.fromFrames(VertexAnimationTest.createWaveFrames());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        AnimationFile.write(animation, outputStream, POSITION_STEP, NORMAL_STEP, true);
+
+        int rawBytes = animation.getFrameCount() * animation.getVertexCount() * 6 * Float.BYTES;
+        assertTrue(outputStream.size() < rawBytes / 2);
+    }
+
+    @Test
+    public void decoder_streamsFramesIntoGivenBuffers() throws IOException {
+        VertexAnimation animation =
+                VertexAnimation.fromFrames(VertexAnimationTest.createWaveFrames());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        AnimationFile.write(animation, outputStream, POSITION_STEP, NORMAL_STEP, false);
+        FloatBuffer positions = MeshData.allocateFloats(animation.getVertexCount() * 3);
+        FloatBuffer normals = MeshData.allocateFloats(animation.getVertexCount() * 3);
+
+        try (AnimationFile.Decoder decoder = new AnimationFile.Decoder(
+                new ByteArrayInputStream(outputStream.toByteArray()))) {
+            for (int f = 0; f < decoder.getFrameCount(); ++f) {
+                decoder.readFrame(positions, normals);
+                assertWithin(animation.getPositions(f), positions, POSITION_STEP / 2);
+                assertWithin(animation.getNormals(f), normals, NORMAL_STEP / 2);
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void decoder_rejectsReadingPastLastFrame() throws IOException {
+        VertexAnimation animation =
+                VertexAnimation.fromFrames(VertexAnimationTest.createWaveFrames().subList(0, 1));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        AnimationFile.write(animation, outputStream, POSITION_STEP, NORMAL_STEP, true);
+        FloatBuffer positions = MeshData.allocateFloats(animation.getVertexCount() * 3);
+        FloatBuffer normals = MeshData.allocateFloats(animation.getVertexCount() * 3);
+
+        try (AnimationFile.Decoder decoder = new AnimationFile.Decoder(
+                new ByteArrayInputStream(outputStream.toByteArray()))) {
+            decoder.readFrame(positions, normals);
+            decoder.readFrame(positions, normals);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void readFrames_rejectsOtherFiles() throws IOException {
+        AnimationFile.readFrames(new ByteArrayInputStream(new byte[64]));
+    }
+
+    @Test(expected = IOException.class)
+    public void readFrames_rejectsTruncatedFiles() throws IOException {
+        VertexAnimation animation =
+                VertexAnimation.fromFrames(VertexAnimationTest.createWaveFrames());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        AnimationFile.write(animation, outputStream, POSITION_STEP, NORMAL_STEP, false);
+        byte[] bytes = outputStream.toByteArray();
+
+        AnimationFile.readFrames(new ByteArrayInputStream(bytes, 0, bytes.length - 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void write_rejectsDeltasTooLargeForStep() throws IOException {
+        VertexAnimation animation =
+                VertexAnimation.fromFrames(VertexAnimationTest.createWaveFrames());
+
+        AnimationFile.write(animation, new ByteArrayOutputStream(), 1e-10f, NORMAL_STEP, false);
+    }
+
+    private static void assertRoundTrip(boolean deflate) throws IOException {
+        VertexAnimation animation =
+                VertexAnimation.fromFrames(VertexAnimationTest.createWaveFrames());
+
+        assertFramesWithinHalfAStep(animation, roundTrip(animation, deflate));
+    }
+
+    private static List<MeshData> roundTrip(VertexAnimation animation, boolean deflate)
+            throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        AnimationFile.write(animation, outputStream, POSITION_STEP, NORMAL_STEP, deflate);
+
+        try (InputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray())) {
+            return AnimationFile.readFrames(inputStream);
+        }
+    }
+
+    private static void assertFramesWithinHalfAStep(VertexAnimation animation,
+                                                    List<MeshData> decoded) {
+        assertEquals(animation.getFrameCount(), decoded.size());
+
+        for (int f = 0; f < animation.getFrameCount(); ++f) {
+            assertWithin(animation.getPositions(f), decoded.get(f).getPositions(),
+                    POSITION_STEP / 2);
+            assertWithin(animation.getNormals(f), decoded.get(f).getNormals(), NORMAL_STEP / 2);
+            assertWithin(animation.getBaseMesh().getTexCoords(), decoded.get(f).getTexCoords(),
+                    0f);
+        }
+    }
+
+    private static void assertWithin(FloatBuffer expected, FloatBuffer actual, float bound) {
+        assertEquals(expected.limit(), actual.limit());
+
+        for (int i = 0; i < expected.limit(); ++i) {
+            // Allow for the rounding of the float additions on top of the quantization error.
+            assertEquals(expected.get(i), actual.get(i), bound + Math.ulp(expected.get(i)) * 4);
+        }
+    }
+}
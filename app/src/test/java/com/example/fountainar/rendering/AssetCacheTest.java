@@ -0,0 +1,284 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the reference counting, the CPU data budget and prefetching of {@link AssetCache}.
+ */
+public class AssetCacheTest {
+    private static final AssetCache.Key KEY = new AssetCache.Key("models/a.obj", "option");
+
+    @Test
+    public void acquire_sharesObjectsBetweenHandles() throws IOException {
+        AssetCache cache = new AssetCache(0);
+        int[] created = {0};
+        AssetCache.Factory<FakeObject> factory = () -> {
+            ++created[0];
+            return new FakeObject();
+        };
+
+        AssetCache.Handle<FakeObject> first = cache.acquire(KEY, factory);
+        AssetCache.Handle<FakeObject> second =
+                cache.acquire(new AssetCache.Key("models/a.obj", "option"), factory);
+
+        assertSame(first.get(), second.get());
+        assertEquals(1, created[0]);
+    }
+
+    @Test
+    public void acquire_distinguishesOptions() throws IOException {
+        AssetCache cache = new AssetCache(0);
+
+        AssetCache.Handle<FakeObject> first = cache.acquire(KEY, FakeObject::new);
+        AssetCache.Handle<FakeObject> second = cache.acquire(
+                new AssetCache.Key("models/a.obj", "other option"), FakeObject::new);
+
+        assertNotSame(first.get(), second.get());
+    }
+
+    @Test
+    public void close_releasesObjectWithLastHandle() throws IOException {
+        AssetCache cache = new AssetCache(0);
+        AssetCache.Handle<FakeObject> first = cache.acquire(KEY, FakeObject::new);
+        AssetCache.Handle<FakeObject> second = cache.acquire(KEY, FakeObject::new);
+        FakeObject object = first.get();
+
+        first.close();
+        first.close();
+        assertFalse(object.isClosed);
+
+        second.close();
+        assertTrue(object.isClosed);
+        assertNotSame(object, cache.acquire(KEY, FakeObject::new).get());
+    }
+
+    @Test
+    public void acquire_createsObjectsOutsideTheLock() throws Exception {
+        AssetCache cache = new AssetCache(0);
+        CountDownLatch creating = new CountDownLatch(1);
+        CompletableFuture<Void> created = new CompletableFuture<>();
+        FakeObject slowObject = new FakeObject();
+        FutureTask<AssetCache.Handle<FakeObject>> slowAcquire = new FutureTask<>(
+                () -> cache.acquire(KEY, () -> {
+                    creating.countDown();
+                    created.join();
+                    return slowObject;
+                }));
+        new Thread(slowAcquire).start();
+        creating.await();
+
+        AssetCache.Handle<FakeObject> other = cache.acquire(
+                new AssetCache.Key("models/b.obj"), FakeObject::new);
+        AssetCache.Handle<FakeObject> first = cache.acquire(KEY, FakeObject::new);
+        created.complete(null);
+
+        assertNotSame(other.get(), first.get());
+        assertSame(first.get(), slowAcquire.get(10, TimeUnit.SECONDS).get());
+        assertTrue(slowObject.isClosed);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void get_rejectsClosedHandle() throws IOException {
+        AssetCache.Handle<FakeObject> handle = new AssetCache(0).acquire(KEY, FakeObject::new);
+        handle.close();
+        handle.get();
+    }
+
+    @Test
+    public void onContextCreated_rebuildsWithoutDeletingLostObjects() throws IOException {
+        AssetCache cache = new AssetCache(0);
+        AssetCache.Handle<FakeObject> oldHandle = cache.acquire(KEY, FakeObject::new);
+        FakeObject oldObject = oldHandle.get();
+
+        cache.onContextCreated();
+        AssetCache.Handle<FakeObject> newHandle = cache.acquire(KEY, FakeObject::new);
+        oldHandle.close();
+
+        assertNotSame(oldObject, newHandle.get());
+        assertFalse(oldObject.isClosed);
+        assertFalse(newHandle.get().isClosed);
+    }
+
+    @Test
+    public void getCpuData_evictsLeastRecentlyUsed() throws IOException {
+        AssetCache cache = new AssetCache(100);
+        int[] loads = {0};
+        AssetCache.Factory<String> loader = () -> "data" + loads[0]++;
+
+        String a = cache.getCpuData("a", loader, data -> 40);
+        cache.getCpuData("b", loader, data -> 40);
+        assertSame(a, cache.getCpuData("a", loader, data -> 40));
+        cache.getCpuData("c", loader, data -> 40);
+
+        assertEquals(80, cache.getCpuBytes());
+        assertEquals(3, loads[0]);
+        assertSame(a, cache.getCpuData("a", loader, data -> 40));
+        cache.getCpuData("b", loader, data -> 40);
+        assertEquals(4, loads[0]);
+    }
+
+    @Test
+    public void getCpuData_givesEvictedTextureDataBackToItsPool() throws IOException {
+        AssetCache cache = new AssetCache(100);
+        StagingBufferPool pool = new StagingBufferPool(StagingBufferPool.DEFAULT_MAX_IDLE_BYTES);
+        cache.getCpuData("a", () -> TextureData.createPooled(pool, 2, 2, pool.acquire(16)),
+                data -> 60);
+
+        cache.getCpuData("b", () -> "b", data -> 60);
+
+        assertEquals(0, pool.getAcquiredCount());
+        assertEquals(StagingBufferPool.MIN_BUCKET_BYTES, pool.getIdleBytes());
+    }
+
+    @Test
+    public void buildFromCpuData_keepsDataEvictedWhileBuildingOpen() throws IOException {
+        AssetCache cache = new AssetCache(100);
+        StagingBufferPool pool = new StagingBufferPool(StagingBufferPool.DEFAULT_MAX_IDLE_BYTES);
+
+        int acquiredAfterEviction = cache.buildFromCpuData("a",
+                () -> TextureData.createPooled(pool, 2, 2, pool.acquire(16)), data -> 60,
+                data -> {
+                    cache.getCpuData("b", () -> "b", other -> 60);
+                    return pool.getAcquiredCount();
+                });
+
+        assertEquals(1, acquiredAfterEviction);
+        assertEquals(0, pool.getAcquiredCount());
+    }
+
+    @Test
+    public void buildFromCpuData_sharesUncachedPrefetchedDataBetweenWaiters() throws Exception {
+        AssetCache cache = new AssetCache(100);
+        StagingBufferPool pool = new StagingBufferPool(StagingBufferPool.DEFAULT_MAX_IDLE_BYTES);
+        CountDownLatch loading = new CountDownLatch(1);
+        cache.prefetch("a", () -> {
+            loading.await();
+            return TextureData.createPooled(pool, 2, 2, pool.acquire(16));
+        });
+        AssetCache.Factory<TextureData> loader = () -> {
+            throw new AssertionError("The prefetch was not awaited");
+        };
+        AtomicInteger builderCount = new AtomicInteger();
+        CompletableFuture<Void> firstReleased = new CompletableFuture<>();
+        List<FutureTask<Integer>> builds = new ArrayList<>();
+
+        for (int i = 0; i < 2; ++i) {
+            // The second builder checks whether the data is still open once the first released it.
+            FutureTask<Integer> build = new FutureTask<>(() -> {
+                int acquired = cache.buildFromCpuData("a", loader, data -> 101, data -> {
+                    if (builderCount.getAndIncrement() == 0) {
+                        return -1;
+                    }
+
+                    firstReleased.join();
+                    return pool.getAcquiredCount();
+                });
+
+                if (acquired == -1) {
+                    firstReleased.complete(null);
+                }
+
+                return acquired;
+            });
+            Thread thread = new Thread(build);
+            thread.start();
+            awaitWaiting(thread);
+            builds.add(build);
+        }
+
+        loading.countDown();
+
+        // The first builder returns -1, the second finds the buffer still acquired.
+        assertEquals(0, builds.get(0).get(10, TimeUnit.SECONDS)
+                + builds.get(1).get(10, TimeUnit.SECONDS));
+        assertEquals(0, pool.getAcquiredCount());
+        assertEquals(StagingBufferPool.MIN_BUCKET_BYTES, pool.getIdleBytes());
+    }
+
+    @Test
+    public void getCpuData_doesNotCacheDataLargerThanBudget() throws IOException {
+        AssetCache cache = new AssetCache(100);
+        cache.getCpuData("small", () -> "small", data -> 10);
+
+        cache.getCpuData("large", () -> "large", data -> 101);
+
+        assertEquals(10, cache.getCpuBytes());
+    }
+
+    @Test
+    public void buildFromCpuData_givesUncachedTextureDataBackToItsPool() throws IOException {
+        AssetCache cache = new AssetCache(100);
+        StagingBufferPool pool = new StagingBufferPool(StagingBufferPool.DEFAULT_MAX_IDLE_BYTES);
+        AssetCache.Factory<TextureData> loader =
+                () -> TextureData.createPooled(pool, 2, 2, pool.acquire(16));
+
+        cache.buildFromCpuData("cached", loader, data -> 60, data -> data);
+        assertEquals(1, pool.getAcquiredCount());
+
+        int acquiredWhileBuilding = cache.buildFromCpuData("large", loader, data -> 101,
+                data -> pool.getAcquiredCount());
+
+        assertEquals(2, acquiredWhileBuilding);
+        assertEquals(1, pool.getAcquiredCount());
+        assertEquals(60, cache.getCpuBytes());
+    }
+
+    @Test
+    public void prefetch_hasGetCpuDataAwaitThePendingData() throws Exception {
+        AssetCache cache = new AssetCache(100);
+        CountDownLatch loading = new CountDownLatch(1);
+
+        Future<?> pending = cache.prefetch("a", () -> {
+            loading.await();
+            return "prefetched";
+        });
+
+        assertSame(pending, cache.prefetch("a", () -> "again"));
+        assertFalse(pending.isDone());
+        loading.countDown();
+        assertEquals("prefetched", cache.getCpuData("a", () -> "loaded", data -> 10));
+        assertEquals(10, cache.getCpuBytes());
+        assertTrue(cache.prefetch("a", () -> "again").isDone());
+    }
+
+    /**
+     * Waits until the given thread blocks, e.g. for a prefetch.
+     */
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+        while (thread.getState() != Thread.State.WAITING) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError(thread.getName() + " does not wait");
+            }
+
+            Thread.sleep(1);
+        }
+    }
+
+    private static final class FakeObject implements Closeable {
+        private boolean isClosed;
+
+        @Override
+        public void close() {
+            isClosed = true;
+        }
+    }
+}
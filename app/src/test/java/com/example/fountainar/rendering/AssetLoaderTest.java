@@ -0,0 +1,84 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the background loading and error propagation of {@link AssetLoader}.
+ */
+public class AssetLoaderTest {
+
+    @Test
+    public void await_returnsLoadedData() throws IOException {
+        MeshData meshData = emptyMesh();
+
+        assertSame(meshData, AssetLoader.await(AssetLoader.submit(() -> meshData)));
+    }
+
+    @Test
+    public void await_rethrowsIOException() {
+        IOException failure = new FileNotFoundException("models/missing.obj");
+
+        try {
+            AssetLoader.await(AssetLoader.submit(() -> {
+                throw failure;
+            }));
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertSame(failure, e);
+        }
+    }
+
+    @Test
+    public void await_rethrowsRuntimeException() throws IOException {
+        IllegalArgumentException failure = new IllegalArgumentException("Bad mesh");
+
+        try {
+            AssetLoader.await(AssetLoader.submit(() -> {
+                throw failure;
+            }));
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertSame(failure, e);
+        }
+    }
+
+    @Test
+    public void submit_loadsConcurrently() throws Exception {
+        int threads = Math.min(2, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        CountDownLatch started = new CountDownLatch(threads);
+        List<Future<MeshData>> futures = new ArrayList<>();
+
+        for (int i = 0; i < threads; ++i) {
+            futures.add(AssetLoader.submit(() -> {
+                started.countDown();
+                // Only returns once all tasks run at the same time.
+                if (!started.await(10, TimeUnit.SECONDS)) {
+                    throw new IOException("Tasks did not run concurrently");
+                }
+                return emptyMesh();
+            }));
+        }
+
+        for (Future<MeshData> future : futures) {
+            assertEquals(0, AssetLoader.await(future).getVertexCount());
+        }
+    }
+
+    private static MeshData emptyMesh() {
+        FloatBuffer empty = MeshData.allocateFloats(0);
+        return new MeshData(empty, empty, empty, MeshData.allocateInts(0));
+    }
+}
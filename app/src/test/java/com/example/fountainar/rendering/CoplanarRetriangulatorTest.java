@@ -0,0 +1,344 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests that {@link CoplanarRetriangulator} shrinks flat regions to their outline while keeping
+ * their area, outline and attributes.
+ */
+public class CoplanarRetriangulatorTest {
+    private static final String WATER_SURFACE = "src/test/resources/models/water_surface.obj";
+    private static final int GRID_SIZE = 12;
+    private static final float[] X_AXIS = {1f, 0f, 0f};
+    private static final float[] Y_AXIS = {0f, 1f, 0f};
+    private static final float[] Z_AXIS = {0f, 0f, 1f};
+
+    @Test
+    public void retriangulate_triangulatesGridOutline() {
+        MeshData grid = new MeshBuilder().addGrid(new float[3], X_AXIS, Z_AXIS, GRID_SIZE, 0)
+                .build();
+
+        MeshData result = CoplanarRetriangulator.retriangulate(grid);
+
+        int boundaryVertices = 4 * GRID_SIZE;
+        assertEquals(boundaryVertices, result.getVertexCount());
+        assertEquals(boundaryVertices - 2, result.getIndexCount() / 3);
+        assertEquals(computeArea(grid), computeArea(result), 1e-3f);
+        assertEquals(getBoundaryPositions(grid), getBoundaryPositions(result));
+        assertFacing(result, Y_AXIS);
+        assertTexCoordsFollowPositions(result);
+    }
+
+    @Test
+    public void retriangulate_keepsHoles() {
+        MeshData grid = new MeshBuilder().addGrid(new float[3], X_AXIS, Z_AXIS, GRID_SIZE, 4)
+                .build();
+
+        MeshData result = CoplanarRetriangulator.retriangulate(grid);
+
+        // n + 2h - 2 triangles for the outline and the hole's 4 * 4 boundary vertices.
+        int boundaryVertices = 4 * GRID_SIZE + 4 * 4;
+        int holes = 1;
+        assertEquals(boundaryVertices, result.getVertexCount());
+        assertEquals(boundaryVertices + 2 * holes - 2, result.getIndexCount() / 3);
+        assertEquals(computeArea(grid), computeArea(result), 1e-3f);
+        assertEquals(getBoundaryPositions(grid), getBoundaryPositions(result));
+        assertFacing(result, Y_AXIS);
+    }
+
+    @Test
+    public void retriangulate_keepsClosedBoxWatertight() {
+        MeshData box = createBox(GRID_SIZE);
+
+        MeshData result = CoplanarRetriangulator.retriangulate(box);
+
+        // Every face keeps its 4 * GRID_SIZE boundary vertices, shared with its neighbors.
+        assertEquals(6 * (4 * GRID_SIZE - 2), result.getIndexCount() / 3);
+        assertEquals(computeArea(box), computeArea(result), 1e-2f);
+        assertTrue(getBoundaryEdges(result).isEmpty());
+    }
+
+    @Test
+    public void retriangulate_comparesRegionsWithTheirSeed() {
+        // Each grid bends by less than the plane tolerance from its neighbor, but not from the
+        // grids further away, so no region may span the whole chain.
+        float angle = 3e-4f;
+        float[] origin = new float[3];
+        MeshBuilder builder = new MeshBuilder();
+
+        for (int k = 0; k < 4; ++k) {
+            float[] u = {(float) Math.cos(k * angle), (float) Math.sin(k * angle), 0f};
+            int firstTexCoord = builder.TEX_COORDS.size();
+            builder.addGrid(origin, u, Z_AXIS, GRID_SIZE, 0);
+
+            // Continues the texture mapping of the previous grid.
+            for (int t = firstTexCoord; t < builder.TEX_COORDS.size(); t += 2) {
+                builder.TEX_COORDS.set(t, builder.TEX_COORDS.get(t) + k);
+            }
+
+            origin = new float[]{origin[0] + GRID_SIZE * u[0], origin[1] + GRID_SIZE * u[1],
+                    origin[2] + GRID_SIZE * u[2]};
+        }
+
+        MeshData chain = builder.build();
+
+        MeshData result = CoplanarRetriangulator.retriangulate(chain);
+
+        assertTrue(result.getIndexCount() < chain.getIndexCount() / 4);
+        assertEquals(computeArea(chain), computeArea(result), 1e-3f);
+    }
+
+        @Test
+    public void retriangulate_keepsNonAffineTexCoords() {
+        MeshBuilder builder = new MeshBuilder().addGrid(new float[3], X_AXIS, Z_AXIS, GRID_SIZE,
+                0);
+
+        for (int v = 0; v < builder.TEX_COORDS.size(); v += 2) {
+            float u = builder.TEX_COORDS.get(v);
+            builder.TEX_COORDS.set(v, u * u);
+        }
+
+        MeshData grid = builder.build();
+
+        assertSame(grid, CoplanarRetriangulator.retriangulate(grid));
+    }
+
+    @Test
+    public void retriangulate_keepsSmoothNormals() {
+        MeshBuilder builder = new MeshBuilder().addGrid(new float[3], X_AXIS, Z_AXIS, GRID_SIZE,
+                0);
+
+        for (int v = 0; v < builder.NORMALS.size(); v += 3) {
+            float tilt = builder.POSITIONS.get(v) * 0.05f;
+            float length = (float) Math.sqrt(1 + tilt * tilt);
+            builder.NORMALS.set(v, tilt / length);
+            builder.NORMALS.set(v + 1, 1 / length);
+        }
+
+        MeshData grid = builder.build();
+
+        assertSame(grid, CoplanarRetriangulator.retriangulate(grid));
+    }
+
+    @Test
+    public void retriangulate_shrinksWaterSurface() throws IOException {
+        MeshData waterSurface;
+
+        try (InputStream inputStream = new FileInputStream(WATER_SURFACE)) {
+            waterSurface = MeshData.fromObj(inputStream);
+        }
+
+        MeshData result = CoplanarRetriangulator.retriangulate(waterSurface);
+
+        assertTrue(result.getIndexCount() * 3 < waterSurface.getIndexCount());
+        assertEquals(1f, computeArea(result) / computeArea(waterSurface), 1e-4f);
+        assertArrayEquals(waterSurface.getBounds().getMin(), result.getBounds().getMin(), 0f);
+        assertArrayEquals(waterSurface.getBounds().getMax(), result.getBounds().getMax(), 0f);
+        assertEquals(getBoundaryEdges(waterSurface), getBoundaryEdges(result));
+    }
+
+    /**
+     * Asserts that every triangle faces the given direction, i.e. that windings are kept.
+     */
+    private static void assertFacing(MeshData meshData, float[] direction) {
+        for (int i = 0; i < meshData.getIndexCount(); i += 3) {
+            float[] normal = computeNormal(meshData, i);
+            float facing = normal[0] * direction[0] + normal[1] * direction[1]
+                    + normal[2] * direction[2];
+            assertTrue("Triangle " + i / 3, facing > 0);
+        }
+    }
+
+    /**
+     * Asserts that the texture coordinates of a grid in the plane y = 0 still follow {@link
+     * MeshBuilder#addGrid}.
+     */
+    private static void assertTexCoordsFollowPositions(MeshData meshData) {
+        for (int v = 0; v < meshData.getVertexCount(); ++v) {
+            assertEquals(meshData.getPositions().get(v * 3) / GRID_SIZE,
+                    meshData.getTexCoords().get(v * 2), 1e-6f);
+            assertEquals(meshData.getPositions().get(v * 3 + 2) / GRID_SIZE,
+                    meshData.getTexCoords().get(v * 2 + 1), 1e-6f);
+        }
+    }
+
+    private static float computeArea(MeshData meshData) {
+        double area = 0;
+
+        for (int i = 0; i < meshData.getIndexCount(); i += 3) {
+            float[] normal = computeNormal(meshData, i);
+            area += Math.sqrt(normal[0] * normal[0] + normal[1] * normal[1]
+                    + normal[2] * normal[2]) / 2;
+        }
+
+        return (float) area;
+    }
+
+    private static float[] computeNormal(MeshData meshData, int firstIndex) {
+        FloatBuffer positions = meshData.getPositions();
+        IntBuffer indices = meshData.getIndices();
+        float[] ab = new float[3];
+        float[] ac = new float[3];
+
+        for (int axis = 0; axis < 3; ++axis) {
+            float a = positions.get(indices.get(firstIndex) * 3 + axis);
+            ab[axis] = positions.get(indices.get(firstIndex + 1) * 3 + axis) - a;
+            ac[axis] = positions.get(indices.get(firstIndex + 2) * 3 + axis) - a;
+        }
+
+        return new float[]{
+                ab[1] * ac[2] - ab[2] * ac[1],
+                ab[2] * ac[0] - ab[0] * ac[2],
+                ab[0] * ac[1] - ab[1] * ac[0],
+        };
+    }
+
+    /**
+     * Returns the directed edges, by position, without a twin in the opposite direction.
+     */
+    private static Set<String> getBoundaryEdges(MeshData meshData) {
+        HashMap<String, Integer> edges = new HashMap<>();
+
+        for (int i = 0; i < meshData.getIndexCount(); i += 3) {
+            for (int e = 0; e < 3; ++e) {
+                String start = getPosition(meshData, meshData.getIndices().get(i + e));
+                String end = getPosition(meshData, meshData.getIndices().get(i + (e + 1) % 3));
+                edges.merge(start + ">" + end, 1, Integer::sum);
+                edges.merge(end + ">" + start, -1, Integer::sum);
+            }
+        }
+
+        Set<String> boundaryEdges = new HashSet<>();
+
+        for (HashMap.Entry<String, Integer> edge : edges.entrySet()) {
+            if (edge.getValue() > 0) {
+                boundaryEdges.add(edge.getKey());
+            }
+        }
+
+        return boundaryEdges;
+    }
+
+    private static Set<String> getBoundaryPositions(MeshData meshData) {
+        Set<String> positions = new HashSet<>();
+
+        for (String edge : getBoundaryEdges(meshData)) {
+            positions.add(edge.substring(0, edge.indexOf('>')));
+        }
+
+        return positions;
+    }
+
+    private static String getPosition(MeshData meshData, int vertex) {
+        FloatBuffer positions = meshData.getPositions();
+        return positions.get(vertex * 3) + "," + positions.get(vertex * 3 + 1) + ","
+                + positions.get(vertex * 3 + 2);
+    }
+
+    /**
+     * Returns the closed cube [0, size]^3 with one grid per face, facing outwards. Faces have
+     * their own vertices, so that each has its own normal.
+     */
+    private static MeshData createBox(int size) {
+        float s = size;
+        return new MeshBuilder()
+                .addGrid(new float[]{0f, 0f, 0f}, Z_AXIS, X_AXIS, size, 0)
+                .addGrid(new float[]{0f, s, 0f}, X_AXIS, Z_AXIS, size, 0)
+                .addGrid(new float[]{0f, 0f, 0f}, Y_AXIS, Z_AXIS, size, 0)
+                .addGrid(new float[]{s, 0f, 0f}, Z_AXIS, Y_AXIS, size, 0)
+                .addGrid(new float[]{0f, 0f, 0f}, X_AXIS, Y_AXIS, size, 0)
+                .addGrid(new float[]{0f, 0f, s}, Y_AXIS, X_AXIS, size, 0)
+                .build();
+    }
+
+    private static final class MeshBuilder {
+        private final List<Float> POSITIONS = new ArrayList<>();
+        private final List<Float> TEX_COORDS = new ArrayList<>();
+        private final List<Float> NORMALS = new ArrayList<>();
+        private final List<Integer> INDICES = new ArrayList<>();
+
+        /**
+         * Adds a square grid of unit cells spanned by {@code u} and {@code v} from {@code origin},
+         * facing v x u, with texture coordinates spanning [0, 1]. A centered square of {@code
+         * holeSize} cells is left out.
+         */
+        MeshBuilder addGrid(float[] origin, float[] u, float[] v, int size, int holeSize) {
+            int first = POSITIONS.size() / 3;
+            int holeStart = (size - holeSize) / 2;
+            float[] normal = {
+                    v[1] * u[2] - v[2] * u[1],
+                    v[2] * u[0] - v[0] * u[2],
+                    v[0] * u[1] - v[1] * u[0],
+            };
+
+            for (int i = 0; i <= size; ++i) {
+                for (int j = 0; j <= size; ++j) {
+                    for (int axis = 0; axis < 3; ++axis) {
+                        POSITIONS.add(origin[axis] + i * u[axis] + j * v[axis]);
+                        NORMALS.add(normal[axis]);
+                    }
+
+                    TEX_COORDS.add(i / (float) size);
+                    TEX_COORDS.add(j / (float) size);
+                }
+            }
+
+            for (int i = 0; i < size; ++i) {
+                for (int j = 0; j < size; ++j) {
+                    if (i >= holeStart && i < holeStart + holeSize && j >= holeStart
+                            && j < holeStart + holeSize) {
+                        continue;
+                    }
+
+                    int corner = first + i * (size + 1) + j;
+                    INDICES.add(corner);
+                    INDICES.add(corner + 1);
+                    INDICES.add(corner + size + 1);
+                    INDICES.add(corner + size + 1);
+                    INDICES.add(corner + 1);
+                    INDICES.add(corner + size + 2);
+                }
+            }
+
+            return this;
+        }
+
+        MeshData build() {
+            FloatBuffer positions = MeshData.allocateFloats(POSITIONS.size());
+            FloatBuffer texCoords = MeshData.allocateFloats(TEX_COORDS.size());
+            FloatBuffer normals = MeshData.allocateFloats(NORMALS.size());
+            IntBuffer indices = MeshData.allocateInts(INDICES.size());
+
+            for (int i = 0; i < POSITIONS.size(); ++i) {
+                positions.put(i, POSITIONS.get(i));
+                normals.put(i, NORMALS.get(i));
+            }
+
+            for (int i = 0; i < TEX_COORDS.size(); ++i) {
+                texCoords.put(i, TEX_COORDS.get(i));
+            }
+
+            for (int i = 0; i < INDICES.size(); ++i) {
+                indices.put(i, INDICES.get(i));
+            }
+
+            return new MeshData(positions, texCoords, normals, indices);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Tests the difference metric of {@link CubemapChangeDetector} on synthetic cubemaps of half
+ * float faces.
+ */
+public class CubemapChangeDetectorTest {
+    private static final int RESOLUTION = 4;
+
+    private final CubemapChangeDetector DETECTOR = new CubemapChangeDetector(
+            CubemapChangeDetector.DEFAULT_THRESHOLD, 1);
+
+    @Test
+    public void hasChanged_acceptsFirstCubemap() {
+        assertTrue(DETECTOR.hasChanged(createCubemap(1f, 0f)));
+        assertEquals(Float.POSITIVE_INFINITY, DETECTOR.getLastDifference(), 0f);
+    }
+
+    @Test
+    public void hasChanged_skipsIdenticalAndSlightlyNoisyCubemaps() {
+        DETECTOR.hasChanged(createCubemap(1f, 0f));
+
+        assertFalse(DETECTOR.hasChanged(createCubemap(1f, 0f)));
+        assertEquals(0f, DETECTOR.getLastDifference(), 0f);
+        assertFalse(DETECTOR.hasChanged(createCubemap(1f, 0.01f)));
+    }
+
+    @Test
+    public void hasChanged_doesNotDependOnExposure() {
+        DETECTOR.hasChanged(createCubemap(100f, 0f));
+
+        assertFalse(DETECTOR.hasChanged(createCubemap(101f, 0f)));
+        assertEquals(0.01f, DETECTOR.getLastDifference(), 0.001f);
+        assertTrue(DETECTOR.hasChanged(createCubemap(105f, 0f)));
+    }
+
+    @Test
+    public void hasChanged_detectsDriftAgainstLastChangedCubemap() {
+        DETECTOR.hasChanged(createCubemap(1f, 0f));
+
+        assertFalse(DETECTOR.hasChanged(createCubemap(1.01f, 0f)));
+        assertFalse(DETECTOR.hasChanged(createCubemap(1.015f, 0f)));
+        assertTrue(DETECTOR.hasChanged(createCubemap(1.03f, 0f)));
+        assertFalse(DETECTOR.hasChanged(createCubemap(1.04f, 0f)));
+    }
+
+    @Test
+    public void reset_acceptsNextCubemap() {
+        DETECTOR.hasChanged(createCubemap(1f, 0f));
+
+        DETECTOR.reset();
+
+        assertTrue(DETECTOR.hasChanged(createCubemap(1f, 0f)));
+    }
+
+    @Test
+    public void hasChanged_seesOnlySampledTexels() {
+        CubemapChangeDetector detector = new CubemapChangeDetector(
+                CubemapChangeDetector.DEFAULT_THRESHOLD, 3);
+        detector.hasChanged(createCubemap(1f, 0f));
+        ByteBuffer[] unsampledChange = createCubemap(1f, 0f);
+        ByteBuffer[] sampledChange = createCubemap(1f, 0f);
+        // Texel 1 of each face is skipped, texel 3 is sampled.
+        for (ByteBuffer face : unsampledChange) {
+            face.putShort(8, HalfFloat.toHalf(50f));
+        }
+
+        for (ByteBuffer face : sampledChange) {
+            face.putShort(3 * 8, HalfFloat.toHalf(50f));
+        }
+
+        assertFalse(detector.hasChanged(unsampledChange));
+        assertTrue(detector.hasChanged(sampledChange));
+    }
+
+    @Test
+    public void hasChanged_treatsNonFiniteColorsAsChange() {
+        DETECTOR.hasChanged(createCubemap(1f, 0f));
+        ByteBuffer[] cubemap = createCubemap(1f, 0f);
+        cubemap[2].putShort(0, HalfFloat.toHalf(Float.NaN));
+
+        assertTrue(DETECTOR.hasChanged(cubemap));
+    }
+
+    @Test
+    public void computeDifference_isRelativeToReference() {
+        assertEquals(0.25f, CubemapChangeDetector.computeDifference(
+                new float[]{1f, 2f, 3f, 4f}, new float[]{1f, 2f, 3f, 2f}), 0.0001f);
+        assertEquals(0f, CubemapChangeDetector.computeDifference(
+                new float[]{0f, 0f}, new float[]{0f, 0f}), 0f);
+    }
+
+    /**
+     * Creates six faces with the given brightness, which every other texel exceeds by the
+     * relative noise.
+     */
+    private static ByteBuffer[] createCubemap(float brightness, float noise) {
+        ByteBuffer[] faces = new ByteBuffer[6];
+
+        for (int face = 0; face < faces.length; ++face) {
+            ByteBuffer texels = ByteBuffer.allocate(RESOLUTION * RESOLUTION * 8)
+                    .order(ByteOrder.nativeOrder());
+
+            for (int texel = 0; texel < RESOLUTION * RESOLUTION; ++texel) {
+                float value = brightness * (texel % 2 == 0 ? 1f + noise : 1f) * (1f + face * 0.1f);
+                texels.putShort(HalfFloat.toHalf(value))
+                        .putShort(HalfFloat.toHalf(value * 0.8f))
+                        .putShort(HalfFloat.toHalf(value * 0.6f))
+                        .putShort(HalfFloat.toHalf(1f));
+            }
+
+            texels.flip();
+            faces[face] = texels;
+        }
+
+        return faces;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Tests that {@link DfgLutGenerator} reproduces the shipped DFG table and packs it as half floats.
+ */
+public class DfgLutGeneratorTest {
+    private static final String DFG_TABLE = "src/main/assets/models/dfg.raw";
+
+    @Test
+    public void generate_reproducesShippedTable() throws IOException {
+        ByteBuffer shipped = ByteBuffer.wrap(Files.readAllBytes(Paths.get(DFG_TABLE)))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        float[] table = DfgLutGenerator.generate(DfgLutGenerator.DEFAULT_RESOLUTION,
+                DfgLutGenerator.DEFAULT_SAMPLE_COUNT, 4);
+
+        assertEquals(table.length * 2, shipped.remaining());
+
+        for (int i = 0; i < table.length; ++i) {
+            // Up to the rounding to half floats, which is at most 2^-12 below 1.
+            assertEquals("Value " + i, HalfFloat.toFloat(shipped.getShort(i * 2)), table[i],
+                    0.0005f);
+        }
+    }
+
+    @Test
+    public void generate_doesNotDependOnThreadCount() {
+        float[] singleThreaded = DfgLutGenerator.generate(16, 64, 1);
+        float[] multiThreaded = DfgLutGenerator.generate(16, 64, 3);
+
+        assertArrayEquals(singleThreaded, multiThreaded, 0f);
+    }
+
+    @Test
+    public void integrate_conservesEnergyOfSmoothSurfaces() {
+        double[] headOn = DfgLutGenerator.integrate(1.0, 0.05, 256);
+
+        // A mirror reflects everything head-on, without a Fresnel increase.
+        assertEquals(1.0, headOn[1], 0.01);
+        assertEquals(0.0, headOn[0], 0.01);
+
+        for (double roughness = 0.1; roughness < 1.0; roughness += 0.2) {
+            double[] texel = DfgLutGenerator.integrate(0.5, roughness, 256);
+            assertTrue("Roughness " + roughness, texel[0] >= 0.0 && texel[0] <= texel[1]);
+            // Few samples may overshoot a little.
+            assertTrue("Roughness " + roughness, texel[1] <= 1.01);
+        }
+    }
+
+    @Test
+    public void toHalfFloats_packsInRequestedByteOrder() {
+        ByteBuffer halfFloats = DfgLutGenerator.toHalfFloats(new float[]{1f, 0.5f, 0.1f},
+                ByteOrder.LITTLE_ENDIAN);
+
+        assertTrue(halfFloats.isDirect());
+        assertEquals(6, halfFloats.remaining());
+        // 1.0 is 0x3C00, stored low byte first.
+        assertEquals(0x00, halfFloats.get(0));
+        assertEquals(0x3C, halfFloats.get(1));
+        assertEquals(0.5f, HalfFloat.toFloat(halfFloats.getShort(2)), 0f);
+        assertEquals(0.1f, HalfFloat.toFloat(halfFloats.getShort(4)), 0.0001f);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Tests the quality of the ETC2 blocks written by {@link Etc2Encoder}, measured by decoding them
+ * again.
+ */
+public class Etc2EncoderTest {
+    private static final String ALBEDO_TEXTURE = "src/main/assets/models/fountain_albedo.png";
+
+    @Test
+    public void encode_keepsUniformColorsClose() {
+        int[][] colors = {{0, 0, 0}, {255, 255, 255}, {200, 30, 90}, {17, 133, 250}};
+
+        for (int[] color : colors) {
+            ByteBuffer pixels = createImage(8, 8, (x, y, channel) ->
+                    channel < 3 ? color[channel] : 255);
+            ByteBuffer decoded = roundTrip(pixels, 8, 8, false);
+
+            for (int i = 0; i < pixels.capacity(); ++i) {
+                assertEquals("Byte " + i, pixels.get(i) & 0xFF, decoded.get(i) & 0xFF, 3);
+            }
+        }
+    }
+
+    @Test
+    public void encode_reproducesSmoothGradients() {
+        ByteBuffer pixels = createImage(32, 32, (x, y, channel) ->
+                channel == 0 ? x * 8 : channel == 1 ? y * 8 : channel == 2 ? 128 + x - y : 255);
+
+        double psnr = TextureConverter.computePsnr(pixels, roundTrip(pixels, 32, 32, false),
+                false);
+
+        assertTrue("PSNR " + psnr, psnr > 45);
+    }
+
+    @Test
+    public void encode_compressesAlbedoTextureAbove36Decibels() throws IOException {
+        TextureData albedo;
+
+        try (InputStream inputStream = new FileInputStream(ALBEDO_TEXTURE)) {
+            albedo = PngReader.read(inputStream);
+        }
+
+        // A 256x256 crop from the middle of the texture keeps the test fast.
+        int size = 256;
+        int left = (albedo.getWidth() - size) / 2;
+        int top = (albedo.getHeight() - size) / 2;
+        ByteBuffer pixels = createImage(size, size, (x, y, channel) -> albedo.getPixels()
+                .get(((top + y) * albedo.getWidth() + left + x) * 4 + channel) & 0xFF);
+
+        double psnr = TextureConverter.computePsnr(pixels, roundTrip(pixels, size, size, false),
+                false);
+
+        assertTrue("PSNR " + psnr, psnr > 36);
+    }
+
+    @Test
+    public void encode_keepsAlphaChannel() {
+        ByteBuffer pixels = createImage(16, 16, (x, y, channel) ->
+                channel == 3 ? x * 12 + y * 4 : 100);
+        ByteBuffer decoded = roundTrip(pixels, 16, 16, true);
+        double squaredError = 0;
+
+        for (int i = 3; i < pixels.capacity(); i += 4) {
+            int difference = (pixels.get(i) & 0xFF) - (decoded.get(i) & 0xFF);
+            squaredError += difference * difference;
+        }
+
+        double psnr = 10 * Math.log10(255.0 * 255.0 * (pixels.capacity() / 4) / squaredError);
+        assertTrue("Alpha PSNR " + psnr, psnr > 40);
+        // Without alpha, the same blocks decode as opaque.
+        assertEquals(255, roundTrip(pixels, 16, 16, false).get(3) & 0xFF);
+    }
+
+    @Test
+    public void encode_padsImagesNotMultipleOfFour() {
+        int width = 6;
+        int height = 5;
+        ByteBuffer pixels = createImage(width, height, (x, y, channel) ->
+                channel < 3 ? 40 * x + 30 * y + 20 * channel : 255);
+
+        ByteBuffer blocks = Etc2Encoder.encode(pixels, width, height, false);
+        ByteBuffer decoded = Etc2Encoder.decode(blocks, width, height, false);
+
+        assertEquals(2 * 2 * Etc2Encoder.RGB_BLOCK_BYTES, blocks.capacity());
+        assertEquals(TextureData.getCompressedByteCount(TextureData.FORMAT_ETC2_RGB, width,
+                height), blocks.capacity());
+        double psnr = TextureConverter.computePsnr(pixels, decoded, false);
+        assertTrue("PSNR " + psnr, psnr > 35);
+    }
+
+    private static ByteBuffer roundTrip(ByteBuffer pixels, int width, int height,
+                                        boolean withAlpha) {
+        return Etc2Encoder.decode(Etc2Encoder.encode(pixels, width, height, withAlpha), width,
+                height, withAlpha);
+    }
+
+    private static ByteBuffer createImage(int width, int height, PixelFunction function) {
+        ByteBuffer pixels = ByteBuffer.allocateDirect(width * height * 4);
+
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                for (int channel = 0; channel < 4; ++channel) {
+                    pixels.put((byte) Math.max(0, Math.min(255, function.get(x, y, channel))));
+                }
+            }
+        }
+
+        pixels.rewind();
+        return pixels;
+    }
+
+    private interface PixelFunction {
+        int get(int x, int y, int channel);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Tests the bounding volumes of meshes and culling them against a {@link Frustum}.
+ */
+public class FrustumTest {
+    private static final float NEAR = 1f;
+    private static final float FAR = 100f;
+
+    /**
+     * A camera at the origin looking down -z with a 90 degree field of view, so that the frustum
+     * at depth d spans [-d, d] in x and y.
+     */
+    private final Frustum FRUSTUM = new Frustum().set(perspective());
+
+    @Test
+    public void intersects_acceptsSpheresInsideAndAcrossPlanes() {
+        assertTrue(FRUSTUM.intersects(new float[]{0f, 0f, -10f}, 1f));
+        // The center is outside the right plane, but the sphere reaches into the frustum.
+        assertTrue(FRUSTUM.intersects(new float[]{10.5f, 0f, -10f}, 1f));
+        // Straddling the near plane.
+        assertTrue(FRUSTUM.intersects(new float[]{0f, 0f, -0.5f}, 1f));
+    }
+
+    @Test
+    public void intersects_rejectsSpheresOutside() {
+        // Behind the camera.
+        assertFalse(FRUSTUM.intersects(new float[]{0f, 0f, 10f}, 1f));
+        // Beside the right plane, at a distance of 2.5 / sqrt(2) > 1.
+        assertFalse(FRUSTUM.intersects(new float[]{12.5f, 0f, -10f}, 1f));
+        assertFalse(FRUSTUM.intersects(new float[]{0f, -12.5f, -10f}, 1f));
+        // Beyond the far plane.
+        assertFalse(FRUSTUM.intersects(new float[]{0f, 0f, -102f}, 1f));
+    }
+
+    @Test
+    public void intersects_testsBoxCornerFurthestAlongEachPlane() {
+        assertTrue(FRUSTUM.intersects(box(-1f, -1f, -11f, 1f, 1f, -9f)));
+        // Only the corner (9, 9, -11) lies inside.
+        assertTrue(FRUSTUM.intersects(box(9f, 9f, -11f, 20f, 20f, -9f)));
+        assertFalse(FRUSTUM.intersects(box(-1f, -1f, 1f, 1f, 1f, 3f)));
+        assertFalse(FRUSTUM.intersects(box(-20f, 12f, -11f, 20f, 20f, -9f)));
+    }
+
+    @Test
+    public void intersects_cullsBoxWhoseBoundingSphereIntersects() {
+        // A flat box just outside the left plane, whose circumscribed sphere reaches inside.
+        BoundingBox box = box(-16f, -0.1f, -10.5f, -11f, 0.1f, -9.5f);
+
+        assertTrue(FRUSTUM.intersects(BoundingSphere.fromBox(box)));
+        assertFalse(FRUSTUM.intersects(box));
+    }
+
+    @Test
+    public void intersects_usesModelCoordinates() {
+        // The model is moved 20 units down the view direction, so its origin is visible and a
+        // point 25 units behind it lies behind the camera.
+        Frustum frustum = new Frustum().set(multiply(perspective(), translation(0f, 0f, -20f)));
+
+        assertTrue(frustum.intersects(new float[]{0f, 0f, 0f}, 1f));
+        assertFalse(frustum.intersects(new float[]{0f, 0f, 25f}, 1f));
+    }
+
+    @Test
+    public void boundingSphere_fromPositionsIsTighterThanFromBox() {
+        FloatBuffer positions = MeshData.allocateFloats(6 * 3);
+        positions.put(new float[]{1f, 0f, 0f, -1f, 0f, 0f, 0f, 1f, 0f, 0f, -1f, 0f, 0f, 0f, 1f,
+                0f, 0f, -1f}).rewind();
+        BoundingBox box = BoundingBox.fromPositions(positions);
+
+        BoundingSphere sphere = BoundingSphere.fromPositions(positions, box);
+
+        assertEquals(1f, sphere.getRadius(), 1e-6f);
+        assertEquals((float) Math.sqrt(3), BoundingSphere.fromBox(box).getRadius(), 1e-6f);
+    }
+
+    @Test
+    public void boundingBox_unionAndOffset() {
+        BoundingBox a = box(0f, 0f, 0f, 1f, 1f, 1f);
+        BoundingBox b = box(-1f, 0.5f, 2f, 0.5f, 3f, 4f);
+
+        BoundingBox union = BoundingBox.union(a, b);
+        BoundingBox offset = a.offsetBy(b);
+
+        assertBox(union, -1f, 0f, 0f, 1f, 3f, 4f);
+        assertBox(offset, -1f, 0.5f, 2f, 1.5f, 4f, 5f);
+    }
+
+    private static BoundingBox box(float minX, float minY, float minZ, float maxX, float maxY,
+                                   float maxZ) {
+        return new BoundingBox(new float[]{minX, minY, minZ}, new float[]{maxX, maxY, maxZ});
+    }
+
+    private static void assertBox(BoundingBox box, float minX, float minY, float minZ,
+                                  float maxX, float maxY, float maxZ) {
+        assertEquals(minX, box.getMin()[0], 0f);
+        assertEquals(minY, box.getMin()[1], 0f);
+        assertEquals(minZ, box.getMin()[2], 0f);
+        assertEquals(maxX, box.getMax()[0], 0f);
+        assertEquals(maxY, box.getMax()[1], 0f);
+        assertEquals(maxZ, box.getMax()[2], 0f);
+    }
+
+    private static float[] multiply(float[] left, float[] right) {
+        float[] product = new float[16];
+
+        for (int column = 0; column < 4; ++column) {
+            for (int row = 0; row < 4; ++row) {
+                for (int i = 0; i < 4; ++i) {
+                    product[column * 4 + row] += left[i * 4 + row] * right[column * 4 + i];
+                }
+            }
+        }
+
+        return product;
+    }
+
+    private static float[] translation(float x, float y, float z) {
+        return new float[]{
+                1f, 0f, 0f, 0f,
+                0f, 1f, 0f, 0f,
+                0f, 0f, 1f, 0f,
+                x, y, z, 1f,
+        };
+    }
+
+    private static float[] perspective() {
+        float[] projection = new float[16];
+        projection[0] = 1f;
+        projection[5] = 1f;
+        projection[10] = (FAR + NEAR) / (NEAR - FAR);
+        projection[11] = -1f;
+        projection[14] = 2f * FAR * NEAR / (NEAR - FAR);
+        return projection;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tests that {@link GlUploadQueue} runs uploads in order within its time budget.
+ */
+public class GlUploadQueueTest {
+    private static final long BUDGET_NANOS = 4_000_000L;
+    private static final long UPLOAD_NANOS = 1_500_000L;
+
+    private final long[] NOW = {0};
+    private final GlUploadQueue QUEUE = new GlUploadQueue(() -> NOW[0]);
+    private final List<Integer> RAN = new ArrayList<>();
+
+    @Test
+    public void drain_stopsOnceBudgetIsSpent() {
+        for (int i = 0; i < 5; ++i) {
+            QUEUE.enqueue(upload(i, UPLOAD_NANOS));
+        }
+
+        // 1.5, 3 and 4.5 ms: the third upload starts within the budget and overruns it.
+        assertEquals(3, QUEUE.drain(BUDGET_NANOS));
+        assertEquals(Arrays.asList(0, 1, 2), RAN);
+        assertEquals(2, QUEUE.size());
+        assertEquals(2, QUEUE.drain(BUDGET_NANOS));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), RAN);
+    }
+
+    @Test
+    public void drain_runsOneUploadLongerThanBudget() {
+        QUEUE.enqueue(upload(0, 10 * BUDGET_NANOS));
+        QUEUE.enqueue(upload(1, 0));
+
+        assertEquals(1, QUEUE.drain(BUDGET_NANOS));
+        assertEquals(Collections.singletonList(0), RAN);
+    }
+
+    @Test
+    public void drain_waitsForDependenciesInOrder() {
+        CompletableFuture<String> data = new CompletableFuture<>();
+        QUEUE.enqueue(upload(0, 0), data, CompletableFuture.completedFuture(null));
+        QUEUE.enqueue(upload(1, 0));
+
+        assertEquals(0, QUEUE.drain(BUDGET_NANOS));
+        assertEquals(2, QUEUE.size());
+        data.complete("data");
+        assertEquals(2, QUEUE.drain(BUDGET_NANOS));
+        assertEquals(Arrays.asList(0, 1), RAN);
+    }
+
+    @Test
+    public void drain_runsUploadsEnqueuedByUploads() {
+        QUEUE.enqueue(() -> {
+            RAN.add(0);
+            QUEUE.enqueue(upload(1, 0));
+        });
+
+        assertEquals(2, QUEUE.drain(BUDGET_NANOS));
+        assertEquals(Arrays.asList(0, 1), RAN);
+    }
+
+    @Test
+    public void clear_dropsPendingUploads() {
+        QUEUE.enqueue(upload(0, 0));
+        QUEUE.clear();
+
+        assertEquals(0, QUEUE.drain(BUDGET_NANOS));
+        assertEquals(0, QUEUE.size());
+    }
+
+    @Test
+    public void enqueue_acceptsUploadsFromOtherThreads() throws InterruptedException {
+        Thread[] threads = new Thread[4];
+
+        for (int t = 0; t < threads.length; ++t) {
+            int first = t * 100;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100; ++i) {
+                    QUEUE.enqueue(upload(first + i, 0));
+                }
+            });
+            threads[t].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(400, QUEUE.drain(BUDGET_NANOS));
+        assertEquals(400, RAN.size());
+    }
+
+    /**
+     * Returns an upload that records its number and advances the fake clock.
+     */
+    private Runnable upload(int number, long nanos) {
+        return () -> {
+            RAN.add(number);
+            NOW[0] += nanos;
+        };
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.opengl.GLES30;
+
+import org.junit.Test;
+
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Tests the selection of 16-bit indices in {@link IndexBuffer}.
+ */
+public class IndexBufferTest {
+
+    @Test
+    public void selectIndexType_smallMeshUsesShorts() {
+        assertEquals(GLES30.GL_UNSIGNED_SHORT,
+                IndexBuffer.selectIndexType(ints(0, 1, 2, 2, 1, 3)));
+    }
+
+    @Test
+    public void selectIndexType_largestShortIndexUsesShorts() {
+        assertEquals(GLES30.GL_UNSIGNED_SHORT, IndexBuffer.selectIndexType(ints(0, 65535, 1)));
+    }
+
+    @Test
+    public void selectIndexType_largerIndexUsesInts() {
+        assertEquals(GLES30.GL_UNSIGNED_INT, IndexBuffer.selectIndexType(ints(0, 65536, 1)));
+    }
+
+    @Test
+    public void selectIndexType_emptyBufferUsesInts() {
+        assertEquals(GLES30.GL_UNSIGNED_INT, IndexBuffer.selectIndexType(null));
+        assertEquals(GLES30.GL_UNSIGNED_INT, IndexBuffer.selectIndexType(ints()));
+    }
+
+    @Test
+    public void narrow_keepsUnsignedValues() {
+        ShortBuffer narrowed = IndexBuffer.narrow(ints(0, 1, 40000, 65535));
+
+        assertTrue(narrowed.isDirect());
+        assertEquals(4, narrowed.limit());
+        assertEquals(0, narrowed.get(0) & 0xFFFF);
+        assertEquals(1, narrowed.get(1) & 0xFFFF);
+        assertEquals(40000, narrowed.get(2) & 0xFFFF);
+        assertEquals(65535, narrowed.get(3) & 0xFFFF);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void narrow_rejectsLargeIndices() {
+        IndexBuffer.narrow(ints(0, 70000));
+    }
+
+    private static IntBuffer ints(int... values) {
+        IntBuffer buffer = MeshData.allocateInts(values.length);
+        buffer.put(values);
+        buffer.rewind();
+        return buffer;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Tests the topology sharing decision of {@link KeyframeMesh}.
+ */
+public class KeyframeMeshTest {
+    private static final int[] QUAD = {0, 1, 2, 2, 1, 3};
+
+    @Test
+    public void sharesTopology_acceptsFramesThatOnlyMove() {
+        MeshData first = createFrame(QUAD, 0f, 0f);
+        MeshData second = createFrame(QUAD, 0.5f, 0f);
+
+        assertTrue(KeyframeMesh.sharesTopology(Arrays.asList(first, second)));
+    }
+
+    @Test
+    public void sharesTopology_rejectsDifferentIndices() {
+        MeshData first = createFrame(QUAD, 0f, 0f);
+        MeshData second = createFrame(new int[]{0, 1, 3, 0, 3, 2}, 0f, 0f);
+
+        assertFalse(KeyframeMesh.sharesTopology(Arrays.asList(first, second)));
+    }
+
+    @Test
+    public void sharesTopology_rejectsDifferentTexCoords() {
+        MeshData first = createFrame(QUAD, 0f, 0f);
+        MeshData second = createFrame(QUAD, 0f, 0.25f);
+
+        assertFalse(KeyframeMesh.sharesTopology(Arrays.asList(first, second)));
+    }
+
+    @Test
+    public void sharesTopology_acceptsSingleFrame() {
+        assertTrue(KeyframeMesh.sharesTopology(
+                Collections.singletonList(createFrame(QUAD, 0f, 0f))));
+    }
+
+    @Test
+    public void sharesTopology_acceptsPreparedObjKeyframes() throws IOException {
+        MeshData flat = ObjParser.parse(createGridObj(0f));
+        MeshData bent = ObjParser.parse(createGridObj(0.5f));
+
+        List<MeshData> keyframes = Arrays.asList(Mesh.prepareObjData(flat, true),
+                Mesh.prepareObjData(bent, true));
+        // Triangulating flat regions again would only simplify the flat frame.
+        List<MeshData> meshes = Arrays.asList(Mesh.prepareObjData(flat, false),
+                Mesh.prepareObjData(bent, false));
+
+        assertTrue(KeyframeMesh.sharesTopology(keyframes));
+        assertFalse(KeyframeMesh.sharesTopology(meshes));
+    }
+
+    @Test
+    public void computeSharedBytes_countsShortIndicesAndTexCoords() {
+        MeshData frame = createFrame(QUAD, 0f, 0f);
+
+        assertEquals(QUAD.length * 2 + 4 * 2 * 4, KeyframeMesh.computeSharedBytes(frame));
+    }
+
+    /**
+     * Returns the OBJ text of a flat-shaded 4x4 vertex grid in the plane y = 0, with vertex
+     * (1, 1) raised to the given height.
+     */
+    private static InputStream createGridObj(float bump) {
+        StringBuilder obj = new StringBuilder();
+
+        for (int z = 0; z < 4; ++z) {
+            for (int x = 0; x < 4; ++x) {
+                float y = x == 1 && z == 1 ? bump : 0f;
+                obj.append(String.format(Locale.US, "v %d %f %d%nvt %f %f%n", x, y, z,
+                        x / 3f, z / 3f));
+            }
+        }
+
+        obj.append("vn 0 1 0\n");
+
+        for (int z = 0; z < 3; ++z) {
+            for (int x = 0; x < 3; ++x) {
+                int a = z * 4 + x + 1;
+                int b = a + 4;
+                int c = b + 1;
+                int d = a + 1;
+                obj.append(String.format(Locale.US, "f %d/%d/1 %d/%d/1 %d/%d/1%n", a, a, b, b,
+                        c, c));
+                obj.append(String.format(Locale.US, "f %d/%d/1 %d/%d/1 %d/%d/1%n", a, a, c, c,
+                        d, d));
+            }
+        }
+
+        return new ByteArrayInputStream(obj.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static MeshData createFrame(int[] triangleIndices, float height, float uvOffset) {
+        FloatBuffer positions = MeshData.allocateFloats(4 * 3);
+        FloatBuffer texCoords = MeshData.allocateFloats(4 * 2);
+
+        for (int v = 0; v < 4; ++v) {
+            positions.put(v * 3, v % 2).put(v * 3 + 1, height).put(v * 3 + 2, v / 2);
+            texCoords.put(v * 2, v % 2 + uvOffset).put(v * 2 + 1, v / 2);
+        }
+
+        IntBuffer indices = MeshData.allocateInts(triangleIndices.length);
+        indices.put(triangleIndices).rewind();
+        return new MeshData(positions, texCoords, MeshData.allocateFloats(4 * 3), indices);
+    }
+}
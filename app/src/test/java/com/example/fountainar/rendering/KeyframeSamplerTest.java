@@ -0,0 +1,91 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests the time-based playback position of {@link KeyframeSampler}.
+ */
+public class KeyframeSamplerTest {
+    private static final long START_NANOS = 123_456_789_000L;
+    private static final long MILLIS = 1_000_000L;
+
+    @Test
+    public void update_startsAtFirstFrame() {
+        KeyframeSampler sampler = new KeyframeSampler(5, 10f);
+
+        sampler.update(START_NANOS);
+
+        assertEquals(0, sampler.getFrame());
+        assertEquals(1, sampler.getNextFrame());
+        assertEquals(0f, sampler.getBlend(), 0f);
+    }
+
+    @Test
+    public void update_blendsBetweenNeighboringFrames() {
+        KeyframeSampler sampler = new KeyframeSampler(5, 10f);
+        sampler.update(START_NANOS);
+
+        sampler.update(START_NANOS + 125 * MILLIS);
+
+        assertEquals(1, sampler.getFrame());
+        assertEquals(2, sampler.getNextFrame());
+        assertEquals(0.25f, sampler.getBlend(), 1e-5f);
+    }
+
+    @Test
+    public void update_blendsLastFrameIntoFirst() {
+        KeyframeSampler sampler = new KeyframeSampler(5, 10f);
+        sampler.update(START_NANOS);
+
+        sampler.update(START_NANOS + 450 * MILLIS);
+
+        assertEquals(4, sampler.getFrame());
+        assertEquals(0, sampler.getNextFrame());
+        assertEquals(0.5f, sampler.getBlend(), 1e-5f);
+    }
+
+    @Test
+    public void update_loops() {
+        KeyframeSampler sampler = new KeyframeSampler(5, 10f);
+        sampler.update(START_NANOS);
+
+        sampler.update(START_NANOS + 3_000 * MILLIS + 220 * MILLIS);
+
+        assertEquals(2.2f, sampler.getFramePosition(), 1e-4f);
+    }
+
+    @Test
+    public void update_doesNotDependOnUpdateRate() {
+        KeyframeSampler everyFrame = new KeyframeSampler(5, 30f);
+        KeyframeSampler rarely = new KeyframeSampler(5, 30f);
+        everyFrame.update(START_NANOS);
+        rarely.update(START_NANOS);
+
+        for (int i = 1; i <= 60; ++i) {
+            everyFrame.update(START_NANOS + i * 1000 * MILLIS / 60);
+        }
+
+        rarely.update(START_NANOS + 1000 * MILLIS);
+
+        assertEquals(rarely.getFramePosition(), everyFrame.getFramePosition(), 0f);
+    }
+
+    @Test
+    public void reset_restartsAtNextUpdate() {
+        KeyframeSampler sampler = new KeyframeSampler(5, 10f);
+        sampler.update(START_NANOS);
+        sampler.update(START_NANOS + 250 * MILLIS);
+
+        sampler.reset();
+        sampler.update(START_NANOS + 10_000 * MILLIS);
+
+        assertEquals(0f, sampler.getFramePosition(), 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsEmptyAnimation() {
+        new KeyframeSampler(0, 10f);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Tests that {@link KtxFile} reads back the textures it writes, including compressed mip chains
+ * built by {@link TextureConverter}.
+ */
+public class KtxFileTest {
+
+    @Test
+    public void writeThenRead_keepsCompressedMipChain() throws IOException {
+        int width = 16;
+        int height = 8;
+        TextureData compressed = TextureConverter.compress(createMipChain(width, height), false);
+
+        TextureData read = KtxFile.read(toDirectBuffer(write(compressed)));
+
+        // 16x8, 8x4, 4x2, 2x1 and 1x1.
+        assertEquals(5, read.getLevelCount());
+        assertTrue(read.isCompressed());
+        assertEquals(TextureData.FORMAT_ETC2_RGB, read.getCompressedFormat());
+        assertEquals(width, read.getWidth());
+        assertEquals(height, read.getHeight());
+
+        for (int level = 0; level < read.getLevelCount(); ++level) {
+            assertEquals(compressed.getLevel(level), read.getLevel(level));
+        }
+    }
+
+    @Test
+    public void writeThenRead_keepsUncompressedPixels() throws IOException {
+        TextureData image = createCheckerboard(3, 5);
+
+        TextureData read = KtxFile.read(toDirectBuffer(write(image)));
+
+        assertFalse(read.isCompressed());
+        assertEquals(1, read.getLevelCount());
+        assertEquals(image.getPixels(), read.getPixels());
+    }
+
+    @Test
+    public void writeThenRead_keepsUncompressedMipChain() throws IOException {
+        TextureData mipChain = createMipChain(6, 3);
+
+        TextureData read = KtxFile.read(toDirectBuffer(write(mipChain)));
+
+        // 6x3, 3x1 and 1x1.
+        assertFalse(read.isCompressed());
+        assertEquals(3, read.getLevelCount());
+
+        for (int level = 0; level < read.getLevelCount(); ++level) {
+            assertEquals(mipChain.getLevel(level), read.getLevel(level));
+        }
+    }
+
+    @Test
+    public void read_rejectsOtherFiles() throws IOException {
+        byte[] file = write(createCheckerboard(4, 4));
+        file[1] = 'X';
+
+        try {
+            KtxFile.read(toDirectBuffer(file));
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void read_rejectsTruncatedFiles() throws IOException {
+        byte[] file = write(TextureConverter.compress(createMipChain(8, 8), true));
+        byte[] truncated = new byte[file.length - 1];
+        System.arraycopy(file, 0, truncated, 0, truncated.length);
+
+        try {
+            KtxFile.read(toDirectBuffer(truncated));
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void getCompressedAssetName_replacesExtension() {
+        assertEquals("models/fountain_albedo.ktx",
+                KtxFile.getCompressedAssetName("models/fountain_albedo.png"));
+    }
+
+    private static TextureData createCheckerboard(int width, int height) {
+        ByteBuffer pixels = ByteBuffer.allocateDirect(width * height * 4);
+
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                byte value = (byte) ((x + y) % 2 == 0 ? 0xFF : 0x20);
+                pixels.put(value).put((byte) (x * 10)).put((byte) (y * 10)).put(value);
+            }
+        }
+
+        pixels.rewind();
+        return new TextureData(width, height, pixels);
+    }
+
+    private static TextureData createMipChain(int width, int height) {
+        return TextureConverter.generateMipChain(createCheckerboard(width, height), true,
+                MipChainGenerator.Filter.BOX);
+    }
+
+    private static byte[] write(TextureData textureData) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        KtxFile.write(textureData, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private static ByteBuffer toDirectBuffer(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).rewind();
+        return buffer;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the screen-size based level selection of {@link LodMesh}.
+ */
+public class LodMeshTest {
+    private static final float FOCAL_LENGTH = 2f;
+    private static final float[] ORIGIN = {0f, 0f, 0f};
+
+    @Test
+    public void computeScreenSize_shrinksWithDistance() {
+        float near = LodMesh.computeScreenSize(ORIGIN, 1f, translation(0f, 0f, -5f),
+                projection());
+        float far = LodMesh.computeScreenSize(ORIGIN, 1f, translation(0f, 0f, -10f),
+                projection());
+
+        assertEquals(0.4f, near, 1e-6f);
+        assertEquals(0.2f, far, 1e-6f);
+    }
+
+    @Test
+    public void computeScreenSize_accountsForCenterAndScale() {
+        float[] modelView = translation(0f, 0f, -12f);
+        modelView[0] = 2f;
+        modelView[5] = 2f;
+        modelView[10] = 2f;
+
+        float screenSize = LodMesh.computeScreenSize(new float[]{0f, 0f, 1f}, 1f, modelView,
+                projection());
+
+        // The center lies at view depth 10 and the radius scales to 2.
+        assertEquals(0.4f, screenSize, 1e-6f);
+    }
+
+    @Test
+    public void computeScreenSize_isInfiniteInsideSphere() {
+        float screenSize = LodMesh.computeScreenSize(ORIGIN, 2f, translation(0f, 0f, -1f),
+                projection());
+
+        assertTrue(Float.isInfinite(screenSize));
+    }
+
+    @Test
+    public void selectLevel_coarsensBelowScreenSizes() {
+        assertEquals(0, LodMesh.selectLevel(Float.POSITIVE_INFINITY, 4));
+        assertEquals(0, LodMesh.selectLevel(0.6f, 4));
+        assertEquals(1, LodMesh.selectLevel(0.4f, 4));
+        assertEquals(2, LodMesh.selectLevel(0.2f, 4));
+        assertEquals(3, LodMesh.selectLevel(0.1f, 4));
+        assertEquals(3, LodMesh.selectLevel(0.001f, 4));
+    }
+
+    @Test
+    public void selectLevel_clampsToAvailableLevels() {
+        assertEquals(0, LodMesh.selectLevel(0.001f, 1));
+        assertEquals(1, LodMesh.selectLevel(0.001f, 2));
+    }
+
+    private static float[] translation(float x, float y, float z) {
+        return new float[]{
+                1f, 0f, 0f, 0f,
+                0f, 1f, 0f, 0f,
+                0f, 0f, 1f, 0f,
+                x, y, z, 1f,
+        };
+    }
+
+    private static float[] projection() {
+        float[] projection = new float[16];
+        projection[0] = FOCAL_LENGTH;
+        projection[5] = FOCAL_LENGTH;
+        projection[10] = -1f;
+        projection[11] = -1f;
+        projection[14] = -0.2f;
+        return projection;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Round-trip tests for the binary mesh container written by {@link MeshConverter}.
+ */
+public class MeshFileTest {
+    private static final String QUAD_OBJ =
+            "v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\n"
+                    + "vt 0 0\nvt 1 0\nvt 1 1\nvt 0 1\n"
+                    + "vn 0 0 1\n"
+                    + "f 1/1/1 2/2/1 3/3/1\nf 1/1/1 3/3/1 4/4/1\n";
+
+    @Test
+    public void roundTrip_preservesAttributesAndIndices() throws IOException {
+        MeshData original = new MeshData(
+                floats(0f, 0f, 0f, 1f, 0f, 0f, 0f, 1f, -2.5f),
+                floats(0f, 0f, 1f, 0f, 0.25f, 0.75f),
+                floats(0f, 1f, 0f, 0f, 1f, 0f, 0f, 0f, 1f),
+                ints(0, 1, 2, 2, 1, 0));
+
+        MeshData copy = MeshFile.read(toDirectBuffer(write(original)));
+
+        assertMeshDataEquals(original, copy);
+    }
+
+    @Test
+    public void roundTrip_fromObj() throws IOException {
+        MeshData original = MeshData.fromObj(
+                new ByteArrayInputStream(QUAD_OBJ.getBytes(StandardCharsets.US_ASCII)));
+
+        assertEquals(4, original.getVertexCount());
+        assertEquals(6, original.getIndexCount());
+
+        MeshData copy = MeshFile.read(toDirectBuffer(write(original)));
+
+        assertMeshDataEquals(original, copy);
+        assertTrue(copy.getPositions().isDirect());
+        assertTrue(copy.getIndices().isDirect());
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsOtherFiles() throws IOException {
+        MeshFile.read(toDirectBuffer(QUAD_OBJ.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsTruncatedFiles() throws IOException {
+        byte[] file = write(MeshData.fromObj(
+                new ByteArrayInputStream(QUAD_OBJ.getBytes(StandardCharsets.US_ASCII))));
+        byte[] truncated = new byte[file.length - 4];
+        System.arraycopy(file, 0, truncated, 0, truncated.length);
+
+        MeshFile.read(toDirectBuffer(truncated));
+    }
+
+    @Test
+    public void getBinaryAssetName_replacesExtension() {
+        assertEquals("models/water_surface.mesh",
+                MeshFile.getBinaryAssetName("models/water_surface.obj"));
+    }
+
+    private static byte[] write(MeshData meshData) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        MeshFile.write(meshData, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private static ByteBuffer toDirectBuffer(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        buffer.rewind();
+        return buffer;
+    }
+
+    private static FloatBuffer floats(float... values) {
+        FloatBuffer buffer = MeshData.allocateFloats(values.length);
+        buffer.put(values);
+        buffer.rewind();
+        return buffer;
+    }
+
+    private static IntBuffer ints(int... values) {
+        IntBuffer buffer = MeshData.allocateInts(values.length);
+        buffer.put(values);
+        buffer.rewind();
+        return buffer;
+    }
+
+    private static void assertMeshDataEquals(MeshData expected, MeshData actual) {
+        assertEquals(expected.getVertexCount(), actual.getVertexCount());
+        assertArrayEquals(toArray(expected.getPositions()), toArray(actual.getPositions()), 0f);
+        assertArrayEquals(toArray(expected.getTexCoords()), toArray(actual.getTexCoords()), 0f);
+        assertArrayEquals(toArray(expected.getNormals()), toArray(actual.getNormals()), 0f);
+        assertArrayEquals(toArray(expected.getIndices()), toArray(actual.getIndices()));
+    }
+
+    private static float[] toArray(FloatBuffer buffer) {
+        float[] result = new float[buffer.limit()];
+        buffer.duplicate().get(result);
+        return result;
+    }
+
+    private static int[] toArray(IntBuffer buffer) {
+        int[] result = new int[buffer.limit()];
+        buffer.duplicate().get(result);
+        return result;
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests {@link MeshSimplifier} on a flat grid, which simplifies without error, and on a sphere,
+ * whose curvature bounds how far it can be simplified.
+ */
+public class MeshSimplifierTest {
+    private static final int GRID_SIZE = 16;
+    private static final int SPHERE_RINGS = 24;
+    private static final int SPHERE_SEGMENTS = 48;
+
+    @Test
+    public void simplify_collapsesFlatGridToItsOutline() {
+        MeshData grid = grid(GRID_SIZE);
+
+        MeshData simplified = MeshSimplifier.simplify(grid, 0, 0.1f);
+
+        // The boundary is locked, so its 4 * GRID_SIZE vertices remain, and hardly any interior
+        // ones. A polygon with n vertices needs at least n - 2 triangles.
+        int boundaryVertices = 4 * GRID_SIZE;
+        assertTrue("Vertices " + simplified.getVertexCount(),
+                simplified.getVertexCount() <= boundaryVertices + 4);
+        assertTrue("Triangles " + simplified.getIndexCount() / 3,
+                simplified.getIndexCount() / 3 < 2 * boundaryVertices);
+        assertEquals(computeArea(grid), computeArea(simplified), 1e-3f);
+        assertPlanarAndUpward(simplified);
+    }
+
+    @Test
+    public void simplify_keepsBoundaryPositions() {
+        MeshData grid = grid(GRID_SIZE);
+
+        MeshData simplified = MeshSimplifier.simplify(grid, 0, 0.1f);
+
+        Set<String> positions = new HashSet<>();
+
+        for (int v = 0; v < simplified.getVertexCount(); ++v) {
+            positions.add(simplified.getPositions().get(v * 3) + ","
+                    + simplified.getPositions().get(v * 3 + 2));
+        }
+
+        for (int i = 0; i <= GRID_SIZE; ++i) {
+            assertTrue(positions.contains(i + ".0,0.0"));
+            assertTrue(positions.contains(i + ".0," + GRID_SIZE + ".0"));
+            assertTrue(positions.contains("0.0," + i + ".0"));
+            assertTrue(positions.contains(GRID_SIZE + ".0," + i + ".0"));
+        }
+    }
+
+    @Test
+    public void simplify_stopsAtTargetTriangleCount() {
+        MeshData sphere = sphere();
+        int target = sphere.getIndexCount() / 3 / 4;
+
+        MeshData simplified = MeshSimplifier.simplify(sphere, target, 1f);
+
+        int triangleCount = simplified.getIndexCount() / 3;
+        assertTrue("Triangles " + triangleCount, triangleCount <= target);
+        assertTrue("Triangles " + triangleCount, triangleCount > target * 3 / 4);
+    }
+
+    @Test
+    public void simplify_keepsCurvedSurfaceWithoutErrorBudget() {
+        MeshData sphere = sphere();
+
+        MeshData simplified = MeshSimplifier.simplify(sphere, 0, 0f);
+
+        assertEquals(sphere.getIndexCount(), simplified.getIndexCount());
+    }
+
+    @Test
+    public void simplify_staysWithinErrorBound() {
+        MeshData sphere = sphere();
+        float maxError = 0.05f;
+
+        MeshData simplified = MeshSimplifier.simplify(sphere, 0, maxError);
+
+        assertTrue(simplified.getIndexCount() < sphere.getIndexCount() / 2);
+        FloatBuffer positions = simplified.getPositions();
+        IntBuffer indices = simplified.getIndices();
+        float maxDeviation = 0;
+
+        for (int i = 0; i < simplified.getIndexCount(); i += 3) {
+            float[] centroid = new float[3];
+
+            for (int c = 0; c < 3; ++c) {
+                for (int axis = 0; axis < 3; ++axis) {
+                    centroid[axis] += positions.get(indices.get(i + c) * 3 + axis) / 3;
+                }
+            }
+
+            float length = (float) Math.sqrt(centroid[0] * centroid[0]
+                    + centroid[1] * centroid[1] + centroid[2] * centroid[2]);
+            maxDeviation = Math.max(maxDeviation, 1 - length);
+        }
+
+        assertTrue("Deviation " + maxDeviation, maxDeviation < maxError);
+        assertPlanarAndUpward(simplified);
+    }
+
+    @Test
+    public void buildLodChain_halvesTrianglesPerLevel() {
+        MeshData sphere = sphere();
+
+        List<MeshData> levels = MeshSimplifier.buildLodChain(sphere,
+                new float[]{0.5f, 0.25f}, new float[]{1f, 1f});
+
+        assertEquals(3, levels.size());
+        assertSame(sphere, levels.get(0));
+        int triangleCount = sphere.getIndexCount() / 3;
+        assertTrue(levels.get(1).getIndexCount() / 3 <= triangleCount / 2);
+        assertTrue(levels.get(2).getIndexCount() / 3 <= triangleCount / 4);
+    }
+
+    @Test
+    public void buildLodChain_stopsWhenNothingSimplifies() {
+        MeshData sphere = sphere();
+
+        List<MeshData> levels = MeshSimplifier.buildLodChain(sphere,
+                new float[]{0.5f, 0.25f}, new float[]{0f, 0f});
+
+        assertEquals(1, levels.size());
+    }
+
+    /**
+     * Asserts that every triangle faces away from the origin, i.e. none was flipped.
+     */
+    private static void assertPlanarAndUpward(MeshData meshData) {
+        FloatBuffer positions = meshData.getPositions();
+        IntBuffer indices = meshData.getIndices();
+
+        for (int i = 0; i < meshData.getIndexCount(); i += 3) {
+            float[] normal = computeNormal(positions, indices.get(i), indices.get(i + 1),
+                    indices.get(i + 2));
+            int a = indices.get(i) * 3;
+            float facing = normal[0] * positions.get(a) + normal[1] * positions.get(a + 1)
+                    + normal[2] * positions.get(a + 2);
+
+            // Grid triangles lie in y = 0, so only their normal tells their orientation.
+            assertTrue("Triangle " + i / 3, facing > 0 || normal[1] > 0);
+        }
+    }
+
+    private static float computeArea(MeshData meshData) {
+        float area = 0;
+
+        for (int i = 0; i < meshData.getIndexCount(); i += 3) {
+            float[] normal = computeNormal(meshData.getPositions(),
+                    meshData.getIndices().get(i), meshData.getIndices().get(i + 1),
+                    meshData.getIndices().get(i + 2));
+            area += (float) Math.sqrt(normal[0] * normal[0] + normal[1] * normal[1]
+                    + normal[2] * normal[2]) / 2;
+        }
+
+        return area;
+    }
+
+    private static float[] computeNormal(FloatBuffer positions, int a, int b, int c) {
+        float[] ab = new float[3];
+        float[] ac = new float[3];
+
+        for (int axis = 0; axis < 3; ++axis) {
+            ab[axis] = positions.get(b * 3 + axis) - positions.get(a * 3 + axis);
+            ac[axis] = positions.get(c * 3 + axis) - positions.get(a * 3 + axis);
+        }
+
+        return new float[]{
+                ab[1] * ac[2] - ab[2] * ac[1],
+                ab[2] * ac[0] - ab[0] * ac[2],
+                ab[0] * ac[1] - ab[1] * ac[0],
+        };
+    }
+
+    /**
+     * Returns a grid in the plane y = 0 facing up, with texture coordinates spanning [0, 1].
+     */
+    private static MeshData grid(int size) {
+        int verticesPerRow = size + 1;
+        int vertexCount = verticesPerRow * verticesPerRow;
+        FloatBuffer positions = MeshData.allocateFloats(vertexCount * 3);
+        FloatBuffer texCoords = MeshData.allocateFloats(vertexCount * 2);
+        FloatBuffer normals = MeshData.allocateFloats(vertexCount * 3);
+        IntBuffer indices = MeshData.allocateInts(size * size * 6);
+
+        for (int y = 0; y < verticesPerRow; ++y) {
+            for (int x = 0; x < verticesPerRow; ++x) {
+                positions.put(x).put(0f).put(y);
+                texCoords.put(x / (float) size).put(y / (float) size);
+                normals.put(0f).put(1f).put(0f);
+            }
+        }
+
+        for (int y = 0; y < size; ++y) {
+            for (int x = 0; x < size; ++x) {
+                int corner = y * verticesPerRow + x;
+                indices.put(corner).put(corner + verticesPerRow).put(corner + 1);
+                indices.put(corner + 1).put(corner + verticesPerRow)
+                        .put(corner + verticesPerRow + 1);
+            }
+        }
+
+        positions.rewind();
+        texCoords.rewind();
+        normals.rewind();
+        indices.rewind();
+        return new MeshData(positions, texCoords, normals, indices);
+    }
+
+    /**
+     * Returns a closed unit sphere of latitude rings without texture seams, facing outwards.
+     */
+    static MeshData sphere() {
+        int ringVertices = (SPHERE_RINGS - 1) * SPHERE_SEGMENTS;
+        int vertexCount = ringVertices + 2;
+        int northPole = ringVertices;
+        int southPole = ringVertices + 1;
+        FloatBuffer positions = MeshData.allocateFloats(vertexCount * 3);
+        FloatBuffer normals = MeshData.allocateFloats(vertexCount * 3);
+
+        for (int ring = 1; ring < SPHERE_RINGS; ++ring) {
+            double polar = Math.PI * ring / SPHERE_RINGS;
+
+            for (int segment = 0; segment < SPHERE_SEGMENTS; ++segment) {
+                double azimuth = 2 * Math.PI * segment / SPHERE_SEGMENTS;
+                float x = (float) (Math.sin(polar) * Math.cos(azimuth));
+                float y = (float) Math.cos(polar);
+                float z = (float) (Math.sin(polar) * Math.sin(azimuth));
+                positions.put(x).put(y).put(z);
+                normals.put(x).put(y).put(z);
+            }
+        }
+
+        positions.put(0f).put(1f).put(0f).put(0f).put(-1f).put(0f);
+        normals.put(0f).put(1f).put(0f).put(0f).put(-1f).put(0f);
+        IntBuffer indices = MeshData.allocateInts(SPHERE_SEGMENTS * (SPHERE_RINGS - 1) * 6);
+
+        for (int segment = 0; segment < SPHERE_SEGMENTS; ++segment) {
+            int next = (segment + 1) % SPHERE_SEGMENTS;
+            indices.put(northPole).put(next).put(segment);
+
+            for (int ring = 0; ring < SPHERE_RINGS - 2; ++ring) {
+                int upper = ring * SPHERE_SEGMENTS;
+                int lower = upper + SPHERE_SEGMENTS;
+                indices.put(upper + segment).put(upper + next).put(lower + segment);
+                indices.put(lower + segment).put(upper + next).put(lower + next);
+            }
+
+            int last = (SPHERE_RINGS - 2) * SPHERE_SEGMENTS;
+            indices.put(southPole).put(last + segment).put(last + next);
+        }
+
+        positions.rewind();
+        normals.rewind();
+        indices.rewind();
+        return new MeshData(positions, MeshData.allocateFloats(vertexCount * 2), normals,
+                indices);
+    }
+}
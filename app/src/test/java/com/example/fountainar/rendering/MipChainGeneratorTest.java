@@ -0,0 +1,131 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Tests the levels generated by {@link MipChainGenerator} and their use as {@link TextureData}.
+ */
+public class MipChainGeneratorTest {
+
+    @Test
+    public void generate_producesFullChain() {
+        ByteBuffer pixels = createImage(8, 4, (x, y, channel) -> x * 30 + y);
+
+        ByteBuffer[] levels = MipChainGenerator.generate(pixels, 8, 4, true,
+                MipChainGenerator.Filter.BOX);
+
+        // 8x4, 4x2, 2x1 and 1x1.
+        assertEquals(4, levels.length);
+        assertEquals(8 * 4 * 4, levels[0].remaining());
+        assertEquals(4 * 2 * 4, levels[1].remaining());
+        assertEquals(2 * 4, levels[2].remaining());
+        assertEquals(4, levels[3].remaining());
+        assertEquals(pixels, levels[0]);
+    }
+
+    @Test
+    public void generate_averagesSrgbColorsInLinearLight() {
+        ByteBuffer pixels = createImage(2, 2, (x, y, channel) ->
+                channel == 3 || (x + y) % 2 == 0 ? 255 : 0);
+
+        ByteBuffer srgb = MipChainGenerator.generate(pixels, 2, 2, true,
+                MipChainGenerator.Filter.BOX)[1];
+        ByteBuffer linear = MipChainGenerator.generate(pixels, 2, 2, false,
+                MipChainGenerator.Filter.BOX)[1];
+
+        // Half the light of white is encoded as 188 in sRGB, not 128.
+        for (int channel = 0; channel < 3; ++channel) {
+            assertEquals(188, srgb.get(channel) & 0xFF);
+            assertEquals(128, linear.get(channel) & 0xFF);
+        }
+
+        assertEquals(255, srgb.get(3) & 0xFF);
+    }
+
+    @Test
+    public void generate_filtersAlphaAsItIs() {
+        ByteBuffer pixels = createImage(2, 2, (x, y, channel) ->
+                channel < 3 || (x + y) % 2 == 0 ? 255 : 0);
+
+        ByteBuffer level = MipChainGenerator.generate(pixels, 2, 2, true,
+                MipChainGenerator.Filter.BOX)[1];
+
+        assertEquals(128, level.get(3) & 0xFF);
+    }
+
+    @Test
+    public void generate_keepsUniformColors() {
+        int[] color = {100, 150, 200, 77};
+        ByteBuffer pixels = createImage(16, 12, (x, y, channel) -> color[channel]);
+
+        for (MipChainGenerator.Filter filter : MipChainGenerator.Filter.values()) {
+            for (ByteBuffer level : MipChainGenerator.generate(pixels, 16, 12, true, filter)) {
+                for (int i = 0; i < level.remaining(); ++i) {
+                    assertEquals(filter + " byte " + i, color[i % 4], level.get(i) & 0xFF, 1);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void generate_kaiserAveragesFinestDetail() {
+        ByteBuffer pixels = createImage(32, 4, (x, y, channel) ->
+                channel == 3 || x % 2 == 0 ? 255 : 0);
+
+        ByteBuffer level = MipChainGenerator.generate(pixels, 32, 4, false,
+                MipChainGenerator.Filter.KAISER)[1];
+
+        // Stripes of a single pixel cannot be represented at half the size, so away from the
+        // edges they must neither alias nor ring.
+        for (int y = 0; y < 2; ++y) {
+            for (int x = 4; x < 12; ++x) {
+                for (int channel = 0; channel < 3; ++channel) {
+                    assertEquals(128, level.get((y * 16 + x) * 4 + channel) & 0xFF, 1);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void withoutTopLevels_sharesSmallerLevels() {
+        ByteBuffer[] levels = MipChainGenerator.generate(
+                createImage(8, 8, (x, y, channel) -> x * y), 8, 8, false,
+                MipChainGenerator.Filter.BOX);
+        TextureData mipChain = TextureData.createMipChain(8, 8, levels);
+
+        TextureData skipped = mipChain.withoutTopLevels(1);
+        TextureData smallest = mipChain.withoutTopLevels(10);
+
+        assertEquals(4, skipped.getWidth());
+        assertEquals(4, skipped.getHeight());
+        assertEquals(3, skipped.getLevelCount());
+        assertSame(levels[1], skipped.getLevel(0));
+        assertEquals(1, smallest.getWidth());
+        assertEquals(1, smallest.getLevelCount());
+        assertSame(mipChain, mipChain.withoutTopLevels(0));
+    }
+
+    private static ByteBuffer createImage(int width, int height, PixelFunction function) {
+        ByteBuffer pixels = ByteBuffer.allocateDirect(width * height * 4);
+
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                for (int channel = 0; channel < 4; ++channel) {
+                    pixels.put((byte) Math.max(0, Math.min(255, function.get(x, y, channel))));
+                }
+            }
+        }
+
+        pixels.rewind();
+        return pixels;
+    }
+
+    private interface PixelFunction {
+        int get(int x, int y, int channel);
+    }
+}
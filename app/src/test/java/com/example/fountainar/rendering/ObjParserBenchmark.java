@@ -0,0 +1,75 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Times {@link ObjParser} against the javagl OBJ library, which was used to load meshes before,
+ * and its chunked parallel against its sequential parsing, on the large water surface mesh.
+ *
+ * <p>Wall-clock timings depend on the machine and its load, so the benchmark is not part of the
+ * unit tests. Remove {@link Ignore} locally to run it, e.g. with {@code ./gradlew
+ * testDebugUnitTest --tests '*ObjParserBenchmark'}. That the parsers agree is tested by
+ * {@link ObjParserTest}.
+ */
+@Ignore("Wall-clock benchmark, run explicitly")
+public class ObjParserBenchmark {
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 7;
+
+    @Test
+    public void waterSurface_isParsedFasterThanWithJavagl() throws IOException {
+        byte[] bytes = Files.readAllBytes(Paths.get(ObjParserTest.WATER_SURFACE));
+        ByteBuffer text = ByteBuffer.wrap(bytes);
+
+        long javaglNanos = measure(
+                () -> ObjParserTest.parseWithJavagl(new ByteArrayInputStream(bytes)));
+        long sequentialNanos = measure(() -> ObjParser.parse(text, Integer.MAX_VALUE));
+        long chunkedNanos = measure(() -> ObjParser.parse(text));
+        String timings = String.format(Locale.US,
+                "javagl %.1f ms, sequential %.1f ms, chunked with parallelism %d %.1f ms",
+                javaglNanos / 1e6, sequentialNanos / 1e6,
+                ForkJoinPool.getCommonPoolParallelism(), chunkedNanos / 1e6);
+
+        assertTrue(timings, sequentialNanos < javaglNanos);
+
+        if (ForkJoinPool.getCommonPoolParallelism() > 1) {
+            assertTrue(timings, chunkedNanos < sequentialNanos);
+        }
+    }
+
+    /**
+     * Returns the median duration of the given task in nanoseconds.
+     */
+    static long measure(Task task) throws IOException {
+        for (int i = 0; i < WARMUP_RUNS; ++i) {
+            task.run();
+        }
+
+        long[] durations = new long[MEASURED_RUNS];
+
+        for (int i = 0; i < MEASURED_RUNS; ++i) {
+            long start = System.nanoTime();
+            task.run();
+            durations[i] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(durations);
+        return durations[MEASURED_RUNS / 2];
+    }
+
+    interface Task {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,339 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Random;
+
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjData;
+import de.javagl.obj.ObjReader;
+import de.javagl.obj.ObjUtils;
+
+/**
+ * Tests the tokenizing, deduplication and triangulation of {@link ObjParser}, and compares it with
+ * the javagl OBJ library, which was used to load meshes before, on the large water surface mesh.
+ */
+public class ObjParserTest {
+    static final String WATER_SURFACE = "src/test/resources/models/water_surface.obj";
+    private static final String QUAD =
+            "# A unit quad\n"
+                    + "o Quad\n"
+                    + "v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\n"
+                    + "vt 0 0\nvt 1 0\nvt 1 1\nvt 0 1\n"
+                    + "vn 0 0 1\n"
+                    + "s off\n"
+                    + "f 1/1/1 2/2/1 3/3/1 4/4/1\n";
+
+    @Test
+    public void parse_triangulatesFacesAsFans() throws IOException {
+        MeshData meshData = parse(QUAD);
+
+        assertEquals(4, meshData.getVertexCount());
+        assertArrayEquals(new int[]{0, 1, 2, 0, 2, 3}, toArray(meshData.getIndices()));
+        assertArrayEquals(new float[]{1, 1, 0}, vertex(meshData.getPositions(), 2, 3), 0f);
+        assertArrayEquals(new float[]{1, 1}, vertex(meshData.getTexCoords(), 2, 2), 0f);
+        assertArrayEquals(new float[]{0, 0, 1}, vertex(meshData.getNormals(), 2, 3), 0f);
+    }
+
+    @Test
+    public void parse_sharesIdenticalTriplets() throws IOException {
+        MeshData meshData = parse("v 0 0 0\nv 1 0 0\nv 0 1 0\nv 1 1 0\nvn 0 0 1\n"
+                + "f 1//1 2//1 3//1\nf 3//1 2//1 4//1\n");
+
+        assertEquals(4, meshData.getVertexCount());
+        assertArrayEquals(new int[]{0, 1, 2, 2, 1, 3}, toArray(meshData.getIndices()));
+    }
+
+    @Test
+    public void parse_splitsVerticesWithDifferentAttributes() throws IOException {
+        MeshData meshData = parse("v 0 0 0\nv 1 0 0\nv 0 1 0\nvt 0 0\nvt 1 1\n"
+                + "f 1/1 2/1 3/1\nf 1/2 3/2 2/2\n");
+
+        assertEquals(6, meshData.getVertexCount());
+        assertArrayEquals(new float[]{1, 1}, vertex(meshData.getTexCoords(), 3, 2), 0f);
+    }
+
+    @Test
+    public void parse_fillsMissingAttributesWithZeros() throws IOException {
+        MeshData meshData = parse("v 1 2 3\nv 4 5 6\nv 7 8 9\nf 1 2 3\n");
+
+        assertEquals(3, meshData.getVertexCount());
+        assertArrayEquals(new float[]{7, 8, 9}, vertex(meshData.getPositions(), 2, 3), 0f);
+        assertArrayEquals(new float[6], toArray(meshData.getTexCoords()), 0f);
+        assertArrayEquals(new float[9], toArray(meshData.getNormals()), 0f);
+    }
+
+    @Test
+    public void parse_resolvesRelativeIndices() throws IOException {
+        MeshData relative = parse("v 0 0 0\nv 1 0 0\nv 0 1 0\nf -3 -2 -1\n"
+                + "v 1 1 0\nf -3 -1 -2\n");
+        MeshData absolute = parse("v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 3\n"
+                + "v 1 1 0\nf 2 4 3\n");
+
+        assertArrayEquals(toArray(absolute.getIndices()), toArray(relative.getIndices()));
+        assertArrayEquals(toArray(absolute.getPositions()), toArray(relative.getPositions()), 0f);
+    }
+
+    @Test
+    public void parse_handlesCarriageReturnsTabsAndComments() throws IOException {
+        MeshData meshData = parse("v\t0 0 0\r\nv 1 0 0 # corner\r\nv 0 1 0\r\n"
+                + "vt 0.5\r\nf 1/1 2/1 3/1 # triangle\r\n");
+
+        assertEquals(3, meshData.getVertexCount());
+        assertArrayEquals(new float[]{0.5f, 0f}, vertex(meshData.getTexCoords(), 0, 2), 0f);
+        assertArrayEquals(new float[]{1, 0, 0}, vertex(meshData.getPositions(), 1, 3), 0f);
+    }
+
+    @Test
+    public void parse_roundsNumbersLikeParseFloat() throws IOException {
+        Random random = new Random(4);
+        String[] numbers = {
+                "0.651894", "-1.700652", "1e-3", "-2.5E+2", "3.", "-.25", "+7",
+                "0.30000001192092896", "123456789012345678901234567890", "1e-45", "3.4e38",
+                "-0.0", "NaN", "Infinity", "1.17549435e-38"};
+        StringBuilder obj = new StringBuilder();
+
+        for (int i = 0; i < numbers.length; ++i) {
+            obj.append("v ").append(numbers[i]).append(" 0 0\n");
+        }
+
+        String[] randomNumbers = new String[3000];
+
+        for (int i = 0; i < randomNumbers.length; ++i) {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12) - 6);
+            randomNumbers[i] = String.format(Locale.US, "%." + (1 + random.nextInt(9)) + "f",
+                    value);
+            obj.append("v ").append(randomNumbers[i]).append(" 0 0\n");
+        }
+
+        MeshData meshData = parse(obj + facesUpTo(numbers.length + randomNumbers.length));
+
+        for (int i = 0; i < numbers.length; ++i) {
+            assertEquals(numbers[i], Float.parseFloat(numbers[i]),
+                    meshData.getPositions().get(i * 3), 0f);
+        }
+
+        for (int i = 0; i < randomNumbers.length; ++i) {
+            assertEquals(randomNumbers[i], Float.parseFloat(randomNumbers[i]),
+                    meshData.getPositions().get((numbers.length + i) * 3), 0f);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void parse_rejectsMissingVertex() throws IOException {
+        parse("v 0 0 0\nv 1 0 0\nf 1 2 3\n");
+    }
+
+    @Test(expected = IOException.class)
+    public void parse_rejectsZeroIndex() throws IOException {
+        parse("v 0 0 0\nv 1 0 0\nv 0 1 0\nf 0 1 2\n");
+    }
+
+    @Test(expected = IOException.class)
+    public void parse_rejectsDegenerateFace() throws IOException {
+        parse("v 0 0 0\nv 1 0 0\nf 1 2\n");
+    }
+
+    @Test(expected = IOException.class)
+    public void parse_rejectsMalformedNumber() throws IOException {
+        parse("v 0 x 0\n");
+    }
+
+    @Test
+    public void parse_readsStreamsLikeBuffers() throws IOException {
+        MeshData fromStream = ObjParser.parse(
+                new ByteArrayInputStream(QUAD.getBytes(StandardCharsets.US_ASCII)));
+        MeshData fromBuffer = parse(QUAD);
+
+        assertArrayEquals(toArray(fromBuffer.getIndices()), toArray(fromStream.getIndices()));
+        assertArrayEquals(toArray(fromBuffer.getPositions()),
+                toArray(fromStream.getPositions()), 0f);
+    }
+
+    @Test
+    public void parse_chunkedMatchesSequential() throws IOException {
+        String obj = QUAD + "v 2 0 0\nvt 0.5 0.5\nf -1/-1/1 2/2/1 3/3/1\n"
+                + "v 2 1 0\nf -2/1/1 -1/2 3/3/1 4/4/1\n" + "f 1/1/1 -1/-1 2//1\n";
+        MeshData sequential = ObjParser.parse(ascii(obj), Integer.MAX_VALUE);
+
+        for (int chunkSize : new int[]{1, 2, 7, 16, 64}) {
+            assertIdentical(sequential, ObjParser.parse(ascii(obj), chunkSize));
+        }
+    }
+
+    @Test
+    public void parse_chunkedReportsErrors() {
+        String obj = QUAD + "v 0 y 0\n" + QUAD;
+
+        for (int chunkSize : new int[]{1, 16, Integer.MAX_VALUE}) {
+            try {
+                ObjParser.parse(ascii(obj), chunkSize);
+                fail("Expected an IOException");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("offset " + (QUAD.length() + 4)));
+            }
+        }
+    }
+
+    @Test
+    public void waterSurface_matchesJavagl() throws IOException {
+        byte[] bytes = Files.readAllBytes(Paths.get(WATER_SURFACE));
+        MeshData expected = parseWithJavagl(new ByteArrayInputStream(bytes));
+        MeshData actual = ObjParser.parse(new ByteArrayInputStream(bytes));
+
+        assertSameTriangles(expected, actual);
+    }
+
+    @Test
+    public void waterSurface_chunkedMatchesSequential() throws IOException {
+        ByteBuffer text = ByteBuffer.wrap(Files.readAllBytes(Paths.get(WATER_SURFACE)));
+        MeshData sequential = ObjParser.parse(text, Integer.MAX_VALUE);
+
+        assertIdentical(sequential, ObjParser.parse(text));
+        assertIdentical(sequential, ObjParser.parse(text, 64 * 1024));
+    }
+
+    /**
+     * The loading path used before {@link ObjParser}: the javagl object graph converted to a
+     * renderable copy, whose buffers are copied once more into direct buffers.
+     */
+    static MeshData parseWithJavagl(InputStream inputStream) throws IOException {
+        Obj obj = ObjUtils.convertToRenderable(ObjReader.read(inputStream));
+        return new MeshData(
+                toDirect(ObjData.getVertices(obj)),
+                toDirect(ObjData.getTexCoords(obj, MeshData.TEX_COORD_COMPONENTS)),
+                toDirect(ObjData.getNormals(obj)),
+                toDirect(ObjData.getFaceVertexIndices(obj, 3)));
+    }
+
+    /**
+     * Asserts that both meshes consist of the same triangles in the same order, with identical
+     * attributes at every corner, regardless of how the vertices are numbered.
+     */
+    static void assertSameTriangles(MeshData expected, MeshData actual) {
+        IntBuffer expectedIndices = expected.getIndices();
+        IntBuffer actualIndices = actual.getIndices();
+        assertEquals(expectedIndices.limit(), actualIndices.limit());
+
+        for (int i = 0; i < expectedIndices.limit(); ++i) {
+            int expectedVertex = expectedIndices.get(i);
+            int actualVertex = actualIndices.get(i);
+            assertAttributeEquals(expected.getPositions(), expectedVertex,
+                    actual.getPositions(), actualVertex, MeshData.POSITION_COMPONENTS);
+            assertAttributeEquals(expected.getTexCoords(), expectedVertex,
+                    actual.getTexCoords(), actualVertex, MeshData.TEX_COORD_COMPONENTS);
+            assertAttributeEquals(expected.getNormals(), expectedVertex,
+                    actual.getNormals(), actualVertex, MeshData.NORMAL_COMPONENTS);
+        }
+    }
+
+    private static void assertAttributeEquals(FloatBuffer expected, int expectedVertex,
+                                              FloatBuffer actual, int actualVertex,
+                                              int components) {
+        for (int c = 0; c < components; ++c) {
+            assertEquals(expected.get(expectedVertex * components + c),
+                    actual.get(actualVertex * components + c), 0f);
+        }
+    }
+
+    private static FloatBuffer toDirect(FloatBuffer buffer) {
+        FloatBuffer result = MeshData.allocateFloats(buffer.limit());
+        result.put(buffer);
+        result.rewind();
+        return result;
+    }
+
+    private static IntBuffer toDirect(IntBuffer buffer) {
+        IntBuffer result = MeshData.allocateInts(buffer.limit());
+        result.put(buffer);
+        result.rewind();
+        return result;
+    }
+
+    /**
+     * Asserts that both meshes consist of bit-identical buffers.
+     */
+    static void assertIdentical(MeshData expected, MeshData actual) {
+        assertArrayEquals(toBits(expected.getPositions()), toBits(actual.getPositions()));
+        assertArrayEquals(toBits(expected.getTexCoords()), toBits(actual.getTexCoords()));
+        assertArrayEquals(toBits(expected.getNormals()), toBits(actual.getNormals()));
+        assertArrayEquals(toArray(expected.getIndices()), toArray(actual.getIndices()));
+    }
+
+    private static int[] toBits(FloatBuffer buffer) {
+        int[] result = new int[buffer.limit()];
+
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = Float.floatToRawIntBits(buffer.get(i));
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns faces that reference every vertex, so that vertices keep their order in the file.
+     */
+    private static String facesUpTo(int vertexCount) {
+        StringBuilder faces = new StringBuilder();
+
+        for (int i = 1; i <= vertexCount; ++i) {
+            faces.append("f ").append(i).append(' ').append(i % vertexCount + 1).append(' ')
+                    .append((i + 1) % vertexCount + 1).append('\n');
+        }
+
+        return faces.toString();
+    }
+
+    private static MeshData parse(String obj) throws IOException {
+        return ObjParser.parse(ascii(obj));
+    }
+
+    private static ByteBuffer ascii(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static float[] vertex(FloatBuffer buffer, int index, int components) {
+        float[] result = new float[components];
+
+        for (int i = 0; i < components; ++i) {
+            result[i] = buffer.get(index * components + i);
+        }
+
+        return result;
+    }
+
+    private static float[] toArray(FloatBuffer buffer) {
+        float[] result = new float[buffer.limit()];
+
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = buffer.get(i);
+        }
+
+        return result;
+    }
+
+    private static int[] toArray(IntBuffer buffer) {
+        int[] result = new int[buffer.limit()];
+
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = buffer.get(i);
+        }
+
+        return result;
+    }
+}
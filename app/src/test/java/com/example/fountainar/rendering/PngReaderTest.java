@@ -0,0 +1,66 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Tests that {@link PngReader} decodes the PNG color types the JDK writes like the JDK reads
+ * them.
+ */
+public class PngReaderTest {
+    private static final int WIDTH = 13;
+    private static final int HEIGHT = 7;
+
+    @Test
+    public void read_decodesEveryColorType() throws IOException {
+        int[] types = {
+                BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_INT_ARGB,
+                BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_BYTE_INDEXED};
+
+        for (int type : types) {
+            BufferedImage image = new BufferedImage(WIDTH, HEIGHT, type);
+
+            for (int y = 0; y < HEIGHT; ++y) {
+                for (int x = 0; x < WIDTH; ++x) {
+                    int alpha = type == BufferedImage.TYPE_INT_ARGB ? 255 - x * 10 : 255;
+                    image.setRGB(x, y, alpha << 24 | (x * 19) << 16 | (y * 36) << 8 | x * y);
+                }
+            }
+
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", png);
+            BufferedImage expected = ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+
+            TextureData actual = PngReader.read(new ByteArrayInputStream(png.toByteArray()));
+
+            assertEquals(WIDTH, actual.getWidth());
+            assertEquals(HEIGHT, actual.getHeight());
+            ByteBuffer pixels = actual.getPixels();
+
+            for (int y = 0; y < HEIGHT; ++y) {
+                for (int x = 0; x < WIDTH; ++x) {
+                    // The JDK converts linear grayscale to sRGB in getRGB, so raw samples are
+                    // compared instead.
+                    int argb = type == BufferedImage.TYPE_BYTE_GRAY
+                            ? 0xFF000000 | expected.getRaster().getSample(x, y, 0) * 0x010101
+                            : expected.getRGB(x, y);
+                    int offset = (y * WIDTH + x) * 4;
+                    int rgba = (pixels.get(offset) & 0xFF) << 16
+                            | (pixels.get(offset + 1) & 0xFF) << 8
+                            | pixels.get(offset + 2) & 0xFF
+                            | (pixels.get(offset + 3) & 0xFF) << 24;
+                    assertEquals("Type " + type + " pixel " + x + ", " + y, argb, rgba);
+                }
+            }
+        }
+    }
+}
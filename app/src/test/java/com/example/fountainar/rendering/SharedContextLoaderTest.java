@@ -0,0 +1,223 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests that {@link SharedContextLoader} runs uploads on its own thread and only hands their
+ * results over once their fences are signaled, using a fake {@link GlLoaderContext}.
+ */
+public class SharedContextLoaderTest {
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final FakeContext CONTEXT = new FakeContext();
+    private final SharedContextLoader LOADER = new SharedContextLoader(CONTEXT);
+
+    @After
+    public void tearDown() {
+        LOADER.close();
+    }
+
+    @Test
+    public void submit_isDoneOnlyOnceFenceIsSignaled() throws Exception {
+        Future<String> result = LOADER.submit(() -> "texture");
+        long fence = CONTEXT.awaitFence();
+
+        assertFalse(result.isDone());
+        CONTEXT.signal(fence);
+        assertTrue(result.isDone());
+        assertEquals("texture", result.get());
+        assertEquals(Arrays.asList("make current", "insert " + fence, "delete " + fence),
+                CONTEXT.getEvents());
+    }
+
+    @Test
+    public void submit_runsUploadsInOrderOnLoaderThread() throws Exception {
+        List<String> threads = new ArrayList<>();
+        Future<Integer> first = LOADER.submit(() -> {
+            threads.add(Thread.currentThread().getName());
+            return 1;
+        });
+        Future<Integer> second = LOADER.submit(() -> {
+            threads.add(Thread.currentThread().getName());
+            return 2;
+        });
+
+        CONTEXT.signal(CONTEXT.awaitFence());
+        CONTEXT.signal(CONTEXT.awaitFence());
+
+        assertEquals(1, (int) first.get());
+        assertEquals(2, (int) second.get());
+        assertEquals(Arrays.asList(SharedContextLoader.class.getSimpleName(),
+                SharedContextLoader.class.getSimpleName()), threads);
+        assertEquals(SharedContextLoader.class.getSimpleName(), CONTEXT.getCurrentThread());
+        assertEquals("make current", CONTEXT.getEvents().get(0));
+    }
+
+    @Test
+    public void submit_rethrowsFailureWithoutFence() throws Exception {
+        IOException failure = new IOException("Missing asset");
+        Future<Object> result = LOADER.submit(() -> {
+            throw failure;
+        });
+
+        try {
+            AssetLoader.await(result);
+            fail("Expected the failure of the upload");
+        } catch (IOException e) {
+            assertSame(failure, e);
+        }
+
+        assertTrue(result.isDone());
+        assertEquals(Arrays.asList("make current"), CONTEXT.getEvents());
+    }
+
+    @Test
+    public void get_waitsForFence() throws Exception {
+        Future<String> result = LOADER.submit(() -> "buffer");
+        long fence = CONTEXT.awaitFence();
+
+        assertEquals("buffer", result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("make current", "insert " + fence, "await " + fence,
+                "delete " + fence), CONTEXT.getEvents());
+        assertTrue(result.isDone());
+    }
+
+    @Test
+    public void constructor_throwsIfContextCannotBeMadeCurrent() throws Exception {
+        FakeContext brokenContext = new FakeContext(true);
+
+        try {
+            new SharedContextLoader(brokenContext);
+            fail("Expected the failure to make the context current");
+        } catch (IllegalStateException e) {
+            assertEquals("No current EGL context", e.getCause().getMessage());
+        }
+
+        assertTrue(brokenContext.RELEASED.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void close_releasesContextAfterSubmittedUploads() throws Exception {
+        LOADER.submit(() -> "mesh");
+        long fence = CONTEXT.awaitFence();
+        LOADER.close();
+
+        assertTrue(CONTEXT.RELEASED.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("make current", "insert " + fence, "release"),
+                CONTEXT.getEvents());
+    }
+
+    /**
+     * Records the calls from the loader, and signals fences only when told to.
+     */
+    private static final class FakeContext implements GlLoaderContext {
+        private final List<String> EVENTS = new ArrayList<>();
+        private final Set<Long> SIGNALED = new HashSet<>();
+        private final List<Long> INSERTED = new ArrayList<>();
+        private final CountDownLatch RELEASED = new CountDownLatch(1);
+        private final boolean IS_BROKEN;
+        private long nextFence = 1;
+        private int awaitedFences;
+        private String currentThread;
+
+        FakeContext() {
+            this(false);
+        }
+
+        /**
+         * @param isBroken Whether making the context current fails.
+         */
+        FakeContext(boolean isBroken) {
+            this.IS_BROKEN = isBroken;
+        }
+
+        @Override
+        public synchronized void makeCurrent() {
+            if (IS_BROKEN) {
+                throw new IllegalStateException("No current EGL context");
+            }
+
+            currentThread = Thread.currentThread().getName();
+            EVENTS.add("make current");
+        }
+
+        @Override
+        public synchronized long insertFence() {
+            long fence = nextFence++;
+            INSERTED.add(fence);
+            EVENTS.add("insert " + fence);
+            notifyAll();
+            return fence;
+        }
+
+        @Override
+        public synchronized boolean isSignaled(long fence) {
+            return SIGNALED.contains(fence);
+        }
+
+        @Override
+        public synchronized void awaitSignaled(long fence) {
+            EVENTS.add("await " + fence);
+            SIGNALED.add(fence);
+        }
+
+        @Override
+        public synchronized void deleteFence(long fence) {
+            EVENTS.add("delete " + fence);
+        }
+
+        @Override
+        public synchronized void release() {
+            EVENTS.add("release");
+            RELEASED.countDown();
+        }
+
+        /**
+         * Waits for the loader to insert the next fence not awaited yet, and returns it.
+         */
+        synchronized long awaitFence() throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+
+            while (INSERTED.size() <= awaitedFences) {
+                long remaining = deadline - System.nanoTime();
+
+                if (remaining <= 0) {
+                    throw new AssertionError("The loader inserted no fence");
+                }
+
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+
+            return INSERTED.get(awaitedFences++);
+        }
+
+        synchronized void signal(long fence) {
+            SIGNALED.add(fence);
+        }
+
+        synchronized List<String> getEvents() {
+            return new ArrayList<>(EVENTS);
+        }
+
+        synchronized String getCurrentThread() {
+            return currentThread;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Tests the buckets, the reuse and the accounting of {@link StagingBufferPool}.
+ */
+public class StagingBufferPoolTest {
+
+    @Test
+    public void getBucketCapacity_roundsUpToPowersOfTwo() {
+        assertEquals(StagingBufferPool.MIN_BUCKET_BYTES, StagingBufferPool.getBucketCapacity(1));
+        assertEquals(4096, StagingBufferPool.getBucketCapacity(4096));
+        assertEquals(8192, StagingBufferPool.getBucketCapacity(4097));
+        assertEquals(1 << 22, StagingBufferPool.getBucketCapacity(1024 * 1024 * 4));
+        assertEquals(1 << 22, StagingBufferPool.getBucketCapacity(1024 * 1024 * 3));
+    }
+
+    @Test
+    public void acquire_returnsDirectBufferOfRequestedSize() {
+        StagingBufferPool pool = new StagingBufferPool(StagingBufferPool.DEFAULT_MAX_IDLE_BYTES);
+
+        ByteBuffer buffer = pool.acquire(5000);
+
+        assertTrue(buffer.isDirect());
+        assertEquals(ByteOrder.nativeOrder(), buffer.order());
+        assertEquals(0, buffer.position());
+        assertEquals(5000, buffer.limit());
+        assertEquals(8192, buffer.capacity());
+        assertEquals(1, pool.getAcquiredCount());
+    }
+
+    @Test
+    public void acquire_reusesReleasedBuffersWithoutAllocating() {
+        StagingBufferPool pool = new StagingBufferPool(StagingBufferPool.DEFAULT_MAX_IDLE_BYTES);
+        ByteBuffer first = pool.acquire(100 * 100 * 4);
+        pool.release(first);
+
+        for (int frame = 0; frame < 10; ++frame) {
+            ByteBuffer buffer = pool.acquire(120 * 120 * 4 + frame);
+            buffer.put((byte) frame);
+            pool.release(buffer);
+            assertSame(first, buffer);
+        }
+
+        assertEquals(1, pool.getAllocationCount());
+        assertEquals(11, pool.getAcquireCount());
+        assertEquals(0, pool.getAcquiredCount());
+        assertEquals(first.capacity(), pool.getIdleBytes());
+    }
+
+    @Test
+    public void acquire_keepsBucketsApart() {
+        StagingBufferPool pool = new StagingBufferPool(StagingBufferPool.DEFAULT_MAX_IDLE_BYTES);
+        pool.release(pool.acquire(100_000));
+
+        ByteBuffer small = pool.acquire(1000);
+
+        assertEquals(StagingBufferPool.MIN_BUCKET_BYTES, small.capacity());
+        assertEquals(2, pool.getAllocationCount());
+    }
+
+    @Test
+    public void release_dropsBuffersBeyondIdleBudget() {
+        StagingBufferPool pool = new StagingBufferPool(10_000);
+        ByteBuffer first = pool.acquire(8192);
+        ByteBuffer second = pool.acquire(8192);
+
+        pool.release(first);
+        pool.release(second);
+
+        assertEquals(8192, pool.getIdleBytes());
+        assertEquals(8192, pool.getAllocatedBytes());
+
+        pool.trim();
+
+        assertEquals(0, pool.getIdleBytes());
+        assertEquals(0, pool.getAllocatedBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void release_rejectsForeignBuffers() {
+        new StagingBufferPool(StagingBufferPool.DEFAULT_MAX_IDLE_BYTES)
+                .release(ByteBuffer.allocateDirect(1000));
+    }
+}
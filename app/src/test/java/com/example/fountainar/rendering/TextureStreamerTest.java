@@ -0,0 +1,290 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.opengl.GLES30;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the scheduling of {@link TextureStreamer}: buffers are filled by the worker, uploaded in
+ * submission order by the next {@link TextureStreamer#processUploads()} and only reused once
+ * their fences are signaled, using a fake {@link GlPixelBuffers}.
+ */
+public class TextureStreamerTest {
+    private static final TextureStreamer.Region REGION =
+            TextureStreamer.Region.forTexture2d(7, 0, 2, 2, GLES30.GL_RGBA,
+                    GLES30.GL_UNSIGNED_BYTE);
+
+    private final FakeBuffers GL = new FakeBuffers();
+    private final ManualExecutor WORKER = new ManualExecutor();
+
+    @Test
+    public void submit_uploadsOnceWorkerHasFilledBuffer() {
+        TextureStreamer streamer = new TextureStreamer(GL, 2, WORKER);
+        RecordingUpload upload = new RecordingUpload((byte) 42);
+
+        assertTrue(streamer.submit(REGION, upload));
+        streamer.processUploads();
+
+        assertEquals(Arrays.asList("create 1", "allocate 1 16", "map 1 16"), GL.EVENTS);
+        assertEquals(1, streamer.getPendingCount());
+
+        WORKER.run(0);
+        streamer.processUploads();
+
+        assertEquals(Arrays.asList("create 1", "allocate 1 16", "map 1 16", "unmap 1",
+                "upload 1 to 7", "insert 1"), GL.EVENTS);
+        assertEquals(42, GL.UPLOADED.get(1).get(15));
+        assertEquals(Arrays.asList("filled", "uploaded"), upload.EVENTS);
+        assertEquals(0, streamer.getPendingCount());
+    }
+
+    @Test
+    public void processUploads_keepsSubmissionOrder() {
+        TextureStreamer streamer = new TextureStreamer(GL, 2, WORKER);
+        RecordingUpload first = new RecordingUpload((byte) 1);
+        RecordingUpload second = new RecordingUpload((byte) 2);
+        streamer.submit(REGION, first);
+        streamer.submit(REGION, second);
+
+        WORKER.run(1);
+        streamer.processUploads();
+
+        assertEquals(Arrays.asList("filled"), second.EVENTS);
+        assertEquals(2, streamer.getPendingCount());
+
+        WORKER.run(0);
+        streamer.processUploads();
+
+        assertEquals(Arrays.asList("filled", "uploaded"), first.EVENTS);
+        assertEquals(Arrays.asList("filled", "uploaded"), second.EVENTS);
+        assertEquals(Arrays.asList("upload 1 to 7", "upload 2 to 7"), GL.getUploads());
+    }
+
+    @Test
+    public void submit_reusesBufferOnlyOnceFenceIsSignaled() {
+        TextureStreamer streamer = new TextureStreamer(GL, 1, WORKER);
+        streamer.submit(REGION, new RecordingUpload((byte) 1));
+        WORKER.run(0);
+        streamer.processUploads();
+
+        assertEquals(0, streamer.getFreeSlotCount());
+        assertFalse(streamer.submit(REGION, new RecordingUpload((byte) 2)));
+
+        GL.SIGNALED.add(1L);
+
+        assertEquals(1, streamer.getFreeSlotCount());
+        assertTrue(streamer.submit(REGION, new RecordingUpload((byte) 3)));
+        assertEquals(Arrays.asList("create 1", "allocate 1 16", "map 1 16", "unmap 1",
+                "upload 1 to 7", "insert 1", "delete fence 1", "map 1 16"), GL.EVENTS);
+    }
+
+    @Test
+    public void processUploads_reportsFailedFillWithoutUpload() {
+        TextureStreamer streamer = new TextureStreamer(GL, 1, WORKER);
+        IllegalStateException failure = new IllegalStateException("Image closed");
+        RecordingUpload upload = new RecordingUpload((byte) 1) {
+            @Override
+            public void fill(ByteBuffer pixels) {
+                throw failure;
+            }
+        };
+        streamer.submit(REGION, upload);
+
+        WORKER.run(0);
+        streamer.processUploads();
+
+        assertEquals(Arrays.asList("failed"), upload.EVENTS);
+        assertSame(failure, upload.failure);
+        assertEquals(Arrays.asList(), GL.getUploads());
+        assertEquals(1, streamer.getFreeSlotCount());
+    }
+
+    @Test
+    public void close_deletesBuffersAndFences() {
+        TextureStreamer streamer = new TextureStreamer(GL, 2, WORKER);
+        streamer.submit(REGION, new RecordingUpload((byte) 1));
+        WORKER.run(0);
+        streamer.processUploads();
+        streamer.submit(REGION, new RecordingUpload((byte) 2));
+
+        streamer.close();
+        streamer.close();
+        streamer.processUploads();
+
+        assertTrue(WORKER.isShutdown());
+        assertEquals(Arrays.asList("delete fence 1", "delete buffer 1", "unmap 2",
+                "delete buffer 2"), GL.EVENTS.subList(GL.EVENTS.size() - 4, GL.EVENTS.size()));
+    }
+
+    @Test
+    public void region_countsBytesOfCubemapFace() {
+        TextureStreamer.Region face = TextureStreamer.Region.forCubemapFace(3, 5, 0, 16,
+                GLES30.GL_RGBA, GLES30.GL_HALF_FLOAT);
+
+        assertEquals(GLES30.GL_TEXTURE_CUBE_MAP_NEGATIVE_Z, face.IMAGE_TARGET);
+        assertEquals(16 * 16 * 8, face.getByteCount());
+    }
+
+    private static class RecordingUpload implements TextureStreamer.Upload {
+        private final List<String> EVENTS = new ArrayList<>();
+        private final byte VALUE;
+        private Exception failure;
+
+        RecordingUpload(byte value) {
+            this.VALUE = value;
+        }
+
+        @Override
+        public void fill(ByteBuffer pixels) {
+            while (pixels.hasRemaining()) {
+                pixels.put(VALUE);
+            }
+
+            EVENTS.add("filled");
+        }
+
+        @Override
+        public void onUploaded() {
+            EVENTS.add("uploaded");
+        }
+
+        @Override
+        public void onFailed(Exception e) {
+            failure = e;
+            EVENTS.add("failed");
+        }
+    }
+
+    private static final class FakeBuffers implements GlPixelBuffers {
+        private final List<String> EVENTS = new ArrayList<>();
+        private final Map<Integer, ByteBuffer> MAPPED = new HashMap<>();
+        private final Map<Integer, ByteBuffer> UPLOADED = new HashMap<>();
+        private final Set<Long> SIGNALED = new HashSet<>();
+        private int nextBuffer = 1;
+        private long nextFence = 1;
+
+        @Override
+        public int createBuffer() {
+            EVENTS.add("create " + nextBuffer);
+            return nextBuffer++;
+        }
+
+        @Override
+        public void allocate(int buffer, int byteCount) {
+            EVENTS.add("allocate " + buffer + " " + byteCount);
+        }
+
+        @Override
+        public ByteBuffer map(int buffer, int byteCount) {
+            EVENTS.add("map " + buffer + " " + byteCount);
+            ByteBuffer pixels = ByteBuffer.allocateDirect(byteCount).order(ByteOrder.nativeOrder());
+            MAPPED.put(buffer, pixels);
+            return pixels;
+        }
+
+        @Override
+        public boolean unmap(int buffer) {
+            EVENTS.add("unmap " + buffer);
+            UPLOADED.put(buffer, MAPPED.remove(buffer));
+            return true;
+        }
+
+        @Override
+        public void upload(int buffer, TextureStreamer.Region region) {
+            EVENTS.add("upload " + buffer + " to " + region.TEXTURE_ID);
+        }
+
+        @Override
+        public long insertFence() {
+            EVENTS.add("insert " + nextFence);
+            return nextFence++;
+        }
+
+        @Override
+        public boolean isSignaled(long fence) {
+            return SIGNALED.contains(fence);
+        }
+
+        @Override
+        public void deleteFence(long fence) {
+            EVENTS.add("delete fence " + fence);
+        }
+
+        @Override
+        public void deleteBuffer(int buffer) {
+            EVENTS.add("delete buffer " + buffer);
+        }
+
+        List<String> getUploads() {
+            List<String> uploads = new ArrayList<>();
+
+            for (String event : EVENTS) {
+                if (event.startsWith("upload")) {
+                    uploads.add(event);
+                }
+            }
+
+            return uploads;
+        }
+    }
+
+    /**
+     * Runs the submitted tasks only when told to, in any order.
+     */
+    private static final class ManualExecutor extends AbstractExecutorService {
+        private final List<Runnable> TASKS = new ArrayList<>();
+        private boolean isShutdown;
+
+        void run(int index) {
+            TASKS.get(index).run();
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            TASKS.add(command);
+        }
+
+        @Override
+        public void shutdown() {
+            isShutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            isShutdown = true;
+            return new ArrayList<>(TASKS);
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return isShutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return isShutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
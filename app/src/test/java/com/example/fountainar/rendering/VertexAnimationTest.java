@@ -0,0 +1,201 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests baking keyframes into a {@link VertexAnimation} and its texture.
+ */
+public class VertexAnimationTest {
+    private static final int GRID_SIZE = 6;
+    private static final int FRAME_COUNT = 4;
+
+    @Test
+    public void fromFrames_reproducesEveryFrame() {
+        List<MeshData> frames = createWaveFrames();
+        VertexAnimation animation = VertexAnimation.fromFrames(frames);
+
+        assertEquals(FRAME_COUNT, animation.getFrameCount());
+
+        for (int f = 0; f < FRAME_COUNT; ++f) {
+            MeshData frame = frames.get(f);
+            MeshData baked = new MeshData(animation.getPositions(f),
+                    animation.getBaseMesh().getTexCoords(), animation.getNormals(f),
+                    animation.getBaseMesh().getIndices());
+            ObjParserTest.assertSameTriangles(frame, baked);
+        }
+    }
+
+    @Test
+    public void fromFrames_splitsVerticesSplitInAnyFrame() {
+        MeshData quad = createQuad(new int[]{0, 1, 2, 2, 1, 3}, 4);
+        MeshData splitQuad = createQuad(new int[]{0, 1, 2, 4, 5, 3}, 6);
+
+        VertexAnimation animation = VertexAnimation.fromFrames(Arrays.asList(quad, splitQuad));
+
+        assertEquals(6, animation.getVertexCount());
+        assertEquals(6, animation.getBaseMesh().getIndexCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromFrames_rejectsDifferentTopologies() {
+        MeshData quad = createQuad(new int[]{0, 1, 2, 2, 1, 3}, 4);
+        MeshData triangle = createQuad(new int[]{0, 1, 2}, 4);
+
+        VertexAnimation.fromFrames(Arrays.asList(quad, triangle));
+    }
+
+    @Test
+    public void toTextureData_storesOffsetsAndNormalsAsHalfFloats() {
+        VertexAnimation animation = VertexAnimation.fromFrames(createWaveFrames());
+        VatData vatData = animation.toTextureData();
+        FloatBuffer basePositions = animation.getPositions(0);
+
+        for (int f = 0; f < FRAME_COUNT; ++f) {
+            FloatBuffer positions = animation.getPositions(f);
+            FloatBuffer normals = animation.getNormals(f);
+
+            for (int v = 0; v < animation.getVertexCount(); ++v) {
+                for (int c = 0; c < 3; ++c) {
+                    float position = basePositions.get(v * 3 + c)
+                            + HalfFloat.toFloat(vatData.getHalf(f, v, 0, c));
+                    float normal = HalfFloat.toFloat(vatData.getHalf(f, v, 1, c));
+                    assertEquals(positions.get(v * 3 + c), position, 1e-3f);
+                    assertEquals(normals.get(v * 3 + c), normal, 1e-3f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void computeOffsetBounds_containsEveryAnimatedPosition() {
+        VertexAnimation animation = VertexAnimation.fromFrames(createWaveFrames());
+        BoundingBox animatedBounds = animation.getBaseMesh().getBounds()
+                .offsetBy(animation.toTextureData().computeOffsetBounds());
+
+        for (int f = 0; f < FRAME_COUNT; ++f) {
+            BoundingBox frameBounds = BoundingBox.fromPositions(animation.getPositions(f));
+
+            for (int axis = 0; axis < 3; ++axis) {
+                assertTrue(animatedBounds.getMin()[axis] <= frameBounds.getMin()[axis] + 1e-3f);
+                assertTrue(animatedBounds.getMax()[axis] >= frameBounds.getMax()[axis] - 1e-3f);
+            }
+        }
+    }
+
+    @Test
+    public void toTextureData_wrapsLongAnimationsIntoRows() {
+        List<MeshData> frames = Collections.nCopies(300, createWaveFrames().get(1));
+
+        VatData vatData = VertexAnimation.fromFrames(frames).toTextureData();
+
+        assertEquals(VatData.MAX_TEXTURE_SIZE, vatData.getWidth());
+        assertEquals((300 * GRID_SIZE * GRID_SIZE * 2 + VatData.MAX_TEXTURE_SIZE - 1)
+                / VatData.MAX_TEXTURE_SIZE, vatData.getHeight());
+    }
+
+    @Test
+    public void vatFile_roundTrips() throws IOException {
+        VatData expected = VertexAnimation.fromFrames(createWaveFrames()).toTextureData();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        VatFile.write(expected, outputStream);
+        byte[] bytes = outputStream.toByteArray();
+        ByteBuffer file = ByteBuffer.allocateDirect(bytes.length);
+        file.put(bytes).rewind();
+
+        VatData actual = VatFile.read(file);
+
+        assertEquals(expected.getFrameCount(), actual.getFrameCount());
+        assertEquals(expected.getVertexCount(), actual.getVertexCount());
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+
+        for (int f = 0; f < FRAME_COUNT; ++f) {
+            for (int v = 0; v < expected.getVertexCount(); ++v) {
+                for (int c = 0; c < 3; ++c) {
+                    assertEquals(expected.getHalf(f, v, 0, c), actual.getHalf(f, v, 0, c));
+                    assertEquals(expected.getHalf(f, v, 1, c), actual.getHalf(f, v, 1, c));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void vatFile_rejectsOtherFiles() throws IOException {
+        VatFile.read(ByteBuffer.allocateDirect(64));
+    }
+
+    /**
+     * Returns a grid animated by a travelling wave. Each frame numbers its vertices in reverse
+     * order of the previous one, so that the bake cannot rely on matching vertex numbers.
+     */
+    static List<MeshData> createWaveFrames() {
+        List<MeshData> frames = new ArrayList<>();
+        int vertexCount = GRID_SIZE * GRID_SIZE;
+
+        for (int f = 0; f < FRAME_COUNT; ++f) {
+            boolean reversed = f % 2 == 1;
+            FloatBuffer positions = MeshData.allocateFloats(vertexCount * 3);
+            FloatBuffer texCoords = MeshData.allocateFloats(vertexCount * 2);
+            FloatBuffer normals = MeshData.allocateFloats(vertexCount * 3);
+
+            for (int y = 0; y < GRID_SIZE; ++y) {
+                for (int x = 0; x < GRID_SIZE; ++x) {
+                    int v = vertexIndex(x, y, reversed);
+                    float phase = x * 0.7f + f * 0.9f;
+                    positions.put(v * 3, x).put(v * 3 + 1, (float) Math.sin(phase))
+                            .put(v * 3 + 2, y);
+                    texCoords.put(v * 2, x / (GRID_SIZE - 1f)).put(v * 2 + 1,
+                            y / (GRID_SIZE - 1f));
+                    float slope = 0.7f * (float) Math.cos(phase);
+                    float length = (float) Math.sqrt(1 + slope * slope);
+                    normals.put(v * 3, -slope / length).put(v * 3 + 1, 1 / length)
+                            .put(v * 3 + 2, 0);
+                }
+            }
+
+            IntBuffer indices = MeshData.allocateInts((GRID_SIZE - 1) * (GRID_SIZE - 1) * 6);
+
+            for (int y = 0; y < GRID_SIZE - 1; ++y) {
+                for (int x = 0; x < GRID_SIZE - 1; ++x) {
+                    indices.put(vertexIndex(x, y, reversed))
+                            .put(vertexIndex(x, y + 1, reversed))
+                            .put(vertexIndex(x + 1, y, reversed))
+                            .put(vertexIndex(x + 1, y, reversed))
+                            .put(vertexIndex(x, y + 1, reversed))
+                            .put(vertexIndex(x + 1, y + 1, reversed));
+                }
+            }
+
+            indices.rewind();
+            frames.add(new MeshData(positions, texCoords, normals, indices));
+        }
+
+        return frames;
+    }
+
+    private static int vertexIndex(int x, int y, boolean reversed) {
+        int index = y * GRID_SIZE + x;
+        return reversed ? GRID_SIZE * GRID_SIZE - 1 - index : index;
+    }
+
+    private static MeshData createQuad(int[] triangleIndices, int vertexCount) {
+        IntBuffer indices = MeshData.allocateInts(triangleIndices.length);
+        indices.put(triangleIndices).rewind();
+        return new MeshData(MeshData.allocateFloats(vertexCount * 3),
+                MeshData.allocateFloats(vertexCount * 2), MeshData.allocateFloats(vertexCount * 3),
+                indices);
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests the triangle and vertex reordering of {@link VertexCacheOptimizer} on synthetic grids.
+ */
+public class VertexCacheOptimizerTest {
+    private static final int GRID_SIZE = 64;
+
+    @Test
+    public void computeAcmr_countsFifoMisses() {
+        // Two triangles sharing an edge: 4 transformed vertices for 2 triangles.
+        IntBuffer indices = ints(0, 1, 2, 2, 1, 3);
+
+        assertEquals(2f, VertexCacheOptimizer.computeAcmr(indices, 16), 0f);
+        assertEquals(1f, VertexCacheOptimizer.computeAtvr(indices, 16), 0f);
+        assertEquals(3f, VertexCacheOptimizer.computeAcmr(indices, 1), 0f);
+    }
+
+    @Test
+    public void optimize_improvesShuffledGrid() {
+        MeshData grid = shuffle(grid(GRID_SIZE), new Random(1));
+        MeshData optimized = VertexCacheOptimizer.optimize(grid);
+        float acmrBefore = VertexCacheOptimizer.computeAcmr(grid.getIndices(),
+                VertexCacheOptimizer.STATISTICS_CACHE_SIZE);
+        float acmrAfter = VertexCacheOptimizer.computeAcmr(optimized.getIndices(),
+                VertexCacheOptimizer.STATISTICS_CACHE_SIZE);
+
+        assertTrue("ACMR before " + acmrBefore, acmrBefore > 1.2f);
+        assertTrue("ACMR after " + acmrAfter, acmrAfter < 0.8f);
+        assertTrue(VertexCacheOptimizer.computeAtvr(optimized.getIndices(),
+                VertexCacheOptimizer.STATISTICS_CACHE_SIZE) < 1.5f);
+    }
+
+    @Test
+    public void optimize_doesNotWorsenRowMajorGrid() {
+        MeshData grid = grid(GRID_SIZE);
+        MeshData optimized = VertexCacheOptimizer.optimize(grid);
+
+        assertTrue(VertexCacheOptimizer.computeAcmr(optimized.getIndices(),
+                VertexCacheOptimizer.STATISTICS_CACHE_SIZE)
+                <= VertexCacheOptimizer.computeAcmr(grid.getIndices(),
+                VertexCacheOptimizer.STATISTICS_CACHE_SIZE));
+    }
+
+    @Test
+    public void optimize_keepsTrianglesAndWinding() {
+        MeshData grid = shuffle(grid(16), new Random(2));
+        MeshData optimized = VertexCacheOptimizer.optimize(grid);
+
+        assertEquals(grid.getVertexCount(), optimized.getVertexCount());
+        assertEquals(sortedTriangles(grid), sortedTriangles(optimized));
+    }
+
+    @Test
+    public void optimize_ordersVerticesByFirstUse() {
+        MeshData optimized = VertexCacheOptimizer.optimize(shuffle(grid(16), new Random(3)));
+        IntBuffer indices = optimized.getIndices();
+        int nextNewVertex = 0;
+
+        for (int i = 0; i < indices.limit(); ++i) {
+            assertTrue(indices.get(i) <= nextNewVertex);
+
+            if (indices.get(i) == nextNewVertex) {
+                ++nextNewVertex;
+            }
+        }
+    }
+
+    @Test
+    public void optimizeTriangleOrder_handlesDegenerateTriangles() {
+        int[] indices = {0, 0, 1, 0, 1, 2, 2, 1, 3};
+        int[] optimized = VertexCacheOptimizer.optimizeTriangleOrder(indices, 4);
+
+        assertEquals(indices.length, optimized.length);
+    }
+
+    /**
+     * Creates a regular grid of {@code size} x {@code size} quads in row-major order. Texture
+     * coordinates and normals carry the vertex position so that reordering can be verified.
+     */
+    private static MeshData grid(int size) {
+        int verticesPerRow = size + 1;
+        int vertexCount = verticesPerRow * verticesPerRow;
+        FloatBuffer positions = MeshData.allocateFloats(vertexCount * 3);
+        FloatBuffer texCoords = MeshData.allocateFloats(vertexCount * 2);
+        FloatBuffer normals = MeshData.allocateFloats(vertexCount * 3);
+        IntBuffer indices = MeshData.allocateInts(size * size * 6);
+
+        for (int y = 0; y < verticesPerRow; ++y) {
+            for (int x = 0; x < verticesPerRow; ++x) {
+                positions.put(x).put(0f).put(y);
+                texCoords.put(x).put(y);
+                normals.put(0f).put(1f).put(0f);
+            }
+        }
+
+        for (int y = 0; y < size; ++y) {
+            for (int x = 0; x < size; ++x) {
+                int corner = y * verticesPerRow + x;
+                indices.put(corner).put(corner + verticesPerRow).put(corner + 1);
+                indices.put(corner + 1).put(corner + verticesPerRow)
+                        .put(corner + verticesPerRow + 1);
+            }
+        }
+
+        positions.rewind();
+        texCoords.rewind();
+        normals.rewind();
+        indices.rewind();
+        return new MeshData(positions, texCoords, normals, indices);
+    }
+
+    private static MeshData shuffle(MeshData meshData, Random random) {
+        List<int[]> triangles = triangles(meshData);
+        Collections.shuffle(triangles, random);
+        IntBuffer indices = MeshData.allocateInts(meshData.getIndexCount());
+
+        for (int[] triangle : triangles) {
+            indices.put(triangle);
+        }
+
+        indices.rewind();
+        return new MeshData(meshData.getPositions(), meshData.getTexCoords(),
+                meshData.getNormals(), indices);
+    }
+
+    private static List<int[]> triangles(MeshData meshData) {
+        List<int[]> triangles = new ArrayList<>();
+        IntBuffer indices = meshData.getIndices();
+
+        for (int i = 0; i < indices.limit(); i += 3) {
+            triangles.add(new int[]{indices.get(i), indices.get(i + 1), indices.get(i + 2)});
+        }
+
+        return triangles;
+    }
+
+    /**
+     * Describes each triangle by the positions of its corners, rotated to start at the smallest
+     * one so that the winding is kept, and sorts the descriptions.
+     */
+    private static List<String> sortedTriangles(MeshData meshData) {
+        List<String> result = new ArrayList<>();
+        FloatBuffer positions = meshData.getPositions();
+
+        for (int[] triangle : triangles(meshData)) {
+            String[] corners = new String[3];
+
+            for (int c = 0; c < 3; ++c) {
+                corners[c] = positions.get(triangle[c] * 3) + "/"
+                        + positions.get(triangle[c] * 3 + 2);
+            }
+
+            int first = 0;
+
+            for (int c = 1; c < 3; ++c) {
+                if (corners[c].compareTo(corners[first]) < 0) {
+                    first = c;
+                }
+            }
+
+            result.add(corners[first] + " " + corners[(first + 1) % 3] + " "
+                    + corners[(first + 2) % 3]);
+        }
+
+        Collections.sort(result);
+        return result;
+    }
+
+    private static IntBuffer ints(int... values) {
+        IntBuffer buffer = MeshData.allocateInts(values.length);
+        buffer.put(values);
+        buffer.rewind();
+        return buffer;
+    }
+}
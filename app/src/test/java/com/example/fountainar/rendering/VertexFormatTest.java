@@ -0,0 +1,111 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.opengl.GLES30;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Tests the attribute layout and packing of {@link VertexFormat}.
+ */
+public class VertexFormatTest {
+
+    @Test
+    public void defaultFormat_interleavesPositionTexCoordNormal() {
+        VertexFormat.Attribute[] attributes = VertexFormat.DEFAULT.getAttributes();
+
+        assertEquals(3, attributes.length);
+        assertEquals(0, attributes[0].offset);
+        assertEquals(12, attributes[1].offset);
+        assertEquals(20, attributes[2].offset);
+        assertEquals(32, VertexFormat.DEFAULT.getStride());
+
+        for (int i = 0; i < attributes.length; ++i) {
+            assertEquals(i, attributes[i].location);
+            assertEquals(GLES30.GL_FLOAT, attributes[i].componentType);
+            assertFalse(attributes[i].normalized);
+        }
+    }
+
+    @Test
+    public void builder_alignsAttributesToFourBytes() {
+        VertexFormat format = new VertexFormat.Builder()
+                .add(VertexFormat.Semantic.POSITION, 0, VertexFormat.Encoding.HALF_FLOAT)
+                .add(VertexFormat.Semantic.NORMAL, 2, VertexFormat.Encoding.OCTAHEDRAL)
+                .add(VertexFormat.Semantic.TEX_COORD, 1, VertexFormat.Encoding.UNORM16)
+                .build();
+
+        VertexFormat.Attribute[] attributes = format.getAttributes();
+        assertEquals(0, attributes[0].offset);
+        assertEquals(8, attributes[1].offset);
+        assertEquals(12, attributes[2].offset);
+        assertEquals(16, format.getStride());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_rejectsDuplicateLocations() {
+        new VertexFormat.Builder()
+                .add(VertexFormat.Semantic.POSITION, 0, VertexFormat.Encoding.FLOAT)
+                .add(VertexFormat.Semantic.NORMAL, 0, VertexFormat.Encoding.FLOAT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_rejectsOctahedralPositions() {
+        new VertexFormat.Builder()
+                .add(VertexFormat.Semantic.POSITION, 0, VertexFormat.Encoding.OCTAHEDRAL);
+    }
+
+    @Test
+    public void quantizedFormat_halvesTheStride() {
+        assertEquals(16, VertexFormat.QUANTIZED.getStride());
+        assertEquals(2, VertexFormat.QUANTIZED.getAttributes()[2].componentCount);
+        assertEquals(GLES30.GL_BYTE, VertexFormat.QUANTIZED.getAttributes()[2].componentType);
+        assertTrue(VertexFormat.QUANTIZED.getAttributes()[2].normalized);
+        assertTrue(VertexFormat.QUANTIZED.hasQuantizedPositions());
+        assertTrue(VertexFormat.QUANTIZED.getShaderDefines().containsKey("OCTAHEDRAL_NORMALS"));
+        assertTrue(VertexFormat.DEFAULT.getShaderDefines().isEmpty());
+    }
+
+    @Test
+    public void pack_writesEachVertexContiguously() {
+        MeshData meshData = new MeshData(
+                floats(1f, 2f, 3f, 4f, 5f, 6f),
+                floats(0.1f, 0.2f, 0.3f, 0.4f),
+                floats(0f, 0f, 1f, 0f, 1f, 0f),
+                ints(0, 1, 0));
+
+        ByteBuffer packed = VertexFormat.DEFAULT.pack(meshData);
+        int stride = VertexFormat.DEFAULT.getStride();
+
+        assertEquals(2 * stride, packed.limit());
+        float[] expected = {
+                1f, 2f, 3f, 0.1f, 0.2f, 0f, 0f, 1f,
+                4f, 5f, 6f, 0.3f, 0.4f, 0f, 1f, 0f,
+        };
+
+        for (int i = 0; i < expected.length; ++i) {
+            assertEquals(expected[i], packed.getFloat(i * Float.BYTES), 0f);
+        }
+    }
+
+    private static FloatBuffer floats(float... values) {
+        FloatBuffer buffer = MeshData.allocateFloats(values.length);
+        buffer.put(values);
+        buffer.rewind();
+        return buffer;
+    }
+
+    private static IntBuffer ints(int... values) {
+        IntBuffer buffer = MeshData.allocateInts(values.length);
+        buffer.put(values);
+        buffer.rewind();
+        return buffer;
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Random;
+
+/**
+ * Error-bound tests for the attribute quantization of {@link VertexQuantizer}, {@link HalfFloat}
+ * and {@link VertexFormat#QUANTIZED}.
+ */
+public class VertexQuantizerTest {
+    private static final int SAMPLES = 100000;
+    private static final double MAX_OCTAHEDRAL_ERROR_DEGREES = 1.0;
+
+    @Test
+    public void octahedral_angularErrorIsBounded() {
+        Random random = new Random(42);
+        byte[] encoded = new byte[2];
+        float[] decoded = new float[3];
+        double maxError = 0.0;
+
+        for (int i = 0; i < SAMPLES; ++i) {
+            float[] normal = randomUnitVector(random);
+            VertexQuantizer.encodeOctahedral(normal[0], normal[1], normal[2], encoded, 0);
+            VertexQuantizer.decodeOctahedral(encoded[0], encoded[1], decoded);
+            maxError = Math.max(maxError, angleDegrees(normal, decoded));
+        }
+
+        assertTrue("Max error " + maxError, maxError < MAX_OCTAHEDRAL_ERROR_DEGREES);
+    }
+
+    @Test
+    public void octahedral_axesAreExact() {
+        float[][] axes = {{1, 0, 0}, {-1, 0, 0}, {0, 1, 0}, {0, -1, 0}, {0, 0, 1}, {0, 0, -1}};
+        byte[] encoded = new byte[2];
+        float[] decoded = new float[3];
+
+        for (float[] axis : axes) {
+            VertexQuantizer.encodeOctahedral(axis[0], axis[1], axis[2], encoded, 0);
+            VertexQuantizer.decodeOctahedral(encoded[0], encoded[1], decoded);
+
+            for (int i = 0; i < 3; ++i) {
+                assertEquals(axis[i], decoded[i], 1e-6f);
+            }
+        }
+    }
+
+    @Test
+    public void snorm16_errorIsHalfAStep() {
+        Random random = new Random(7);
+        float center = 0.3f;
+        float halfExtent = 1.7f;
+        float maxError = halfExtent / 32767f / 2f * 1.05f;
+
+        for (int i = 0; i < SAMPLES; ++i) {
+            float value = center + (random.nextFloat() * 2f - 1f) * halfExtent;
+            short encoded = VertexQuantizer.encodeSnorm16(value, center, halfExtent);
+            float decoded = VertexQuantizer.decodeSnorm16(encoded, center, halfExtent);
+            assertEquals(value, decoded, maxError);
+        }
+
+        assertEquals(center - halfExtent, VertexQuantizer.decodeSnorm16(
+                VertexQuantizer.encodeSnorm16(center - halfExtent, center, halfExtent),
+                center, halfExtent), 1e-6f);
+    }
+
+    @Test
+    public void snorm16_degenerateIntervalDecodesToCenter() {
+        short encoded = VertexQuantizer.encodeSnorm16(0.65f, 0.65f, 0f);
+        assertEquals(0.65f, VertexQuantizer.decodeSnorm16(encoded, 0.65f, 0f), 0f);
+    }
+
+    @Test
+    public void unorm16_errorIsHalfAStep() {
+        Random random = new Random(3);
+        float maxError = 1f / 65535f / 2f * 1.05f;
+
+        for (int i = 0; i < SAMPLES; ++i) {
+            float value = random.nextFloat();
+            float decoded = VertexQuantizer.decodeUnorm16(VertexQuantizer.encodeUnorm16(value));
+            assertEquals(value, decoded, maxError);
+        }
+
+        assertEquals(1f, VertexQuantizer.decodeUnorm16(VertexQuantizer.encodeUnorm16(1f)), 0f);
+    }
+
+    @Test
+    public void halfFloat_relativeErrorIsBounded() {
+        Random random = new Random(11);
+
+        for (int i = 0; i < SAMPLES; ++i) {
+            float value = (random.nextFloat() * 2f - 1f) * 1000f;
+            float decoded = HalfFloat.toFloat(HalfFloat.toHalf(value));
+            assertEquals(value, decoded, Math.abs(value) * 0x1p-11f + 0x1p-25f);
+        }
+    }
+
+    @Test
+    public void halfFloat_specialValues() {
+        assertEquals(0x3C00, HalfFloat.toHalf(1f) & 0xFFFF);
+        assertEquals(0xC000, HalfFloat.toHalf(-2f) & 0xFFFF);
+        assertEquals(0x7BFF, HalfFloat.toHalf(65504f) & 0xFFFF);
+        assertEquals(0x7C00, HalfFloat.toHalf(1e6f) & 0xFFFF);
+        assertEquals(0x0001, HalfFloat.toHalf(0x1p-24f) & 0xFFFF);
+        assertEquals(0x1p-24f, HalfFloat.toFloat((short) 0x0001), 0f);
+        assertTrue(Float.isNaN(HalfFloat.toFloat(HalfFloat.toHalf(Float.NaN))));
+        assertEquals(Float.NEGATIVE_INFINITY, HalfFloat.toFloat((short) 0xFC00), 0f);
+    }
+
+    @Test
+    public void quantizedFormat_positionsDecodeWithinBounds() {
+        Random random = new Random(5);
+        int vertexCount = 1000;
+        FloatBuffer positions = MeshData.allocateFloats(vertexCount * 3);
+        FloatBuffer texCoords = MeshData.allocateFloats(vertexCount * 2);
+        FloatBuffer normals = MeshData.allocateFloats(vertexCount * 3);
+
+        for (int i = 0; i < vertexCount; ++i) {
+            positions.put(new float[]{
+                    random.nextFloat() * 3.4f - 1.7f, 0.65f, random.nextFloat() * 3.4f - 1.7f});
+            texCoords.put(new float[]{random.nextFloat(), random.nextFloat()});
+            normals.put(randomUnitVector(random));
+        }
+
+        positions.rewind();
+        texCoords.rewind();
+        normals.rewind();
+        MeshData meshData = new MeshData(positions, texCoords, normals, MeshData.allocateInts(0));
+
+        assertTrue(VertexFormat.QUANTIZED.canPack(meshData));
+        ByteBuffer packed = VertexFormat.QUANTIZED.pack(meshData);
+        float[] center = meshData.getBounds().getCenter();
+        float[] halfExtents = meshData.getBounds().getHalfExtents();
+        int stride = VertexFormat.QUANTIZED.getStride();
+
+        for (int i = 0; i < vertexCount; ++i) {
+            for (int axis = 0; axis < 3; ++axis) {
+                float decoded = VertexQuantizer.decodeSnorm16(
+                        packed.getShort(i * stride + axis * 2), center[axis], halfExtents[axis]);
+                assertEquals(positions.get(i * 3 + axis), decoded, 1e-4f);
+            }
+        }
+    }
+
+    @Test
+    public void quantizedFormat_rejectsTexCoordsOutsideUnitRange() {
+        FloatBuffer positions = floats(0f, 0f, 0f);
+        FloatBuffer texCoords = floats(1.5f, 0f);
+        FloatBuffer normals = floats(0f, 1f, 0f);
+        IntBuffer indices = MeshData.allocateInts(0);
+
+        assertFalse(VertexFormat.QUANTIZED.canPack(
+                new MeshData(positions, texCoords, normals, indices)));
+    }
+
+    private static FloatBuffer floats(float... values) {
+        FloatBuffer buffer = MeshData.allocateFloats(values.length);
+        buffer.put(values);
+        buffer.rewind();
+        return buffer;
+    }
+
+    private static float[] randomUnitVector(Random random) {
+        double z = random.nextDouble() * 2.0 - 1.0;
+        double phi = random.nextDouble() * 2.0 * Math.PI;
+        double r = Math.sqrt(1.0 - z * z);
+        return new float[]{(float) (r * Math.cos(phi)), (float) (r * Math.sin(phi)), (float) z};
+    }
+
+    private static double angleDegrees(float[] a, float[] b) {
+        double dot = a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+        return Math.toDegrees(Math.acos(Math.max(-1.0, Math.min(1.0, dot))));
+    }
+}
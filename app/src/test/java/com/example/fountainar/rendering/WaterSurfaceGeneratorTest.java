@@ -0,0 +1,183 @@
+package com.example.fountainar.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+
+/**
+ * Tests that {@link WaterSurfaceGenerator} builds a flat, upward facing disc or annulus that can
+ * replace the fountain basin's water surface OBJ.
+ */
+public class WaterSurfaceGeneratorTest {
+    private static final String WATER_SURFACE = "src/test/resources/models/water_surface.obj";
+    private static final float POSITION_TOLERANCE = 1e-4f;
+
+    @Test
+    public void generate_matchesBoundsOfWaterSurfaceObj() throws IOException {
+        BoundingBox expected = loadWaterSurface().getBounds();
+
+        for (boolean isLowEndDevice : new boolean[]{true, false}) {
+            BoundingBox actual = WaterSurfaceGenerator.forQualityTier(isLowEndDevice).generate()
+                    .getBounds();
+
+            assertEquals(expected.getMin()[0], actual.getMin()[0], POSITION_TOLERANCE);
+            assertEquals(expected.getMax()[0], actual.getMax()[0], POSITION_TOLERANCE);
+            assertEquals(expected.getMin()[2], actual.getMin()[2], POSITION_TOLERANCE);
+            assertEquals(expected.getMax()[2], actual.getMax()[2], POSITION_TOLERANCE);
+            // The OBJ is a slab, of which only the top is visible.
+            assertEquals(expected.getMax()[1], actual.getMin()[1], 0f);
+            assertEquals(expected.getMax()[1], actual.getMax()[1], 0f);
+        }
+    }
+
+    @Test
+    public void generate_matchesTexCoordsOfWaterSurfaceObj() throws IOException {
+        MeshData waterSurface = loadWaterSurface();
+        MeshData generated = new WaterSurfaceGenerator().generate();
+        FloatBuffer positions = waterSurface.getPositions();
+        FloatBuffer texCoords = waterSurface.getTexCoords();
+        int matches = 0;
+
+        for (int v = 0; v < generated.getVertexCount(); ++v) {
+            float closest = Float.POSITIVE_INFINITY;
+
+            for (int w = 0; w < waterSurface.getVertexCount(); ++w) {
+                if (Math.abs(positions.get(w * 3) - generated.getPositions().get(v * 3))
+                        < POSITION_TOLERANCE
+                        && Math.abs(positions.get(w * 3 + 1)
+                        - generated.getPositions().get(v * 3 + 1)) < POSITION_TOLERANCE
+                        && Math.abs(positions.get(w * 3 + 2)
+                        - generated.getPositions().get(v * 3 + 2)) < POSITION_TOLERANCE) {
+                    closest = Math.min(closest, Math.max(
+                            Math.abs(texCoords.get(w * 2) - generated.getTexCoords().get(v * 2)),
+                            Math.abs(texCoords.get(w * 2 + 1)
+                                    - generated.getTexCoords().get(v * 2 + 1))));
+                }
+            }
+
+            if (closest != Float.POSITIVE_INFINITY) {
+                assertTrue("Vertex " + v + " texture coordinate error " + closest,
+                        closest < 0.02f);
+                ++matches;
+            }
+        }
+
+        // Every corner of the OBJ's 32-gon outline.
+        assertTrue("Matches " + matches, matches >= WaterSurfaceGenerator.BASIN_SEGMENTS);
+    }
+
+    @Test
+    public void generate_buildsUpwardFacingDisc() {
+        int rings = 3;
+        int segments = 12;
+        float radius = 2f;
+
+        MeshData disc = new WaterSurfaceGenerator().setRadii(radius, 0f).setRings(rings)
+                .setSegments(segments).generate();
+
+        assertEquals(1 + rings * segments, disc.getVertexCount());
+        assertEquals((2 * rings - 1) * segments, disc.getIndexCount() / 3);
+        assertFacingUp(disc);
+        assertEquals(computePolygonArea(radius, segments), computeArea(disc), 1e-4f);
+    }
+
+    @Test
+    public void generate_leavesAnnulusOpenInside() {
+        int rings = 2;
+        int segments = 16;
+        float outerRadius = 2f;
+        float innerRadius = 1f;
+
+        MeshData annulus = new WaterSurfaceGenerator().setCenter(0f, 0f)
+                .setRadii(outerRadius, innerRadius).setRings(rings).setSegments(segments)
+                .generate();
+
+        assertEquals((rings + 1) * segments, annulus.getVertexCount());
+        assertEquals(2 * rings * segments, annulus.getIndexCount() / 3);
+        assertFacingUp(annulus);
+        assertEquals(computePolygonArea(outerRadius, segments)
+                - computePolygonArea(innerRadius, segments), computeArea(annulus), 1e-4f);
+
+        for (int v = 0; v < annulus.getVertexCount(); ++v) {
+            float x = annulus.getPositions().get(v * 3);
+            float z = annulus.getPositions().get(v * 3 + 2);
+            assertTrue((float) Math.sqrt(x * x + z * z) > innerRadius - POSITION_TOLERANCE);
+        }
+    }
+
+    @Test
+    public void generateLevels_halvesSegmentsDownToMinimum() {
+        List<MeshData> levels = WaterSurfaceGenerator.forQualityTier(false).generateLevels(4);
+
+        // 64, 32 and 16 segments.
+        assertEquals(3, levels.size());
+
+        for (int i = 1; i < levels.size(); ++i) {
+            assertTrue(levels.get(i).getIndexCount() < levels.get(i - 1).getIndexCount());
+            assertFacingUp(levels.get(i));
+        }
+
+        assertEquals(1, new WaterSurfaceGenerator().generateLevels(1).size());
+    }
+
+    private static MeshData loadWaterSurface() throws IOException {
+        try (InputStream inputStream = new FileInputStream(WATER_SURFACE)) {
+            return MeshData.fromObj(inputStream);
+        }
+    }
+
+    /**
+     * Asserts that all normals and triangles point up.
+     */
+    private static void assertFacingUp(MeshData meshData) {
+        FloatBuffer normals = meshData.getNormals();
+
+        for (int v = 0; v < meshData.getVertexCount(); ++v) {
+            assertEquals(0f, normals.get(v * 3), 0f);
+            assertEquals(1f, normals.get(v * 3 + 1), 0f);
+            assertEquals(0f, normals.get(v * 3 + 2), 0f);
+        }
+
+        for (int i = 0; i < meshData.getIndexCount(); i += 3) {
+            assertTrue("Triangle " + i / 3, computeUpwardArea(meshData, i) > 0);
+        }
+    }
+
+    private static float computeArea(MeshData meshData) {
+        float area = 0;
+
+        for (int i = 0; i < meshData.getIndexCount(); i += 3) {
+            area += computeUpwardArea(meshData, i);
+        }
+
+        return area;
+    }
+
+    /**
+     * Returns the area of the triangle starting at the given index, negative if it faces down.
+     */
+    private static float computeUpwardArea(MeshData meshData, int index) {
+        FloatBuffer positions = meshData.getPositions();
+        IntBuffer indices = meshData.getIndices();
+        int a = indices.get(index) * 3;
+        int b = indices.get(index + 1) * 3;
+        int c = indices.get(index + 2) * 3;
+        float abX = positions.get(b) - positions.get(a);
+        float abZ = positions.get(b + 2) - positions.get(a + 2);
+        float acX = positions.get(c) - positions.get(a);
+        float acZ = positions.get(c + 2) - positions.get(a + 2);
+        return (abZ * acX - abX * acZ) / 2;
+    }
+
+    private static float computePolygonArea(float radius, int segments) {
+        return (float) (segments * radius * radius * Math.sin(2 * Math.PI / segments) / 2);
+    }
+}